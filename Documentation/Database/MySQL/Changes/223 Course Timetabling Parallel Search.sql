@@ -0,0 +1,37 @@
+/*
+ * Licensed to The Apereo Foundation under one or more contributor license
+ * agreements. See the NOTICE file distributed with this work for
+ * additional information regarding copyright ownership.
+ *
+ * The Apereo Foundation licenses this file to you under the Apache License,
+ * Version 2.0 (the "License"); you may not use this file except in
+ * compliance with the License. You may obtain a copy of the License at:
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ *
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ * 
+*/
+
+select 32767 * next_hi into @id from hibernate_unique_key;
+select uniqueid into @gbasic from solver_parameter_group where name='Basic';
+select max(ord) into @obasic from solver_parameter_def where solver_param_group_id=@gbasic;
+
+insert into solver_parameter_def
+	(uniqueid, name, default_value, description, type, ord, visible, solver_param_group_id) values
+	(@id, 'Parallel.NrSolvers', '0', 'Number of parallel search threads (0 for half of the available processors)', 'integer', @obasic + 1, 1, @gbasic);
+
+update hibernate_unique_key set next_hi=next_hi+1;
+
+/*
+ * Update database version
+ */
+
+update application_config set value='223' where name='tmtbl.db.version';
+
+commit;
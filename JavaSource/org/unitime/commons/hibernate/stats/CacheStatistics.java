@@ -0,0 +1,204 @@
+/*
+ * Licensed to The Apereo Foundation under one or more contributor license
+ * agreements. See the NOTICE file distributed with this work for
+ * additional information regarding copyright ownership.
+ *
+ * The Apereo Foundation licenses this file to you under the Apache License,
+ * Version 2.0 (the "License"); you may not use this file except in
+ * compliance with the License. You may obtain a copy of the License at:
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ *
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ *
+*/
+package org.unitime.commons.hibernate.stats;
+
+import java.lang.management.ManagementFactory;
+
+import javax.management.MBeanServer;
+import javax.management.ObjectName;
+
+import net.sf.ehcache.CacheManager;
+import net.sf.ehcache.Ehcache;
+
+import org.apache.log4j.Logger;
+import org.hibernate.stat.SecondLevelCacheStatistics;
+import org.hibernate.stat.Statistics;
+import org.unitime.timetable.model.dao._RootDAO;
+
+/**
+ * Per region statistics of the Hibernate second level cache, exposed over JMX (as org.unitime:type=HibernateCache)
+ * and used by the {@link StatsProvider}. Hit, miss, and put counts are taken from the Hibernate statistics (which
+ * need to be enabled), eviction counts from EhCache (not available with other cache providers).
+ *
+ * @author Tomas Muller
+ */
+public class CacheStatistics implements CacheStatisticsMBean {
+	private static Logger sLog = Logger.getLogger(CacheStatistics.class);
+	private static ObjectName sObjectName = null;
+	
+	protected Statistics getStatistics() {
+		// do not use the thread bound session, the statistics are read from threads that do not close it (e.g., JMX)
+		org.hibernate.Session hibSession = new _RootDAO().createNewSession();
+		try {
+			return hibSession.getSessionFactory().getStatistics();
+		} finally {
+			hibSession.close();
+		}
+	}
+	
+	/**
+	 * Register the MBean with the platform MBean server
+	 */
+	public static synchronized void register() {
+		if (sObjectName != null) return;
+		try {
+			MBeanServer server = ManagementFactory.getPlatformMBeanServer();
+			ObjectName name = new ObjectName("org.unitime:type=HibernateCache");
+			if (!server.isRegistered(name))
+				server.registerMBean(new CacheStatistics(), name);
+			sObjectName = name;
+		} catch (Exception e) {
+			sLog.warn("Failed to register cache statistics MBean: " + e.getMessage(), e);
+		}
+	}
+	
+	/**
+	 * Unregister the MBean (if registered)
+	 */
+	public static synchronized void unregister() {
+		if (sObjectName == null) return;
+		try {
+			MBeanServer server = ManagementFactory.getPlatformMBeanServer();
+			if (server.isRegistered(sObjectName))
+				server.unregisterMBean(sObjectName);
+		} catch (Exception e) {
+			sLog.warn("Failed to unregister cache statistics MBean: " + e.getMessage(), e);
+		}
+		sObjectName = null;
+	}
+
+	@Override
+	public boolean isStatisticsEnabled() {
+		return getStatistics().isStatisticsEnabled();
+	}
+
+	@Override
+	public void setStatisticsEnabled(boolean enabled) {
+		getStatistics().setStatisticsEnabled(enabled);
+	}
+
+	@Override
+	public void clear() {
+		getStatistics().clear();
+	}
+
+	@Override
+	public String[] getRegionNames() {
+		String[] names = getStatistics().getSecondLevelCacheRegionNames();
+		return (names == null ? new String[0] : names);
+	}
+	
+	protected SecondLevelCacheStatistics getRegionStatistics(String region) {
+		try {
+			return getStatistics().getSecondLevelCacheStatistics(region);
+		} catch (Exception e) {
+			return null;
+		}
+	}
+
+	@Override
+	public long getHitCount(String region) {
+		SecondLevelCacheStatistics stats = getRegionStatistics(region);
+		return (stats == null ? 0 : stats.getHitCount());
+	}
+
+	@Override
+	public long getMissCount(String region) {
+		SecondLevelCacheStatistics stats = getRegionStatistics(region);
+		return (stats == null ? 0 : stats.getMissCount());
+	}
+
+	@Override
+	public long getPutCount(String region) {
+		SecondLevelCacheStatistics stats = getRegionStatistics(region);
+		return (stats == null ? 0 : stats.getPutCount());
+	}
+
+	@Override
+	public long getEvictionCount(String region) {
+		return getEhCacheEvictionCount(region);
+	}
+
+	@Override
+	public long getElementCount(String region) {
+		SecondLevelCacheStatistics stats = getRegionStatistics(region);
+		return (stats == null ? 0 : stats.getElementCountInMemory() + Math.max(0, stats.getElementCountOnDisk()));
+	}
+
+	@Override
+	public double getHitRatio(String region) {
+		return ratio(getHitCount(region), getMissCount(region));
+	}
+
+	@Override
+	public long getTotalHitCount() {
+		return getStatistics().getSecondLevelCacheHitCount();
+	}
+
+	@Override
+	public long getTotalMissCount() {
+		return getStatistics().getSecondLevelCacheMissCount();
+	}
+
+	@Override
+	public long getTotalPutCount() {
+		return getStatistics().getSecondLevelCachePutCount();
+	}
+
+	@Override
+	public double getTotalHitRatio() {
+		return ratio(getTotalHitCount(), getTotalMissCount());
+	}
+
+	@Override
+	public String[] getRegionSummary() {
+		String[] regions = getRegionNames();
+		String[] ret = new String[regions.length];
+		for (int i = 0; i < regions.length; i++) {
+			String region = regions[i];
+			long evictions = getEvictionCount(region);
+			ret[i] = region + ": elements=" + getElementCount(region) + ", hits=" + getHitCount(region) + ", misses=" + getMissCount(region) +
+					", puts=" + getPutCount(region) + ", evictions=" + (evictions < 0 ? "n/a" : String.valueOf(evictions)) +
+					", hitRatio=" + Math.round(100.0 * getHitRatio(region)) + "%";
+		}
+		return ret;
+	}
+	
+	/**
+	 * Hit ratio between 0.0 and 1.0
+	 */
+	public static double ratio(long hits, long misses) {
+		return (hits + misses == 0 ? 0.0 : ((double)hits) / (hits + misses));
+	}
+	
+	/**
+	 * Number of elements evicted from the given region, -1 if not known (e.g., the cache provider is not EhCache)
+	 */
+	public static long getEhCacheEvictionCount(String region) {
+		try {
+			for (CacheManager manager: CacheManager.ALL_CACHE_MANAGERS) {
+				Ehcache cache = manager.getEhcache(region);
+				if (cache != null && cache.isStatisticsEnabled())
+					return cache.getStatistics().getEvictionCount();
+			}
+		} catch (Throwable t) {}
+		return -1;
+	}
+}
@@ -0,0 +1,47 @@
+/*
+ * Licensed to The Apereo Foundation under one or more contributor license
+ * agreements. See the NOTICE file distributed with this work for
+ * additional information regarding copyright ownership.
+ *
+ * The Apereo Foundation licenses this file to you under the Apache License,
+ * Version 2.0 (the "License"); you may not use this file except in
+ * compliance with the License. You may obtain a copy of the License at:
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ *
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ *
+*/
+package org.unitime.commons.hibernate.stats;
+
+/**
+ * JMX interface of the second level cache statistics (see {@link CacheStatistics})
+ *
+ * @author Tomas Muller
+ */
+public interface CacheStatisticsMBean {
+	public boolean isStatisticsEnabled();
+	public void setStatisticsEnabled(boolean enabled);
+	public void clear();
+
+	public String[] getRegionNames();
+	public long getHitCount(String region);
+	public long getMissCount(String region);
+	public long getPutCount(String region);
+	public long getEvictionCount(String region);
+	public long getElementCount(String region);
+	public double getHitRatio(String region);
+
+	public long getTotalHitCount();
+	public long getTotalMissCount();
+	public long getTotalPutCount();
+	public double getTotalHitRatio();
+
+	/** One line per region: name, elements, hits, misses, puts, evictions, hit ratio */
+	public String[] getRegionSummary();
+}
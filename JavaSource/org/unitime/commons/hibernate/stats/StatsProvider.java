@@ -407,6 +407,8 @@ public class StatsProvider {
 	            	row.addContent(headerCell(" Hits ", 1, 1));
 	            	row.addContent(headerCell(" Misses ", 1, 1));
 	            	row.addContent(headerCell(" Puts ", 1, 1));
+	            	row.addContent(headerCell(" Hit Ratio ", 1, 1));
+	            	row.addContent(headerCell(" Evictions ", 1, 1));
 	            	row.addContent(headerCell(" In Memory ", 1, 1));
 	            	row.addContent(headerCell(" On Disk ", 1, 1));
 	            	row.addContent(headerCell(" Memory ", 1, 1));
@@ -426,6 +428,9 @@ public class StatsProvider {
 	                    row.addContent(cell(sStats.getHitCount()+"", 1, 1, false));
 	                    row.addContent(cell(sStats.getMissCount()+"", 1, 1, false));
 	                    row.addContent(cell(sStats.getPutCount()+"", 1, 1, false));
+	                    row.addContent(cell(Math.round(100.0 * CacheStatistics.ratio(sStats.getHitCount(), sStats.getMissCount())) + "%", 1, 1, false));
+	                    long evictions = CacheStatistics.getEhCacheEvictionCount(cRegionName);
+	                    row.addContent(cell(evictions < 0 ? "" : String.valueOf(evictions), 1, 1, false));
 	                    row.addContent(cell(sStats.getElementCountInMemory()+"", 1, 1, false));
 	                    row.addContent(cell(sStats.getElementCountOnDisk()+"", 1, 1, false));
 	                    row.addContent(cell(sStats.getSizeInMemory()+" bytes", 1, 1, false));
@@ -444,6 +449,8 @@ public class StatsProvider {
 	            	row.addContent(headerCell(""+hitCnt, 1, 1));
 	            	row.addContent(headerCell(""+missCnt, 1, 1));
 	            	row.addContent(headerCell(""+putCnt, 1, 1));
+	            	row.addContent(headerCell(Math.round(100.0 * CacheStatistics.ratio(hitCnt, missCnt)) + "%", 1, 1));
+	            	row.addContent(headerCell("", 1, 1));
 	            	row.addContent(headerCell(""+elementsInMem, 1, 1));
 	            	row.addContent(headerCell(""+elementsOnDisk, 1, 1));
 	            	row.addContent(headerCell(size+" bytes", 1, 1));
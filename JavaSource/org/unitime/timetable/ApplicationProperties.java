@@ -34,6 +34,8 @@ import java.util.HashMap;
 import java.util.Locale;
 import java.util.Map;
 import java.util.Properties;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.atomic.AtomicLong;
 
 import org.unitime.commons.Debug;
 import org.unitime.timetable.defaults.ApplicationProperty;
@@ -50,11 +52,14 @@ import org.unitime.timetable.util.Constants;
  */
 public class ApplicationProperties {
 	private static DateFormat sTempFileDateFormat = new SimpleDateFormat("yy-MM-dd_HHmmssSSS", Locale.US);
-	private static Properties props = new Properties();
+	private static Properties props = new VersionedProperties();
     private static long appPropertiesLastModified = -1, custPropertiesLastModified = -1;  
     private static PropertyFileChangeListener pfc=null;
     private static Properties configProps = null;
     private static Map<Long, Properties> sSessionProperties = new HashMap<Long, Properties>();
+    private static AtomicLong sVersion = new AtomicLong(0);
+    private static volatile Snapshot sGlobalSnapshot = null;
+    private static ConcurrentHashMap<Long, Snapshot> sSessionSnapshots = new ConcurrentHashMap<Long, Snapshot>();
     
     private static final ThreadLocal<Long> sAcademicSession = new ThreadLocal<Long>() {
 		 @Override
@@ -140,6 +145,8 @@ public class ApplicationProperties {
             props.putAll(System.getProperties());
 		} catch (Exception e) {
 			Debug.error(e);
+		} finally {
+			sVersion.incrementAndGet();
 		}
 	}
 
@@ -181,13 +188,16 @@ public class ApplicationProperties {
 	}
 	
 	public static Properties getConfigProperties() {
-	    if (configProps==null && _RootDAO.isConfigured())
-	        configProps = ApplicationConfig.toProperties();
+	    if (configProps==null && _RootDAO.isConfigured()) {
+	        configProps = new VersionedProperties(ApplicationConfig.toProperties());
+	        sVersion.incrementAndGet();
+	    }
 	    return (configProps==null?new Properties():configProps);
 	}
 	
 	public static void clearConfigProperties() {
 	    configProps = null;
+	    sVersion.incrementAndGet();
 	}
 	
 	public static Properties getSessionProperties(Long sessionId) {
@@ -196,8 +206,9 @@ public class ApplicationProperties {
 		
 		Properties properties = sSessionProperties.get(sessionId);
 		if (properties == null) {
-			properties = SessionConfig.toProperties(sessionId);
+			properties = new VersionedProperties(SessionConfig.toProperties(sessionId));
 			sSessionProperties.put(sessionId, properties);
+			sVersion.incrementAndGet();
 		}
 		return properties;
 	}
@@ -207,6 +218,38 @@ public class ApplicationProperties {
 			sSessionProperties.clear();
 		else
 			sSessionProperties.remove(sessionId);
+		sVersion.incrementAndGet();
+	}
+	
+	/**
+	 * Merged properties (default, application configuration, and academic session configuration if the session is provided).
+	 * The snapshot is rebuilt when any of the underlying properties changes.
+	 */
+	protected static Snapshot getSnapshot(Long sessionId) {
+		long version = sVersion.get();
+		Snapshot snapshot = (sessionId == null ? sGlobalSnapshot : sSessionSnapshots.get(sessionId));
+		if (snapshot != null && snapshot.getVersion() == version) return snapshot;
+		
+		Map<String, String> values = new HashMap<String, String>();
+		copy(props, values);
+		copy(getConfigProperties(), values);
+		if (sessionId != null)
+			copy(getSessionProperties(sessionId), values);
+		snapshot = new Snapshot(version, values);
+		
+		if (sessionId == null)
+			sGlobalSnapshot = snapshot;
+		else
+			sSessionSnapshots.put(sessionId, snapshot);
+		return snapshot;
+	}
+	
+	private static void copy(Properties properties, Map<String, String> values) {
+		synchronized (properties) {
+			for (Map.Entry<Object, Object> e: properties.entrySet())
+				if (e.getKey() instanceof String && e.getValue() instanceof String)
+					values.put((String)e.getKey(), (String)e.getValue());
+		}
 	}
 	
 	/**
@@ -232,16 +275,8 @@ public class ApplicationProperties {
 	    if(key==null || key.trim().length()==0)
 	        return defaultValue;
 	    
-	    Long sessionId = ApplicationProperties.getSessionId();
-	    if (sessionId != null) {
-	    	String value = getSessionProperties(sessionId).getProperty(key);
-	    	if (value != null) return value;
-	    }
-        
-        String value = getConfigProperties().getProperty(key);
-        if (value!=null) return value;
-        
-        return props.getProperty(key, defaultValue);
+	    String value = getSnapshot(ApplicationProperties.getSessionId()).getProperty(key);
+	    return (value == null ? defaultValue : value);
 	}
 	
 	/**
@@ -256,14 +291,8 @@ public class ApplicationProperties {
 	 * @return Properties object
 	 */
 	public static Properties getProperties() {
-        Properties ret = (Properties)props.clone();
-        ret.putAll(getConfigProperties());
-        
-	    Long sessionId = ApplicationProperties.getSessionId();
-        if (sessionId != null) {
-	    	ret.putAll(getSessionProperties(sessionId));
-	    }
-        
+        Properties ret = new Properties();
+        ret.putAll(getSnapshot(ApplicationProperties.getSessionId()).getProperties());
 		return ret;
 	}
 
@@ -377,6 +406,65 @@ public class ApplicationProperties {
 		}
 	}
     
+    /**
+     * Immutable merged view of the properties, valid as long as the version did not change
+     */
+    protected static class Snapshot {
+    	private final long iVersion;
+    	private final Map<String, String> iProperties;
+    	
+    	Snapshot(long version, Map<String, String> properties) {
+    		iVersion = version; iProperties = properties;
+    	}
+    	
+    	public long getVersion() { return iVersion; }
+    	public String getProperty(String key) { return iProperties.get(key); }
+    	public Map<String, String> getProperties() { return iProperties; }
+    }
+    
+    /**
+     * Properties that increment the version (invalidating all snapshots) on every change
+     */
+    static class VersionedProperties extends Properties {
+		private static final long serialVersionUID = 1L;
+		
+		VersionedProperties() {
+			super();
+		}
+		
+		VersionedProperties(Properties properties) {
+			super();
+			if (properties != null) putAll(properties);
+		}
+		
+		@Override
+		public synchronized Object put(Object key, Object value) {
+			Object ret = super.put(key, value);
+			sVersion.incrementAndGet();
+			return ret;
+		}
+		
+		@Override
+		public synchronized void putAll(Map<?, ?> t) {
+			// on newer JDKs, putAll does not call put
+			super.putAll(t);
+			sVersion.incrementAndGet();
+		}
+		
+		@Override
+		public synchronized Object remove(Object key) {
+			Object ret = super.remove(key);
+			sVersion.incrementAndGet();
+			return ret;
+		}
+		
+		@Override
+		public synchronized void clear() {
+			super.clear();
+			sVersion.incrementAndGet();
+		}
+    }
+    
     /**
      * Thread to check if property file has changed
      * and reload the properties on the fly. Interval = 1 minute
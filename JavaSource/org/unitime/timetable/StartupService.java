@@ -28,13 +28,18 @@ import org.springframework.beans.factory.InitializingBean;
 import org.springframework.stereotype.Service;
 import org.unitime.commons.Debug;
 import org.unitime.commons.hibernate.connection.DisposableConnectionProvider;
+import org.unitime.commons.hibernate.stats.CacheStatistics;
+import org.unitime.timetable.defaults.ApplicationProperty;
 import org.unitime.timetable.events.EventExpirationService;
 import org.unitime.timetable.model.ApplicationConfig;
 import org.unitime.timetable.model.SolverInfo;
 import org.unitime.timetable.model.StudentSectioningPref;
 import org.unitime.timetable.model.base._BaseRootDAO;
 import org.unitime.timetable.model.dao._RootDAO;
+import org.unitime.timetable.onlinesectioning.custom.ExternalServiceClient;
+import org.unitime.timetable.server.solver.ParallelSuggestions;
 import org.unitime.timetable.util.Constants;
+import org.unitime.timetable.util.HibernateCacheWarmUp;
 import org.unitime.timetable.util.LogCleaner;
 import org.unitime.timetable.util.MessageLogAppender;
 import org.unitime.timetable.util.RoomAvailability;
@@ -81,6 +86,14 @@ public class StartupService implements InitializingBean, DisposableBean {
 			Debug.info(" - Starting Event Expiration Service ...");
 			EventExpirationService.getInstance().start();
 			
+			if (ApplicationProperty.HibernateCacheStatisticsJmx.isTrue()) {
+				Debug.info(" - Registering Hibernate Cache Statistics ...");
+				CacheStatistics.register();
+			}
+			
+			Debug.info(" - Warming Up Hibernate Cache ...");
+			HibernateCacheWarmUp.startWarmUp();
+			
 			Debug.info("******* UniTime " + Constants.getVersion() +
 					" build on " + Constants.getReleaseDate() + " initialized successfully *******");
 
@@ -107,6 +120,8 @@ public class StartupService implements InitializingBean, DisposableBean {
 			EventExpirationService.getInstance().interrupt();
 			
 			SolverInfo.stopInfoCacheCleanup();
+			
+			CacheStatistics.unregister();
 		
 			ApplicationProperties.stopListener();
 			
@@ -117,6 +132,10 @@ public class StartupService implements InitializingBean, DisposableBean {
 	         
 	         LocalQueueProcessor.stopProcessor();
 	         
+	         ExternalServiceClient.stopAll();
+	         
+	         ParallelSuggestions.shutdown();
+	         
 	         Debug.info(" - Removing Message Log Appender ... ");
 	         Logger.getRootLogger().removeAppender(iMessageLogAppender);
 	         iMessageLogAppender.close();
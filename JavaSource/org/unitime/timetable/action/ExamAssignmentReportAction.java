@@ -74,6 +74,7 @@ import org.unitime.timetable.solver.WebSolver;
 import org.unitime.timetable.solver.exam.ExamSolverProxy;
 import org.unitime.timetable.solver.exam.ui.ExamAssignment;
 import org.unitime.timetable.solver.exam.ui.ExamAssignmentInfo;
+import org.unitime.timetable.solver.exam.ui.ExamConflictGraph;
 import org.unitime.timetable.solver.exam.ui.ExamInfo;
 import org.unitime.timetable.solver.exam.ui.ExamRoomInfo;
 import org.unitime.timetable.solver.exam.ui.ExamAssignmentInfo.BackToBackConflict;
@@ -395,6 +396,8 @@ public class ExamAssignmentReportAction extends Action {
                 meetings.add(meeting);
             }
             Parameters p = new Parameters(sessionId, examTypeId);
+            if (ExamConflictGraph.isEnabled())
+            	ExamConflictGraph.register(sessionId, examTypeId, student2exams);
         TreeSet<ExamAssignmentInfo> ret = new TreeSet();
         if (subjectAreaId==null || subjectAreaId<0) {
             for (Iterator i = new ExamDAO().getSession().createQuery(
@@ -74,6 +74,7 @@ import org.unitime.timetable.model.dao.SchedulingSubpartDAO;
 import org.unitime.timetable.model.dao.SessionDAO;
 import org.unitime.timetable.security.SessionContext;
 import org.unitime.timetable.security.rights.Right;
+import org.unitime.timetable.solver.exam.ui.ExamConflictGraph;
 import org.unitime.timetable.util.Constants;
 import org.unitime.timetable.util.LookupTables;
 import org.unitime.timetable.webutil.BackTracker;
@@ -522,6 +523,8 @@ public class ExamEditAction extends PreferencesAction {
         
         new ExamDAO().saveOrUpdate(exam);
         
+        ExamConflictGraph.invalidate(exam.getSession().getUniqueId(), exam.getExamType().getUniqueId());
+        
                 ChangeLog.addChange(
                 null, 
                 sessionContext,
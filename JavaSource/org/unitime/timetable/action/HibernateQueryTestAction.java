@@ -62,8 +62,8 @@ import org.springframework.stereotype.Service;
 import org.unitime.commons.Debug;
 import org.unitime.commons.hibernate.util.HibernateUtil;
 import org.unitime.timetable.defaults.ApplicationProperty;
-import org.unitime.timetable.export.BufferedPrinter;
 import org.unitime.timetable.export.CSVPrinter;
+import org.unitime.timetable.export.Exporter.Printer;
 import org.unitime.timetable.export.hql.TestHqlExportToCSV;
 import org.unitime.timetable.form.HibernateQueryTestForm;
 import org.unitime.timetable.model.SavedHQL;
@@ -160,9 +160,9 @@ public class HibernateQueryTestAction extends Action {
 				}
 	        }
 	        
-        	BufferedPrinter out = new BufferedPrinter(new CSVPrinter(response.getWriter(), false));
-        	response.setContentType(out.getContentType() + "; charset=UTF-8");
         	response.setCharacterEncoding("UTF-8");
+        	Printer out = new CSVPrinter(response.getWriter(), false);
+        	response.setContentType(out.getContentType() + "; charset=UTF-8");
         	response.setHeader("Pragma", "no-cache" );
     		response.addHeader("Cache-Control", "must-revalidate" );
     		response.addHeader("Cache-Control", "no-cache" );
@@ -19,6 +19,7 @@
 */
 package org.unitime.timetable.action;
 
+import java.text.DecimalFormat;
 import java.util.ArrayList;
 import java.util.Date;
 import java.util.List;
@@ -209,6 +210,8 @@ public class RollForwardSessionAction extends Action {
 		private RollForwardSessionForm iForm;
 		private int iProgress = 0;
 		private ActionErrors iErrors = new ActionErrors();
+		private String iPhase = null;
+		private long iPhaseStart = 0;
 		
 		public RollForwardQueueItem(Session session, UserContext owner, RollForwardSessionForm form) {
 			super(session, owner);
@@ -223,6 +226,20 @@ public class RollForwardSessionAction extends Action {
 			return iForm;
 		}
 		
+		@Override
+		public void setStatus(String status, double maxProgress) {
+			phaseDone();
+			super.setStatus(status, maxProgress);
+			iPhase = status;
+			iPhaseStart = System.currentTimeMillis();
+		}
+		
+		private void phaseDone() {
+			if (iPhase != null)
+				info(iPhase.replace(" ...", "") + " done in " + new DecimalFormat("0.0").format((System.currentTimeMillis() - iPhaseStart) / 1000.0) + " seconds.");
+			iPhase = null;
+		}
+		
 		@Override
 		protected void execute() throws Exception {
 	        SessionRollForward sessionRollForward = new SessionRollForward(this);
@@ -378,6 +395,7 @@ public class RollForwardSessionAction extends Action {
         	    sessionRollForward.rollPeriodicTasksForward(iErrors, iForm);
         	}
 	        iProgress++;
+	        phaseDone();
 	        if (!iErrors.isEmpty()) {
 	        	setError(new Exception(((ActionMessage)iErrors.get().next()).getValues()[0].toString()));
 	        } else {
@@ -0,0 +1,181 @@
+/*
+ * Licensed to The Apereo Foundation under one or more contributor license
+ * agreements. See the NOTICE file distributed with this work for
+ * additional information regarding copyright ownership.
+ *
+ * The Apereo Foundation licenses this file to you under the Apache License,
+ * Version 2.0 (the "License"); you may not use this file except in
+ * compliance with the License. You may obtain a copy of the License at:
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ *
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ *
+*/
+package org.unitime.timetable.api.connectors;
+
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.Date;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+
+import javax.servlet.http.HttpServletResponse;
+
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.stereotype.Service;
+import org.unitime.timetable.api.ApiConnector;
+import org.unitime.timetable.api.ApiHelper;
+import org.unitime.timetable.model.SolverGroup;
+import org.unitime.timetable.model.SolverParameterDef;
+import org.unitime.timetable.model.SolverParameterGroup;
+import org.unitime.timetable.model.SolverPredefinedSetting;
+import org.unitime.timetable.model.dao.SolverPredefinedSettingDAO;
+import org.unitime.timetable.security.rights.Right;
+import org.unitime.timetable.solver.service.CourseSolverBatch;
+import org.unitime.timetable.solver.service.CourseTimetablingSolverService;
+
+/**
+ * Batch of course timetabling solvers, one for each of the given solver groups (see {@link CourseSolverBatch}).<br>
+ * POST starts a new batch (parameters config, group (one or more), host, new, and commit; solver parameters can be overridden by their names),
+ * GET returns the status of the batch with the given id (or of all the batches of the user), DELETE cancels and removes the batch with the given id.
+ * 
+ * @author Tomas Muller
+ */
+@Service("/api/course-solver-batch")
+public class CourseSolverBatchConnector extends ApiConnector {
+	
+	@Autowired CourseTimetablingSolverService courseTimetablingSolverService;
+	
+	@Override
+	public void doGet(ApiHelper helper) throws IOException {
+		helper.getSessionContext().checkPermission(Right.Solver);
+		
+		String id = helper.getParameter("id");
+		if (id != null) {
+			CourseSolverBatch batch = getBatch(helper, id);
+			if (batch != null)
+				helper.setResponse(new BatchInfo(batch));
+		} else {
+			List<BatchInfo> batches = new ArrayList<BatchInfo>();
+			for (CourseSolverBatch batch: CourseSolverBatch.getBatches())
+				if (batch.getOwnerPuid().equals(helper.getSessionContext().getUser().getExternalUserId()))
+					batches.add(new BatchInfo(batch));
+			helper.setResponse(batches);
+		}
+	}
+	
+	@Override
+	public void doPost(ApiHelper helper) throws IOException {
+		helper.getSessionContext().checkPermission(Right.Solver);
+		
+		Long sessionId = helper.getAcademicSessionId();
+		if (sessionId == null)
+			throw new IllegalArgumentException("Academic session not provided, please set the term parameter.");
+		
+		String config = helper.getRequiredParameter("config");
+		SolverPredefinedSetting settings = SolverPredefinedSetting.findByName(config);
+		if (settings == null) {
+			try {
+				settings = SolverPredefinedSettingDAO.getInstance().get(Long.valueOf(config));
+			} catch (NumberFormatException e) {}
+		}
+		if (settings == null)
+			throw new IllegalArgumentException("Solver configuration " + config + " does not exist.");
+		
+		String[] groups = helper.getParameterValues("group");
+		if (groups == null || groups.length == 0)
+			throw new IllegalArgumentException("GROUP parameter not provided.");
+		List<Long> solverGroupIds = new ArrayList<Long>();
+		for (String group: groups) {
+			SolverGroup sg = SolverGroup.findBySessionIdAbbv(sessionId, group);
+			if (sg == null) sg = SolverGroup.findBySessionIdName(sessionId, group);
+			if (sg == null)
+				throw new IllegalArgumentException("Solver group " + group + " does not exist.");
+			solverGroupIds.add(sg.getUniqueId());
+		}
+		
+		Map<Long, String> options = new HashMap<Long, String>();
+		for (SolverParameterDef def: (List<SolverParameterDef>)helper.getHibSession().createQuery(
+				"from SolverParameterDef where group.type = :type").setInteger("type", SolverParameterGroup.SolverType.COURSE.ordinal()).list()) {
+			String value = helper.getParameter(def.getName());
+			if (value != null) options.put(def.getUniqueId(), value);
+		}
+		
+		CourseSolverBatch batch = courseTimetablingSolverService.createBatch(settings.getUniqueId(), options, solverGroupIds,
+				helper.getOptinalParameter("host", null),
+				helper.getOptinalParameterBoolean("new", false),
+				helper.getOptinalParameterBoolean("commit", false));
+		if (batch == null)
+			helper.sendError(HttpServletResponse.SC_FORBIDDEN, "Failed to start the batch.");
+		else
+			helper.setResponse(new BatchInfo(batch));
+	}
+	
+	@Override
+	public void doDelete(ApiHelper helper) throws IOException {
+		helper.getSessionContext().checkPermission(Right.Solver);
+		
+		CourseSolverBatch batch = getBatch(helper, helper.getRequiredParameter("id"));
+		if (batch != null) {
+			CourseSolverBatch.removeBatch(batch.getId());
+			helper.setResponse(new BatchInfo(batch));
+		}
+	}
+	
+	protected CourseSolverBatch getBatch(ApiHelper helper, String id) throws IOException {
+		CourseSolverBatch batch = CourseSolverBatch.getBatch(id);
+		if (batch == null || !batch.getOwnerPuid().equals(helper.getSessionContext().getUser().getExternalUserId())) {
+			helper.sendError(HttpServletResponse.SC_NOT_FOUND, "No batch found for " + id);
+			return null;
+		}
+		return batch;
+	}
+	
+	@Override
+	protected String getName() {
+		return "course-solver-batch";
+	}
+	
+	static class BatchInfo {
+		String iId;
+		int iProgress;
+		boolean iFinished;
+		Date iStarted, iFinishedDate;
+		String iMessage;
+		List<SolverInfo> iSolvers = new ArrayList<SolverInfo>();
+		
+		BatchInfo(CourseSolverBatch batch) {
+			iId = batch.getId();
+			iProgress = batch.getProgress();
+			iFinished = batch.isFinished();
+			iStarted = batch.getStarted();
+			iFinishedDate = batch.getFinished();
+			iMessage = batch.getMessage();
+			for (CourseSolverBatch.Entry entry: batch.getEntries())
+				iSolvers.add(new SolverInfo(entry));
+		}
+	}
+	
+	static class SolverInfo {
+		Long iSolverGroupId;
+		String iName;
+		String iState;
+		String iStatus;
+		int iProgress;
+		
+		SolverInfo(CourseSolverBatch.Entry entry) {
+			iSolverGroupId = entry.getSolverGroupId();
+			iName = entry.getName();
+			iState = entry.getState().name();
+			iStatus = entry.getStatus();
+			iProgress = (int)Math.round(100.0 * entry.getProgress());
+		}
+	}
+}
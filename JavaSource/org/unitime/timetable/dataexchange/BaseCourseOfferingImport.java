@@ -38,6 +38,7 @@ import org.hibernate.FlushMode;
 import org.hibernate.engine.spi.SessionImplementor;
 import org.unitime.commons.Debug;
 import org.unitime.timetable.defaults.ApplicationProperty;
+import org.unitime.timetable.events.EventLookupCache;
 import org.unitime.timetable.model.ChangeLog;
 import org.unitime.timetable.model.ClassDurationType;
 import org.unitime.timetable.model.ClassEvent;
@@ -153,6 +154,8 @@ public abstract class BaseCourseOfferingImport extends EventRelatedImports {
 		        deleteUnmatchedCourseOfferings();
 	        }
 	        deleteUnmatchedClasses();
+	        if (session != null)
+	        	EventLookupCache.getInstance().invalidate(getHibSession(), session.getUniqueId());
 	        commitTransaction();
 	        
 		} catch (Exception e) {
@@ -37,6 +37,7 @@ import org.cpsolver.ifs.util.ToolBox;
 import org.dom4j.Element;
 import org.unitime.localization.impl.Localization;
 import org.unitime.timetable.defaults.ApplicationProperty;
+import org.unitime.timetable.events.EventLookupCache;
 import org.unitime.timetable.gwt.resources.GwtConstants;
 import org.unitime.timetable.model.Assignment;
 import org.unitime.timetable.model.AssignmentInfo;
@@ -207,6 +208,9 @@ public class CourseTimetableImport extends BaseImport {
  	        	}
  	        }
  	        
+ 	        // class assignments and events of the already committed solutions may have changed as well
+ 	        EventLookupCache.getInstance().invalidate(getHibSession(), iSession.getUniqueId());
+ 	        
             commitTransaction();
 		} catch (Exception e) {
 			fatal("Exception: " + e.getMessage(), e);
@@ -26,6 +26,7 @@ import java.util.List;
 
 import org.dom4j.Element;
 import org.unitime.timetable.defaults.ApplicationProperty;
+import org.unitime.timetable.gwt.server.CurriculaDemandCube;
 import org.unitime.timetable.model.ChangeLog;
 import org.unitime.timetable.model.CourseOffering;
 import org.unitime.timetable.model.LastLikeCourseDemand;
@@ -128,6 +129,7 @@ public class LastLikeCourseDemandImport extends BaseImport {
 	                setLong("sessionId", session.getUniqueId()).executeUpdate();
             
             commitTransaction();
+            CurriculaDemandCube.getInstance().invalidate(session.getUniqueId());
 		} catch (Exception e) {
 			fatal("Exception: " + e.getMessage(), e);
 			rollbackTransaction();
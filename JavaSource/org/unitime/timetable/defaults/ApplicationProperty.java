@@ -127,6 +127,19 @@ public enum ApplicationProperty {
 	@ReadOnly
 	DatabaseUpdateFile("tmtbl.db.update"),
 
+	@Description("Database: comma separated list of the second level cache regions to be preloaded after the start-up (supported regions are Session, Department, SubjectArea, Building, Location, DatePattern, TimePattern, DepartmentalInstructor, InstructionalOffering, and CourseOffering)")
+	HibernateCacheWarmUp("unitime.hibernate.cache.warmUp"),
+
+	@Type(Integer.class)
+	@DefaultValue("4")
+	@Description("Database: number of threads preloading the second level cache regions after the start-up")
+	HibernateCacheWarmUpThreads("unitime.hibernate.cache.warmUp.threads"),
+
+	@Type(Boolean.class)
+	@DefaultValue("false")
+	@Description("Database: expose per region second level cache statistics over JMX (as org.unitime:type=HibernateCache)")
+	HibernateCacheStatisticsJmx("unitime.hibernate.cache.jmx"),
+
 	@DefaultValue("en")
 	@Description("All Pages: default locale (e.g., en for English)")
 	Locale("unitime.locale"),
@@ -263,6 +276,11 @@ public enum ApplicationProperty {
 	@Description("Configuration: hash calendar queries to make the iCalendar URL short")
 	UrlEncoderHashQueryWhenAsked("unitime.encode.hash"),
 
+	@Type(Boolean.class)
+	@DefaultValue("false")
+	@Description("Configuration: cache permission check decisions for the duration of a request (by user, authority, right and target)")
+	PermissionCacheEnabled("unitime.security.permissionCache"),
+
 	@Description("JAAS authentication modules (deprecated)")
 	@Deprecated
 	AuthenticationModules("tmtbl.authenticate.modules"),
@@ -414,6 +432,10 @@ public enum ApplicationProperty {
 	@Description("Solver: minimal amount of free memory (in MB) for the solver to load")
 	SolverMemoryLimit("tmtbl.solver.mem_limit"),
 
+	@Type(Integer.class)
+	@Description("Solver: number of threads shared by the course timetabling solvers of a batch run over multiple solver groups (defaults to the number of processors of the selected solver server)")
+	SolverBatchThreads("tmtbl.solver.batch.threads"),
+
 	@Values({"fatal", "error", "warn", "info", "debug", "trace"})
 	@Description("Solver: log level for %")
 	@Parameter("operation")
@@ -904,6 +926,11 @@ public enum ApplicationProperty {
 	@Description("Examination PDF Reports: pre-load cross-listed examinations")
 	ExaminationPdfReportsPreloadCrosslistedExams("tmtbl.exam.pdfReports.useSolution.preloadCrosslistedExams"),
 
+	@Type(Integer.class)
+	@DefaultValue("1")
+	@Description("Examination PDF Reports: number of threads used to generate per-subject reports and to send individual emails (examinations are loaded only once and shared between the threads)")
+	ExaminationPdfReportsNrThreads("tmtbl.exam.pdfReports.nrThreads"),
+
 	@Type(Boolean.class)
 	@DefaultValue("true")
 	@Description("Examination PDF Reports: skip suffixed subparts of the same instructional type (e.g., Lec 1a if there is a Lec 1) in the verification report")
@@ -966,6 +993,16 @@ public enum ApplicationProperty {
 	@Description("Examinations: cache examination conflicts with solution")
 	ExaminationCacheConflicts("tmtbl.exams.conflicts.cache"),
 
+	@Type(Boolean.class)
+	@DefaultValue("false")
+	@Description("Examinations: use a shared student - examination conflict graph (built once per academic session and examination type) when computing examination conflicts")
+	ExaminationConflictGraph("tmtbl.exams.conflicts.graph"),
+
+	@Type(Integer.class)
+	@DefaultValue("15")
+	@Description("Examinations: time to live of the shared student - examination conflict graph in minutes (0 for no expiration)")
+	ExaminationConflictGraphTimeToLive("tmtbl.exams.conflicts.graph.ttl"),
+
 	/**
 	 * Required minimal travel time between class event and an exam (in the number of 5-minute long time slots).
 	 */
@@ -1216,6 +1253,52 @@ public enum ApplicationProperty {
 	@Deprecated
 	@Description("Customization: section limit provider (interface SectionLimitProvider, deprecated)")
 	CustomizationSectionLimit("unitime.custom.SectionLimitProvider"),
+
+	@Type(Integer.class)
+	@Description("Customization: read timeout in milliseconds of the calls to the external service % (e.g., banner, specreg, or degreeworks), defaults to the service provider's own timeout or to 60 seconds")
+	@Parameter("endpoint")
+	ExternalServiceReadTimeout("unitime.custom.client.%.readTimeout"),
+
+	@Type(Integer.class)
+	@Description("Customization: connection timeout in milliseconds of the calls to the external service %")
+	@Parameter("endpoint")
+	ExternalServiceConnectTimeout("unitime.custom.client.%.connectTimeout"),
+
+	@Type(Integer.class)
+	@DefaultValue("0")
+	@Description("Customization: maximal number of concurrent calls to the external service % (0 for no limit)")
+	@Parameter("endpoint")
+	ExternalServiceMaxConcurrent("unitime.custom.client.%.maxConcurrent"),
+
+	@Type(Integer.class)
+	@DefaultValue("1000")
+	@Description("Customization: how long (in milliseconds) a call to the external service % can wait when there are too many concurrent calls before it is rejected")
+	@Parameter("endpoint")
+	ExternalServiceMaxWait("unitime.custom.client.%.maxWait"),
+
+	@Type(Integer.class)
+	@DefaultValue("0")
+	@Description("Customization: number of consecutive failures of the external service % after which the service is not called for a while (circuit breaker, 0 to disable)")
+	@Parameter("endpoint")
+	ExternalServiceCircuitBreakerFailures("unitime.custom.client.%.circuitBreaker.failures"),
+
+	@Type(Integer.class)
+	@DefaultValue("30")
+	@Description("Customization: how long (in seconds) the external service % is not called after too many consecutive failures")
+	@Parameter("endpoint")
+	ExternalServiceCircuitBreakerOpenTime("unitime.custom.client.%.circuitBreaker.openTime"),
+
+	@Type(Integer.class)
+	@DefaultValue("0")
+	@Description("Customization: time to live (in seconds) of the cached responses of idempotent lookups of the external service % (0 to disable caching)")
+	@Parameter("endpoint")
+	ExternalServiceCacheTimeToLive("unitime.custom.client.%.cache.ttl"),
+
+	@Type(Integer.class)
+	@DefaultValue("1000")
+	@Description("Customization: maximal number of cached responses of the external service %")
+	@Parameter("endpoint")
+	ExternalServiceCacheSize("unitime.custom.client.%.cache.size"),
 	
 	@Type(Boolean.class)
 	@DefaultValue("false")
@@ -1237,6 +1320,16 @@ public enum ApplicationProperty {
 	@Description("Re-Create Curriculum: minimal number of last-like students")
 	CurriculumLastLikeDemandsEnrollmentLimit("tmtbl.curriculum.lldemands.enrlLimit"),
 
+	@Type(Boolean.class)
+	@DefaultValue("false")
+	@Description("Curriculum: compute enrolled, requested, and last-like students from an in-memory aggregate of student demands (maintained per academic session) instead of querying the database on each request")
+	CurriculaDemandCubeEnabled("unitime.curriculum.demandCube.enabled"),
+
+	@Type(Integer.class)
+	@DefaultValue("3600")
+	@Description("Curriculum: time to live of the in-memory aggregate of student demands in seconds (changes that are not reported through the student sectioning queue, e.g., online enrollment changes, are picked up when the aggregate is reloaded)")
+	CurriculaDemandCubeTimeToLive("unitime.curriculum.demandCube.ttlInSeconds"),
+
 	@Type(Integer.class)
 	@DefaultValue("-1")
 	@Description("Events: indicate that a meeting is at an unusual time (too early); the value is the last time slot that is considered too early (e.g., 72 means 6 am)")
@@ -1246,6 +1339,21 @@ public enum ApplicationProperty {
 	@DefaultValue("5")
 	@Description("Event: event expiration service thread update interval in minutes")
 	EventExpirationServiceUpdateInterval("unitime.events.expiration.updateIntervalInMinutes"),
+
+	@Type(Boolean.class)
+	@DefaultValue("false")
+	@Description("Events: cache results of the event lookups (invalidated when an event is changed, approved, or expired)")
+	EventLookupCacheEnabled("unitime.events.lookupCache.enabled"),
+
+	@Type(Integer.class)
+	@DefaultValue("1000")
+	@Description("Events: maximal number of event lookup results that are kept in the cache")
+	EventLookupCacheSize("unitime.events.lookupCache.size"),
+
+	@Type(Integer.class)
+	@DefaultValue("300")
+	@Description("Events: time to live of a cached event lookup result in seconds")
+	EventLookupCacheTimeToLive("unitime.events.lookupCache.ttlInSeconds"),
 	
 	@Type(Boolean.class)
 	@DefaultValue("true")
@@ -1276,6 +1384,26 @@ public enum ApplicationProperty {
 	@DefaultValue("true")
 	@Description("Event ICS Calendar: set main contact as organizer")
 	EventCalendarSetOrganizer("unitime.events.ics_set_organizer"),
+
+	@Type(Boolean.class)
+	@DefaultValue("false")
+	@Description("Event ICS Calendar: cache generated calendar feeds (unchanged feeds are answered with 304 Not Modified using the ETag header)")
+	EventCalendarFeedCacheEnabled("unitime.events.ics_cache.enabled"),
+
+	@Type(Integer.class)
+	@DefaultValue("1000")
+	@Description("Event ICS Calendar: maximal number of calendar feeds that are kept in the cache")
+	EventCalendarFeedCacheSize("unitime.events.ics_cache.size"),
+
+	@Type(Integer.class)
+	@DefaultValue("1048576")
+	@Description("Event ICS Calendar: maximal length of a calendar feed in bytes that is kept in the cache (longer feeds are only streamed to the client)")
+	EventCalendarFeedCacheMaxLength("unitime.events.ics_cache.maxLength"),
+
+	@Type(Integer.class)
+	@DefaultValue("900")
+	@Description("Event ICS Calendar: time to live of a cached calendar feed in seconds")
+	EventCalendarFeedCacheTimeToLive("unitime.events.ics_cache.ttlInSeconds"),
 	
 	@Type(Boolean.class)
 	@DefaultValue("false")
@@ -1521,6 +1649,70 @@ public enum ApplicationProperty {
 	@Description("Query Log: record request object/parameters as JSON message")
 	QueryLogJSON("unitime.query.log.json"),
 
+	@Type(Float.class)
+	@DefaultValue("1.0")
+	@Description("Query Log: fraction of the requests (between 0.0 and 1.0) that have their request object/parameters recorded as JSON message when unitime.query.log.json is enabled (failed requests are always recorded)")
+	QueryLogJSONSampling("unitime.query.log.json.sampling"),
+
+	@Type(Integer.class)
+	@DefaultValue("100")
+	@Description("Query Log: number of queries persisted in one transaction (inserts are sent to the database in JDBC batches of hibernate.jdbc.batch_size)")
+	QueryLogBatchSize("unitime.query.log.batchSize"),
+
+	@Type(Boolean.class)
+	@DefaultValue("false")
+	@Description("Query Log: instead of recording each query, record one row per minute for each type, uri, user and session containing the number of calls, the total and the maximal time (query statistics will count these rows instead of the individual queries)")
+	QueryLogAggregate("unitime.query.log.aggregate"),
+
+	@Type(Integer.class)
+	@DefaultValue("20")
+	@Description("GWT RPC: number of worker threads executing the asynchronous (cancellable) requests (change requires restart)")
+	GwtRpcAsyncPoolSize("unitime.rpc.async.poolSize"),
+
+	@Type(Integer.class)
+	@DefaultValue("5")
+	@Description("GWT RPC: maximum number of asynchronous requests of one user that can be executed at the same time, other requests of the user are queued (0 means no limit)")
+	GwtRpcAsyncMaxPerUser("unitime.rpc.async.maxPerUser"),
+
+	@Type(Integer.class)
+	@DefaultValue("0")
+	@Description("GWT RPC: maximum number of asynchronous requests of the same type that can be executed at the same time, other requests of the type are queued (0 means no limit)")
+	GwtRpcAsyncMaxPerType("unitime.rpc.async.maxPerType"),
+
+	@Type(Integer.class)
+	@DefaultValue("1000")
+	@Description("GWT RPC: maximum number of queued asynchronous requests, new requests are rejected when the queue is full (0 means no limit)")
+	GwtRpcAsyncQueueSize("unitime.rpc.async.queueSize"),
+
+	@Type(Integer.class)
+	@DefaultValue("0")
+	@Description("Throttling: maximum number of requests of an HTTP session that are processed at the same time, additional requests are rejected (0 means no limit)")
+	ThrottleSessionMaxConcurrent("unitime.throttle.session.maxConcurrent"),
+
+	@Type(Integer.class)
+	@DefaultValue("0")
+	@Description("Throttling: maximum number of requests of a user (across all the user's HTTP sessions) that are processed at the same time, additional requests are rejected (0 means no limit)")
+	ThrottleUserMaxConcurrent("unitime.throttle.user.maxConcurrent"),
+
+	@Type(Float.class)
+	@DefaultValue("0")
+	@Description("Throttling: maximum number of requests per second of an HTTP session, requests over the rate are rejected (0 means no limit)")
+	ThrottleSessionRate("unitime.throttle.session.rate"),
+
+	@Type(Float.class)
+	@DefaultValue("0")
+	@Description("Throttling: maximum number of requests per second of a user, requests over the rate are rejected (0 means no limit)")
+	ThrottleUserRate("unitime.throttle.user.rate"),
+
+	@Type(Integer.class)
+	@DefaultValue("20")
+	@Description("Throttling: number of requests that may exceed the request rate in a short burst")
+	ThrottleBurst("unitime.throttle.burst"),
+
+	@DefaultValue(".*(\\.do|\\.gwt|\\.rpc)|/api/.*|/export|/calendar")
+	@Description("Throttling: regular expression matching the servlet paths of the requests that are subject to throttling (static resources should not be throttled)")
+	ThrottleUrlPattern("unitime.throttle.pattern"),
+
 	@Type(Boolean.class)
 	@DefaultValue("false")
 	@Description("Classes: if there are two or more scheduling subparts in a parent-child relation with the same instructional type (e.g., Lec - Lec a - Lec b stacked underneath), inherit preferences and the date pattern from the parent subpart whenever possible")
@@ -1734,6 +1926,21 @@ public enum ApplicationProperty {
 	@Description("Online Student Scheduling: sectioning queue update interval in seconds")
 	OnlineSchedulingQueueUpdateInterval("unitime.sectioning.queue.updateInterval"),
 
+	@Type(Boolean.class)
+	@DefaultValue("false")
+	@Description("Online Student Scheduling: merge pending sectioning queue items of the same type and user (union of their ids) before processing them, collapsing all data changes into a single reload when a session reload is queued")
+	OnlineSchedulingQueueCoalesce("unitime.sectioning.queue.coalesce"),
+
+	@Type(Boolean.class)
+	@DefaultValue("false")
+	@Description("Online Student Scheduling: when a new item is added to the sectioning queue, notify the solver servers (once the transaction is committed) so that the updater checks for updates right away instead of waiting for the next update interval")
+	OnlineSchedulingQueueNotify("unitime.sectioning.queue.notify"),
+
+	@Type(Integer.class)
+	@DefaultValue("200")
+	@Description("Online Student Scheduling: sectioning queue notification delay in milliseconds (all the items added within this time for the same academic session are notified at once)")
+	OnlineSchedulingQueueNotifyDelay("unitime.sectioning.queue.notifyDelay"),
+
 	@Description("Online Student Scheduling: only academic sessions matching this year (regular expression) are loaded in")
 	OnlineSchedulingAcademicYear("unitime.enrollment.year"),
 
@@ -1788,6 +1995,24 @@ public enum ApplicationProperty {
 	@Description("Configuration: automatically remove published batch student scheduling solutions after the given number of days")
 	LogCleanupSectioningSolutionLog("unitime.cleanup.publishedSolutions"),
 
+	@Type(Integer.class)
+	@DefaultValue("0")
+	@Description("Configuration: when set, old log records are deleted in chunks of the given size (each in its own transaction) instead of a single bulk delete")
+	LogCleanupChunkSize("unitime.cleanup.chunkSize"),
+
+	@Type(Integer.class)
+	@DefaultValue("100")
+	@Description("Configuration: pause in milliseconds between two chunks of deleted log records (see unitime.cleanup.chunkSize)")
+	LogCleanupChunkPause("unitime.cleanup.chunkPause"),
+
+	@Type(Boolean.class)
+	@DefaultValue("false")
+	@Description("Online Scheduling Log: archive the removed records into a compressed file (sequence of length delimited protobuf messages)")
+	LogCleanupArchiveOnlineSchedulingLog("unitime.cleanup.sectioningLog.archive"),
+
+	@Description("Online Scheduling Log: folder of the archived records (defaults to the archive folder in the data folder)")
+	LogCleanupArchiveFolder("unitime.cleanup.archiveFolder"),
+
 	@DefaultValue("WARN")
 	@Values({"ERROR", "WARN", "INFO"})
 	@Description("Message Log: minimum message level to be logged in the MessageLog table")
@@ -1918,6 +2143,36 @@ public enum ApplicationProperty {
 	@Description("Timetable Grid: skip holidays in room utilization computations")
 	TimetableGridUtilizationSkipHolidays("tmtbl.timeGrid.utilizationSkipHolidays"),
 
+	@Type(Boolean.class)
+	@DefaultValue("false")
+	@Description("Timetable Grid: cache the timetable grid cells computed from a course timetabling solver, the cells are invalidated when the related classes change their assignments")
+	TimetableGridCellCache("tmtbl.timeGrid.cellCache"),
+
+	@Type(Integer.class)
+	@DefaultValue("900")
+	@Description("Timetable Grid: time to live of a cached timetable grid cell in seconds (to refresh values that do not depend on the class assignments, e.g., student conflicts after re-sectioning)")
+	TimetableGridCellCacheTimeToLive("tmtbl.timeGrid.cellCache.ttl"),
+
+	@Type(Integer.class)
+	@DefaultValue("1")
+	@Description("Course Timetabling Suggestions: number of threads used to compute the suggestions of a class (1 to compute the suggestions on the calling thread)")
+	SuggestionsThreads("tmtbl.suggestions.threads"),
+
+	@Type(Boolean.class)
+	@DefaultValue("false")
+	@Description("Course Timetabling Suggestions: cache the computed suggestions, the cached suggestions are dropped when an assignment of the solver changes")
+	SuggestionsCache("tmtbl.suggestions.cache"),
+
+	@Type(Integer.class)
+	@DefaultValue("100")
+	@Description("Course Timetabling Suggestions: maximal number of cached suggestion computations (per solver)")
+	SuggestionsCacheSize("tmtbl.suggestions.cache.size"),
+
+	@Type(Integer.class)
+	@DefaultValue("300")
+	@Description("Course Timetabling Suggestions: time to live of the cached suggestions in seconds")
+	SuggestionsCacheTimeToLive("tmtbl.suggestions.cache.ttl"),
+
 	@Description("Contact Us: address")
 	ContactUsAddress("tmtbl.contact.address"),
 
@@ -2012,6 +2267,16 @@ public enum ApplicationProperty {
 	@Description("Session Roll Forward: reset class suffixes and external ids")
 	RollForwardResetClassSuffix("unitime.rollforward.resetClassSufix"),
 
+	@Type(Integer.class)
+	@DefaultValue("1")
+	@Description("Session Roll Forward: number of threads rolling the course offerings forward (subject areas are processed in parallel when greater than one)")
+	RollForwardThreads("unitime.rollforward.threads"),
+
+	@Type(Boolean.class)
+	@DefaultValue("false")
+	@Description("Session Roll Forward: remember the subject areas that have been already rolled forward, so that a failed roll forward can be resumed")
+	RollForwardResumable("unitime.rollforward.resumable"),
+
 	@Type(Boolean.class)
 	@DefaultValue("false")
 	@Description("Main Page: when Internet Explorer is used, show \"the UniTime application may run very slow in Internet Explorer\" warning")
@@ -2383,6 +2648,16 @@ public enum ApplicationProperty {
 	@Since(4.2)
 	SolverShowConfiguratioName("unitime.solver.showConfigurationNames"),
 	
+	@Type(Boolean.class)
+	@DefaultValue("false")
+	@Description("Instructor Scheduling Solver: load the input data using bulk queries (instructor and teaching request collections are fetched in batches, instructor unavailabilities are loaded for all instructors at once)")
+	InstructorSchedulingLoaderBatch("unitime.instructor.loader.batch"),
+	
+	@Type(Integer.class)
+	@DefaultValue("1")
+	@Description("Instructor Scheduling Solver: number of threads loading instructor unavailabilities (by department) when the batched loading is enabled")
+	InstructorSchedulingLoaderThreads("unitime.instructor.loader.threads"),
+	
 	@Type(Boolean.class)
 	@DefaultValue("false")
 	@Description("API: allow API tokens to be used for user authentication")
@@ -2501,6 +2776,11 @@ public enum ApplicationProperty {
 	@Description("Instructional Offerings / Classes: maximal number of selected subject areas for the search to start automatically")
 	MaxSubjectsToSearchAutomatically("unitime.auto_search.maxSubjects"),
 	
+	@Type(Boolean.class)
+	@DefaultValue("false")
+	@Description("Instructional Offerings / Classes: prefetch preferences, instructors, committed assignments, distribution preferences, and examinations of the listed classes with a few set-based queries before the table is rendered")
+	OfferingTablePrefetch("unitime.offering_table.prefetch"),
+	
 	@Type(Integer.class)
 	@DefaultValue("0")
 	@Description("Time Patterns: first day of week (0 is Monday, 1 is Tuesday, etc.)")
@@ -2603,13 +2883,33 @@ public enum ApplicationProperty {
 	;
 
 	String iKey;
+	private Annotations iAnnotations = null;
+	private Parsed<Integer> iIntValue = null;
+	private Parsed<Float> iFloatValue = null;
+	private Parsed<Double> iDoubleValue = null;
 	
 	ApplicationProperty(String key) { iKey = key; }
 	
 	public String key() { return iKey; }
 	public String key(String reference) { return (reference == null ? iKey : iKey.replace("%", reference)); }
 	
+	/**
+	 * Default value and replaced keys are needed on every lookup, read the annotations only once
+	 */
+	private Annotations annotations() {
+		Annotations annotations = iAnnotations;
+		if (annotations == null) {
+			annotations = new Annotations(this);
+			iAnnotations = annotations;
+		}
+		return annotations;
+	}
+	
 	public String defaultValue() {
+		return annotations().iDefaultValue;
+	}
+	
+	private String defaultValueAnnotation() {
 		try {
 			DefaultValue defaultValue = ApplicationProperty.class.getField(name()).getAnnotation(DefaultValue.class);
 			return (defaultValue == null ? null : defaultValue.value());
@@ -2713,11 +3013,15 @@ public enum ApplicationProperty {
 	}
 	
 	public Integer intValue() {
+		String value = value();
+		Parsed<Integer> parsed = iIntValue;
+		if (parsed != null && parsed.matches(value)) return parsed.iValue;
+		Integer ret = null;
 		try {
-			return Integer.valueOf(value());
-		} catch (Exception e) {
-			return null;
-		}
+			if (value != null) ret = Integer.valueOf(value);
+		} catch (Exception e) {}
+		iIntValue = new Parsed<Integer>(value, ret);
+		return ret;
 	}
 	
 	public Integer intValue(String reference) {
@@ -2729,22 +3033,34 @@ public enum ApplicationProperty {
 	}
 	
 	public Float floatValue() {
+		String value = value();
+		Parsed<Float> parsed = iFloatValue;
+		if (parsed != null && parsed.matches(value)) return parsed.iValue;
+		Float ret = null;
 		try {
-			return Float.valueOf(value());
-		} catch (Exception e) {
-			return null;
-		}
+			if (value != null) ret = Float.valueOf(value);
+		} catch (Exception e) {}
+		iFloatValue = new Parsed<Float>(value, ret);
+		return ret;
 	}
 	
 	public Double doubleValue() {
+		String value = value();
+		Parsed<Double> parsed = iDoubleValue;
+		if (parsed != null && parsed.matches(value)) return parsed.iValue;
+		Double ret = null;
 		try {
-			return Double.valueOf(value());
-		} catch (Exception e) {
-			return null;
-		}
+			if (value != null) ret = Double.valueOf(value);
+		} catch (Exception e) {}
+		iDoubleValue = new Parsed<Double>(value, ret);
+		return ret;
 	}
 	
 	private String[] replaces() {
+		return annotations().iReplaces;
+	}
+	
+	private String[] replacesAnnotation() {
 		try {
 			Replaces replaces = ApplicationProperty.class.getField(name()).getAnnotation(Replaces.class);
 			return (replaces == null ? null : replaces.value());
@@ -2951,6 +3267,35 @@ public enum ApplicationProperty {
 		return (description == null ? "" : "# " + description + "\n") + key() + "=" + (defaultValue == null ? "" : defaultValue);
 	}
 	
+	/**
+	 * Annotations of a property (these never change)
+	 */
+	private static class Annotations {
+		private final String iDefaultValue;
+		private final String[] iReplaces;
+		
+		private Annotations(ApplicationProperty property) {
+			iDefaultValue = property.defaultValueAnnotation();
+			iReplaces = property.replacesAnnotation();
+		}
+	}
+	
+	/**
+	 * Last parsed value of a property, it is reused as long as the property text does not change
+	 */
+	private static class Parsed<T> {
+		private final String iText;
+		private final T iValue;
+		
+		private Parsed(String text, T value) {
+			iText = text; iValue = value;
+		}
+		
+		private boolean matches(String text) {
+			return (text == null ? iText == null : text.equals(iText));
+		}
+	}
+	
 	public static void main(String[] args) {
 		for (ApplicationProperty p: ApplicationProperty.values()) {
 			System.out.println();
@@ -207,6 +207,8 @@ public class ApproveEventBackend extends EventAction<ApproveEventRpcRequest, Sav
 			
 			tx.commit(); tx = null;
 			
+			EventLookupCache.getInstance().eventChanged(request.getSessionId(), event);
+			
 			new EventEmail(request, response).send(context);
 			
 			return response;
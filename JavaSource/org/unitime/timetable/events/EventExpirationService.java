@@ -19,6 +19,7 @@
 */
 package org.unitime.timetable.events;
 
+import java.util.ArrayList;
 import java.util.Calendar;
 import java.util.Date;
 import java.util.HashSet;
@@ -76,6 +77,7 @@ public class EventExpirationService extends Thread {
 			Transaction tx = hibSession.beginTransaction();
 			try {
 				Date now = new Date();
+				List<Event> expired = new ArrayList<Event>();
 				for (Event event: (List<Event>)hibSession.createQuery(
 						"select distinct e from Event e inner join e.meetings m " +
 						"where e.expirationDate is not null and m.approvalStatus = 0 and e.expirationDate < " + HibernateUtil.date(new Date())).list()) {
@@ -106,6 +108,7 @@ public class EventExpirationService extends Thread {
 					hibSession.saveOrUpdate(note);
 				
 					hibSession.update(event);
+					expired.add(event);
 					
 					try {
 						EventEmail.eventExpired(event, affectedMeetings);
@@ -115,6 +118,9 @@ public class EventExpirationService extends Thread {
 				}
 				
 				tx.commit(); tx = null;
+				
+				for (Event event: expired)
+					EventLookupCache.getInstance().eventChanged(null, event);
 			} catch (Exception e) {
 				if (tx != null) tx.rollback();
 				sLog.error("Failed to expire some events: " + e.getMessage(), e);
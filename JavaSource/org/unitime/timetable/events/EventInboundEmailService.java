@@ -143,6 +143,7 @@ public class EventInboundEmailService {
 		
 			hibSession.update(event);
 			hibSession.flush();
+			EventLookupCache.getInstance().eventChanged(null, event);
 			
 			DataSource data = null;
 			if (note.getAttachedFile() != null) {
@@ -191,6 +191,18 @@ public class EventLookupBackend extends EventAction<EventLookupRpcRequest, GwtRp
 	}
 	
 	public GwtRpcResponseList<EventInterface> findEvents(EventLookupRpcRequest request, EventContext context) {
+		EventLookupCache cache = EventLookupCache.getInstance();
+		if (!cache.isEnabled()) return lookupEvents(request, context);
+		String key = cache.key(request, context);
+		GwtRpcResponseList<EventInterface> events = cache.get(key);
+		if (events == null) {
+			events = lookupEvents(request, context);
+			cache.put(key, request, events);
+		}
+		return events;
+	}
+	
+	protected GwtRpcResponseList<EventInterface> lookupEvents(EventLookupRpcRequest request, EventContext context) {
 		try {
 			org.hibernate.Session hibSession = EventDAO.getInstance().getSession();
 			try {
@@ -0,0 +1,432 @@
+/*
+ * Licensed to The Apereo Foundation under one or more contributor license
+ * agreements. See the NOTICE file distributed with this work for
+ * additional information regarding copyright ownership.
+ *
+ * The Apereo Foundation licenses this file to you under the Apache License,
+ * Version 2.0 (the "License"); you may not use this file except in
+ * compliance with the License. You may obtain a copy of the License at:
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ *
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ *
+*/
+package org.unitime.timetable.events;
+
+import java.lang.reflect.Type;
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.Date;
+import java.util.HashSet;
+import java.util.Iterator;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.TreeMap;
+import java.util.TreeSet;
+import java.util.concurrent.atomic.AtomicLong;
+
+import javax.transaction.Status;
+import javax.transaction.Synchronization;
+
+import org.apache.log4j.Logger;
+import org.hibernate.Transaction;
+import org.unitime.localization.impl.Localization;
+import org.unitime.timetable.defaults.ApplicationProperty;
+import org.unitime.timetable.events.EventAction.EventContext;
+import org.unitime.timetable.gwt.command.client.GwtRpcResponseList;
+import org.unitime.timetable.gwt.server.CalendarFeedCache;
+import org.unitime.timetable.gwt.shared.EventInterface;
+import org.unitime.timetable.gwt.shared.EventInterface.EventLookupRpcRequest;
+import org.unitime.timetable.gwt.shared.EventInterface.FilterRpcRequest;
+import org.unitime.timetable.gwt.shared.EventInterface.ResourceType;
+import org.unitime.timetable.model.Event;
+import org.unitime.timetable.model.EventContact;
+import org.unitime.timetable.model.Location;
+import org.unitime.timetable.model.Meeting;
+import org.unitime.timetable.model.dao.StudentDAO;
+
+import com.google.gson.Gson;
+import com.google.gson.GsonBuilder;
+import com.google.gson.JsonDeserializationContext;
+import com.google.gson.JsonDeserializer;
+import com.google.gson.JsonElement;
+import com.google.gson.JsonParseException;
+import com.google.gson.JsonPrimitive;
+import com.google.gson.JsonSerializationContext;
+import com.google.gson.JsonSerializer;
+import com.google.gson.reflect.TypeToken;
+
+/**
+ * Cache of the {@link EventLookupBackend#findEvents(EventLookupRpcRequest, EventContext)} results.<br>
+ * Results are keyed by the normalized request (academic session, resource, event and room filter) and the
+ * user the events are computed for (as the returned events contain user specific permissions, e.g., whether
+ * a meeting can be approved). Each cached result remembers the events it contains and the rooms / people it covers,
+ * so that a change of an event only drops the results that may be affected by it.
+ * The events are cached in a serialized form, so each caller gets its own copy that it can modify.
+ *
+ * @author Tomas Muller
+ */
+public class EventLookupCache {
+	private static Logger sLog = Logger.getLogger(EventLookupCache.class);
+	private static EventLookupCache sInstance = new EventLookupCache();
+	private static Type sEventListType = new TypeToken<List<EventInterface>>() {}.getType();
+
+	private Map<String, CachedResult> iCache = new LinkedHashMap<String, CachedResult>(16, 0.75f, true) {
+		private static final long serialVersionUID = 1L;
+		@Override
+		protected boolean removeEldestEntry(Map.Entry<String, CachedResult> eldest) {
+			if (size() > getMaxSize()) {
+				iEvictions.incrementAndGet();
+				return true;
+			}
+			return false;
+		}
+	};
+	private AtomicLong iHits = new AtomicLong(0), iMisses = new AtomicLong(0), iEvictions = new AtomicLong(0), iInvalidations = new AtomicLong(0);
+	private Gson iGson;
+
+	private EventLookupCache() {
+		iGson = new GsonBuilder()
+		.serializeNulls()
+		.registerTypeHierarchyAdapter(Date.class, new JsonSerializer<Date>() {
+			@Override
+			public JsonElement serialize(Date src, Type typeOfSrc, JsonSerializationContext context) {
+				return new JsonPrimitive(src.getTime());
+			}
+		})
+		.registerTypeHierarchyAdapter(Date.class, new JsonDeserializer<Date>() {
+			@Override
+			public Date deserialize(JsonElement json, Type typeOfT, JsonDeserializationContext context) throws JsonParseException {
+				return new Date(json.getAsJsonPrimitive().getAsLong());
+			}
+		})
+		.create();
+	}
+
+	public static EventLookupCache getInstance() { return sInstance; }
+
+	public boolean isEnabled() {
+		return ApplicationProperty.EventLookupCacheEnabled.isTrue();
+	}
+
+	protected int getMaxSize() {
+		Integer size = ApplicationProperty.EventLookupCacheSize.intValue();
+		return (size == null ? 1000 : size.intValue());
+	}
+
+	protected long getTimeToLive() {
+		Integer ttl = ApplicationProperty.EventLookupCacheTimeToLive.intValue();
+		return (ttl == null ? 300000l : 1000l * ttl);
+	}
+
+	/**
+	 * Normalized cache key of the given request. Must be called before the request is processed, as
+	 * {@link EventLookupBackend#findEvents(EventLookupRpcRequest, EventContext)} modifies the filters.
+	 */
+	public String key(EventLookupRpcRequest request, EventContext context) {
+		StringBuffer key = new StringBuffer();
+		key.append(request.getSessionId());
+		key.append("|").append(request.getResourceType() == null ? "" : request.getResourceType().name());
+		key.append("|").append(request.getResourceId() == null ? "" : request.getResourceId().toString());
+		key.append("|").append(request.hasResourceExternalId() ? request.getResourceExternalId() : "");
+		key.append("|").append(request.getLimit());
+		key.append("|").append(normalize(request.getEventFilter()));
+		key.append("|").append(normalize(request.getRoomFilter()));
+		if (context.isAuthenticated()) {
+			key.append("|").append(context.getUser().getExternalUserId());
+			key.append("|").append(context.getUser().getCurrentAuthority() == null ? "" : context.getUser().getCurrentAuthority().getRole());
+		} else {
+			key.append("|anonymous|");
+		}
+		key.append("|").append(Localization.getLocale());
+		return key.toString();
+	}
+
+	protected static String normalize(FilterRpcRequest filter) {
+		if (filter == null) return "";
+		Map<String, Set<String>> options = new TreeMap<String, Set<String>>();
+		if (filter.hasOptions())
+			for (Map.Entry<String, Set<String>> e: filter.getOptions().entrySet())
+				if (e.getValue() != null && !e.getValue().isEmpty())
+					options.put(e.getKey(), new TreeSet<String>(e.getValue()));
+		return options + (filter.hasText() ? filter.getText().trim() : "");
+	}
+
+	public GwtRpcResponseList<EventInterface> get(String key) {
+		CachedResult entry = null;
+		synchronized (iCache) {
+			entry = iCache.get(key);
+			if (entry != null && entry.isExpired(getTimeToLive())) {
+				iCache.remove(key);
+				entry = null;
+			}
+		}
+		if (entry == null) {
+			iMisses.incrementAndGet();
+			return null;
+		}
+		iHits.incrementAndGet();
+		GwtRpcResponseList<EventInterface> ret = new GwtRpcResponseList<EventInterface>();
+		List<EventInterface> events = iGson.fromJson(entry.getEvents(), sEventListType);
+		ret.addAll(events);
+		return ret;
+	}
+
+	/**
+	 * Store the computed events. The request is expected to be already processed (the room filter being
+	 * translated into the room options of the event filter).
+	 */
+	public void put(String key, EventLookupRpcRequest request, GwtRpcResponseList<EventInterface> events) {
+		Set<String> dependencies = new HashSet<String>();
+		for (EventInterface event: events)
+			if (event.getId() != null) dependencies.add("E:" + event.getId());
+		if (request.getResourceType() == ResourceType.ROOM) {
+			boolean all = true;
+			if (request.getResourceId() != null) { dependencies.add("R:" + request.getResourceId()); all = false; }
+			if (request.hasResourceExternalId()) { dependencies.add("R:" + request.getResourceExternalId()); all = false; }
+			Set<String> rooms = (request.getEventFilter() == null ? null : request.getEventFilter().getOptions("room"));
+			if (rooms != null && !rooms.isEmpty()) {
+				for (String room: rooms) dependencies.add("R:" + room);
+				all = false;
+			}
+			if (all) dependencies.add("R:*");
+		} else if (request.getResourceType() == ResourceType.PERSON) {
+			dependencies.add("P:" + request.getResourceExternalId());
+		} else {
+			dependencies.add("C:*");
+		}
+		CachedResult entry = new CachedResult(request.getSessionId(), iGson.toJson(events, sEventListType), dependencies);
+		synchronized (iCache) {
+			iCache.put(key, entry);
+		}
+		if (sLog.isDebugEnabled() && (iHits.get() + iMisses.get()) % 100 == 0)
+			sLog.debug(this);
+	}
+
+	/**
+	 * An event has been changed (created, updated, approved, deleted): drop all results that contain the event,
+	 * that cover any of its rooms or contacts, all results that are not room or person based, and (for course and
+	 * examination events that may have students and instructors attending) all person based results
+	 * @param sessionId academic session, null if not known
+	 */
+	public void eventChanged(Long sessionId, Event event) {
+		if (event == null) return;
+		invalidate(sessionId, getDependencies(event));
+		CalendarFeedCache.getInstance().invalidate(sessionId);
+	}
+
+	/**
+	 * An event has been changed within the current transaction of the given hibernate session (see {@link EventLookupCache#eventChanged(Long, Event)}):
+	 * the affected results are dropped once the transaction is committed (right away when there is no active transaction)
+	 */
+	public void eventChanged(org.hibernate.Session hibSession, final Long sessionId, Event event) {
+		if (event == null) return;
+		final Set<String> dependencies = getDependencies(event);
+		Runnable action = new Runnable() {
+			@Override
+			public void run() {
+				invalidate(sessionId, dependencies);
+				CalendarFeedCache.getInstance().invalidate(sessionId);
+			}
+		};
+		if (!afterCommit(hibSession, action)) action.run();
+	}
+
+	protected Set<String> getDependencies(Event event) {
+		Set<String> dependencies = new HashSet<String>();
+		if (event.getUniqueId() != null)
+			dependencies.add("E:" + event.getUniqueId());
+		if (event.getMeetings() != null)
+			for (Meeting meeting: event.getMeetings()) {
+				Location location = meeting.getLocation();
+				if (location == null) continue;
+				dependencies.add("R:" + location.getUniqueId());
+				if (location.getExternalUniqueId() != null)
+					dependencies.add("R:" + location.getExternalUniqueId());
+			}
+		if (event.getMainContact() != null && event.getMainContact().getExternalUniqueId() != null)
+			dependencies.add("P:" + event.getMainContact().getExternalUniqueId());
+		if (event.getAdditionalContacts() != null)
+			for (EventContact contact: event.getAdditionalContacts())
+				if (contact.getExternalUniqueId() != null)
+					dependencies.add("P:" + contact.getExternalUniqueId());
+		dependencies.add("C:*");
+		if (event.getEventType() != Event.sEventTypeSpecial && event.getEventType() != Event.sEventTypeUnavailable)
+			dependencies.add("P:*");
+		return dependencies;
+	}
+
+	/**
+	 * Student enrollments of the given academic session have changed within the current transaction of the given hibernate session:
+	 * once the transaction is committed (right away when there is no active transaction), drop all person based results, all
+	 * results that are not room or person based (as they may list the enrollments of the classes), and all personal calendar feeds
+	 * of the academic session
+	 */
+	public void studentsChanged(org.hibernate.Session hibSession, Long sessionId) {
+		studentsChanged(hibSession, sessionId, null);
+	}
+
+	/**
+	 * Enrollments of the given students have changed within the current transaction of the given hibernate session:
+	 * once the transaction is committed (right away when there is no active transaction), drop all person based results, all
+	 * results that are not room or person based, and the personal calendar feeds of the given students (of all students when null)
+	 */
+	public void studentsChanged(org.hibernate.Session hibSession, final Long sessionId, Collection<Long> studentIds) {
+		final Set<String> dependencies = new HashSet<String>();
+		dependencies.add("P:*"); dependencies.add("C:*");
+		final Set<String> externalIds = (studentIds == null ? null : getStudentExternalIds(hibSession, studentIds));
+		Runnable action = new Runnable() {
+			@Override
+			public void run() {
+				invalidate(sessionId, dependencies);
+				CalendarFeedCache.getInstance().invalidate(sessionId, externalIds);
+			}
+		};
+		if (!afterCommit(hibSession, action)) action.run();
+	}
+
+	protected Set<String> getStudentExternalIds(org.hibernate.Session hibSession, Collection<Long> studentIds) {
+		Set<String> externalIds = new HashSet<String>();
+		if (studentIds.isEmpty()) return externalIds;
+		if (hibSession == null) hibSession = StudentDAO.getInstance().getSession();
+		List<Long> ids = new ArrayList<Long>(studentIds);
+		for (int i = 0; i < ids.size(); i += 1000) {
+			for (String externalId: (List<String>)hibSession.createQuery(
+					"select s.externalUniqueId from Student s where s.uniqueId in :studentIds and s.externalUniqueId is not null"
+					).setParameterList("studentIds", ids.subList(i, Math.min(i + 1000, ids.size()))).list())
+				externalIds.add(externalId);
+		}
+		return externalIds;
+	}
+
+	protected void invalidate(Long sessionId, Set<String> dependencies) {
+		int count = 0;
+		synchronized (iCache) {
+			for (Iterator<CachedResult> i = iCache.values().iterator(); i.hasNext(); ) {
+				CachedResult entry = i.next();
+				if (sessionId != null && !sessionId.equals(entry.getSessionId())) continue;
+				if (entry.dependsOn(dependencies)) {
+					i.remove(); count ++;
+				}
+			}
+		}
+		iInvalidations.addAndGet(count);
+	}
+
+	/**
+	 * Drop all cached results of the given academic session (e.g., when a course timetable is committed), all results when null.
+	 * Cached iCalendar feeds of the academic session are dropped as well.
+	 */
+	public void invalidate(Long sessionId) {
+		int count = 0;
+		synchronized (iCache) {
+			if (sessionId == null) {
+				count = iCache.size();
+				iCache.clear();
+			} else {
+				for (Iterator<CachedResult> i = iCache.values().iterator(); i.hasNext(); ) {
+					if (sessionId.equals(i.next().getSessionId())) {
+						i.remove(); count ++;
+					}
+				}
+			}
+		}
+		iInvalidations.addAndGet(count);
+		CalendarFeedCache.getInstance().invalidate(sessionId);
+	}
+
+	/**
+	 * Drop all cached results of the given academic session (see {@link EventLookupCache#invalidate(Long)}) once the current transaction
+	 * of the given hibernate session is committed (right away when there is no active transaction)
+	 */
+	public void invalidate(org.hibernate.Session hibSession, final Long sessionId) {
+		if (!afterCommit(hibSession, new Runnable() {
+			@Override
+			public void run() { invalidate(sessionId); }
+		})) invalidate(sessionId);
+	}
+
+	/**
+	 * Register the given action to be executed after the current transaction of the given hibernate session is committed
+	 * @return false if there is no active transaction
+	 */
+	protected boolean afterCommit(org.hibernate.Session hibSession, final Runnable action) {
+		Transaction tx = (hibSession == null ? null : hibSession.getTransaction());
+		if (tx == null || !tx.isActive()) return false;
+		tx.registerSynchronization(new Synchronization() {
+			@Override
+			public void beforeCompletion() {}
+
+			@Override
+			public void afterCompletion(int status) {
+				if (status == Status.STATUS_COMMITTED) action.run();
+			}
+		});
+		return true;
+	}
+
+	public long getHits() { return iHits.get(); }
+	public long getMisses() { return iMisses.get(); }
+	public long getEvictions() { return iEvictions.get(); }
+	public long getInvalidations() { return iInvalidations.get(); }
+	public int size() {
+		synchronized (iCache) {
+			return iCache.size();
+		}
+	}
+
+	@Override
+	public String toString() {
+		long hits = getHits(), misses = getMisses();
+		return "EventLookupCache{size=" + size() + ", hits=" + hits + ", misses=" + misses +
+				", hitRatio=" + (hits + misses == 0 ? 0 : (100 * hits / (hits + misses))) + "%, evictions=" + getEvictions() + ", invalidations=" + getInvalidations() + "}";
+	}
+
+	private static class CachedResult {
+		private Long iSessionId;
+		private long iCreated;
+		private String iEvents;
+		private Set<String> iDependencies;
+
+		CachedResult(Long sessionId, String events, Set<String> dependencies) {
+			iSessionId = sessionId;
+			iCreated = System.currentTimeMillis();
+			iEvents = events;
+			iDependencies = dependencies;
+		}
+
+		Long getSessionId() { return iSessionId; }
+		String getEvents() { return iEvents; }
+		boolean isExpired(long ttl) { return ttl > 0 && System.currentTimeMillis() - iCreated > ttl; }
+
+		/**
+		 * Dependency X:* of an entry matches any change of type X, change X:* matches any dependency of type X
+		 */
+		boolean dependsOn(Set<String> changes) {
+			for (String change: changes) {
+				if (iDependencies.contains(change)) return true;
+				String type = change.substring(0, change.indexOf(':') + 1);
+				if (change.endsWith(":*")) {
+					if (hasDependency(type)) return true;
+				} else {
+					if (iDependencies.contains(type + "*")) return true;
+				}
+			}
+			return false;
+		}
+
+		boolean hasDependency(String prefix) {
+			for (String dependency: iDependencies)
+				if (dependency.startsWith(prefix)) return true;
+			return false;
+		}
+	}
+}
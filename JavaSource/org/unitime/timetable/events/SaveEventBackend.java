@@ -661,6 +661,8 @@ public class SaveEventBackend extends EventAction<SaveEventRpcRequest, SaveOrApp
 			
 			tx.commit();
 			
+			EventLookupCache.getInstance().eventChanged(request.getSessionId(), event);
+			
 			new EventEmail(request, response).send(context);
 			
 			return response;
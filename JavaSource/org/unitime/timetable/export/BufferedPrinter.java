@@ -21,21 +21,42 @@ package org.unitime.timetable.export;
 
 import java.io.IOException;
 import java.util.ArrayList;
+import java.util.Collections;
+import java.util.Comparator;
 import java.util.List;
 
 import org.unitime.timetable.export.Exporter.Printer;
 
 /**
+ * Printer that keeps all the lines in memory and only prints them on {@link #close()}, so that they can be sorted.
+ * Use {@link #sorted(Printer, String)} to only buffer the lines when a sorting is requested.
+ * 
  * @author Tomas Muller
  */
 public class BufferedPrinter implements Printer {
 	Printer iPrinter = null;
 	private List<String[]> iLines = new ArrayList<String[]>();
+	private Comparator<String[]> iComparator = null;
 	
 	public BufferedPrinter(Printer printer) {
 		iPrinter = printer;
 	}
 	
+	public BufferedPrinter(Printer printer, Comparator<String[]> comparator) {
+		iPrinter = printer;
+		iComparator = comparator;
+	}
+	
+	/**
+	 * Lines are printed directly to the given printer, unless a sorting is provided (sort parameter of the export,
+	 * a positive or negative column number for an ascending or descending order respectively).
+	 */
+	public static Printer sorted(Printer printer, String sort) {
+		if (sort == null || sort.isEmpty() || "0".equals(sort)) return printer;
+		int col = Integer.parseInt(sort);
+		return new BufferedPrinter(printer, new ColumnComparator(Math.abs(col) - 1, col > 0));
+	}
+	
 	@Override
 	public String getContentType() {
 		return iPrinter.getContentType();
@@ -67,12 +88,44 @@ public class BufferedPrinter implements Printer {
 	@Override
 	public void close() throws IOException {
 		try {
-			for (String[] line: iLines) {
-				iPrinter.printLine(line);
+			if (iComparator != null)
+				Collections.sort(iLines, iComparator);
+			for (int i = 0; i < iLines.size(); i++) {
+				iPrinter.printLine(iLines.get(i));
+				iLines.set(i, null);
 			}
+			iLines.clear();
 			iPrinter.flush();
 		} finally {
 			iPrinter.close();
 		}
 	}
+	
+	public static class ColumnComparator implements Comparator<String[]> {
+		private int iColumn;
+		private boolean iAsc;
+		
+		public ColumnComparator(int column, boolean asc) {
+			iColumn = column; iAsc = asc;
+		}
+		
+		protected int compare(String[] a, String[] b, int col) {
+			for (int i = 0; i < a.length; i++) {
+				int c = (col + i) % a.length;
+				try {
+					int cmp = Double.valueOf(a[c] == null ? "0" : a[c]).compareTo(Double.valueOf(b[c] == null ? "0" : b[c]));
+					if (cmp != 0) return cmp;
+				} catch (NumberFormatException e) {
+					int cmp = (a[c] == null ? "" : a[c]).compareTo(b[c] == null ? "" : b[c]);
+					if (cmp != 0) return cmp;
+				}
+			}
+			return 0;
+		}
+		
+		@Override
+		public int compare(String[] a, String[] b) {
+			return iAsc ? compare(a, b, iColumn) : compare(b, a, iColumn);
+		}
+	}
 }
\ No newline at end of file
@@ -22,8 +22,6 @@ package org.unitime.timetable.export.hql;
 import java.io.IOException;
 import java.util.ArrayList;
 import java.util.Collection;
-import java.util.Collections;
-import java.util.Comparator;
 import java.util.Date;
 import java.util.List;
 import java.util.Map;
@@ -31,6 +29,8 @@ import java.util.Map;
 import org.apache.log4j.Logger;
 import org.dom4j.Document;
 import org.hibernate.MappingException;
+import org.hibernate.ScrollMode;
+import org.hibernate.ScrollableResults;
 import org.hibernate.SessionFactory;
 import org.hibernate.engine.spi.SessionFactoryImplementor;
 import org.hibernate.engine.spi.SessionImplementor;
@@ -169,36 +169,11 @@ public class SavedHqlExportToCSV implements Exporter {
 		}
 		if (!hasAppearancePermission) throw new AccessDeniedException();
 		
-		BufferedPrinter out = new BufferedPrinter(new CSVPrinter(helper, false));
+		Printer out = BufferedPrinter.sorted(new CSVPrinter(helper, false), helper.getParameter("sort"));
 		helper.setup(out.getContentType(), hql.getName().replace('/', '-').replace('\\', '-').replace(':', '-') + ".csv", false);
 		
 		execute(context.getUser(), out, hql.getQuery(), params, 0, -1, hql.getParameters());
 		
-		String sort = helper.getParameter("sort");
-		if (sort != null && !"0".equals(sort)) {
-			final boolean asc = Integer.parseInt(sort) > 0;
-			final int col = Math.abs(Integer.parseInt(sort)) - 1;
-			Collections.sort(out.getBuffer(), new Comparator<String[]>() {
-				int compare(String[] a, String[] b, int col) {
-					for (int i = 0; i < a.length; i++) {
-						int c = (col + i) % a.length;
-						try {
-							int cmp = Double.valueOf(a[c] == null ? "0" : a[c]).compareTo(Double.valueOf(b[c] == null ? "0" : b[c]));
-							if (cmp != 0) return cmp;
-						} catch (NumberFormatException e) {
-							int cmp = (a[c] == null ? "" : a[c]).compareTo(b[c] == null ? "" : b[c]);
-							if (cmp != 0) return cmp;
-						}
-					}
-					return 0;
-				}	
-				@Override
-				public int compare(String[] a, String[] b) {
-					return asc ? compare(a, b, col) : compare(b, a, col);
-				}
-			});
-		}
-		
 		out.close();
 	}
 	
@@ -288,20 +263,7 @@ public class SavedHqlExportToCSV implements Exporter {
 					}
 				}
 			}
-			int len = -1;
-			for (Object o: q.list()) {
-				if (len < 0) {
-					len = length(o);
-					String[] line = new String[len];
-					header(line, o, q.getReturnAliases());
-					if (line.length > 0 && line[0].startsWith("__")) out.hideColumn(0);
-					out.printHeader(line);
-				}
-				String[] line = new String[len];
-				line(line, o, (SessionImplementor)hibSession);
-				out.printLine(line);
-				out.flush();
-			}
+			printResults(out, q, maxRows, hibSession);
 		} catch (PageAccessException e) {
 			throw e;
 		} catch (SavedHQLException e) {
@@ -312,6 +274,48 @@ public class SavedHqlExportToCSV implements Exporter {
 		}
 	}
 	
+	/**
+	 * Print the results of the given query (the first result also prints the header).
+	 * When there is no row limit, the results are scrolled through instead of being loaded into memory
+	 * (the hibernate session is cleared every 1000 rows).
+	 */
+	static void printResults(Printer out, org.hibernate.Query q, int maxRows, org.hibernate.Session hibSession) throws IOException {
+		int len = -1;
+		if (maxRows > 0) {
+			for (Object o: q.list())
+				len = print(out, o, len, q, hibSession);
+		} else {
+			// no limit: scroll through the results instead of loading them all into memory
+			ScrollableResults results = q.scroll(ScrollMode.FORWARD_ONLY);
+			try {
+				int count = 0;
+				while (results.next()) {
+					Object[] row = results.get();
+					len = print(out, row.length == 1 ? row[0] : row, len, q, hibSession);
+					// the printed entities (and everything lazily loaded while printing them) are not needed anymore
+					if (++count % 1000 == 0) hibSession.clear();
+				}
+			} finally {
+				results.close();
+			}
+		}
+	}
+	
+	private static int print(Printer out, Object o, int len, org.hibernate.Query q, org.hibernate.Session hibSession) throws IOException {
+		if (len < 0) {
+			len = length(o);
+			String[] line = new String[len];
+			header(line, o, q.getReturnAliases());
+			if (line.length > 0 && line[0].startsWith("__")) out.hideColumn(0);
+			out.printHeader(line);
+		}
+		String[] line = new String[len];
+		line(line, o, (SessionImplementor)hibSession);
+		out.printLine(line);
+		out.flush();
+		return len;
+	}
+	
 	private static boolean skip(Type t, boolean lazy) {
         try {
             if (t.isCollectionType()) {
@@ -122,20 +122,7 @@ public class StudentSchedulingDashboardExportCSV implements Exporter {
     			Collections.sort(enrollments, new EnrollmentComparator(sortBy, asc));
     			if (!asc) Collections.reverse(enrollments);
     		}
-    		if (!courseIds.isEmpty() && enrollments != null) {
-    			List<EnrollmentInfo> allEnrollments = new ArrayList<EnrollmentInfo>();
-    			for (EnrollmentInfo e: enrollments) {
-    				allEnrollments.add(e);
-    				if (e.getCourseId() != null && courseIds.contains(e.getCourseId())) {
-    					List<EnrollmentInfo> classEnrollments = service.findEnrollmentInfos(online, query, filter, e.getCourseId());
-    					if (classEnrollments != null)
-    						allEnrollments.addAll(classEnrollments);
-    				}
-    			}
-    			populateCourseTable(helper, allEnrollments);
-    		} else {
-    			populateCourseTable(helper, enrollments);
-    		}
+    		populateCourseTable(helper, enrollments, service, online, query, filter, courseIds);
     		
     	} else if (tab == 1) {
     		List<StudentInfo> students = service.findStudentInfos(online, query, filter);
@@ -160,7 +147,11 @@ public class StudentSchedulingDashboardExportCSV implements Exporter {
     	}
 	}
 	
-	protected void populateCourseTable(ExportHelper helper, List<EnrollmentInfo> enrollments) throws IOException {
+	/**
+	 * Print the course table, class enrollments of the given courses are looked up and printed course by course
+	 * (right after the course line) instead of being all collected first
+	 */
+	protected void populateCourseTable(ExportHelper helper, List<EnrollmentInfo> enrollments, SectioningService service, boolean online, String query, SectioningStatusFilterRpcRequest filter, Set<Long> courseIds) throws IOException {
 		Printer out = new CSVPrinter(helper, false);
 		helper.setup(out.getContentType(), reference(), false);
 		
@@ -182,43 +173,53 @@ public class StudentSchedulingDashboardExportCSV implements Exporter {
 		
 		if (enrollments != null)
 			for (EnrollmentInfo e: enrollments) {
-				if (e.getConfigId() == null) {
-					out.printLine(
-							e.getSubject(),
-							e.getCourseNbr(),
-							e.getTitle(),"",
-							e.getConsent(),
-							(e.getCourseId() == null ? number(e.getAvailable(), e.getLimit()) : available(e)),
-							number(null, e.getProjection()),
-							number(e.getEnrollment(), e.getTotalEnrollment()),
-							waitlist(e),
-							number(e.getUnassignedAlternative(), e.getTotalUnassignedAlternative()),
-							number(e.getReservation(), e.getTotalReservation()),
-							number(e.getConsentNeeded(), e.getTotalConsentNeeded()),
-							number(e.getOverrideNeeded(), e.getTotalOverrideNeeded())
-							);
-				} else {
-					out.printLine(
-							"  " + (e.getSubpart() == null ? "" : e.getIndent("  ") + e.getSubpart()),
-							(e.getClazz() == null ? "" : e.getIndent("  ") + e.getClazz()),
-							(e.getAssignment().getDays().isEmpty()  ? "" : e.getAssignment().getDaysString(CONSTANTS.shortDays()) + " " + e.getAssignment().getStartString(CONSTANTS.useAmPm()) + " - " + e.getAssignment().getEndString(CONSTANTS.useAmPm())),
-							(!e.getAssignment().hasDatePattern()  ? "" : e.getAssignment().getDatePattern()),
-							e.getAssignment().getRooms(","),
-							(e.getCourseId() == null ? number(e.getAvailable(), e.getLimit()) : available(e)),
-							number(null, e.getProjection()),
-							number(e.getEnrollment(), e.getTotalEnrollment()),
-							waitlist(e),
-							number(e.getUnassignedAlternative(), e.getTotalUnassignedAlternative()),
-							number(e.getReservation(), e.getTotalReservation()),
-							number(e.getConsentNeeded(), e.getTotalConsentNeeded()),
-							number(e.getOverrideNeeded(), e.getTotalOverrideNeeded())
-							);
+				printEnrollment(out, e);
+				if (service != null && courseIds != null && e.getCourseId() != null && courseIds.contains(e.getCourseId())) {
+					List<EnrollmentInfo> classEnrollments = service.findEnrollmentInfos(online, query, filter, e.getCourseId());
+					if (classEnrollments != null)
+						for (EnrollmentInfo c: classEnrollments)
+							printEnrollment(out, c);
 				}
 			}
 		
 		out.flush(); out.close();
 	}
 	
+	protected void printEnrollment(Printer out, EnrollmentInfo e) throws IOException {
+		if (e.getConfigId() == null) {
+			out.printLine(
+					e.getSubject(),
+					e.getCourseNbr(),
+					e.getTitle(),"",
+					e.getConsent(),
+					(e.getCourseId() == null ? number(e.getAvailable(), e.getLimit()) : available(e)),
+					number(null, e.getProjection()),
+					number(e.getEnrollment(), e.getTotalEnrollment()),
+					waitlist(e),
+					number(e.getUnassignedAlternative(), e.getTotalUnassignedAlternative()),
+					number(e.getReservation(), e.getTotalReservation()),
+					number(e.getConsentNeeded(), e.getTotalConsentNeeded()),
+					number(e.getOverrideNeeded(), e.getTotalOverrideNeeded())
+					);
+		} else {
+			out.printLine(
+					"  " + (e.getSubpart() == null ? "" : e.getIndent("  ") + e.getSubpart()),
+					(e.getClazz() == null ? "" : e.getIndent("  ") + e.getClazz()),
+					(e.getAssignment().getDays().isEmpty()  ? "" : e.getAssignment().getDaysString(CONSTANTS.shortDays()) + " " + e.getAssignment().getStartString(CONSTANTS.useAmPm()) + " - " + e.getAssignment().getEndString(CONSTANTS.useAmPm())),
+					(!e.getAssignment().hasDatePattern()  ? "" : e.getAssignment().getDatePattern()),
+					e.getAssignment().getRooms(","),
+					(e.getCourseId() == null ? number(e.getAvailable(), e.getLimit()) : available(e)),
+					number(null, e.getProjection()),
+					number(e.getEnrollment(), e.getTotalEnrollment()),
+					waitlist(e),
+					number(e.getUnassignedAlternative(), e.getTotalUnassignedAlternative()),
+					number(e.getReservation(), e.getTotalReservation()),
+					number(e.getConsentNeeded(), e.getTotalConsentNeeded()),
+					number(e.getOverrideNeeded(), e.getTotalOverrideNeeded())
+					);
+		}
+	}
+	
 	protected void populateStudentTable(ExportHelper helper, boolean online, List<StudentInfo> students) throws IOException {
 		Printer out = new CSVPrinter(helper, false);
 		helper.setup(out.getContentType(), reference(), false);
@@ -20,8 +20,12 @@
 package org.unitime.timetable.filter;
 
 import java.io.IOException;
-import java.util.HashMap;
 import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.regex.Pattern;
 
 import javax.servlet.FilterChain;
 import javax.servlet.FilterConfig;
@@ -29,13 +33,17 @@ import javax.servlet.ServletException;
 import javax.servlet.ServletRequest;
 import javax.servlet.ServletResponse;
 import javax.servlet.http.HttpServletRequest;
+import javax.servlet.http.HttpServletResponse;
 import javax.servlet.http.HttpSessionEvent;
 import javax.servlet.http.HttpSessionListener;
 
+import org.apache.commons.logging.Log;
+import org.apache.commons.logging.LogFactory;
 import org.springframework.beans.factory.annotation.Autowired;
 import org.springframework.stereotype.Service;
 import org.springframework.web.context.WebApplicationContext;
 import org.springframework.web.context.support.WebApplicationContextUtils;
+import org.unitime.timetable.defaults.ApplicationProperty;
 import org.unitime.timetable.gwt.command.client.GwtRpcResponseBoolean;
 import org.unitime.timetable.gwt.command.server.GwtRpcImplementation;
 import org.unitime.timetable.gwt.command.server.GwtRpcImplements;
@@ -43,9 +51,15 @@ import org.unitime.timetable.gwt.shared.MenuInterface.IsSessionBusyRpcRequest;
 import org.unitime.timetable.security.SessionContext;
 
 /**
+ * Tracking of the requests that are being processed for each HTTP session (used to tell whether a session is busy),
+ * and optional throttling of the requests per HTTP session and per user: a request is rejected with HTTP status 429
+ * (Too Many Requests) when the number of concurrently processed requests or the request rate (token bucket) of its
+ * session or its user exceeds the configured limit.
+ *
  * @author Tomas Muller
  */
 public class BusySessions {
+	private static Log sLog = LogFactory.getLog(BusySessions.class);
 	
 	public static class Filter implements javax.servlet.Filter {
 		private Tracker iTracker;
@@ -80,6 +94,27 @@ public class BusySessions {
 
 		@Override
 		public void doFilter(ServletRequest request, ServletResponse response, FilterChain chain) throws IOException, ServletException {
+			Tracker tracker = getTracker(request);
+			if (tracker != null && tracker.isThrottled(request)) {
+				HttpServletRequest httpRequest = (HttpServletRequest)request;
+				String sessionId = httpRequest.getSession().getId();
+				String userId = httpRequest.getRemoteUser();
+				Ticket ticket = tracker.acquire(sessionId, userId);
+				if (ticket == null) {
+					if (sLog.isDebugEnabled())
+						sLog.debug("Request " + httpRequest.getRequestURI() + " of " + (userId == null ? "session " + sessionId : userId) + " rejected: too many requests.");
+					HttpServletResponse httpResponse = (HttpServletResponse)response;
+					httpResponse.setHeader("Retry-After", "1");
+					httpResponse.sendError(429, "The server is busy processing your other requests, please try again later.");
+					return;
+				}
+				try {
+					chain.doFilter(request, response);
+				} finally {
+					tracker.release(ticket);
+				}
+				return;
+			}
 			String id = increment(request);
 			try {
 				chain.doFilter(request, response);
@@ -117,54 +152,228 @@ public class BusySessions {
 		}
 	}
 	
+	/**
+	 * Lock-free token bucket (implemented as a generic cell rate algorithm): requests are allowed at the given rate
+	 * with bursts of up to the given number of requests.
+	 */
+	private static class RateLimiter {
+		private AtomicLong iTheoreticalArrivalTime = new AtomicLong(0);
+		
+		public boolean tryAcquire(double rate, int burst) {
+			if (rate <= 0) return true;
+			long interval = Math.round(1000000000.0 / rate);
+			long tolerance = interval * Math.max(0, burst - 1);
+			while (true) {
+				long now = System.nanoTime();
+				long stored = iTheoreticalArrivalTime.get();
+				long tat = (stored == 0 ? now : stored);
+				if (tat - now > tolerance) return false;
+				if (iTheoreticalArrivalTime.compareAndSet(stored, Math.max(tat, now) + interval))
+					return true;
+			}
+		}
+		
+		/**
+		 * True if the bucket is full again (no request has been made recently)
+		 */
+		public boolean isIdle() {
+			long tat = iTheoreticalArrivalTime.get();
+			return tat == 0 || tat - System.nanoTime() <= 0;
+		}
+	}
+	
+	/**
+	 * Requests of an HTTP session or a user: number of requests being processed and the request rate limiter
+	 */
 	private static class Counter {
-		private int iValue;
-		public int get() { return iValue; }
-		public void increment() { iValue++; }
-		public void decrement() { iValue--; }
+		private AtomicInteger iValue = new AtomicInteger(0);
+		private RateLimiter iRate = new RateLimiter();
+		public int get() { return iValue.get(); }
+		public int increment() { return iValue.incrementAndGet(); }
+		public int decrement() { return iValue.decrementAndGet(); }
+		
+		/**
+		 * Count the request in, unless it exceeds the given limits (or the counter has been retired)
+		 * @return true if the request was counted in
+		 */
+		public boolean tryIncrement(int maxConcurrent, double rate, int burst) {
+			while (true) {
+				int value = iValue.get();
+				if (value < 0 || (maxConcurrent > 0 && value >= maxConcurrent)) return false;
+				if (iValue.compareAndSet(value, value + 1)) break;
+			}
+			if (!iRate.tryAcquire(rate, burst)) {
+				iValue.decrementAndGet();
+				return false;
+			}
+			return true;
+		}
+		
+		/**
+		 * Retire the counter when there is no request being processed and its rate limiter is idle,
+		 * a retired counter does not accept any more requests (it is to be replaced by a new one)
+		 * @return true if the counter has been retired
+		 */
+		public boolean tryRetire() {
+			return iRate.isIdle() && iValue.compareAndSet(0, -1);
+		}
+		
+		public boolean isRetired() { return iValue.get() < 0; }
+		
 		@Override
 		public String toString() { return String.valueOf(iValue); }
 	}
 	
+	/**
+	 * Compiled throttled URL pattern together with its text (published as a whole)
+	 */
+	private static class UrlPattern {
+		private final String iText;
+		private final Pattern iPattern;
+		
+		UrlPattern(String text) {
+			iText = text; iPattern = Pattern.compile(text);
+		}
+		
+		public String getText() { return iText; }
+		public boolean matches(String path) { return iPattern.matcher(path).matches(); }
+	}
+	
+	/**
+	 * Throttled request that is being processed
+	 */
+	public static class Ticket {
+		private Counter iSession, iUser;
+		private Ticket(Counter session, Counter user) {
+			iSession = session; iUser = user;
+		}
+	}
+	
 	@Service("unitimeBusySessions")
 	public static class Tracker {
-		private Map<String, Counter> iCounters = new HashMap<String, Counter>();
+		private ConcurrentMap<String, Counter> iCounters = new ConcurrentHashMap<String, Counter>();
+		private ConcurrentMap<String, Counter> iUserCounters = new ConcurrentHashMap<String, Counter>();
+		private AtomicLong iRejected = new AtomicLong(0);
+		private AtomicLong iLastCleanup = new AtomicLong(System.currentTimeMillis());
+		private volatile UrlPattern iPattern = null;
 		
 		public void create(String id) {
 		}
 		
 		public void destroy(String id) {
-			synchronized (iCounters) {
-				iCounters.remove(id);
+			iCounters.remove(id);
+		}
+		
+		private static Counter counter(ConcurrentMap<String, Counter> counters, String id) {
+			Counter counter = counters.get(id);
+			if (counter == null) {
+				counter = new Counter();
+				Counter old = counters.putIfAbsent(id, counter);
+				if (old != null) counter = old;
 			}
+			return counter;
 		}
 		
 		public String increment(String id) {
-			synchronized (iCounters) {
-				Counter counter = iCounters.get(id);
-				if (counter == null) {
-					counter = new Counter();
-					iCounters.put(id, counter);
-				}
-				counter.increment();
-			}
+			counter(iCounters, id).increment();
 			return id;
 		}
 		
 		public void decrement(String id) {
-			synchronized (iCounters) {
-				Counter counter = iCounters.get(id);
-				if (counter != null) counter.decrement();
-			}
+			Counter counter = iCounters.get(id);
+			if (counter != null) counter.decrement();
 		}
 		
 		public boolean isWorking(String id) {
 			if (id == null) return false;
-			synchronized (iCounters) {
-				Counter counter = iCounters.get(id);
-				return counter != null && counter.get() > 1;
+			Counter counter = iCounters.get(id);
+			return counter != null && counter.get() > 1;
+		}
+		
+		/**
+		 * Is the request subject to throttling (a limit is set and the request matches the throttled URL pattern)
+		 */
+		public boolean isThrottled(ServletRequest request) {
+			if (!(request instanceof HttpServletRequest)) return false;
+			if (getMaxConcurrent(false) <= 0 && getMaxConcurrent(true) <= 0 && getRate(false) <= 0 && getRate(true) <= 0) return false;
+			String pattern = ApplicationProperty.ThrottleUrlPattern.value();
+			if (pattern == null || pattern.isEmpty()) return true;
+			UrlPattern p = iPattern;
+			if (p == null || !pattern.equals(p.getText())) {
+				p = new UrlPattern(pattern);
+				iPattern = p;
 			}
+			HttpServletRequest httpRequest = (HttpServletRequest)request;
+			String path = httpRequest.getServletPath();
+			if (httpRequest.getPathInfo() != null) path += httpRequest.getPathInfo();
+			return p.matches(path);
+		}
+		
+		protected int getMaxConcurrent(boolean user) {
+			Integer max = (user ? ApplicationProperty.ThrottleUserMaxConcurrent : ApplicationProperty.ThrottleSessionMaxConcurrent).intValue();
+			return (max == null ? 0 : max.intValue());
+		}
+		
+		protected double getRate(boolean user) {
+			Float rate = (user ? ApplicationProperty.ThrottleUserRate : ApplicationProperty.ThrottleSessionRate).floatValue();
+			return (rate == null ? 0.0 : rate.doubleValue());
 		}
+		
+		protected int getBurst() {
+			Integer burst = ApplicationProperty.ThrottleBurst.intValue();
+			return (burst == null ? 1 : burst.intValue());
+		}
+		
+		/**
+		 * Count the request in, unless it exceeds the session or the user limits
+		 * @param sessionId HTTP session id
+		 * @param userId user id, null if not authenticated (only session limits apply)
+		 * @return ticket to be released once the request is processed, null if the request is to be rejected
+		 */
+		public Ticket acquire(String sessionId, String userId) {
+			int burst = getBurst();
+			Counter session = counter(iCounters, sessionId);
+			if (!session.tryIncrement(getMaxConcurrent(false), getRate(false), burst)) {
+				iRejected.incrementAndGet();
+				return null;
+			}
+			Counter user = null;
+			if (userId != null) {
+				while (true) {
+					user = counter(iUserCounters, userId);
+					if (user.tryIncrement(getMaxConcurrent(true), getRate(true), burst)) break;
+					if (user.isRetired()) {
+						// the counter has just been removed as idle, try again with a new one
+						iUserCounters.remove(userId, user);
+						continue;
+					}
+					session.decrement();
+					iRejected.incrementAndGet();
+					return null;
+				}
+			}
+			return new Ticket(session, user);
+		}
+		
+		public void release(Ticket ticket) {
+			if (ticket == null) return;
+			ticket.iSession.decrement();
+			if (ticket.iUser != null) ticket.iUser.decrement();
+			cleanup();
+		}
+		
+		/**
+		 * Remove idle user counters (no request being processed, rate limiter refilled), at most once a minute
+		 */
+		protected void cleanup() {
+			long last = iLastCleanup.get(), now = System.currentTimeMillis();
+			if (now - last < 60000l || !iLastCleanup.compareAndSet(last, now)) return;
+			for (Map.Entry<String, Counter> e: iUserCounters.entrySet())
+				if (e.getValue().tryRetire()) iUserCounters.remove(e.getKey(), e.getValue());
+		}
+		
+		/** Number of requests rejected by throttling */
+		public long getRejected() { return iRejected.get(); }
 	}
 
 	@GwtRpcImplements(IsSessionBusyRpcRequest.class)
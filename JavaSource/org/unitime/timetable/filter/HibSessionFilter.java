@@ -31,6 +31,7 @@ import javax.servlet.ServletResponse;
 import org.cpsolver.ifs.util.JProf;
 import org.unitime.commons.Debug;
 import org.unitime.timetable.model.base._BaseRootDAO;
+import org.unitime.timetable.security.evaluation.PermissionCache;
 
 
 /**
@@ -65,6 +66,8 @@ public class HibSessionFilter implements Filter {
 		if (request.getAttribute("TimeStamp")==null)
 			request.setAttribute("TimeStamp", new Double(JProf.currentTimeSec()));
 		
+		// Permission decisions are cached for the duration of the request
+		boolean permissionCache = PermissionCache.begin();
 		try {
 			// Process request
 			chain.doFilter(request,response);
@@ -79,6 +82,8 @@ public class HibSessionFilter implements Filter {
 
             // Let others handle it... maybe another interceptor for exceptions?
             throw new ServletException(ex);
+        } finally {
+        	if (permissionCache) PermissionCache.end();
         }
  		
 	}
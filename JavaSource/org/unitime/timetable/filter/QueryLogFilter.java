@@ -21,13 +21,20 @@ package org.unitime.timetable.filter;
 
 import java.io.IOException;
 import java.util.ArrayList;
+import java.util.Calendar;
 import java.util.Date;
 import java.util.Enumeration;
 import java.util.HashMap;
 import java.util.HashSet;
+import java.util.LinkedHashMap;
 import java.util.List;
 import java.util.Map;
-import java.util.Vector;
+import java.util.Queue;
+import java.util.concurrent.ConcurrentLinkedQueue;
+import java.util.concurrent.ThreadLocalRandom;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.locks.LockSupport;
 
 import javax.servlet.Filter;
 import javax.servlet.FilterChain;
@@ -42,6 +49,7 @@ import org.apache.commons.logging.Log;
 import org.apache.commons.logging.LogFactory;
 import org.cpsolver.ifs.util.JProf;
 import org.hibernate.CacheMode;
+import org.hibernate.FlushMode;
 import org.hibernate.Session;
 import org.hibernate.Transaction;
 import org.springframework.security.core.Authentication;
@@ -142,7 +150,7 @@ public class QueryLogFilter implements Filter {
 			if (callInfo != null) {
 				q.setQuery(callInfo.getQuery());
 				q.setUri(q.getUri() + ": " + callInfo.getTarget());
-			} else if (ApplicationProperty.QueryLogJSON.isTrue()) {
+			} else if (isLogJSON(exception != null)) {
 				try {
 					Map<String, Object> params = new HashMap<String, Object>();
 					for (Map.Entry<String, String[]> e: r.getParameterMap().entrySet()) {
@@ -202,14 +210,36 @@ public class QueryLogFilter implements Filter {
 			iSaver.interrupt();
 	}
 	
+	/**
+	 * Should the request payload be recorded as a JSON message (see {@link ApplicationProperty#QueryLogJSON}),
+	 * requests that failed are always recorded, other requests are sampled (see {@link ApplicationProperty#QueryLogJSONSampling})
+	 */
+	public static boolean isLogJSON(boolean exception) {
+		if (!ApplicationProperty.QueryLogJSON.isTrue()) return false;
+		if (exception) return true;
+		Float sampling = ApplicationProperty.QueryLogJSONSampling.floatValue();
+		if (sampling == null || sampling >= 1f) return true;
+		return sampling > 0f && ThreadLocalRandom.current().nextFloat() < sampling;
+	}
+	
+	/**
+	 * Background thread persisting the collected query log entries.<br>
+	 * The entries are collected in a lock-free queue (entries over the {@link ApplicationProperty#QueryLogLimit} are dropped)
+	 * and saved in batches (see {@link ApplicationProperty#QueryLogBatchSize}) once a minute, or sooner when the queue gets half full.
+	 * When {@link ApplicationProperty#QueryLogAggregate} is enabled, the entries with the same type, uri, user and session
+	 * are aggregated into one row per minute, with the number of calls, the total and the maximal time recorded in the query.
+	 */
 	public static class Saver extends Thread {
-		private List<QueryLog> iQueries = new Vector<QueryLog>();
-		private boolean iActive = true;
+		private Queue<QueryLog> iQueries = new ConcurrentLinkedQueue<QueryLog>();
+		private AtomicInteger iSize = new AtomicInteger(0);
+		private AtomicLong iPersisted = new AtomicLong(0), iDropped = new AtomicLong(0), iFailed = new AtomicLong(0);
+		private volatile boolean iActive = true;
 		private int iLogLimit = -1;
 		
 		public Saver() {
 			super("QueryLogSaver");
-			iLogLimit = ApplicationProperty.QueryLogLimit.intValue();
+			Integer limit = ApplicationProperty.QueryLogLimit.intValue();
+			iLogLimit = (limit == null ? -1 : limit.intValue());
 			setDaemon(true);
 		}
 		
@@ -222,45 +252,122 @@ public class QueryLogFilter implements Filter {
 		
 		public void add(QueryLog q) {
 			if (!iActive) return;
-			synchronized (iQueries) {
-				if (iLogLimit <= 0 || iQueries.size() < iLogLimit)
-					iQueries.add(q);
+			int size = iSize.incrementAndGet();
+			if (iLogLimit > 0 && size > iLogLimit) {
+				iSize.decrementAndGet();
+				iDropped.incrementAndGet();
+				return;
+			}
+			iQueries.add(q);
+			if (iLogLimit > 0 && size == iLogLimit / 2)
+				LockSupport.unpark(this);
+		}
+		
+		public long getPersisted() { return iPersisted.get(); }
+		public long getDropped() { return iDropped.get(); }
+		public long getFailed() { return iFailed.get(); }
+		public int getQueueSize() { return iSize.get(); }
+		
+		protected int getBatchSize() {
+			Integer batchSize = ApplicationProperty.QueryLogBatchSize.intValue();
+			return (batchSize == null || batchSize <= 0 ? 100 : batchSize.intValue());
+		}
+		
+		protected List<QueryLog> poll() {
+			List<QueryLog> queries = new ArrayList<QueryLog>();
+			QueryLog q = null;
+			while ((q = iQueries.poll()) != null) {
+				iSize.decrementAndGet();
+				queries.add(q);
+			}
+			return queries;
+		}
+		
+		protected List<QueryLog> aggregate(List<QueryLog> queries) {
+			Map<String, QueryLog> aggregated = new LinkedHashMap<String, QueryLog>();
+			Map<String, long[]> counters = new HashMap<String, long[]>();
+			for (QueryLog q: queries) {
+				Calendar c = Calendar.getInstance();
+				c.setTime(q.getTimeStamp());
+				c.set(Calendar.SECOND, 0); c.set(Calendar.MILLISECOND, 0);
+				String key = c.getTimeInMillis() + "|" + q.getType() + "|" + q.getUri() + "|" + q.getUid() + "|" + q.getSessionId();
+				QueryLog a = aggregated.get(key);
+				long[] counter = counters.get(key);
+				if (a == null) {
+					a = new QueryLog();
+					a.setTimeStamp(c.getTime());
+					a.setType(q.getType());
+					a.setUri(q.getUri());
+					a.setUid(q.getUid());
+					a.setSessionId(q.getSessionId());
+					aggregated.put(key, a);
+					counter = new long[] {0, 0, 0, 0};
+					counters.put(key, counter);
+				}
+				long time = (q.getTimeSpent() == null ? 0 : q.getTimeSpent().longValue());
+				counter[0] ++;
+				counter[1] += time;
+				counter[2] = Math.max(counter[2], time);
+				if (q.getException() != null) {
+					counter[3] ++;
+					a.setException(q.getException());
+				}
+			}
+			for (Map.Entry<String, QueryLog> e: aggregated.entrySet()) {
+				long[] counter = counters.get(e.getKey());
+				QueryLog a = e.getValue();
+				a.setTimeSpent(counter[1] / counter[0]);
+				a.setQuery("{\"count\":" + counter[0] + ",\"total\":" + counter[1] + ",\"max\":" + counter[2] + ",\"errors\":" + counter[3] + "}");
+			}
+			return new ArrayList<QueryLog>(aggregated.values());
+		}
+		
+		protected void persist(List<QueryLog> queries) {
+			int batchSize = getBatchSize();
+			Session hibSession = QueryLogDAO.getInstance().createNewSession();
+			hibSession.setCacheMode(CacheMode.IGNORE);
+			hibSession.setFlushMode(FlushMode.MANUAL);
+			try {
+				for (int i = 0; i < queries.size(); i += batchSize) {
+					List<QueryLog> batch = queries.subList(i, Math.min(queries.size(), i + batchSize));
+					Transaction tx = hibSession.beginTransaction();
+					try {
+						for (QueryLog q: batch)
+							hibSession.save(q);
+						hibSession.flush();
+						tx.commit();
+						iPersisted.addAndGet(batch.size());
+					} catch (Exception e) {
+						tx.rollback();
+						iFailed.addAndGet(batch.size());
+						sLog.error("Failed to persist " + batch.size() + " log entries:" + e.getMessage(), e);
+					} finally {
+						hibSession.clear();
+					}
+				}
+			} finally {
+				hibSession.close();
 			}
 		}
 		
 		public void run() {
 			sLog.debug("Query Log Saver is up.");
+			long dropped = 0;
 			while (true) {
 				try {
-					try {
-						sleep(60000);
-					} catch (InterruptedException e) {
-					}
-					List<QueryLog> queriesToSave = null;
-					synchronized (iQueries) {
-						if (!iQueries.isEmpty()) {
-							queriesToSave = new ArrayList<QueryLog>(iQueries);
-							iQueries.clear();
-						}
-					}
-					if (queriesToSave != null) {
+					if (iActive) LockSupport.parkNanos(this, 60000000000l);
+					List<QueryLog> queriesToSave = poll();
+					if (!queriesToSave.isEmpty()) {
 						sLog.debug("Persisting " + queriesToSave.size() + " log entries...");
-						if (iLogLimit > 0 && queriesToSave.size() >= iLogLimit)
-							sLog.warn("The limit of " + iLogLimit + " unpersisted log messages was reached, some messages have been dropped.");
-						Session hibSession = QueryLogDAO.getInstance().createNewSession();
-						hibSession.setCacheMode(CacheMode.IGNORE);
-						Transaction tx = hibSession.beginTransaction();
-						try {
-							for (QueryLog q: queriesToSave)
-								hibSession.save(q);
-							hibSession.flush();
-							tx.commit();
-						} catch (Exception e) {
-							tx.rollback();
-							sLog.error("Failed to persist " + queriesToSave.size() + " log entries:" + e.getMessage(), e);
-						} finally {
-							hibSession.close();
+						if (iDropped.get() > dropped) {
+							sLog.warn("The limit of " + iLogLimit + " unpersisted log messages was reached, " + (iDropped.get() - dropped) + " messages have been dropped.");
+							dropped = iDropped.get();
 						}
+						if (ApplicationProperty.QueryLogAggregate.isTrue())
+							queriesToSave = aggregate(queriesToSave);
+						persist(queriesToSave);
+						if (sLog.isDebugEnabled())
+							sLog.debug("Query log: " + iPersisted.get() + " persisted, " + iDropped.get() + " dropped, " + iFailed.get() + " failed.");
 					}
 					if (!iActive) break;
 				} catch (Exception e) {
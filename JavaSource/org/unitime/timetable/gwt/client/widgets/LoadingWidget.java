@@ -55,6 +55,7 @@ public class LoadingWidget extends Composite {
 	private HTML iMessage = null;
 	private HTML iCancel;
 	private Timer iCancelTimer = null;
+	private Timer iQueueTimer = null;
 	private Long iExecutionId = null;
 	
 	public LoadingWidget() {
@@ -105,6 +106,29 @@ public class LoadingWidget extends Composite {
 			@Override
 			public void run() {
 				RootPanel.get().add(iCancel, Window.getScrollLeft() + Window.getClientWidth() / 2 - 225, Window.getScrollTop() + 5 * Window.getClientHeight() / 12);
+				iQueueTimer.run();
+			}
+		};
+		iQueueTimer = new Timer() {
+			@Override
+			public void run() {
+				final Long executionId = iExecutionId;
+				if (executionId == null || iCount == 0) return;
+				GwtRpc.getQueuePosition(executionId, new AsyncCallback<Integer>() {
+					@Override
+					public void onFailure(Throwable caught) {
+					}
+					@Override
+					public void onSuccess(Integer position) {
+						if (!executionId.equals(iExecutionId) || iCount == 0) return;
+						if (position != null && position > 0) {
+							iCancel.setHTML(MESSAGES.warnLoadingQueuedCanCancel(position));
+							iQueueTimer.schedule(2000);
+						} else {
+							iCancel.setHTML(MESSAGES.warnLoadingTooLongCanCancel());
+						}
+					}
+				});
 			}
 		};
 	}
@@ -125,6 +149,7 @@ public class LoadingWidget extends Composite {
 	
 	protected void hideCancel() {
 		iCancelTimer.cancel();
+		iQueueTimer.cancel();
 		RootPanel.get().remove(iCancel);
 	}
 
@@ -158,6 +183,9 @@ public class LoadingWidget extends Composite {
 			RootPanel.get().remove(this);
 			iWarningTimer.cancel();
 			iCancelTimer.cancel();
+			iQueueTimer.cancel();
+			iExecutionId = null;
+			iCancel.setHTML(MESSAGES.warnLoadingTooLongCanCancel());
 			RootPanel.get().remove(iWarning);
 			RootPanel.get().remove(iMessage);
 			RootPanel.get().remove(iCancel);
@@ -68,6 +68,13 @@ public class GwtRpc {
 		});
 	}
 	
+	/**
+	 * Position of the given execution in the queue of the server (0 when the execution is already running, null when not found)
+	 */
+	public static void getQueuePosition(Long executionId, AsyncCallback<Integer> callback) {
+		RPC.getQueuePosition(executionId, callback);
+	}
+	
 	public static interface CancellableCallback<T> extends AsyncCallback<T> {
 		public void onExecution(Long executionId);
 	}
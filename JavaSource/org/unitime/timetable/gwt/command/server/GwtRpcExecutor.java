@@ -0,0 +1,277 @@
+/*
+ * Licensed to The Apereo Foundation under one or more contributor license
+ * agreements. See the NOTICE file distributed with this work for
+ * additional information regarding copyright ownership.
+ *
+ * The Apereo Foundation licenses this file to you under the Apache License,
+ * Version 2.0 (the "License"); you may not use this file except in
+ * compliance with the License. You may obtain a copy of the License at:
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ *
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ *
+*/
+package org.unitime.timetable.gwt.command.server;
+
+import java.util.HashMap;
+import java.util.Iterator;
+import java.util.LinkedList;
+import java.util.Map;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ThreadFactory;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicLong;
+
+import org.apache.commons.logging.Log;
+import org.apache.commons.logging.LogFactory;
+import org.unitime.localization.impl.Localization;
+import org.unitime.timetable.defaults.ApplicationProperty;
+import org.unitime.timetable.gwt.command.client.GwtRpcException;
+import org.unitime.timetable.gwt.resources.GwtMessages;
+
+/**
+ * Bounded executor of the asynchronous GWT RPC executions (see {@link GwtRpcServlet#executeAsync(org.unitime.timetable.gwt.command.client.GwtRpcRequest)}).<br>
+ * Executions are run on a fixed pool of worker threads. An execution is only started when there is a free worker and
+ * neither the number of running executions of the same user nor of the same request type exceeds its limit, otherwise
+ * it waits in a queue (in the order of arrival). When the queue is full, new executions are rejected.
+ *
+ * @author Tomas Muller
+ */
+public class GwtRpcExecutor {
+	private static Log sLog = LogFactory.getLog(GwtRpcExecutor.class);
+	protected static final GwtMessages MESSAGES = Localization.create(GwtMessages.class);
+	private static GwtRpcExecutor sInstance = null;
+
+	private ExecutorService iWorkers;
+	private int iPoolSize;
+	private LinkedList<Task> iQueue = new LinkedList<Task>();
+	private Map<String, Integer> iRunningPerUser = new HashMap<String, Integer>();
+	private Map<String, Integer> iRunningPerType = new HashMap<String, Integer>();
+	private int iRunning = 0;
+
+	private AtomicLong iSubmitted = new AtomicLong(0), iRejected = new AtomicLong(0), iCancelled = new AtomicLong(0), iCompleted = new AtomicLong(0);
+	private AtomicLong iWaitTime = new AtomicLong(0), iMaxWaitTime = new AtomicLong(0), iExecutionTime = new AtomicLong(0), iMaxExecutionTime = new AtomicLong(0);
+
+	private GwtRpcExecutor() {
+		Integer size = ApplicationProperty.GwtRpcAsyncPoolSize.intValue();
+		iPoolSize = Math.max(1, size == null ? 20 : size.intValue());
+		iWorkers = Executors.newFixedThreadPool(iPoolSize, new ThreadFactory() {
+			private AtomicInteger iCount = new AtomicInteger(0);
+			@Override
+			public Thread newThread(Runnable r) {
+				Thread thread = new Thread(r, "RPC-" + iCount.incrementAndGet());
+				thread.setDaemon(true);
+				return thread;
+			}
+		});
+	}
+
+	public static synchronized GwtRpcExecutor getInstance() {
+		if (sInstance == null)
+			sInstance = new GwtRpcExecutor();
+		return sInstance;
+	}
+
+	/**
+	 * Stop all the workers (running executions are interrupted, queued executions are cancelled)
+	 */
+	public static synchronized void shutdown() {
+		if (sInstance != null) {
+			synchronized (sInstance) {
+				for (Task task: sInstance.iQueue)
+					task.cancelled();
+				sInstance.iQueue.clear();
+			}
+			sInstance.iWorkers.shutdownNow();
+			sInstance = null;
+		}
+	}
+
+	protected int getMaxPerUser() {
+		Integer limit = ApplicationProperty.GwtRpcAsyncMaxPerUser.intValue();
+		return (limit == null ? 0 : limit.intValue());
+	}
+
+	protected int getMaxPerType() {
+		Integer limit = ApplicationProperty.GwtRpcAsyncMaxPerType.intValue();
+		return (limit == null ? 0 : limit.intValue());
+	}
+
+	protected int getMaxQueueSize() {
+		Integer limit = ApplicationProperty.GwtRpcAsyncQueueSize.intValue();
+		return (limit == null ? 0 : limit.intValue());
+	}
+
+	/**
+	 * Queue the given task, start it right away when possible
+	 * @throws GwtRpcException when the queue is full
+	 */
+	public synchronized void submit(Task task) throws GwtRpcException {
+		int maxQueue = getMaxQueueSize();
+		if (maxQueue > 0 && iQueue.size() >= maxQueue) {
+			iRejected.incrementAndGet();
+			sLog.warn("Too many requests, rejecting " + task + " (" + this + ")");
+			throw new GwtRpcException(MESSAGES.serverTooBusy());
+		}
+		iSubmitted.incrementAndGet();
+		task.iExecutor = this;
+		task.iQueued = System.currentTimeMillis();
+		iQueue.add(task);
+		dispatch();
+	}
+
+	/**
+	 * Position of the task in the queue (1 is the next one to start), 0 if it is not waiting (already running or finished)
+	 */
+	public synchronized int getQueuePosition(Task task) {
+		int position = 1;
+		for (Task t: iQueue) {
+			if (t == task) return position;
+			position ++;
+		}
+		return 0;
+	}
+
+	/**
+	 * Remove the task from the queue
+	 * @return true if the task has been waiting in the queue (and will not be started)
+	 */
+	protected synchronized boolean cancel(Task task) {
+		if (iQueue.remove(task)) {
+			iCancelled.incrementAndGet();
+			return true;
+		}
+		return false;
+	}
+
+	private boolean canStart(Task task, int maxPerUser, int maxPerType) {
+		if (maxPerUser > 0 && task.getUser() != null) {
+			Integer running = iRunningPerUser.get(task.getUser());
+			if (running != null && running >= maxPerUser) return false;
+		}
+		if (maxPerType > 0 && task.getType() != null) {
+			Integer running = iRunningPerType.get(task.getType());
+			if (running != null && running >= maxPerType) return false;
+		}
+		return true;
+	}
+
+	private static void increment(Map<String, Integer> counts, String key, int value) {
+		if (key == null) return;
+		Integer count = counts.get(key);
+		int newCount = (count == null ? 0 : count.intValue()) + value;
+		if (newCount <= 0)
+			counts.remove(key);
+		else
+			counts.put(key, newCount);
+	}
+
+	/**
+	 * Start as many queued tasks as the limits allow
+	 */
+	private synchronized void dispatch() {
+		if (iRunning >= iPoolSize || iQueue.isEmpty()) return;
+		int maxPerUser = getMaxPerUser(), maxPerType = getMaxPerType();
+		for (Iterator<Task> i = iQueue.iterator(); i.hasNext() && iRunning < iPoolSize; ) {
+			Task task = i.next();
+			if (!canStart(task, maxPerUser, maxPerType)) continue;
+			i.remove();
+			iRunning ++;
+			increment(iRunningPerUser, task.getUser(), 1);
+			increment(iRunningPerType, task.getType(), 1);
+			task.iStarted = System.currentTimeMillis();
+			long wait = task.iStarted - task.iQueued;
+			iWaitTime.addAndGet(wait);
+			if (wait > iMaxWaitTime.get()) iMaxWaitTime.set(wait);
+			iWorkers.execute(task);
+		}
+	}
+
+	private synchronized void finished(Task task) {
+		iRunning --;
+		increment(iRunningPerUser, task.getUser(), -1);
+		increment(iRunningPerType, task.getType(), -1);
+		long time = System.currentTimeMillis() - task.iStarted;
+		iExecutionTime.addAndGet(time);
+		if (time > iMaxExecutionTime.get()) iMaxExecutionTime.set(time);
+		if (iCompleted.incrementAndGet() % 100 == 0 && sLog.isDebugEnabled())
+			sLog.debug(this);
+		dispatch();
+	}
+
+	public synchronized int getQueueSize() { return iQueue.size(); }
+	public synchronized int getRunning() { return iRunning; }
+	public long getSubmitted() { return iSubmitted.get(); }
+	public long getRejected() { return iRejected.get(); }
+	public long getCancelled() { return iCancelled.get(); }
+	public long getCompleted() { return iCompleted.get(); }
+	public long getAverageWaitTime() { long started = iSubmitted.get() - iCancelled.get() - getQueueSize(); return (started <= 0 ? 0 : iWaitTime.get() / started); }
+	public long getMaxWaitTime() { return iMaxWaitTime.get(); }
+	public long getAverageExecutionTime() { long completed = iCompleted.get(); return (completed == 0 ? 0 : iExecutionTime.get() / completed); }
+	public long getMaxExecutionTime() { return iMaxExecutionTime.get(); }
+
+	@Override
+	public String toString() {
+		return "GwtRpcExecutor{pool=" + iPoolSize + ", running=" + getRunning() + ", queued=" + getQueueSize() +
+				", submitted=" + getSubmitted() + ", completed=" + getCompleted() + ", rejected=" + getRejected() + ", cancelled=" + getCancelled() +
+				", wait=" + getAverageWaitTime() + "ms (max " + getMaxWaitTime() + "ms), execution=" + getAverageExecutionTime() + "ms (max " + getMaxExecutionTime() + "ms)}";
+	}
+
+	/**
+	 * An execution to be run by the {@link GwtRpcExecutor}
+	 */
+	public static abstract class Task implements Runnable {
+		private GwtRpcExecutor iExecutor = null;
+		private long iQueued = 0, iStarted = 0;
+
+		/** User of the task, used for the per user limit (null if not limited) */
+		public abstract String getUser();
+
+		/** Type of the task, used for the per type limit (null if not limited) */
+		public abstract String getType();
+
+		/** Execute the task */
+		protected abstract void execute();
+
+		/** Called when the task is removed from the queue without being executed */
+		protected abstract void cancelled();
+
+		@Override
+		public final void run() {
+			try {
+				execute();
+			} finally {
+				if (iExecutor != null) iExecutor.finished(this);
+			}
+		}
+
+		/** Time spent waiting in the queue in milliseconds */
+		public long getWaitTime() {
+			return (iStarted == 0 ? System.currentTimeMillis() : iStarted) - iQueued;
+		}
+
+		/** Position in the queue, 0 if not waiting */
+		public int getQueuePosition() {
+			return (iExecutor == null ? 0 : iExecutor.getQueuePosition(this));
+		}
+
+		/**
+		 * Remove the task from the queue
+		 * @return true if the task has been waiting and is not going to be started, false if it is already running (or done)
+		 */
+		public boolean dequeue() {
+			if (iExecutor != null && iExecutor.cancel(this)) {
+				cancelled();
+				return true;
+			}
+			return false;
+		}
+	}
+}
@@ -40,7 +40,6 @@ import org.springframework.web.context.WebApplicationContext;
 import org.springframework.web.context.support.WebApplicationContextUtils;
 import org.unitime.localization.impl.Localization;
 import org.unitime.timetable.ApplicationProperties;
-import org.unitime.timetable.defaults.ApplicationProperty;
 import org.unitime.timetable.filter.QueryLogFilter;
 import org.unitime.timetable.gwt.command.client.GwtRpcCancelledException;
 import org.unitime.timetable.gwt.command.client.GwtRpcRequest;
@@ -127,6 +126,7 @@ public class GwtRpcServlet extends RemoteServiceServlet implements GwtRpcService
 	@Override
 	public void destroy() {
 		if (iSaver != null) iSaver.interrupt();
+		GwtRpcExecutor.shutdown();
 	}
 	
 	public static <T extends GwtRpcResponse> GwtRpcImplementation<GwtRpcRequest<T>, T> getImplementation(Class<? extends GwtRpcRequest<T>> requestClass, ApplicationContext applicationContext) throws BeansException {
@@ -236,7 +236,7 @@ public class GwtRpcServlet extends RemoteServiceServlet implements GwtRpcService
 			q.setTimeSpent(time);
 			q.setSessionId(context.getHttpSessionId());
 			q.setUid(context.isAuthenticated() ? context.getUser().getTrueExternalUserId() : null);
-			if (ApplicationProperty.QueryLogJSON.isTrue()) {
+			if (QueryLogFilter.isLogJSON(exception != null)) {
 				q.setQuery(iGson.toJson(request));
 			} else {
 				q.setQuery(request.toString());
@@ -269,8 +269,17 @@ public class GwtRpcServlet extends RemoteServiceServlet implements GwtRpcService
 			synchronized (sExecutions) {
 				sExecutions.put(execution.getExecutionId(), execution);
 			}
-			execution.start();
+			try {
+				GwtRpcExecutor.getInstance().submit(execution);
+			} catch (GwtRpcException e) {
+				synchronized (sExecutions) {
+					sExecutions.remove(execution.getExecutionId());
+				}
+				throw e;
+			}
 			return execution.getExecutionId();
+		} catch (GwtRpcException e) {
+			throw e;
 		} catch (Exception e) {
 			sLog.warn("Execute async failed: " + e.getMessage());
 			throw new GwtRpcException(e.getMessage(), e);
@@ -319,6 +328,21 @@ public class GwtRpcServlet extends RemoteServiceServlet implements GwtRpcService
 			throw new GwtRpcException(e.getMessage(), e);
 		}
 	}
+	
+	@Override
+	public Integer getQueuePosition(Long executionId) throws GwtRpcException {
+		try {
+			Execution execution = null;
+			synchronized (sExecutions) {
+				execution = sExecutions.get(executionId);
+			}
+			if (execution == null) return null;
+			return execution.getQueuePosition();
+		} catch (Exception e) {
+			sLog.warn("Get queue position failed: " + e.getMessage());
+			throw new GwtRpcException(e.getMessage(), e);
+		}
+	}
 		
 	private static class IdGenerator {
 		long iNextId = 0;
@@ -327,28 +351,39 @@ public class GwtRpcServlet extends RemoteServiceServlet implements GwtRpcService
 		}
 	}
 	
-	private class Execution<R extends GwtRpcRequest<T>, T extends GwtRpcResponse> extends Thread {
+	private class Execution<R extends GwtRpcRequest<T>, T extends GwtRpcResponse> extends GwtRpcExecutor.Task {
 		R iRequest;
 		T iResponse = null;
 		SessionContext iContext = null;
 		GwtRpcException iException = null;
-		Thread iWaitingThread = null;
+		Thread iThread = null;
 		long iExecutionId;
-		boolean iRunning = false;
+		boolean iFinished = false;
 		String iLocale = null;
+		String iUser = null;
 		
 		Execution(R request) {
-			setName("RPC:" + request);
-			setDaemon(true);
 			iRequest = request;
 			iExecutionId = sIdGenerator.generatedId();
 			iContext = new GwtRpcHelper(getSessionContext(), getPermissionCheck());
 			iLocale = Localization.getLocale();
+			iUser = (iContext.getUser() != null ? iContext.getUser().getExternalUserId() : iContext.getHttpSessionId());
 		}
+		
+		@Override
+		public String getUser() { return iUser; }
+		
+		@Override
+		public String getType() { return iRequest.getClass().getName(); }
 
 		@Override
-		public void run() {
-			iRunning = true;
+		protected void execute() {
+			synchronized (this) {
+				if (iFinished) return;
+				iThread = Thread.currentThread();
+			}
+			String name = iThread.getName();
+			iThread.setName("RPC:" + iRequest);
 			Localization.setLocale(iLocale);
 			ApplicationProperties.setSessionId(iContext.getUser() == null ? null : iContext.getUser().getCurrentAcademicSessionId());
 			// start time
@@ -371,9 +406,10 @@ public class GwtRpcServlet extends RemoteServiceServlet implements GwtRpcService
 				log(iRequest, null, t, JProf.currentTimeMillis() - t0, iContext, logging);
 				
 				// re-throw exception as GwtRpcException or IsSerializable runtime exception
+				GwtRpcException exception = null;
 				if (t instanceof GwtRpcException) {
-					iException = (GwtRpcException)t;
-					if (iException.hasCause())
+					exception = (GwtRpcException)t;
+					if (exception.hasCause())
 						sLog.warn("Seen server exception: " + t.getMessage(), t.getCause());
 					else
 						sLog.info("Seen server exception: " + t.getMessage());
@@ -382,45 +418,66 @@ public class GwtRpcServlet extends RemoteServiceServlet implements GwtRpcService
 						sLog.error("Seen server exception: " + t.getMessage(), t);
 					else
 						sLog.warn("Seen server exception: " + t.getMessage(), t);
-					iException = new GwtRpcException(t.getMessage(), t);
+					exception = new GwtRpcException(t.getMessage(), t);
 				} else {
 					sLog.error("Seen exception: " + t.getMessage(), t);
-					iException = new GwtRpcException(t.getMessage());
+					exception = new GwtRpcException(t.getMessage());
+				}
+				synchronized (this) {
+					if (iException == null) iException = exception;
 				}
 			} finally {
 				Localization.removeLocale();
 				Formats.removeFormats();
 				ApplicationProperties.setSessionId(null);
 				_RootDAO.closeCurrentThreadSessions();
+				synchronized (this) {
+					iThread.setName(name);
+					// clear the interrupted flag (if cancelled) before the worker is returned to the pool
+					Thread.interrupted();
+					iThread = null;
+					iFinished = true;
+					iContext = null;
+					notifyAll();
+				}
 			}
+		}
+		
+		@Override
+		protected void cancelled() {
 			synchronized (this) {
-				iWaitingThread = null;
-				iRunning = false;
+				if (iException == null) iException = new GwtRpcCancelledException("Operation cancelled by the user.");
+				iFinished = true;
 				iContext = null;
+				notifyAll();
 			}
 		}
 		
 		void waitToFinish() throws InterruptedException {
 			synchronized (this) {
-				if (iRunning) {
-					iWaitingThread = Thread.currentThread();
-					join();
-				}
+				while (!iFinished && !isCancelled()) wait();
 			}
 		}
 		
 		void cancelExecution() {
+			if (dequeue()) return;
 			synchronized (this) {
+				if (iFinished) return;
 				iException = new GwtRpcCancelledException("Operation cancelled by the user.");
-				if (iWaitingThread != null) iWaitingThread.interrupt();
+				if (iThread != null) iThread.interrupt();
+				notifyAll();
 			}
-			interrupt();
 		}
 		
+		synchronized boolean isCancelled() { return iException instanceof GwtRpcCancelledException; }
+		
 		T getResponse() { return iResponse; }
 		
 		GwtRpcException getException() { return iException; }
 		
 		Long getExecutionId() { return iExecutionId; }
+		
+		@Override
+		public String toString() { return "RPC:" + iRequest; }
 	}
-}
\ No newline at end of file
+}
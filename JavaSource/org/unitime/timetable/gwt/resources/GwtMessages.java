@@ -44,6 +44,12 @@ public interface GwtMessages extends Messages {
 	
 	@DefaultMessage("The operation may take a lot of time...<br>Click this message to cancel the operation.")
 	String warnLoadingTooLongCanCancel();
+	
+	@DefaultMessage("The server is busy, the operation is waiting in a queue (position {0})...<br>Click this message to cancel the operation.")
+	String warnLoadingQueuedCanCancel(int position);
+	
+	@DefaultMessage("The server is too busy at the moment, please try again later.")
+	String serverTooBusy();
 
 	@DefaultMessage("Login is required to access this page.")
 	String authenticationRequired();
@@ -0,0 +1,235 @@
+/*
+ * Licensed to The Apereo Foundation under one or more contributor license
+ * agreements. See the NOTICE file distributed with this work for
+ * additional information regarding copyright ownership.
+ *
+ * The Apereo Foundation licenses this file to you under the Apache License,
+ * Version 2.0 (the "License"); you may not use this file except in
+ * compliance with the License. You may obtain a copy of the License at:
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ *
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ *
+*/
+package org.unitime.timetable.gwt.server;
+
+import java.io.ByteArrayOutputStream;
+import java.io.FilterOutputStream;
+import java.io.IOException;
+import java.io.OutputStream;
+import java.security.MessageDigest;
+import java.security.NoSuchAlgorithmException;
+import java.util.Collection;
+import java.util.Iterator;
+import java.util.LinkedHashMap;
+import java.util.Map;
+
+import org.unitime.timetable.defaults.ApplicationProperty;
+
+/**
+ * Cache of the iCalendar feeds generated by the {@link CalendarServlet}.<br>
+ * A feed is streamed to the client as it is generated (see {@link FeedOutputStream}), its content fingerprint is computed on the way
+ * and feeds that are not too big are kept in the cache. A cached feed is sent with its fingerprint as the ETag of the response,
+ * so that a calendar client polling an unchanged feed can be answered with 304 Not Modified without touching the database.
+ * Feeds are dropped when an event, an examination, or a committed solution of the academic session changes, personal feeds
+ * also when the enrollments of the student change, or when they get older than the configured time to live.
+ *
+ * @author Tomas Muller
+ */
+public class CalendarFeedCache {
+	private static CalendarFeedCache sInstance = new CalendarFeedCache();
+
+	private Map<String, Feed> iFeeds = new LinkedHashMap<String, Feed>(16, 0.75f, true) {
+		private static final long serialVersionUID = 1L;
+		@Override
+		protected boolean removeEldestEntry(Map.Entry<String, Feed> eldest) {
+			return size() > getMaxSize();
+		}
+	};
+
+	private CalendarFeedCache() {}
+
+	public static CalendarFeedCache getInstance() { return sInstance; }
+
+	public boolean isEnabled() {
+		return ApplicationProperty.EventCalendarFeedCacheEnabled.isTrue();
+	}
+
+	protected int getMaxSize() {
+		Integer size = ApplicationProperty.EventCalendarFeedCacheSize.intValue();
+		return (size == null ? 1000 : size.intValue());
+	}
+
+	public int getMaxLength() {
+		Integer length = ApplicationProperty.EventCalendarFeedCacheMaxLength.intValue();
+		return (length == null ? 1048576 : length.intValue());
+	}
+
+	protected long getTimeToLive() {
+		Integer ttl = ApplicationProperty.EventCalendarFeedCacheTimeToLive.intValue();
+		return (ttl == null ? 900000l : 1000l * ttl);
+	}
+
+	public Feed get(String key) {
+		synchronized (iFeeds) {
+			Feed feed = iFeeds.get(key);
+			if (feed != null && feed.isExpired(getTimeToLive())) {
+				iFeeds.remove(key);
+				return null;
+			}
+			return feed;
+		}
+	}
+
+	public void put(String key, Feed feed) {
+		synchronized (iFeeds) {
+			iFeeds.put(key, feed);
+		}
+	}
+
+	/**
+	 * Drop all feeds of the given academic session, all feeds when null
+	 */
+	public void invalidate(Long sessionId) {
+		synchronized (iFeeds) {
+			if (sessionId == null) {
+				iFeeds.clear();
+			} else {
+				for (Iterator<Feed> i = iFeeds.values().iterator(); i.hasNext(); )
+					if (sessionId.equals(i.next().getSessionId())) i.remove();
+			}
+		}
+	}
+
+	/**
+	 * Drop personal feeds (uid parameter) of the given academic session and the given users (external ids), all personal feeds of the
+	 * academic session when the users are null
+	 */
+	public void invalidate(Long sessionId, Collection<String> userIds) {
+		synchronized (iFeeds) {
+			for (Iterator<Feed> i = iFeeds.values().iterator(); i.hasNext(); ) {
+				Feed feed = i.next();
+				if (feed.getUserId() == null || (sessionId != null && !sessionId.equals(feed.getSessionId()))) continue;
+				if (userIds == null || userIds.contains(feed.getUserId())) i.remove();
+			}
+		}
+	}
+
+	public static class Feed {
+		private Long iSessionId;
+		private String iUserId;
+		private byte[] iContent;
+		private String iETag;
+		private long iCreated;
+
+		public Feed(Long sessionId, String userId, byte[] content, String eTag) {
+			iSessionId = sessionId;
+			iUserId = userId;
+			iContent = content;
+			iETag = eTag;
+			iCreated = System.currentTimeMillis();
+		}
+
+		public Long getSessionId() { return iSessionId; }
+		public String getUserId() { return iUserId; }
+		public byte[] getContent() { return iContent; }
+		public String getETag() { return iETag; }
+		public long getCreated() { return iCreated; }
+		public boolean isExpired(long ttl) { return ttl > 0 && System.currentTimeMillis() - iCreated > ttl; }
+
+		/**
+		 * Check the If-None-Match header of the request against the feed fingerprint
+		 */
+		public boolean matches(String ifNoneMatch) {
+			if (ifNoneMatch == null || ifNoneMatch.isEmpty()) return false;
+			for (String tag: ifNoneMatch.split(",")) {
+				tag = tag.trim();
+				if (tag.startsWith("W/")) tag = tag.substring(2);
+				if ("*".equals(tag) || iETag.equals(tag)) return true;
+			}
+			return false;
+		}
+	}
+
+	/**
+	 * Output stream that passes the feed through (e.g., to the response) as it is written, while computing its content fingerprint
+	 * (excluding the DTSTAMP lines, these contain the time the feed was generated) and keeping a copy of the content, as long as it
+	 * does not exceed the given length, so that the feed can be cached afterwards.
+	 */
+	public static class FeedOutputStream extends FilterOutputStream {
+		private MessageDigest iDigest;
+		private ByteArrayOutputStream iLine = new ByteArrayOutputStream();
+		private ByteArrayOutputStream iContent = new ByteArrayOutputStream();
+		private int iMaxLength;
+
+		public FeedOutputStream(OutputStream out, int maxLength) {
+			super(out);
+			iMaxLength = maxLength;
+			try {
+				iDigest = MessageDigest.getInstance("SHA-1");
+			} catch (NoSuchAlgorithmException e) {
+				iContent = null;
+			}
+		}
+
+		@Override
+		public void write(int b) throws IOException {
+			out.write(b);
+			record(b);
+		}
+
+		@Override
+		public void write(byte[] b, int off, int len) throws IOException {
+			out.write(b, off, len);
+			for (int i = off; i < off + len; i++)
+				record(b[i]);
+		}
+
+		private void record(int b) {
+			if (iContent == null) return;
+			iContent.write(b);
+			if (iContent.size() > iMaxLength) {
+				iContent = null; iLine = null;
+			} else if (b == '\n') {
+				digestLine();
+			} else {
+				iLine.write(b);
+			}
+		}
+
+		private void digestLine() {
+			byte[] line = iLine.toByteArray();
+			if (!startsWith(line, 0, "DTSTAMP"))
+				iDigest.update(line);
+			iLine.reset();
+		}
+
+		/**
+		 * The feed that has been written, null if it was too long to be cached
+		 */
+		public Feed getFeed(Long sessionId, String userId) {
+			if (iContent == null) return null;
+			digestLine();
+			StringBuffer eTag = new StringBuffer("\"");
+			for (byte b: iDigest.digest())
+				eTag.append(String.format("%02x", b & 0xff));
+			eTag.append("\"");
+			Feed feed = new Feed(sessionId, userId, iContent.toByteArray(), eTag.toString());
+			iContent = null; iLine = null;
+			return feed;
+		}
+	}
+
+	private static boolean startsWith(byte[] content, int start, String prefix) {
+		if (start + prefix.length() > content.length) return false;
+		for (int i = 0; i < prefix.length(); i++)
+			if (content[start + i] != prefix.charAt(i)) return false;
+		return true;
+	}
+}
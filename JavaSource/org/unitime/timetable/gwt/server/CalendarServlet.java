@@ -20,8 +20,10 @@
 package org.unitime.timetable.gwt.server;
 
 import java.io.IOException;
-import java.io.PrintWriter;
+import java.io.OutputStream;
+import java.io.OutputStreamWriter;
 import java.io.UnsupportedEncodingException;
+import java.io.Writer;
 import java.net.URL;
 import java.net.URLDecoder;
 import java.text.SimpleDateFormat;
@@ -172,6 +174,16 @@ public class CalendarServlet extends HttpServlet {
 		response.setContentType("text/calendar; charset=UTF-8");
 		response.setCharacterEncoding("UTF-8");
 		response.setHeader( "Content-Disposition", "attachment; filename=\"schedule.ics\"" );
+		
+		CalendarFeedCache cache = CalendarFeedCache.getInstance();
+		String key = sessionId + "|" + classIds + "|" + fts + "|" + examIds + "|" + eventIds + "|" + userId;
+		if (cache.isEnabled()) {
+			CalendarFeedCache.Feed feed = cache.get(key);
+			if (feed != null) {
+				write(feed, request, response);
+				return;
+			}
+		}
         
 		ICalendar ical = new ICalendar();
 		ical.setVersion(ICalVersion.V2_0);
@@ -273,9 +285,15 @@ public class CalendarServlet extends HttpServlet {
         } catch (Exception e) {
         	Debug.error(e.getMessage(), e);
         	response.sendError(HttpServletResponse.SC_INTERNAL_SERVER_ERROR, e.getMessage());
+        	return;
         }
 		
-		PrintWriter out = response.getWriter();
+		// stream the feed to the client, keep it in the cache afterwards (when enabled and not too long)
+		CalendarFeedCache.FeedOutputStream feedOut = null;
+		OutputStream stream = response.getOutputStream();
+		if (cache.isEnabled())
+			stream = feedOut = new CalendarFeedCache.FeedOutputStream(stream, cache.getMaxLength());
+		Writer out = new OutputStreamWriter(stream, "UTF-8");
         ICalWriter writer = new ICalWriter(out, ICalVersion.V2_0);
 		try {
 			try {
@@ -291,6 +309,30 @@ public class CalendarServlet extends HttpServlet {
 			out.close();
 			writer.close();
 		}
+		
+		if (feedOut != null) {
+			CalendarFeedCache.Feed feed = feedOut.getFeed(sessionId, userId == null || userId.isEmpty() ? null : userId);
+			if (feed != null) cache.put(key, feed);
+		}
+	}
+	
+	/**
+	 * Write the feed into the response, or answer 304 Not Modified when the client already has the same content
+	 */
+	private void write(CalendarFeedCache.Feed feed, HttpServletRequest request, HttpServletResponse response) throws IOException {
+		response.setHeader("ETag", feed.getETag());
+		if (feed.matches(request.getHeader("If-None-Match"))) {
+			response.setStatus(HttpServletResponse.SC_NOT_MODIFIED);
+			return;
+		}
+		response.setContentLength(feed.getContent().length);
+		OutputStream out = response.getOutputStream();
+		try {
+			out.write(feed.getContent());
+			out.flush();
+		} finally {
+			out.close();
+		}
 	}
 
 	private void printExam(Exam exam, ICalendar ical) throws IOException {
@@ -0,0 +1,510 @@
+/*
+ * Licensed to The Apereo Foundation under one or more contributor license
+ * agreements. See the NOTICE file distributed with this work for
+ * additional information regarding copyright ownership.
+ *
+ * The Apereo Foundation licenses this file to you under the Apache License,
+ * Version 2.0 (the "License"); you may not use this file except in
+ * compliance with the License. You may obtain a copy of the License at:
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ *
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ *
+*/
+package org.unitime.timetable.gwt.server;
+
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.Hashtable;
+import java.util.Iterator;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+
+import javax.transaction.Status;
+import javax.transaction.Synchronization;
+
+import org.apache.log4j.Logger;
+import org.hibernate.Transaction;
+import org.unitime.timetable.defaults.ApplicationProperty;
+import org.unitime.timetable.gwt.shared.CurriculumInterface.CourseInterface;
+
+/**
+ * In-memory aggregate of the student demands used by the {@link CurriculaServlet}.<br>
+ * For each academic session, the cube keeps the academic area, classification and major combinations of each student
+ * together with the courses the student is enrolled in, has requested, and the courses matching his/her last-like course demands.
+ * The enrolled, requested, and last-like students of an academic area, major(s), and classification (and course) are then
+ * computed from the cube instead of running the HQL aggregations on each call.<br>
+ * The cube is loaded on the first use and it is maintained incrementally: students that are reported as changed (see
+ * {@link #studentsChanged(org.hibernate.Session, Long, Collection)}) are reloaded on the next use, the whole session is reloaded when invalidated
+ * (e.g., when the last-like course demands are imported) or when it gets older than the configured time to live.
+ * Changes made within a transaction are only reported once the transaction is committed, so that the cube is never
+ * updated with data that are not committed yet.
+ *
+ * @author Tomas Muller
+ */
+public class CurriculaDemandCube {
+	private static Logger sLog = Logger.getLogger(CurriculaDemandCube.class);
+	private static CurriculaDemandCube sInstance = new CurriculaDemandCube();
+
+	private static String[] sLastLikeChecks = new String[] {
+		"co.subjectArea.uniqueId = x.subjectArea.uniqueId and x.coursePermId is not null and co.permId=x.coursePermId",
+		"co.subjectArea.uniqueId = x.subjectArea.uniqueId and x.coursePermId is null and co.courseNbr=x.courseNbr",
+		"co.demandOffering.subjectArea.uniqueId = x.subjectArea.uniqueId and x.coursePermId is not null and co.demandOffering.permId=x.coursePermId",
+		"co.demandOffering.subjectArea.uniqueId = x.subjectArea.uniqueId and x.coursePermId is null and co.demandOffering.courseNbr=x.courseNbr"
+	};
+
+	private Map<Long, SessionCube> iCubes = new HashMap<Long, SessionCube>();
+
+	private CurriculaDemandCube() {}
+
+	public static CurriculaDemandCube getInstance() { return sInstance; }
+
+	public static boolean isEnabled() {
+		return ApplicationProperty.CurriculaDemandCubeEnabled.isTrue();
+	}
+
+	protected long getTimeToLive() {
+		Integer ttl = ApplicationProperty.CurriculaDemandCubeTimeToLive.intValue();
+		return (ttl == null ? 3600000l : 1000l * ttl);
+	}
+
+	/**
+	 * Cube of the given academic session, loaded or updated as needed
+	 */
+	public SessionCube getCube(org.hibernate.Session hibSession, Long sessionId) {
+		SessionCube cube = null;
+		long ttl = getTimeToLive();
+		synchronized (iCubes) {
+			cube = iCubes.get(sessionId);
+			if (cube == null) {
+				cube = new SessionCube(sessionId);
+				iCubes.put(sessionId, cube);
+			}
+			// drop cubes of other academic sessions that have not been used for a while
+			if (ttl > 0)
+				for (Iterator<SessionCube> i = iCubes.values().iterator(); i.hasNext(); ) {
+					SessionCube other = i.next();
+					if (other != cube && System.currentTimeMillis() - other.iUsed > ttl) i.remove();
+				}
+			cube.iUsed = System.currentTimeMillis();
+		}
+		cube.update(hibSession, ttl);
+		return cube;
+	}
+
+	/**
+	 * Students of the given academic session have changed (their enrollments, course requests, or academic area, classification, and major combinations)
+	 */
+	public void studentsChanged(Long sessionId, Collection<Long> studentIds) {
+		if (sessionId == null) { invalidate(null); return; }
+		if (studentIds == null || studentIds.isEmpty()) { invalidate(sessionId); return; }
+		SessionCube cube = null;
+		synchronized (iCubes) {
+			cube = iCubes.get(sessionId);
+		}
+		if (cube != null) cube.iDirty.addAll(studentIds);
+	}
+
+	/**
+	 * Students of the given academic session have changed within the current transaction of the given hibernate session:
+	 * the students are marked as changed once the transaction is committed (right away when there is no active transaction)
+	 */
+	public void studentsChanged(org.hibernate.Session hibSession, final Long sessionId, final Collection<Long> studentIds) {
+		if (!afterCommit(hibSession, new Runnable() {
+			@Override
+			public void run() { studentsChanged(sessionId, studentIds); }
+		})) studentsChanged(sessionId, studentIds);
+	}
+	
+	/**
+	 * Reload the whole cube of the given academic session once the current transaction of the given hibernate session is committed
+	 * (right away when there is no active transaction)
+	 */
+	public void invalidate(org.hibernate.Session hibSession, final Long sessionId) {
+		if (!afterCommit(hibSession, new Runnable() {
+			@Override
+			public void run() { invalidate(sessionId); }
+		})) invalidate(sessionId);
+	}
+	
+	/**
+	 * Register the given action to be executed after the current transaction of the given hibernate session is committed
+	 * @return false if there is no active transaction
+	 */
+	protected boolean afterCommit(org.hibernate.Session hibSession, final Runnable action) {
+		Transaction tx = (hibSession == null ? null : hibSession.getTransaction());
+		if (tx == null || !tx.isActive()) return false;
+		tx.registerSynchronization(new Synchronization() {
+			@Override
+			public void beforeCompletion() {}
+			
+			@Override
+			public void afterCompletion(int status) {
+				if (status == Status.STATUS_COMMITTED) action.run();
+			}
+		});
+		return true;
+	}
+
+	/**
+	 * Reload the whole cube of the given academic session on the next use, all cubes if null
+	 */
+	public void invalidate(Long sessionId) {
+		synchronized (iCubes) {
+			if (sessionId == null) {
+				for (SessionCube cube: iCubes.values())
+					cube.iInvalid = true;
+			} else {
+				SessionCube cube = iCubes.get(sessionId);
+				if (cube != null) cube.iInvalid = true;
+			}
+		}
+	}
+
+	protected static class AreaClasfMajor {
+		private Long iAreaId, iClasfId, iMajorId;
+		private String iAreaAbbv, iClasfCode, iMajorCode;
+
+		AreaClasfMajor(Object[] o) {
+			iAreaId = (Long)o[1]; iAreaAbbv = (String)o[2];
+			iClasfId = (Long)o[3]; iClasfCode = (String)o[4];
+			iMajorId = (Long)o[5]; iMajorCode = (String)o[6];
+		}
+	}
+
+	protected static class StudentDemand {
+		private Long iStudentId;
+		private List<AreaClasfMajor> iAreaClasfMajors = new ArrayList<AreaClasfMajor>();
+		private Set<Long> iEnrolled = new HashSet<Long>();
+		private Set<Long> iRequested = new HashSet<Long>();
+		private Set<Long> iLastLike = new HashSet<Long>();
+		private boolean iHasLastLike = false;
+
+		StudentDemand(Long studentId) { iStudentId = studentId; }
+
+		/**
+		 * Matching academic area, classification, and major combinations (same semantics as the queries in the {@link CurriculaServlet}):
+		 * all combinations of the area when there are no majors, combinations with one of the majors,
+		 * or (multiple majors) combinations with the first major when the student has all the majors
+		 */
+		List<AreaClasfMajor> match(Long areaId, Collection<Long> majors, boolean multipleMajors) {
+			List<AreaClasfMajor> ret = new ArrayList<AreaClasfMajor>();
+			if (majors.isEmpty()) {
+				if (multipleMajors) return ret;
+				for (AreaClasfMajor acm: iAreaClasfMajors)
+					if (acm.iAreaId.equals(areaId)) ret.add(acm);
+			} else if (!multipleMajors || majors.size() == 1) {
+				for (AreaClasfMajor acm: iAreaClasfMajors)
+					if (acm.iAreaId.equals(areaId) && majors.contains(acm.iMajorId)) ret.add(acm);
+			} else {
+				Long first = majors.iterator().next();
+				for (Long major: majors)
+					if (getMajorCode(areaId, major) == null) return ret;
+				for (AreaClasfMajor acm: iAreaClasfMajors)
+					if (acm.iAreaId.equals(areaId) && first.equals(acm.iMajorId)) ret.add(acm);
+			}
+			return ret;
+		}
+
+		String getMajorCode(Long areaId, Long majorId) {
+			for (AreaClasfMajor acm: iAreaClasfMajors)
+				if (acm.iAreaId.equals(areaId) && majorId.equals(acm.iMajorId)) return acm.iMajorCode;
+			return null;
+		}
+	}
+
+	public static class SessionCube {
+		private Long iSessionId;
+		private long iCreated = 0;
+		private volatile long iUsed = 0;
+		private volatile boolean iInvalid = true;
+		private Set<Long> iDirty = Collections.newSetFromMap(new ConcurrentHashMap<Long, Boolean>());
+		private Map<Long, StudentDemand> iStudents = new HashMap<Long, StudentDemand>();
+		private Map<Long, String> iCourseNames = new HashMap<Long, String>();
+
+		SessionCube(Long sessionId) {
+			iSessionId = sessionId;
+		}
+
+		synchronized void update(org.hibernate.Session hibSession, long ttl) {
+			if (iInvalid || (ttl > 0 && System.currentTimeMillis() - iCreated > ttl)) {
+				long t0 = System.currentTimeMillis();
+				iInvalid = false;
+				iDirty.clear();
+				iCreated = t0;
+				iStudents.clear();
+				iCourseNames.clear();
+				load(hibSession, null);
+				sLog.debug("Loaded demands of " + iStudents.size() + " students (took " + (System.currentTimeMillis() - t0) + " ms).");
+			} else if (!iDirty.isEmpty()) {
+				long t0 = System.currentTimeMillis();
+				List<Long> studentIds = new ArrayList<Long>(iDirty);
+				iDirty.removeAll(studentIds);
+				for (Long studentId: studentIds)
+					iStudents.remove(studentId);
+				for (int i = 0; i < studentIds.size(); i += 1000)
+					load(hibSession, studentIds.subList(i, Math.min(i + 1000, studentIds.size())));
+				sLog.debug("Updated demands of " + studentIds.size() + " students (took " + (System.currentTimeMillis() - t0) + " ms).");
+			}
+		}
+
+		private org.hibernate.Query query(org.hibernate.Session hibSession, String query, Collection<Long> studentIds) {
+			org.hibernate.Query q = hibSession.createQuery(studentIds == null ? query : query + " and s.uniqueId in :studentIds")
+					.setLong("sessionId", iSessionId);
+			if (studentIds != null) q.setParameterList("studentIds", studentIds);
+			return q;
+		}
+
+		private StudentDemand getStudent(Long studentId) {
+			StudentDemand student = iStudents.get(studentId);
+			if (student == null) {
+				student = new StudentDemand(studentId);
+				iStudents.put(studentId, student);
+			}
+			return student;
+		}
+
+		private void load(org.hibernate.Session hibSession, Collection<Long> studentIds) {
+			for (Object[] o: (List<Object[]>)query(hibSession,
+					"select s.uniqueId, a.academicArea.uniqueId, a.academicArea.academicAreaAbbreviation, a.academicClassification.uniqueId, a.academicClassification.code, " +
+					"a.major.uniqueId, a.major.code from Student s inner join s.areaClasfMajors a where s.session.uniqueId = :sessionId", studentIds).list()) {
+				getStudent((Long)o[0]).iAreaClasfMajors.add(new AreaClasfMajor(o));
+			}
+			for (Object[] o: (List<Object[]>)query(hibSession,
+					"select distinct s.uniqueId, co.uniqueId, co.subjectArea.subjectAreaAbbreviation || ' ' || co.courseNbr " +
+					"from StudentClassEnrollment e inner join e.student s inner join e.courseOffering co where s.session.uniqueId = :sessionId", studentIds).list()) {
+				StudentDemand student = iStudents.get((Long)o[0]);
+				if (student == null) continue;
+				student.iEnrolled.add((Long)o[1]);
+				iCourseNames.put((Long)o[1], (String)o[2]);
+			}
+			for (Object[] o: (List<Object[]>)query(hibSession,
+					"select distinct s.uniqueId, co.uniqueId, co.subjectArea.subjectAreaAbbreviation || ' ' || co.courseNbr " +
+					"from CourseRequest r inner join r.courseDemand.student s inner join r.courseOffering co where s.session.uniqueId = :sessionId", studentIds).list()) {
+				StudentDemand student = iStudents.get((Long)o[0]);
+				if (student == null) continue;
+				student.iRequested.add((Long)o[1]);
+				iCourseNames.put((Long)o[1], (String)o[2]);
+			}
+			for (Long studentId: (List<Long>)query(hibSession,
+					"select distinct s.uniqueId from LastLikeCourseDemand x inner join x.student s where x.subjectArea.session.uniqueId = :sessionId", studentIds).list()) {
+				StudentDemand student = iStudents.get(studentId);
+				if (student != null) student.iHasLastLike = true;
+			}
+			for (String check: sLastLikeChecks) {
+				for (Object[] o: (List<Object[]>)query(hibSession,
+						"select distinct s.uniqueId, co.uniqueId, co.subjectArea.subjectAreaAbbreviation || ' ' || co.courseNbr " +
+						"from LastLikeCourseDemand x inner join x.student s, CourseOffering co where " +
+						"x.subjectArea.session.uniqueId = :sessionId and co.subjectArea.session.uniqueId = :sessionId and " + check, studentIds).list()) {
+					StudentDemand student = iStudents.get((Long)o[0]);
+					if (student == null) continue;
+					student.iLastLike.add((Long)o[1]);
+					iCourseNames.put((Long)o[1], (String)o[2]);
+				}
+			}
+		}
+
+		private CourseInterface getCourse(Long courseId) {
+			CourseInterface course = new CourseInterface();
+			course.setId(courseId);
+			course.setCourseName(iCourseNames.get(courseId));
+			return course;
+		}
+
+		private static <K, V> V get(Map<K, V> map, K key, V empty) {
+			V value = map.get(key);
+			if (value == null) {
+				value = empty;
+				map.put(key, value);
+			}
+			return value;
+		}
+
+		/** classification id &rarr; enrolled students */
+		public synchronized Hashtable<Long, Set<Long>> getClasf2enrl(Long areaId, Collection<Long> majors, boolean multipleMajors) {
+			Hashtable<Long, Set<Long>> ret = new Hashtable<Long, Set<Long>>();
+			for (StudentDemand s: iStudents.values()) {
+				if (s.iEnrolled.isEmpty()) continue;
+				for (AreaClasfMajor acm: s.match(areaId, majors, multipleMajors))
+					get(ret, acm.iClasfId, new HashSet<Long>()).add(s.iStudentId);
+			}
+			return ret;
+		}
+
+		/** classification id &rarr; students with a course request */
+		public synchronized Hashtable<Long, Set<Long>> getClasf2req(Long areaId, Collection<Long> majors, boolean multipleMajors) {
+			Hashtable<Long, Set<Long>> ret = new Hashtable<Long, Set<Long>>();
+			for (StudentDemand s: iStudents.values()) {
+				if (s.iRequested.isEmpty()) continue;
+				for (AreaClasfMajor acm: s.match(areaId, majors, multipleMajors))
+					get(ret, acm.iClasfId, new HashSet<Long>()).add(s.iStudentId);
+			}
+			return ret;
+		}
+
+		/** classification id &rarr; course &rarr; enrolled students */
+		public synchronized Hashtable<Long, Hashtable<CourseInterface, Set<Long>>> getClasfCourse2enrl(Long areaId, Collection<Long> majors, boolean multipleMajors) {
+			return clasfCourse2students(areaId, majors, multipleMajors, true);
+		}
+
+		/** classification id &rarr; course &rarr; students that requested the course */
+		public synchronized Hashtable<Long, Hashtable<CourseInterface, Set<Long>>> getClasfCourse2req(Long areaId, Collection<Long> majors, boolean multipleMajors) {
+			return clasfCourse2students(areaId, majors, multipleMajors, false);
+		}
+
+		private Hashtable<Long, Hashtable<CourseInterface, Set<Long>>> clasfCourse2students(Long areaId, Collection<Long> majors, boolean multipleMajors, boolean enrolled) {
+			Hashtable<Long, Hashtable<CourseInterface, Set<Long>>> ret = new Hashtable<Long, Hashtable<CourseInterface, Set<Long>>>();
+			Map<Long, CourseInterface> courses = new HashMap<Long, CourseInterface>();
+			for (StudentDemand s: iStudents.values()) {
+				Set<Long> courseIds = (enrolled ? s.iEnrolled : s.iRequested);
+				if (courseIds.isEmpty()) continue;
+				for (AreaClasfMajor acm: s.match(areaId, majors, multipleMajors)) {
+					Hashtable<CourseInterface, Set<Long>> course2students = get(ret, acm.iClasfId, new Hashtable<CourseInterface, Set<Long>>());
+					for (Long courseId: courseIds) {
+						CourseInterface course = courses.get(courseId);
+						if (course == null) { course = getCourse(courseId); courses.put(courseId, course); }
+						get(course2students, course, new HashSet<Long>()).add(s.iStudentId);
+					}
+				}
+			}
+			return ret;
+		}
+
+		/** classification code &rarr; major code (empty when no or multiple majors are given) &rarr; last-like students */
+		public synchronized Hashtable<String, HashMap<String, Set<Long>>> getClasfMajor2ll(Long areaId, Collection<Long> majors, boolean multipleMajors) {
+			Hashtable<String, HashMap<String, Set<Long>>> ret = new Hashtable<String, HashMap<String, Set<Long>>>();
+			boolean noMajor = (majors.isEmpty() || (multipleMajors && majors.size() > 1));
+			for (StudentDemand s: iStudents.values()) {
+				if (!s.iHasLastLike) continue;
+				for (AreaClasfMajor acm: s.match(areaId, majors, multipleMajors))
+					get(get(ret, acm.iClasfCode, new HashMap<String, Set<Long>>()), noMajor ? "" : acm.iMajorCode, new HashSet<Long>()).add(s.iStudentId);
+			}
+			return ret;
+		}
+
+		/**
+		 * Classification code &rarr; course &rarr; major code &rarr; last-like students
+		 * @param splitMultipleMajors when multiple majors are given, record the students under each of the majors (instead of under an empty major code)
+		 */
+		public synchronized Hashtable<String, Hashtable<CourseInterface, HashMap<String, Set<Long>>>> getClasfCourseMajor2ll(Long areaId, Collection<Long> majors, boolean multipleMajors, boolean splitMultipleMajors) {
+			Hashtable<String, Hashtable<CourseInterface, HashMap<String, Set<Long>>>> ret = new Hashtable<String, Hashtable<CourseInterface, HashMap<String, Set<Long>>>>();
+			Map<Long, CourseInterface> courses = new HashMap<Long, CourseInterface>();
+			boolean multi = (multipleMajors && majors.size() > 1);
+			for (StudentDemand s: iStudents.values()) {
+				if (s.iLastLike.isEmpty()) continue;
+				List<String> majorCodes = new ArrayList<String>();
+				if (multi && splitMultipleMajors)
+					for (Long major: majors) majorCodes.add(s.getMajorCode(areaId, major));
+				for (AreaClasfMajor acm: s.match(areaId, majors, multipleMajors)) {
+					Hashtable<CourseInterface, HashMap<String, Set<Long>>> course2ll = get(ret, acm.iClasfCode, new Hashtable<CourseInterface, HashMap<String, Set<Long>>>());
+					for (Long courseId: s.iLastLike) {
+						CourseInterface course = courses.get(courseId);
+						if (course == null) { course = getCourse(courseId); courses.put(courseId, course); }
+						HashMap<String, Set<Long>> major2ll = get(course2ll, course, new HashMap<String, Set<Long>>());
+						if (multi && splitMultipleMajors) {
+							for (String majorCode: majorCodes)
+								get(major2ll, majorCode, new HashSet<Long>()).add(s.iStudentId);
+						} else {
+							get(major2ll, majors.isEmpty() || multi ? "" : acm.iMajorCode, new HashSet<Long>()).add(s.iStudentId);
+						}
+					}
+				}
+			}
+			return ret;
+		}
+
+		/** academic area abbreviation &rarr; major code &rarr; classification code &rarr; number of last-like students */
+		public synchronized Hashtable<String, Hashtable<String, Hashtable<String, Integer>>> getAreaMajorClasf2llCounts() {
+			Map<String, Map<String, Map<String, Set<Long>>>> students = new HashMap<String, Map<String, Map<String, Set<Long>>>>();
+			for (StudentDemand s: iStudents.values()) {
+				if (!s.iHasLastLike) continue;
+				for (AreaClasfMajor acm: s.iAreaClasfMajors)
+					get(get(get(students, acm.iAreaAbbv, new HashMap<String, Map<String, Set<Long>>>()), acm.iMajorCode, new HashMap<String, Set<Long>>()), acm.iClasfCode, new HashSet<Long>()).add(s.iStudentId);
+			}
+			Hashtable<String, Hashtable<String, Hashtable<String, Integer>>> ret = new Hashtable<String, Hashtable<String, Hashtable<String, Integer>>>();
+			for (Map.Entry<String, Map<String, Map<String, Set<Long>>>> a: students.entrySet())
+				for (Map.Entry<String, Map<String, Set<Long>>> m: a.getValue().entrySet())
+					for (Map.Entry<String, Set<Long>> f: m.getValue().entrySet())
+						get(get(ret, a.getKey(), new Hashtable<String, Hashtable<String, Integer>>()), m.getKey(), new Hashtable<String, Integer>()).put(f.getKey(), f.getValue().size());
+			return ret;
+		}
+
+		/** course id &rarr; academic area abbreviation &rarr; major code &rarr; classification code &rarr; last-like students */
+		public synchronized Map<Long, Map<String, Map<String, Map<String, Set<Long>>>>> getCourseAreaMajorClasf2ll() {
+			Map<Long, Map<String, Map<String, Map<String, Set<Long>>>>> ret = new HashMap<Long, Map<String, Map<String, Map<String, Set<Long>>>>>();
+			for (StudentDemand s: iStudents.values()) {
+				for (Long courseId: s.iLastLike) {
+					Map<String, Map<String, Map<String, Set<Long>>>> area2major2clasf2ll = get(ret, courseId, new HashMap<String, Map<String, Map<String, Set<Long>>>>());
+					for (AreaClasfMajor acm: s.iAreaClasfMajors)
+						get(get(get(area2major2clasf2ll, acm.iAreaAbbv, new HashMap<String, Map<String, Set<Long>>>()), acm.iMajorCode, new HashMap<String, Set<Long>>()), acm.iClasfCode, new HashSet<Long>()).add(s.iStudentId);
+				}
+			}
+			return ret;
+		}
+
+		/** academic area abbreviation &rarr; major code &rarr; classification code &rarr; last-like students of the given course */
+		public synchronized Map<String, Map<String, Map<String, Set<Long>>>> getAreaMajorClasf2ll(Long courseOfferingId) {
+			Map<String, Map<String, Map<String, Set<Long>>>> ret = new HashMap<String, Map<String, Map<String, Set<Long>>>>();
+			for (StudentDemand s: iStudents.values()) {
+				if (!s.iLastLike.contains(courseOfferingId)) continue;
+				for (AreaClasfMajor acm: s.iAreaClasfMajors)
+					get(get(get(ret, acm.iAreaAbbv, new HashMap<String, Map<String, Set<Long>>>()), acm.iMajorCode, new HashMap<String, Set<Long>>()), acm.iClasfCode, new HashSet<Long>()).add(s.iStudentId);
+			}
+			return ret;
+		}
+
+		/** academic area id &rarr; major id &rarr; classification id &rarr; students enrolled in the given course */
+		public synchronized Map<Long, Map<Long, Map<Long, Set<Long>>>> getAreaMajorClasf2enrl(Long courseOfferingId) {
+			return areaMajorClasf2students(courseOfferingId, true);
+		}
+
+		/** academic area id &rarr; major id &rarr; classification id &rarr; students that requested the given course */
+		public synchronized Map<Long, Map<Long, Map<Long, Set<Long>>>> getAreaMajorClasf2req(Long courseOfferingId) {
+			return areaMajorClasf2students(courseOfferingId, false);
+		}
+
+		private Map<Long, Map<Long, Map<Long, Set<Long>>>> areaMajorClasf2students(Long courseOfferingId, boolean enrolled) {
+			Map<Long, Map<Long, Map<Long, Set<Long>>>> ret = new HashMap<Long, Map<Long, Map<Long, Set<Long>>>>();
+			for (StudentDemand s: iStudents.values()) {
+				if (!(enrolled ? s.iEnrolled : s.iRequested).contains(courseOfferingId)) continue;
+				for (AreaClasfMajor acm: s.iAreaClasfMajors)
+					get(get(get(ret, acm.iAreaId, new HashMap<Long, Map<Long, Set<Long>>>()), acm.iMajorId, new HashMap<Long, Set<Long>>()), acm.iClasfId, new HashSet<Long>()).add(s.iStudentId);
+			}
+			return ret;
+		}
+
+		/** Number of students in the given map (e.g., classification &rarr; students to classification &rarr; count) */
+		public static <K> Hashtable<K, Integer> count(Map<K, ? extends Collection<Long>> students) {
+			Hashtable<K, Integer> ret = new Hashtable<K, Integer>();
+			for (Map.Entry<K, ? extends Collection<Long>> e: students.entrySet())
+				ret.put(e.getKey(), e.getValue().size());
+			return ret;
+		}
+
+		/** Same as {@link #count(Map)}, for a map of maps */
+		public static <K, L> Hashtable<K, Hashtable<L, Integer>> count2(Map<K, ? extends Map<L, ? extends Collection<Long>>> students) {
+			Hashtable<K, Hashtable<L, Integer>> ret = new Hashtable<K, Hashtable<L, Integer>>();
+			for (Map.Entry<K, ? extends Map<L, ? extends Collection<Long>>> e: students.entrySet())
+				ret.put(e.getKey(), count(e.getValue()));
+			return ret;
+		}
+
+		public synchronized int size() { return iStudents.size(); }
+
+		@Override
+		public String toString() {
+			return "SessionCube{session=" + iSessionId + ", students=" + iStudents.size() + ", courses=" + iCourseNames.size() + ", dirty=" + iDirty.size() + "}";
+		}
+	}
+}
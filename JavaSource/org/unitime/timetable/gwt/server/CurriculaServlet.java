@@ -1486,17 +1486,19 @@ public class CurriculaServlet implements CurriculaService {
 					posMajors.add(PosMajorDAO.getInstance().get(majorId,hibSession));
 				}
 				
-				Hashtable<Long, Set<Long>> clasf2enrl = loadClasf2enrl(hibSession, acadAreaId, majors, multipleMajors);
+				CurriculaDemandCube.SessionCube cube = (CurriculaDemandCube.isEnabled() ? CurriculaDemandCube.getInstance().getCube(hibSession, getAcademicSessionId()) : null);
 				
-				Hashtable<Long, Set<Long>> clasf2req = loadClasf2req(hibSession, acadAreaId, majors, multipleMajors);
+				Hashtable<Long, Set<Long>> clasf2enrl = (cube != null ? cube.getClasf2enrl(acadAreaId, majors, multipleMajors) : loadClasf2enrl(hibSession, acadAreaId, majors, multipleMajors));
+				
+				Hashtable<Long, Set<Long>> clasf2req = (cube != null ? cube.getClasf2req(acadAreaId, majors, multipleMajors) : loadClasf2req(hibSession, acadAreaId, majors, multipleMajors));
 
-				Hashtable<Long, Hashtable<CourseInterface, Set<Long>>> clasf2course2enrl = loadClasfCourse2enrl(hibSession, acadAreaId, majors, multipleMajors);
+				Hashtable<Long, Hashtable<CourseInterface, Set<Long>>> clasf2course2enrl = (cube != null ? cube.getClasfCourse2enrl(acadAreaId, majors, multipleMajors) : loadClasfCourse2enrl(hibSession, acadAreaId, majors, multipleMajors));
 				
-				Hashtable<Long, Hashtable<CourseInterface, Set<Long>>> clasf2course2req = loadClasfCourse2req(hibSession, acadAreaId, majors, multipleMajors);
+				Hashtable<Long, Hashtable<CourseInterface, Set<Long>>> clasf2course2req = (cube != null ? cube.getClasfCourse2req(acadAreaId, majors, multipleMajors) : loadClasfCourse2req(hibSession, acadAreaId, majors, multipleMajors));
 				
-				Hashtable<String, HashMap<String, Set<Long>>> clasf2ll = loadClasfMajor2ll(hibSession, acadArea.getAcademicAreaAbbreviation(), posMajors, multipleMajors);
+				Hashtable<String, HashMap<String, Set<Long>>> clasf2ll = (cube != null ? cube.getClasfMajor2ll(acadAreaId, majors, multipleMajors) : loadClasfMajor2ll(hibSession, acadArea.getAcademicAreaAbbreviation(), posMajors, multipleMajors));
 				
-				Hashtable<String, Hashtable<CourseInterface, HashMap<String, Set<Long>>>> clasf2course2ll = loadClasfCourseMajor2ll(hibSession, acadArea.getAcademicAreaAbbreviation(), posMajors, multipleMajors);
+				Hashtable<String, Hashtable<CourseInterface, HashMap<String, Set<Long>>>> clasf2course2ll = (cube != null ? cube.getClasfCourseMajor2ll(acadAreaId, majors, multipleMajors, true) : loadClasfCourseMajor2ll(hibSession, acadArea.getAcademicAreaAbbreviation(), posMajors, multipleMajors));
 				
 				for (AcademicClassificationInterface clasf: classifications) {
 					
@@ -3502,7 +3504,27 @@ public class CurriculaServlet implements CurriculaService {
 				.setCacheable(true).list();
 	}
 	
+	private static List<Long> getMajorIds(Curriculum c) {
+		List<Long> majorIds = new ArrayList<Long>();
+		for (PosMajor major: c.getMajors())
+			majorIds.add(major.getUniqueId());
+		return majorIds;
+	}
+	
+	private static Hashtable<Long, Hashtable<Long, Integer>> countCourses(Hashtable<Long, Hashtable<CourseInterface, Set<Long>>> clasf2course2students) {
+		Hashtable<Long, Hashtable<Long, Integer>> clasf2course2count = new Hashtable<Long, Hashtable<Long, Integer>>();
+		for (Map.Entry<Long, Hashtable<CourseInterface, Set<Long>>> e: clasf2course2students.entrySet()) {
+			Hashtable<Long, Integer> course2count = new Hashtable<Long, Integer>();
+			for (Map.Entry<CourseInterface, Set<Long>> f: e.getValue().entrySet())
+				course2count.put(f.getKey().getId(), f.getValue().size());
+			clasf2course2count.put(e.getKey(), course2count);
+		}
+		return clasf2course2count;
+	}
+	
 	private Hashtable<Long, Integer> loadClasf2enrl(org.hibernate.Session hibSession, Curriculum c) {
+		if (CurriculaDemandCube.isEnabled())
+			return CurriculaDemandCube.SessionCube.count(CurriculaDemandCube.getInstance().getCube(hibSession, c.getAcademicArea().getSessionId()).getClasf2enrl(c.getAcademicArea().getUniqueId(), getMajorIds(c), c.isMultipleMajors()));
 		List<Object[]> lines = null;
 		String select = "a.academicClassification.uniqueId, count(distinct s)";
 		String from = "StudentClassEnrollment e inner join e.student s inner join s.areaClasfMajors a";
@@ -3607,6 +3629,8 @@ public class CurriculaServlet implements CurriculaService {
 	}
 	
 	private Hashtable<String, Hashtable<String, Integer>> loadClasfMajor2ll(org.hibernate.Session hibSession, Curriculum c) {
+		if (CurriculaDemandCube.isEnabled())
+			return CurriculaDemandCube.SessionCube.count2(CurriculaDemandCube.getInstance().getCube(hibSession, c.getAcademicArea().getSessionId()).getClasfMajor2ll(c.getAcademicArea().getUniqueId(), getMajorIds(c), c.isMultipleMajors()));
 		List<Object[]> lines = null;
 		String select = "f.code, m.code, count(distinct s)";
 		String from = "LastLikeCourseDemand x inner join x.student s inner join s.areaClasfMajors a inner join a.academicClassification f inner join a.major m";
@@ -3671,6 +3695,15 @@ public class CurriculaServlet implements CurriculaService {
 	}
 	
 	private Hashtable<String, Integer> loadClasf2ll(org.hibernate.Session hibSession, Curriculum c) {
+		if (CurriculaDemandCube.isEnabled()) {
+			Hashtable<String, Integer> clasf2ll = new Hashtable<String, Integer>();
+			for (Map.Entry<String, HashMap<String, Set<Long>>> e: CurriculaDemandCube.getInstance().getCube(hibSession, c.getAcademicArea().getSessionId()).getClasfMajor2ll(c.getAcademicArea().getUniqueId(), getMajorIds(c), c.isMultipleMajors()).entrySet()) {
+				Set<Long> students = new HashSet<Long>();
+				for (Set<Long> s: e.getValue().values()) students.addAll(s);
+				clasf2ll.put(e.getKey(), students.size());
+			}
+			return clasf2ll;
+		}
 		List<Object[]> lines = null;
 		String select = "f.code, count(distinct s)";
 		String from = "LastLikeCourseDemand x inner join x.student s inner join s.areaClasfMajors a inner join a.academicClassification f";
@@ -3789,6 +3822,8 @@ public class CurriculaServlet implements CurriculaService {
 	}
 	
 	private Hashtable<Long, Hashtable<Long, Integer>> loadClasfCourse2enrl(org.hibernate.Session hibSession, Curriculum c) {
+		if (CurriculaDemandCube.isEnabled())
+			return countCourses(CurriculaDemandCube.getInstance().getCube(hibSession, c.getAcademicArea().getSessionId()).getClasfCourse2enrl(c.getAcademicArea().getUniqueId(), getMajorIds(c), c.isMultipleMajors()));
 		List<Object[]> lines = null;
 		String select = "a.academicClassification.uniqueId, e.courseOffering.uniqueId, count(distinct s)";
 		String from = "StudentClassEnrollment e inner join e.student s inner join s.areaClasfMajors a inner join a.major m";
@@ -3911,6 +3946,23 @@ public class CurriculaServlet implements CurriculaService {
 	}
 	
 	private Hashtable<String, Hashtable<String, Hashtable<Long, Integer>>> loadClasfMajorCourse2ll(org.hibernate.Session hibSession, Curriculum c) {
+		if (CurriculaDemandCube.isEnabled()) {
+			Hashtable<String, Hashtable<String, Hashtable<Long, Integer>>> clasfMajor2course2ll = new Hashtable<String, Hashtable<String, Hashtable<Long,Integer>>>();
+			for (Map.Entry<String, Hashtable<CourseInterface, HashMap<String, Set<Long>>>> e: CurriculaDemandCube.getInstance().getCube(hibSession, c.getAcademicArea().getSessionId()).getClasfCourseMajor2ll(c.getAcademicArea().getUniqueId(), getMajorIds(c), c.isMultipleMajors(), false).entrySet()) {
+				Hashtable<String, Hashtable<Long, Integer>> major2course2ll = new Hashtable<String, Hashtable<Long,Integer>>();
+				clasfMajor2course2ll.put(e.getKey(), major2course2ll);
+				for (Map.Entry<CourseInterface, HashMap<String, Set<Long>>> f: e.getValue().entrySet())
+					for (Map.Entry<String, Set<Long>> g: f.getValue().entrySet()) {
+						Hashtable<Long, Integer> course2ll = major2course2ll.get(g.getKey());
+						if (course2ll == null) {
+							course2ll = new Hashtable<Long, Integer>();
+							major2course2ll.put(g.getKey(), course2ll);
+						}
+						course2ll.put(f.getKey().getId(), g.getValue().size());
+					}
+			}
+			return clasfMajor2course2ll;
+		}
 		String select = "f.code, m.code, co.uniqueId, count(distinct s)";
 		String from = "CourseOffering co, LastLikeCourseDemand x inner join x.student s inner join s.areaClasfMajors a inner join a.academicClassification f inner join a.major m";
 		String[] checks = new String[] {
@@ -4082,6 +4134,8 @@ public class CurriculaServlet implements CurriculaService {
 	}
 	
 	private Map<Long, Map<Long, Map<Long, Set<Long>>>> loadAreaMajorClasf2enrl(org.hibernate.Session hibSession, Long courseOfferingId) {
+		if (CurriculaDemandCube.isEnabled())
+			return CurriculaDemandCube.getInstance().getCube(hibSession, getAcademicSessionId()).getAreaMajorClasf2enrl(courseOfferingId);
 		Map<Long, Map<Long, Map<Long, Set<Long>>>> area2major2clasf2enrl = new HashMap<Long, Map<Long, Map<Long, Set<Long>>>>();
 		for (Object[] o : (List<Object[]>)hibSession.createQuery(
 				"select distinct a.academicArea.uniqueId, m.uniqueId, a.academicClassification.uniqueId, e.student.uniqueId " +
@@ -4115,6 +4169,8 @@ public class CurriculaServlet implements CurriculaService {
 	}
 	
 	private Map<String, Map<String, Map<String, Set<Long>>>> loadAreaMajorClasf2ll(org.hibernate.Session hibSession, Long courseOfferingId) {
+		if (CurriculaDemandCube.isEnabled())
+			return CurriculaDemandCube.getInstance().getCube(hibSession, getAcademicSessionId()).getAreaMajorClasf2ll(courseOfferingId);
 		Map<String, Map<String, Map<String, Set<Long>>>> area2major2clasf2ll = new HashMap<String, Map<String, Map<String, Set<Long>>>>();
 		String[] checks = new String[] {
 				"x.subjectArea.session.uniqueId = :sessionId and co.uniqueId = :courseId and co.subjectArea.uniqueId = x.subjectArea.uniqueId and x.coursePermId is not null and co.permId=x.coursePermId",
@@ -4157,6 +4213,8 @@ public class CurriculaServlet implements CurriculaService {
 	}
 	
 	private Hashtable<String, Hashtable<String, Hashtable<String, Integer>>> loadAreaMajorClasf2ll(org.hibernate.Session hibSession) {
+		if (CurriculaDemandCube.isEnabled())
+			return CurriculaDemandCube.getInstance().getCube(hibSession, getAcademicSessionId()).getAreaMajorClasf2llCounts();
 		Hashtable<String, Hashtable<String, Hashtable<String, Integer>>> area2major2clasf2ll = new Hashtable<String, Hashtable<String,Hashtable<String,Integer>>>();
 		for (Object[] o : (List<Object[]>)hibSession.createQuery(
 				"select a.academicAreaAbbreviation, m.code, f.code, count(distinct s) from LastLikeCourseDemand x inner join x.student s " +
@@ -4185,6 +4243,8 @@ public class CurriculaServlet implements CurriculaService {
 	}
 	
 	private Map<Long, Map<String, Map<String, Map<String, Set<Long>>>>> loadCourseAreaMajorClasf2ll(org.hibernate.Session hibSession) {
+		if (CurriculaDemandCube.isEnabled())
+			return CurriculaDemandCube.getInstance().getCube(hibSession, getAcademicSessionId()).getCourseAreaMajorClasf2ll();
 		Map<Long, Map<String, Map<String, Map<String, Set<Long>>>>> course2area2major2clasf2ll = new HashMap<Long, Map<String, Map<String, Map<String, Set<Long>>>>>();
 		String[] checks = new String[] {
 				"x.subjectArea.session.uniqueId = :sessionId and co.subjectArea.session.uniqueId = :sessionId and co.subjectArea.uniqueId = x.subjectArea.uniqueId and x.coursePermId is not null and co.permId=x.coursePermId",
@@ -4232,6 +4292,8 @@ public class CurriculaServlet implements CurriculaService {
 	}
 	
 	private Hashtable<Long, Integer> loadClasf2req(org.hibernate.Session hibSession, Curriculum c) {
+		if (CurriculaDemandCube.isEnabled())
+			return CurriculaDemandCube.SessionCube.count(CurriculaDemandCube.getInstance().getCube(hibSession, c.getAcademicArea().getSessionId()).getClasf2req(c.getAcademicArea().getUniqueId(), getMajorIds(c), c.isMultipleMajors()));
 		List<Object[]> lines = null;
 		String select = "a.academicClassification.uniqueId, count(distinct s)";
 		String from = "CourseRequest r inner join r.courseDemand.student s inner join s.areaClasfMajors a inner join a.major m";
@@ -4336,6 +4398,8 @@ public class CurriculaServlet implements CurriculaService {
 	}
 	
 	private Hashtable<Long, Hashtable<Long, Integer>> loadClasfCourse2req(org.hibernate.Session hibSession, Curriculum c) {
+		if (CurriculaDemandCube.isEnabled())
+			return countCourses(CurriculaDemandCube.getInstance().getCube(hibSession, c.getAcademicArea().getSessionId()).getClasfCourse2req(c.getAcademicArea().getUniqueId(), getMajorIds(c), c.isMultipleMajors()));
 		List<Object[]> lines = null;
 		String select = "a.academicClassification.uniqueId, r.courseOffering.uniqueId, count(distinct s)";
 		String from = "CourseRequest r inner join r.courseDemand.student s inner join s.areaClasfMajors a inner join a.major m";
@@ -4457,6 +4521,8 @@ public class CurriculaServlet implements CurriculaService {
 	}
 	
 	private Map<Long, Map<Long, Map<Long, Set<Long>>>> loadAreaMajorClasf2req(org.hibernate.Session hibSession, Long courseOfferingId) {
+		if (CurriculaDemandCube.isEnabled())
+			return CurriculaDemandCube.getInstance().getCube(hibSession, getAcademicSessionId()).getAreaMajorClasf2req(courseOfferingId);
 		Map<Long, Map<Long, Map<Long, Set<Long>>>> area2major2clasf2enrl = new HashMap<Long, Map<Long, Map<Long, Set<Long>>>>();
 		for (Object[] o : (List<Object[]>)hibSession.createQuery(
 				"select distinct a.academicArea.uniqueId, m.uniqueId, a.academicClassification.uniqueId, s.uniqueId " +
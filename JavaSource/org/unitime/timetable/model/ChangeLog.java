@@ -31,6 +31,7 @@ import org.unitime.timetable.model.base.BaseChangeLog;
 import org.unitime.timetable.model.dao.ChangeLogDAO;
 import org.unitime.timetable.model.dao.SessionDAO;
 import org.unitime.timetable.security.SessionContext;
+import org.unitime.timetable.security.evaluation.PermissionCache;
 import org.unitime.timetable.util.Formats;
 
 
@@ -165,6 +166,8 @@ public class ChangeLog extends BaseChangeLog implements Comparable {
             Operation operation,
             SubjectArea subjArea,
             Department dept) {
+    	// the request has changed some data, permission decisions made so far may no longer apply
+    	PermissionCache.clear();
         try {
         	if (!context.isAuthenticated()) {
         		Debug.warning("Unable to add change log -- no user.");
@@ -221,6 +224,7 @@ public class ChangeLog extends BaseChangeLog implements Comparable {
             Operation operation,
             SubjectArea subjArea,
             Department dept) {
+    	PermissionCache.clear();
         try {
             if (session==null) {
                 Debug.warning("Unable to add change log -- no academic session.");
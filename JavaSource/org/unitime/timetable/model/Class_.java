@@ -44,6 +44,7 @@ import org.unitime.commons.Debug;
 import org.unitime.localization.impl.Localization;
 import org.unitime.localization.messages.CourseMessages;
 import org.unitime.timetable.defaults.ApplicationProperty;
+import org.unitime.timetable.events.EventLookupCache;
 import org.unitime.timetable.gwt.resources.GwtConstants;
 import org.unitime.timetable.interfaces.ExternalClassEditAction;
 import org.unitime.timetable.interfaces.ExternalClassNameHelperInterface;
@@ -1404,6 +1405,7 @@ public class Class_ extends BaseClass_ {
                     getManagingDept());
 
             if (tx!=null) tx.commit();
+            EventLookupCache.getInstance().invalidate(hibSession, getSession().getUniqueId());
             
             new _RootDAO().getSession().refresh(this);
             String className = ApplicationProperty.ExternalActionClassEdit.value();
@@ -1530,6 +1532,7 @@ public class Class_ extends BaseClass_ {
                     getManagingDept());
             
             if (tx!=null) tx.commit();
+            EventLookupCache.getInstance().invalidate(hibSession, getSession().getUniqueId());
             
             new _RootDAO().getSession().refresh(this);
             String className = ApplicationProperty.ExternalActionClassEdit.value();
@@ -33,6 +33,7 @@ import java.util.TreeSet;
 
 
 import org.cpsolver.ifs.util.ToolBox;
+import org.unitime.timetable.events.EventLookupCache;
 import org.unitime.timetable.model.base.BaseEvent;
 import org.unitime.timetable.model.dao.EventDAO;
 import org.unitime.timetable.util.Constants;
@@ -108,6 +109,7 @@ public abstract class Event extends BaseEvent implements Comparable<Event> {
             relatedCourse.setCourse(null);
             hibSession.delete(relatedCourse);
             hibSession.saveOrUpdate(event);
+            EventLookupCache.getInstance().eventChanged(hibSession, event.getSession() == null ? null : event.getSession().getUniqueId(), event);
         }
     }
     
@@ -39,6 +39,7 @@ import org.unitime.localization.impl.Localization;
 import org.unitime.localization.messages.ExaminationMessages;
 import org.unitime.timetable.ApplicationProperties;
 import org.unitime.timetable.defaults.ApplicationProperty;
+import org.unitime.timetable.events.EventLookupCache;
 import org.unitime.timetable.model.base.BaseExam;
 import org.unitime.timetable.model.dao.DepartmentalInstructorDAO;
 import org.unitime.timetable.model.dao.ExamDAO;
@@ -47,6 +48,7 @@ import org.unitime.timetable.model.dao.StudentDAO;
 import org.unitime.timetable.model.dao._RootDAO;
 import org.unitime.timetable.solver.exam.ui.ExamAssignment;
 import org.unitime.timetable.solver.exam.ui.ExamAssignmentInfo;
+import org.unitime.timetable.solver.exam.ui.ExamConflictGraph;
 import org.unitime.timetable.solver.exam.ui.ExamInfo;
 import org.unitime.timetable.solver.exam.ui.ExamRoomInfo;
 import org.unitime.timetable.util.Constants;
@@ -415,6 +417,8 @@ public class Exam extends BaseExam implements Comparable<Exam> {
             hibSession.delete(event);
             deleted = true;
         }
+        
+        ExamConflictGraph.invalidate(hibSession, getSession().getUniqueId(), getExamType().getUniqueId());
 
         if (deleted && updateExam)
             hibSession.saveOrUpdate(this);
@@ -428,6 +432,7 @@ public class Exam extends BaseExam implements Comparable<Exam> {
             ExamOwner owner = (ExamOwner)i.next();
             Exam exam = owner.getExam();
             exam.getOwners().remove(owner);
+            ExamConflictGraph.invalidate(hibSession, exam.getSession().getUniqueId(), exam.getExamType().getUniqueId());
             hibSession.delete(owner);
             if (exam.getOwners().isEmpty()) {
                 exam.deleteDependentObjects(hibSession, false);
@@ -848,7 +853,9 @@ public class Exam extends BaseExam implements Comparable<Exam> {
                     subject,
                     dept);
 
+            ExamConflictGraph.assignmentChanged(hibSession, this);
             tx.commit();
+            EventLookupCache.getInstance().invalidate(getSession().getUniqueId());
             return null;
         } catch (Exception e) {
             if (tx!=null) tx.rollback();
@@ -913,7 +920,9 @@ public class Exam extends BaseExam implements Comparable<Exam> {
                     subject,
                     dept);
 
+            ExamConflictGraph.assignmentChanged(hibSession, this);
             if (tx!=null) tx.commit();
+            EventLookupCache.getInstance().invalidate(getSession().getUniqueId());
             return null;
         } catch (Exception e) {
             if (tx!=null) tx.rollback();
@@ -51,6 +51,7 @@ import org.unitime.commons.Email;
 import org.unitime.localization.impl.Localization;
 import org.unitime.localization.messages.CourseMessages;
 import org.unitime.timetable.defaults.ApplicationProperty;
+import org.unitime.timetable.events.EventLookupCache;
 import org.unitime.timetable.form.ListSolutionsForm.InfoComparator;
 import org.unitime.timetable.gwt.resources.GwtConstants;
 import org.unitime.timetable.gwt.resources.GwtMessages;
@@ -192,6 +193,8 @@ public class Solution extends BaseSolution implements ClassAssignmentProxy {
 		// Manually fix the Clazz_.committedAssignment cache.
 		for (Assignment a: getAssignments())
 			a.getClazz().setCommittedAssignment(null);
+		
+		EventLookupCache.getInstance().invalidate(hibSession, getOwner().getSession().getUniqueId());
 	}
 	
 	public boolean commitSolution(Vector messages, org.hibernate.Session hibSession) {
@@ -428,6 +431,8 @@ public class Solution extends BaseSolution implements ClassAssignmentProxy {
 		// Manually fix the Clazz_.committedAssignment cache.
 		for (Assignment a: getAssignments())
 			a.getClazz().setCommittedAssignment(a);
+		
+		EventLookupCache.getInstance().invalidate(hibSession, getOwner().getSession().getUniqueId());
 
 		return true;
 	}
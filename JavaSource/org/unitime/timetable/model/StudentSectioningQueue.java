@@ -29,9 +29,13 @@ import java.util.TreeSet;
 import org.dom4j.Document;
 import org.dom4j.DocumentHelper;
 import org.dom4j.Element;
+import org.unitime.timetable.events.EventLookupCache;
+import org.unitime.timetable.gwt.server.CurriculaDemandCube;
 import org.unitime.timetable.model.base.BaseStudentSectioningQueue;
 import org.unitime.timetable.onlinesectioning.OnlineSectioningLog;
 import org.unitime.timetable.security.UserContext;
+import org.unitime.timetable.solver.exam.ui.ExamConflictGraph;
+import org.unitime.timetable.solver.jgroups.StudentSectioningQueueNotifier;
 
 /**
  * @author Tomas Muller
@@ -108,6 +112,7 @@ public class StudentSectioningQueue extends BaseStudentSectioningQueue implement
 		}
 		q.setMessage(d);
 		hibSession.save(q);
+		StudentSectioningQueueNotifier.queueChanged(hibSession, sessionId);
 	}
 	
 	protected static void addItem(org.hibernate.Session hibSession, UserContext user, Long sessionId, Type type, Long... ids) {
@@ -127,6 +132,7 @@ public class StudentSectioningQueue extends BaseStudentSectioningQueue implement
 		}
 		q.setMessage(d);
 		hibSession.save(q);
+		StudentSectioningQueueNotifier.queueChanged(hibSession, sessionId);
 	}
 	
 	public List<Long> getIds() {
@@ -162,10 +168,16 @@ public class StudentSectioningQueue extends BaseStudentSectioningQueue implement
 	
 	public static void allStudentsChanged(org.hibernate.Session hibSession, UserContext user, Long sessionId) {
 		addItem(hibSession, user, sessionId, Type.STUDENT_ENROLLMENT_CHANGE);
+		CurriculaDemandCube.getInstance().invalidate(hibSession, sessionId);
+		EventLookupCache.getInstance().studentsChanged(hibSession, sessionId);
+		ExamConflictGraph.invalidate(hibSession, sessionId, null);
 	}
 
 	public static void studentChanged(org.hibernate.Session hibSession, UserContext user, Long sessionId, Collection<Long> studentIds) {
 		addItem(hibSession, user, sessionId, Type.STUDENT_ENROLLMENT_CHANGE, studentIds);
+		CurriculaDemandCube.getInstance().studentsChanged(hibSession, sessionId, studentIds);
+		EventLookupCache.getInstance().studentsChanged(hibSession, sessionId, studentIds);
+		ExamConflictGraph.invalidate(hibSession, sessionId, null);
 	}
 	
 	public static void classAssignmentChanged(org.hibernate.Session hibSession, UserContext user, Long sessionId, Collection<Long> classIds) {
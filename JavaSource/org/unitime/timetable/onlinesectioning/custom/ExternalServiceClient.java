@@ -0,0 +1,297 @@
+/*
+ * Licensed to The Apereo Foundation under one or more contributor license
+ * agreements. See the NOTICE file distributed with this work for
+ * additional information regarding copyright ownership.
+ *
+ * The Apereo Foundation licenses this file to you under the Apache License,
+ * Version 2.0 (the "License"); you may not use this file except in
+ * compliance with the License. You may obtain a copy of the License at:
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ *
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ *
+*/
+package org.unitime.timetable.onlinesectioning.custom;
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.Semaphore;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
+
+import org.apache.log4j.Logger;
+import org.restlet.Client;
+import org.restlet.Context;
+import org.restlet.Request;
+import org.restlet.Response;
+import org.restlet.Restlet;
+import org.restlet.data.Method;
+import org.restlet.data.MediaType;
+import org.restlet.data.Protocol;
+import org.restlet.data.Status;
+import org.restlet.representation.StringRepresentation;
+import org.restlet.resource.ClientResource;
+import org.unitime.timetable.defaults.ApplicationProperty;
+
+/**
+ * Shared client for the calls of the external services (e.g., student information system, degree audit, or special registration),
+ * to be used by the custom {@link StudentEnrollmentProvider}, {@link CourseRequestsValidationProvider}, and the like instead of their own Restlet {@link Client}
+ * (using {@link ClientResource#setNext(org.restlet.Uniform)}).<br>
+ * There is one client for each endpoint (name of the external service), which is shared by all the providers calling the service. Each endpoint has its
+ * own timeouts, a limit on the number of concurrent calls (bulkhead), a circuit breaker that stops calling a failing service for a while, an optional
+ * cache of the responses of idempotent lookups (see {@link #cacheable(ClientResource)}), and latency statistics.
+ * The endpoint is configured using the unitime.custom.client.[endpoint].* application properties.
+ *
+ * @author Tomas Muller
+ */
+public class ExternalServiceClient extends Restlet {
+	private static Logger sLog = Logger.getLogger(ExternalServiceClient.class);
+	private static Map<String, ExternalServiceClient> sClients = new HashMap<String, ExternalServiceClient>();
+	public static final String CACHEABLE = "unitime.cacheable";
+	
+	private String iEndpoint;
+	private Client iClient;
+	private Semaphore iBulkhead = null;
+	private long iBulkheadWait;
+	
+	private int iFailureThreshold, iConsecutiveFailures = 0;
+	private long iOpenTime, iOpenUntil = 0;
+	private boolean iHalfOpenTrial = false;
+	
+	private long iCacheTimeToLive;
+	private Map<String, CachedResponse> iCache;
+	
+	private AtomicLong iCalls = new AtomicLong(0), iFailures = new AtomicLong(0), iRejected = new AtomicLong(0), iShortCircuited = new AtomicLong(0), iCacheHits = new AtomicLong(0);
+	private AtomicLong iTotalTime = new AtomicLong(0), iMaxTime = new AtomicLong(0);
+	
+	private ExternalServiceClient(String endpoint, String defaultReadTimeout) {
+		iEndpoint = endpoint;
+		List<Protocol> protocols = new ArrayList<Protocol>();
+		protocols.add(Protocol.HTTP);
+		protocols.add(Protocol.HTTPS);
+		iClient = new Client(protocols);
+		Context cx = new Context();
+		String readTimeout = ApplicationProperty.ExternalServiceReadTimeout.value(endpoint, defaultReadTimeout);
+		if (readTimeout != null && !readTimeout.isEmpty())
+			cx.getParameters().add("readTimeout", readTimeout);
+		String connectTimeout = ApplicationProperty.ExternalServiceConnectTimeout.value(endpoint);
+		if (connectTimeout != null && !connectTimeout.isEmpty())
+			cx.getParameters().add("socketConnectTimeoutMs", connectTimeout);
+		iClient.setContext(cx);
+		
+		int maxConcurrent = intValue(ApplicationProperty.ExternalServiceMaxConcurrent, 0);
+		if (maxConcurrent > 0) iBulkhead = new Semaphore(maxConcurrent, true);
+		iBulkheadWait = intValue(ApplicationProperty.ExternalServiceMaxWait, 1000);
+		iFailureThreshold = intValue(ApplicationProperty.ExternalServiceCircuitBreakerFailures, 0);
+		iOpenTime = 1000l * intValue(ApplicationProperty.ExternalServiceCircuitBreakerOpenTime, 30);
+		iCacheTimeToLive = 1000l * intValue(ApplicationProperty.ExternalServiceCacheTimeToLive, 0);
+		final int cacheSize = intValue(ApplicationProperty.ExternalServiceCacheSize, 1000);
+		iCache = new LinkedHashMap<String, CachedResponse>(16, 0.75f, true) {
+			private static final long serialVersionUID = 1L;
+			@Override
+			protected boolean removeEldestEntry(Map.Entry<String, CachedResponse> eldest) {
+				return size() > cacheSize;
+			}
+		};
+	}
+	
+	private int intValue(ApplicationProperty property, int defaultValue) {
+		Integer value = property.intValue(iEndpoint);
+		return (value == null ? defaultValue : value.intValue());
+	}
+	
+	/**
+	 * Shared client of the given endpoint
+	 * @param endpoint endpoint name (e.g., banner, specreg, or degreeworks)
+	 * @param defaultReadTimeout read timeout in milliseconds to be used when unitime.custom.client.[endpoint].readTimeout is not set (null for the default of 60 seconds)
+	 */
+	public static synchronized ExternalServiceClient getInstance(String endpoint, String defaultReadTimeout) {
+		ExternalServiceClient client = sClients.get(endpoint);
+		if (client == null) {
+			client = new ExternalServiceClient(endpoint, defaultReadTimeout);
+			sClients.put(endpoint, client);
+		}
+		return client;
+	}
+	
+	public static ExternalServiceClient getInstance(String endpoint) {
+		return getInstance(endpoint, null);
+	}
+	
+	/**
+	 * Statistics of all the endpoints that have been used so far
+	 */
+	public static synchronized List<String> getStatistics() {
+		List<String> ret = new ArrayList<String>();
+		for (ExternalServiceClient client: sClients.values())
+			ret.add(client.toString());
+		Collections.sort(ret);
+		return ret;
+	}
+	
+	/**
+	 * Stop the shared clients of all the endpoints (on shutdown). The providers using a shared client must not stop it in their dispose method.
+	 */
+	public static synchronized void stopAll() {
+		for (ExternalServiceClient client: sClients.values()) {
+			try {
+				client.iClient.stop();
+			} catch (Exception e) {
+				sLog.error("Failed to stop client " + client.getEndpoint() + ": " + e.getMessage(), e);
+			}
+		}
+		sClients.clear();
+	}
+	
+	/**
+	 * Mark the call as an idempotent lookup, whose response can be cached (when unitime.custom.client.[endpoint].cache.ttl is set)
+	 */
+	public static ClientResource cacheable(ClientResource resource) {
+		resource.getRequestAttributes().put(CACHEABLE, Boolean.TRUE);
+		return resource;
+	}
+	
+	public String getEndpoint() { return iEndpoint; }
+	
+	@Override
+	public void handle(Request request, Response response) {
+		super.handle(request, response);
+		
+		String cacheKey = null;
+		if (iCacheTimeToLive > 0 && Method.GET.equals(request.getMethod()) && Boolean.TRUE.equals(request.getAttributes().get(CACHEABLE))) {
+			cacheKey = request.getResourceRef().toString() + "|" + (request.getChallengeResponse() == null ? "" : request.getChallengeResponse().getIdentifier());
+			CachedResponse cached = null;
+			synchronized (iCache) {
+				cached = iCache.get(cacheKey);
+				if (cached != null && cached.isExpired(iCacheTimeToLive)) {
+					iCache.remove(cacheKey); cached = null;
+				}
+			}
+			if (cached != null) {
+				iCacheHits.incrementAndGet();
+				response.setStatus(Status.SUCCESS_OK);
+				response.setEntity(new StringRepresentation(cached.getText(), cached.getMediaType()));
+				return;
+			}
+		}
+		
+		// acquire the bulkhead first, so that a half open trial call (see allowRequest) is never claimed by a call that is then rejected
+		if (iBulkhead != null) {
+			boolean acquired = false;
+			try {
+				acquired = iBulkhead.tryAcquire(iBulkheadWait, TimeUnit.MILLISECONDS);
+			} catch (InterruptedException e) {
+				Thread.currentThread().interrupt();
+			}
+			if (!acquired) {
+				iRejected.incrementAndGet();
+				response.setStatus(Status.SERVER_ERROR_SERVICE_UNAVAILABLE, "Too many concurrent calls to " + iEndpoint + ", please try again later.");
+				return;
+			}
+		}
+		
+		if (!allowRequest()) {
+			if (iBulkhead != null) iBulkhead.release();
+			iShortCircuited.incrementAndGet();
+			response.setStatus(Status.SERVER_ERROR_SERVICE_UNAVAILABLE, "Service " + iEndpoint + " is not available at the moment, please try again later.");
+			return;
+		}
+		
+		long t0 = System.currentTimeMillis();
+		boolean failed = true;
+		try {
+			iClient.handle(request, response);
+			Status status = response.getStatus();
+			failed = (status == null || status.isConnectorError() || status.isServerError());
+			if (cacheKey != null && status != null && status.isSuccess() && response.isEntityAvailable()) {
+				MediaType mediaType = response.getEntity().getMediaType();
+				String text = response.getEntity().getText();
+				response.setEntity(new StringRepresentation(text, mediaType));
+				synchronized (iCache) {
+					iCache.put(cacheKey, new CachedResponse(text, mediaType));
+				}
+			}
+		} catch (Exception e) {
+			response.setStatus(Status.CONNECTOR_ERROR_INTERNAL, e, e.getMessage());
+		} finally {
+			if (iBulkhead != null) iBulkhead.release();
+			long time = System.currentTimeMillis() - t0;
+			iTotalTime.addAndGet(time);
+			long max = iMaxTime.get();
+			while (time > max && !iMaxTime.compareAndSet(max, time)) max = iMaxTime.get();
+			if (failed) iFailures.incrementAndGet();
+			recordResult(!failed);
+			if (iCalls.incrementAndGet() % 100 == 0 && sLog.isDebugEnabled())
+				sLog.debug(this);
+		}
+	}
+	
+	/**
+	 * Circuit breaker: when open, no calls are made until the open time has passed, then a single trial call is allowed (half open state)
+	 */
+	private synchronized boolean allowRequest() {
+		if (iFailureThreshold <= 0 || iOpenUntil == 0) return true;
+		if (System.currentTimeMillis() < iOpenUntil || iHalfOpenTrial) return false;
+		iHalfOpenTrial = true;
+		return true;
+	}
+	
+	private synchronized void recordResult(boolean success) {
+		if (iFailureThreshold <= 0) return;
+		if (success) {
+			if (iOpenUntil != 0)
+				sLog.info("Service " + iEndpoint + " is available again, closing the circuit.");
+			iConsecutiveFailures = 0; iOpenUntil = 0; iHalfOpenTrial = false;
+		} else {
+			iConsecutiveFailures ++;
+			if (iHalfOpenTrial || (iOpenUntil == 0 && iConsecutiveFailures >= iFailureThreshold)) {
+				sLog.warn("Service " + iEndpoint + " failed " + iConsecutiveFailures + " times in a row, opening the circuit for " + (iOpenTime / 1000) + " seconds.");
+				iOpenUntil = System.currentTimeMillis() + iOpenTime;
+				iHalfOpenTrial = false;
+			}
+		}
+	}
+	
+	public synchronized boolean isCircuitOpen() {
+		return iOpenUntil != 0;
+	}
+	
+	public long getCalls() { return iCalls.get(); }
+	public long getFailures() { return iFailures.get(); }
+	public long getRejected() { return iRejected.get(); }
+	public long getShortCircuited() { return iShortCircuited.get(); }
+	public long getCacheHits() { return iCacheHits.get(); }
+	public long getAverageTime() { long calls = iCalls.get(); return (calls == 0 ? 0 : iTotalTime.get() / calls); }
+	public long getMaxTime() { return iMaxTime.get(); }
+	
+	@Override
+	public String toString() {
+		return "ExternalServiceClient{endpoint=" + iEndpoint + ", calls=" + getCalls() + ", failures=" + getFailures() + ", rejected=" + getRejected() +
+				", shortCircuited=" + getShortCircuited() + ", cacheHits=" + getCacheHits() + ", circuit=" + (isCircuitOpen() ? "open" : "closed") +
+				", time=" + getAverageTime() + "ms (max " + getMaxTime() + "ms)" + (iBulkhead == null ? "" : ", available=" + iBulkhead.availablePermits()) + "}";
+	}
+	
+	private static class CachedResponse {
+		private String iText;
+		private MediaType iMediaType;
+		private long iCreated;
+		
+		CachedResponse(String text, MediaType mediaType) {
+			iText = text; iMediaType = mediaType; iCreated = System.currentTimeMillis();
+		}
+		
+		String getText() { return iText; }
+		MediaType getMediaType() { return iMediaType; }
+		boolean isExpired(long ttl) { return System.currentTimeMillis() - iCreated > ttl; }
+	}
+}
@@ -33,10 +33,8 @@ import java.util.regex.Pattern;
 
 import org.apache.log4j.Logger;
 import org.cpsolver.ifs.heuristics.RouletteWheelSelection;
-import org.restlet.Client;
 import org.restlet.data.ChallengeScheme;
 import org.restlet.data.MediaType;
-import org.restlet.data.Protocol;
 import org.restlet.resource.ClientResource;
 import org.restlet.resource.ResourceException;
 import org.unitime.localization.impl.Localization;
@@ -58,6 +56,7 @@ import org.unitime.timetable.onlinesectioning.custom.CourseRequestsProvider;
 import org.unitime.timetable.onlinesectioning.custom.CriticalCoursesProvider;
 import org.unitime.timetable.onlinesectioning.custom.CustomCourseLookupHolder;
 import org.unitime.timetable.onlinesectioning.custom.DegreePlansProvider;
+import org.unitime.timetable.onlinesectioning.custom.ExternalServiceClient;
 import org.unitime.timetable.onlinesectioning.custom.ExternalTermProvider;
 import org.unitime.timetable.onlinesectioning.custom.purdue.XEInterface.PlaceHolder;
 import org.unitime.timetable.onlinesectioning.model.XCourse;
@@ -77,14 +76,11 @@ public class DegreeWorksCourseRequests implements CourseRequestsProvider, Degree
 	private static Logger sLog = Logger.getLogger(DegreeWorksCourseRequests.class);
 	private static StudentSectioningConstants CONST = Localization.create(StudentSectioningConstants.class);
 
-	private Client iClient;
+	private ExternalServiceClient iClient;
 	private ExternalTermProvider iExternalTermProvider;
 	
 	public DegreeWorksCourseRequests() {
-		List<Protocol> protocols = new ArrayList<Protocol>();
-		protocols.add(Protocol.HTTP);
-		protocols.add(Protocol.HTTPS);
-		iClient = new Client(protocols);
+		iClient = ExternalServiceClient.getInstance("degreeworks");
 		try {
 			String clazz = ApplicationProperty.CustomizationExternalTerm.value();
 			if (clazz == null || clazz.isEmpty())
@@ -485,11 +481,7 @@ public class DegreeWorksCourseRequests implements CourseRequestsProvider, Degree
 
 	@Override
 	public void dispose() {
-		try {
-			iClient.stop();
-		} catch (Exception e) {
-			sLog.error(e.getMessage(), e);
-		}
+		// the shared client is stopped on shutdown, see ExternalServiceClient.stopAll()
 	}
 	
 	protected DegreePlanInterface.DegreeGroupInterface toGroup(OnlineSectioningServer server, OnlineSectioningHelper helper, XEInterface.Group g) {
@@ -619,6 +611,7 @@ public class DegreeWorksCourseRequests implements CourseRequestsProvider, Degree
 		try {
 			resource = new ClientResource(getDegreeWorksApiSite());
 			resource.setNext(iClient);
+			ExternalServiceClient.cacheable(resource);
 			if (term != null)
 				resource.addQueryParameter("terms", term);
 			resource.addQueryParameter("studentId", studentId);
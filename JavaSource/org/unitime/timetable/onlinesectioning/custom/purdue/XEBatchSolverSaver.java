@@ -19,7 +19,14 @@
 */
 package org.unitime.timetable.onlinesectioning.custom.purdue;
 
+import java.io.BufferedReader;
+import java.io.File;
+import java.io.FileInputStream;
+import java.io.FileOutputStream;
 import java.io.IOException;
+import java.io.InputStreamReader;
+import java.io.OutputStreamWriter;
+import java.io.PrintWriter;
 import java.lang.reflect.Type;
 import java.util.ArrayList;
 import java.util.Arrays;
@@ -34,6 +41,10 @@ import java.util.List;
 import java.util.Map;
 import java.util.Set;
 import java.util.TreeSet;
+import java.util.concurrent.ForkJoinPool;
+import java.util.concurrent.ForkJoinWorkerThread;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
 
 import org.apache.commons.logging.Log;
 import org.apache.commons.logging.LogFactory;
@@ -54,10 +65,8 @@ import org.hibernate.FlushMode;
 import org.hibernate.Transaction;
 import org.joda.time.DateTime;
 import org.joda.time.DateTimeZone;
-import org.restlet.Client;
 import org.restlet.data.ChallengeScheme;
 import org.restlet.data.MediaType;
-import org.restlet.data.Protocol;
 import org.restlet.resource.ClientResource;
 import org.restlet.resource.ResourceException;
 import org.unitime.timetable.ApplicationProperties;
@@ -77,6 +86,7 @@ import org.unitime.timetable.onlinesectioning.OnlineSectioningLogger;
 import org.unitime.timetable.onlinesectioning.OnlineSectioningLog.Entity;
 import org.unitime.timetable.onlinesectioning.OnlineSectioningServer;
 import org.unitime.timetable.onlinesectioning.custom.CustomStudentEnrollmentHolder;
+import org.unitime.timetable.onlinesectioning.custom.ExternalServiceClient;
 import org.unitime.timetable.onlinesectioning.custom.ExternalTermProvider;
 import org.unitime.timetable.onlinesectioning.model.XStudent;
 import org.unitime.timetable.solver.studentsct.InMemoryReport;
@@ -106,7 +116,7 @@ public class XEBatchSolverSaver extends StudentSectioningSaver {
     private String iOwnerId = null;
     private Progress iProgress = null;
 
-    private Client iClient;
+    private ExternalServiceClient iClient;
 	private ExternalTermProvider iExternalTermProvider;
 	private ExternalClassLookupInterface iExternalClassLookup;
 	private AcademicSessionInfo iSession;
@@ -122,6 +132,12 @@ public class XEBatchSolverSaver extends StudentSectioningSaver {
 	private boolean iTimeConflictsIgnoreBreakTimes = false;
 	private boolean iAutoTimeOverrides = false;
 	private boolean iAutoLCOverrides = false;
+	private boolean iPipeline = false;
+	private boolean iResume = false;
+	private String iJournalFile = null;
+	private RateLimiter iLimiter = null;
+	private ProgressJournal iJournal = null;
+	private TimingStats iStats = null;
 	
 	private Hashtable<Long,CourseOffering> iCourses = null;
     private Hashtable<Long,Class_> iClasses = null;
@@ -167,6 +183,17 @@ public class XEBatchSolverSaver extends StudentSectioningSaver {
 		iAutoLCOverrides = solver.getProperties().getPropertyBoolean("Save.XE.AutoLCOverrides", false);
 		iTimeConflictsIgnoreBreakTimes = solver.getProperties().getPropertyBoolean("Save.XE.TimeConflictsIgnoreBreakTimes", false);
 		iNrThreads = solver.getProperties().getPropertyInt("Save.XE.NrSaveThreads", 10);
+		iPipeline = solver.getProperties().getPropertyBoolean("Save.XE.Pipeline", false);
+		if (iPipeline) {
+			iLimiter = new RateLimiter(
+					solver.getProperties().getPropertyInt("Save.XE.MinSaveThreads", 1),
+					iNrThreads,
+					solver.getProperties().getPropertyBoolean("Save.XE.AdaptiveRate", true),
+					solver.getProperties().getPropertyInt("Save.XE.TargetLatency", 2000),
+					solver.getProperties().getPropertyInt("Save.XE.ErrorBackoff", 1000));
+			iJournalFile = solver.getProperties().getProperty("Save.XE.Journal");
+			iResume = solver.getProperties().getPropertyBoolean("Save.XE.Resume", false);
+		}
 		iCSV = new InMemoryReport("XE", "Last XE Enrollment Results (" + Formats.getDateFormat(Formats.Pattern.DATE_TIME_STAMP_SHORT).format(new Date()) + ")");
 		((StudentSolver)solver).setReport(iCSV);
 	}
@@ -174,10 +201,7 @@ public class XEBatchSolverSaver extends StudentSectioningSaver {
 	@Override
 	public void save() throws Exception {
 		iProgress.setStatus("Saving solution ...");
-		List<Protocol> protocols = new ArrayList<Protocol>();
-		protocols.add(Protocol.HTTP);
-		protocols.add(Protocol.HTTPS);
-		iClient = new Client(protocols);
+		iClient = ExternalServiceClient.getInstance("banner");
 		iCSV.setHeader(new CSVField[] {
 				new CSVField("PUID"),
 				new CSVField("Name"),
@@ -217,11 +241,6 @@ public class XEBatchSolverSaver extends StudentSectioningSaver {
             if (tx != null) tx.rollback();
         } finally {
             if (hibSession!=null && hibSession.isOpen()) hibSession.close();
-			try {
-				iClient.stop();
-			} catch (Exception e) {
-				sLog.error(e.getMessage(), e);
-			}
 		}
 	}
 	
@@ -272,7 +291,9 @@ public class XEBatchSolverSaver extends StudentSectioningSaver {
 			}
 		});
 		
-		if (iNrThreads <= 1) {
+		if (iPipeline) {
+			saveStudents(students);
+		} else if (iNrThreads <= 1) {
 			for (Student student: students) {
 	            incProgress();
 	            if (student.isDummy()) continue;
@@ -297,7 +318,128 @@ public class XEBatchSolverSaver extends StudentSectioningSaver {
 		}
 	}
 	
-	protected void saveStudent(Student student) {
+	/**
+	 * Save the given students using a work-stealing pool of {@link #iNrThreads} workers. The number of students
+	 * being saved at the same time is controlled by the {@link RateLimiter} (which lowers it when the remote side slows
+	 * down or fails), students that have been already pushed by a previous (interrupted) run are skipped when resuming,
+	 * and each saved student is recorded in the {@link ProgressJournal}.
+	 */
+	protected void saveStudents(List<Student> students) {
+		iStats = new TimingStats();
+		File file = (iJournalFile == null || iJournalFile.isEmpty() ? new File(new File(ApplicationProperties.getDataFolder(), "xe-saver"), iSession.getUniqueId() + ".journal") : new File(iJournalFile));
+		try {
+			iJournal = new ProgressJournal(file, iResume);
+			if (iResume && iJournal.size() > 0)
+				iProgress.info("Resuming from " + file + ": " + iJournal.size() + " students have been already pushed.");
+		} catch (IOException e) {
+			iProgress.warn("Failed to open the progress journal " + file + ": " + e.getMessage(), e);
+			iJournal = null;
+		}
+		final AtomicInteger counter = new AtomicInteger(0);
+		ForkJoinPool pool = new ForkJoinPool(Math.max(1, iNrThreads), new ForkJoinPool.ForkJoinWorkerThreadFactory() {
+			@Override
+			public ForkJoinWorkerThread newThread(ForkJoinPool pool) {
+				ForkJoinWorkerThread thread = new ForkJoinWorkerThread(pool) {
+					@Override
+					protected void onTermination(Throwable exception) {
+						try {
+							_RootDAO.closeCurrentThreadSessions();
+						} finally {
+							super.onTermination(exception);
+						}
+					}
+				};
+				thread.setName("XESaver-" + counter.incrementAndGet());
+				return thread;
+			}
+		}, null, true);
+		boolean completed = false;
+		try {
+			for (final Student student: students) {
+				incProgress();
+				if (student.isDummy()) continue;
+				final String signature = getSignature(student);
+				if (iJournal != null && iJournal.isPushed(student, signature)) {
+					iStats.skipped();
+					// already pushed by the previous run, but still needs to be updated in the online sectioning server
+					synchronized (iCSV) {
+						iUpdatedStudents.add(new XStudent(student, getAssignment()));
+					}
+					continue;
+				}
+				try {
+					iLimiter.acquire();
+				} catch (InterruptedException e) {
+					iCanContinue = false;
+					throw new RuntimeException("The save was interrupted.");
+				}
+				pool.execute(new Runnable() {
+					@Override
+					public void run() {
+						try {
+							if (!iCanContinue) return;
+							long t0 = System.currentTimeMillis();
+							boolean saved = false;
+							try {
+								saved = saveStudent(student);
+							} catch (RuntimeException e) {
+								iProgress.error("Failed to save " + student.getName() + ": " + e.getMessage(), e);
+							}
+							long time = System.currentTimeMillis() - t0;
+							iStats.saved(time, saved);
+							if (iJournal != null) iJournal.record(student, signature, saved, time);
+						} finally {
+							iLimiter.release();
+						}
+					}
+				});
+			}
+			completed = true;
+		} finally {
+			if (!completed) iCanContinue = false;
+			pool.shutdown();
+			try {
+				while (!pool.awaitTermination(1, TimeUnit.MINUTES)) {
+					iProgress.debug("Waiting for " + pool.getActiveThreadCount() + " workers to finish ...");
+				}
+			} catch (InterruptedException e) {
+				iCanContinue = false;
+				pool.shutdownNow();
+			}
+			if (iJournal != null) iJournal.close(completed && iCanContinue);
+			iProgress.info("Saved " + iStats + ", " + iLimiter);
+		}
+		if (!iCanContinue)
+			throw new RuntimeException("The save was interrupted.");
+	}
+	
+	/**
+	 * CRNs the student is to be enrolled in, used to detect students that have changed since they were pushed
+	 */
+	protected String getSignature(Student student) {
+		Set<String> crns = new TreeSet<String>();
+		for (String id: getCrns(student))
+			if (id != null) crns.add(id);
+		Set<String> lcCrns = new TreeSet<String>();
+		for (String id: getLCCrns(student))
+			if (id != null) lcCrns.add(id);
+		return crns.toString() + (lcCrns.isEmpty() ? "" : " LC" + lcCrns);
+	}
+	
+	/**
+	 * Called after each call of the remote system, providing the response time
+	 * @param exception response exception, null if the call has succeeded
+	 */
+	protected void remoteCallFinished(long t0, ResourceException exception) {
+		if (iLimiter != null)
+			iLimiter.observe(System.currentTimeMillis() - t0, exception != null && exception.getStatus() != null && (exception.getStatus().isServerError() || exception.getStatus().isConnectorError()));
+	}
+	
+	/**
+	 * Push the student's enrollment to the remote system
+	 * @return false if the enrollment has failed (and the student should be re-tried when the save is resumed)
+	 */
+	protected boolean saveStudent(Student student) {
 		long c0 = OnlineSectioningHelper.getCpuTime();
 		OnlineSectioningLog.Action.Builder action = OnlineSectioningLog.Action.newBuilder();
 		action.setOperation("batch-enroll");
@@ -376,6 +518,7 @@ public class XEBatchSolverSaver extends StudentSectioningSaver {
             iUpdatedStudents.add(new XStudent(student, getAssignment()));
 		}
         OnlineSectioningLogger.getInstance().record(OnlineSectioningLog.Log.newBuilder().addAction(action).build());
+        return action.getResult() != OnlineSectioningLog.Action.ResultType.FAILURE;
 	}
 	
 	protected Set<String> getCrns(Student student) {
@@ -801,9 +944,12 @@ public class XEBatchSolverSaver extends StudentSectioningSaver {
 	}
 	
 	protected XEInterface.RegisterResponse getSchedule(Student student, ClientResource resource) throws IOException {
+		long t0 = System.currentTimeMillis();
 		try {
 			resource.get(MediaType.APPLICATION_JSON);
+			remoteCallFinished(t0, null);
 		} catch (ResourceException e) {
+			remoteCallFinished(t0, e);
 			handleError(resource, e);
 		}
 		
@@ -842,9 +988,12 @@ public class XEBatchSolverSaver extends StudentSectioningSaver {
 	        req.holdPassword = iHoldPassword;
 		if (iRegistrationDate != null && !iRegistrationDate.isEmpty())
 	        req.registrationDate = iRegistrationDate;
+		long t0 = System.currentTimeMillis();
 		try {
 			resource.post(new GsonRepresentation<XEInterface.RegisterRequest>(req));
+			remoteCallFinished(t0, null);
 		} catch (ResourceException e) {
+			remoteCallFinished(t0, e);
 			handleError(resource, e);
 		}
 
@@ -866,9 +1015,12 @@ public class XEBatchSolverSaver extends StudentSectioningSaver {
 	
 	protected XEInterface.RegisterResponse postChanges(ClientResource resource, XEInterface.RegisterRequest req) throws IOException {
 		if (req.isEmpty()) req.empty();
+		long t0 = System.currentTimeMillis();
 		try {
 	        resource.post(new GsonRepresentation<XEInterface.RegisterRequest>(req));
+	        remoteCallFinished(t0, null);
 		} catch (ResourceException e) {
+			remoteCallFinished(t0, e);
 			handleError(resource, e);
 		}
 
@@ -1067,4 +1219,163 @@ public class XEBatchSolverSaver extends StudentSectioningSaver {
 			}
 		}
 	}
+	
+	/**
+	 * Limits the number of students that are being saved at the same time. When adaptive, the limit is halved
+	 * (down to the minimum) when a call of the remote system fails or takes longer than the target latency, and
+	 * it is increased by one (up to the maximum) after a limit's worth of calls have been fast enough. After a
+	 * failure, no new student is started until the error backoff has elapsed.
+	 */
+	protected static class RateLimiter {
+		private int iMin, iMax, iLimit, iLowest, iInFlight = 0, iSuccesses = 0;
+		private boolean iAdaptive;
+		private long iTargetLatency, iErrorBackoff, iPausedUntil = 0, iLastDecrease = 0;
+		private long iCalls = 0, iErrors = 0, iSlow = 0, iTotalLatency = 0;
+		
+		public RateLimiter(int min, int max, boolean adaptive, long targetLatency, long errorBackoff) {
+			iMax = Math.max(1, max);
+			iMin = Math.max(1, Math.min(min, iMax));
+			iLimit = iMax; iLowest = iMax;
+			iAdaptive = adaptive;
+			iTargetLatency = targetLatency;
+			iErrorBackoff = errorBackoff;
+		}
+		
+		public synchronized void acquire() throws InterruptedException {
+			while (true) {
+				long now = System.currentTimeMillis();
+				if (iInFlight < iLimit && now >= iPausedUntil) break;
+				wait(iPausedUntil > now ? Math.min(1000, iPausedUntil - now) : 1000);
+			}
+			iInFlight ++;
+		}
+		
+		public synchronized void release() {
+			iInFlight --;
+			notifyAll();
+		}
+		
+		public synchronized void observe(long latency, boolean error) {
+			iCalls ++; iTotalLatency += latency;
+			if (error) iErrors ++;
+			else if (latency > iTargetLatency) iSlow ++;
+			if (!iAdaptive) return;
+			long now = System.currentTimeMillis();
+			if (error || latency > iTargetLatency) {
+				iSuccesses = 0;
+				if (now - iLastDecrease >= iTargetLatency && iLimit > iMin) {
+					iLimit = Math.max(iMin, iLimit / 2);
+					iLowest = Math.min(iLowest, iLimit);
+					iLastDecrease = now;
+				}
+				if (error) iPausedUntil = now + iErrorBackoff;
+			} else if (++iSuccesses >= iLimit) {
+				iSuccesses = 0;
+				if (iLimit < iMax) {
+					iLimit ++;
+					notifyAll();
+				}
+			}
+		}
+		
+		@Override
+		public synchronized String toString() {
+			return "remote calls: " + iCalls + " (avg " + (iCalls == 0 ? 0 : iTotalLatency / iCalls) + " ms, " + iSlow + " slow, " + iErrors + " failed), " +
+					"concurrency: " + iLimit + (iAdaptive ? " (lowest " + iLowest + ", max " + iMax + ")" : "");
+		}
+	}
+	
+	/**
+	 * Durable record of the students that have been pushed to the remote system. Each saved student is appended
+	 * (and synced to the disk) as a line of the unique id, external id, CRNs, and result. When resuming, students that have
+	 * been successfully pushed with the same CRNs are skipped. Once the save is completed, the journal is renamed
+	 * to *.done, so that the next run starts from the beginning.
+	 */
+	protected static class ProgressJournal {
+		private File iFile;
+		private FileOutputStream iStream;
+		private PrintWriter iWriter;
+		private Map<Long, String> iPushed = new HashMap<Long, String>();
+		
+		public ProgressJournal(File file, boolean resume) throws IOException {
+			iFile = file;
+			if (resume && iFile.exists()) {
+				BufferedReader reader = new BufferedReader(new InputStreamReader(new FileInputStream(iFile), "UTF-8"));
+				try {
+					String line;
+					while ((line = reader.readLine()) != null) {
+						String[] fields = line.split("\t");
+						if (fields.length < 4) continue;
+						try {
+							Long studentId = Long.valueOf(fields[0]);
+							if ("OK".equals(fields[3]))
+								iPushed.put(studentId, fields[2]);
+							else
+								iPushed.remove(studentId);
+						} catch (NumberFormatException e) {}
+					}
+				} finally {
+					reader.close();
+				}
+			}
+			if (iFile.getParentFile() != null) iFile.getParentFile().mkdirs();
+			iStream = new FileOutputStream(iFile, resume);
+			iWriter = new PrintWriter(new OutputStreamWriter(iStream, "UTF-8"));
+		}
+		
+		public int size() { return iPushed.size(); }
+		
+		public boolean isPushed(Student student, String signature) {
+			return signature.equals(iPushed.get(student.getId()));
+		}
+		
+		public synchronized void record(Student student, String signature, boolean saved, long time) {
+			iWriter.println(student.getId() + "\t" + (student.getExternalId() == null ? "" : student.getExternalId()) + "\t" + signature + "\t" + (saved ? "OK" : "FAILED") + "\t" + time);
+			iWriter.flush();
+			try {
+				iStream.getFD().sync();
+			} catch (IOException e) {
+				sLog.warn("Failed to sync the progress journal: " + e.getMessage());
+			}
+		}
+		
+		public synchronized void close(boolean completed) {
+			iWriter.close();
+			if (completed) {
+				File done = new File(iFile.getParentFile(), iFile.getName() + ".done");
+				if (done.exists()) done.delete();
+				if (!iFile.renameTo(done))
+					sLog.warn("Failed to rename the progress journal " + iFile);
+			}
+		}
+	}
+	
+	/**
+	 * Per-student save times
+	 */
+	protected static class TimingStats {
+		private List<Long> iTimes = new ArrayList<Long>();
+		private int iFailed = 0, iSkipped = 0;
+		private long iTotal = 0;
+		
+		public synchronized void saved(long time, boolean success) {
+			iTimes.add(time); iTotal += time;
+			if (!success) iFailed ++;
+		}
+		
+		public synchronized void skipped() {
+			iSkipped ++;
+		}
+		
+		@Override
+		public synchronized String toString() {
+			if (iTimes.isEmpty())
+				return "0 students" + (iSkipped > 0 ? " (" + iSkipped + " skipped)" : "");
+			List<Long> times = new ArrayList<Long>(iTimes);
+			Collections.sort(times);
+			return times.size() + " students (" + iFailed + " failed" + (iSkipped > 0 ? ", " + iSkipped + " skipped" : "") + "), " +
+					"time per student: avg " + (iTotal / times.size()) + " ms, median " + times.get(times.size() / 2) + " ms, " +
+					"95% " + times.get(Math.min(times.size() - 1, (95 * times.size()) / 100)) + " ms, max " + times.get(times.size() - 1) + " ms";
+		}
+	}
 }
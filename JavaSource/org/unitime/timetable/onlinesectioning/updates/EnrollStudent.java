@@ -20,6 +20,7 @@
 package org.unitime.timetable.onlinesectioning.updates;
 
 import java.util.ArrayList;
+import java.util.Collections;
 import java.util.Date;
 import java.util.HashMap;
 import java.util.HashSet;
@@ -38,8 +39,10 @@ import org.cpsolver.studentsct.model.Section;
 import org.hibernate.CacheMode;
 import org.unitime.localization.impl.Localization;
 import org.unitime.timetable.defaults.ApplicationProperty;
+import org.unitime.timetable.events.EventLookupCache;
 import org.unitime.timetable.gwt.resources.StudentSectioningMessages;
 import org.unitime.timetable.gwt.server.DayCode;
+import org.unitime.timetable.gwt.server.CurriculaDemandCube;
 import org.unitime.timetable.gwt.shared.ClassAssignmentInterface;
 import org.unitime.timetable.gwt.shared.ClassAssignmentInterface.ClassAssignment;
 import org.unitime.timetable.gwt.shared.ClassAssignmentInterface.CourseAssignment;
@@ -87,6 +90,7 @@ import org.unitime.timetable.onlinesectioning.server.CheckMaster.Master;
 import org.unitime.timetable.onlinesectioning.solver.CheckAssignmentAction;
 import org.unitime.timetable.onlinesectioning.solver.SectioningRequest;
 import org.unitime.timetable.onlinesectioning.solver.FindAssignmentAction.IdPair;
+import org.unitime.timetable.solver.exam.ui.ExamConflictGraph;
 
 /**
  * @author Tomas Muller
@@ -741,6 +745,9 @@ public class EnrollStudent implements OnlineSectioningAction<ClassAssignmentInte
 				action.addEnrollment(stored);
 				
 				server.execute(server.createAction(NotifyStudentAction.class).forStudent(getStudentId()).oldStudent(oldStudent), helper.getUser());
+				CurriculaDemandCube.getInstance().studentsChanged(helper.getHibSession(), server.getAcademicSession().getUniqueId(), Collections.singleton(getStudentId()));
+				ExamConflictGraph.invalidate(helper.getHibSession(), server.getAcademicSession().getUniqueId(), null);
+				EventLookupCache.getInstance().studentsChanged(helper.getHibSession(), server.getAcademicSession().getUniqueId(), Collections.singleton(getStudentId()));
 				helper.commitTransaction();
 			} catch (Exception e) {
 				helper.rollbackTransaction();
@@ -20,6 +20,7 @@
 package org.unitime.timetable.onlinesectioning.updates;
 
 import java.util.ArrayList;
+import java.util.Collections;
 import java.util.Date;
 import java.util.HashMap;
 import java.util.HashSet;
@@ -33,6 +34,7 @@ import org.unitime.localization.impl.Localization;
 import org.unitime.timetable.gwt.resources.StudentSectioningMessages;
 import org.unitime.timetable.gwt.server.DayCode;
 import org.unitime.timetable.gwt.server.SectioningServlet;
+import org.unitime.timetable.gwt.server.CurriculaDemandCube;
 import org.unitime.timetable.gwt.shared.CourseRequestInterface;
 import org.unitime.timetable.gwt.shared.SectioningException;
 import org.unitime.timetable.gwt.shared.CourseRequestInterface.RequestedCourse;
@@ -151,6 +153,7 @@ public class SaveStudentRequests implements OnlineSectioningAction<CourseRequest
 				}
 				server.execute(server.createAction(NotifyStudentAction.class).forStudent(getStudentId()).oldStudent(oldStudent), helper.getUser());
 				
+				CurriculaDemandCube.getInstance().studentsChanged(helper.getHibSession(), server.getAcademicSession().getUniqueId(), Collections.singleton(getStudentId()));
 				helper.commitTransaction();
 				
 				return getRequest();
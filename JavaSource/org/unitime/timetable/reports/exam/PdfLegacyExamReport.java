@@ -74,6 +74,7 @@ import org.unitime.timetable.model.dao._RootDAO;
 import org.unitime.timetable.reports.PdfLegacyReport;
 import org.unitime.timetable.solver.exam.ui.ExamAssignment;
 import org.unitime.timetable.solver.exam.ui.ExamAssignmentInfo;
+import org.unitime.timetable.solver.exam.ui.ExamConflictGraph;
 import org.unitime.timetable.solver.exam.ui.ExamInfo;
 import org.unitime.timetable.solver.exam.ui.ExamRoomInfo;
 import org.unitime.timetable.solver.exam.ui.ExamAssignmentInfo.Parameters;
@@ -1001,6 +1002,8 @@ public abstract class PdfLegacyExamReport extends PdfLegacyReport {
             }
         }
         Parameters p = new Parameters(sessionId, examTypeId);
+        if (assgn && ExamConflictGraph.isEnabled())
+        	ExamConflictGraph.register(sessionId, examTypeId, student2exams);
         sLog.info("  Creating exam assignments...");
         TreeSet<ExamAssignmentInfo> ret = new TreeSet();
         for (Enumeration<Exam> e = exams.elements(); e.hasMoreElements();) {
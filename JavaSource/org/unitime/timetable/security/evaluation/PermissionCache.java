@@ -0,0 +1,134 @@
+/*
+ * Licensed to The Apereo Foundation under one or more contributor license
+ * agreements. See the NOTICE file distributed with this work for
+ * additional information regarding copyright ownership.
+ *
+ * The Apereo Foundation licenses this file to you under the Apache License,
+ * Version 2.0 (the "License"); you may not use this file except in
+ * compliance with the License. You may obtain a copy of the License at:
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ *
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ *
+*/
+package org.unitime.timetable.security.evaluation;
+
+import java.io.Serializable;
+import java.util.HashMap;
+import java.util.Map;
+
+import org.apache.commons.logging.Log;
+import org.apache.commons.logging.LogFactory;
+import org.hibernate.proxy.HibernateProxyHelper;
+import org.unitime.timetable.defaults.ApplicationProperty;
+import org.unitime.timetable.security.UserAuthority;
+import org.unitime.timetable.security.UserContext;
+import org.unitime.timetable.security.rights.Right;
+
+/**
+ * Request scoped cache of the {@link UniTimePermissionCheck#hasPermission(UserContext, Object, Right)} decisions.<br>
+ * The decisions are keyed by the user, the current authority, the right, and the target (class and unique id).
+ * The cache lives only on the thread that has called {@link #begin()} (e.g., the HibSessionFilter for each HTTP request),
+ * so that decisions are never shared between requests (the underlying data may change).
+ * Call {@link #clear()} when a request changes data that may affect its own later permission checks.
+ *
+ * @author Tomas Muller
+ */
+public class PermissionCache {
+	private static Log sLog = LogFactory.getLog(PermissionCache.class);
+	private static ThreadLocal<PermissionCache> sCache = new ThreadLocal<PermissionCache>();
+
+	private Map<String, Boolean> iDecisions = new HashMap<String, Boolean>();
+	private int iHits = 0, iMisses = 0;
+
+	private PermissionCache() {}
+
+	public static boolean isEnabled() {
+		return ApplicationProperty.PermissionCacheEnabled.isTrue();
+	}
+
+	/**
+	 * Start caching permission decisions on this thread
+	 * @return true if a new cache was started, false if the cache is disabled or already running (in which case {@link #end()} should not be called)
+	 */
+	public static boolean begin() {
+		return begin(false);
+	}
+	
+	/**
+	 * Start caching permission decisions on this thread
+	 * @param force start the cache even when disabled (used by a batch evaluation)
+	 * @return true if a new cache was started, false if the cache is disabled or already running (in which case {@link #end()} should not be called)
+	 */
+	public static boolean begin(boolean force) {
+		if (sCache.get() != null || (!force && !isEnabled())) return false;
+		sCache.set(new PermissionCache());
+		return true;
+	}
+
+	/**
+	 * Stop caching permission decisions on this thread
+	 */
+	public static void end() {
+		PermissionCache cache = sCache.get();
+		if (cache != null && sLog.isDebugEnabled() && cache.iHits + cache.iMisses > 0)
+			sLog.debug("Permission cache: " + cache.iHits + " hits, " + cache.iMisses + " misses");
+		sCache.remove();
+	}
+
+	/**
+	 * Forget all decisions made so far on this thread (e.g., after the request has changed some data)
+	 */
+	public static void clear() {
+		PermissionCache cache = sCache.get();
+		if (cache != null) cache.iDecisions.clear();
+	}
+
+	/**
+	 * Cache of this thread, null if there is none
+	 */
+	public static PermissionCache getInstance() {
+		return sCache.get();
+	}
+
+	public Boolean get(String key) {
+		if (key == null) return null;
+		Boolean ret = iDecisions.get(key);
+		if (ret == null) iMisses ++; else iHits ++;
+		return ret;
+	}
+
+	public void put(String key, boolean decision) {
+		if (key != null) iDecisions.put(key, decision);
+	}
+
+	/**
+	 * Decision key, null if the decision cannot be cached (e.g., the target has no unique id)
+	 */
+	public String key(UserContext user, Right right, String targetType, Serializable targetId) {
+		UserAuthority authority = user.getCurrentAuthority();
+		if (authority == null || right == null) return null;
+		return user.getExternalUserId() + "|" + authority.getAuthority() + "|" + authority.getUniqueId() + "|" + user.getCurrentAcademicSessionId() +
+				"|" + right.name() + "|" + targetType + "|" + (targetId == null ? "*" : targetId.toString());
+	}
+
+	/**
+	 * Decision key of a domain object, null if the object has no unique id
+	 */
+	public String key(UserContext user, Right right, Object domainObject) {
+		Serializable id = null;
+		try {
+			id = (Serializable)domainObject.getClass().getMethod("getUniqueId").invoke(domainObject);
+		} catch (Exception e) {
+			return null;
+		}
+		if (id == null) return null;
+		return key(user, right, HibernateProxyHelper.getClassWithoutInitializingProxy(domainObject).getName(), id);
+	}
+}
@@ -20,6 +20,8 @@
 package org.unitime.timetable.security.evaluation;
 
 import java.io.Serializable;
+import java.util.Collection;
+import java.util.List;
 
 import org.springframework.security.access.AccessDeniedException;
 import org.unitime.timetable.security.Qualifiable;
@@ -54,4 +56,10 @@ public interface PermissionCheck {
     public boolean hasPermissionAnySession(UserContext user, Serializable targetId, String targetType, Right right, Qualifiable... filter);
     
     public boolean hasPermissionAnySession(UserContext user, Object targetObject, Right right, Qualifiable... filter);
+    
+    /**
+     * Batch evaluation: returns the given domain objects for which the user has the right (in the same order).
+     * Repeated sub-checks (e.g., of the same department) are evaluated only once.
+     */
+    public <T> List<T> getPermitted(UserContext user, Collection<T> targetObjects, Right right);
 }
\ No newline at end of file
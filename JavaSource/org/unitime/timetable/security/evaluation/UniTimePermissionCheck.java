@@ -20,6 +20,7 @@
 package org.unitime.timetable.security.evaluation;
 
 import java.io.Serializable;
+import java.util.ArrayList;
 import java.util.Collection;
 import java.util.List;
 import java.util.Map;
@@ -416,6 +417,24 @@ public class UniTimePermissionCheck implements PermissionCheck, InitializingBean
 			return true;
 		}
 		
+		if (targetId == null) {
+			// no target: the check may iterate over all the user's departments, subject areas, etc.
+			PermissionCache cache = PermissionCache.getInstance();
+			if (cache != null) {
+				String key = cache.key(user, right, targetType, null);
+				Boolean decision = cache.get(key);
+				if (decision == null) {
+					decision = evaluatePermission(user, targetId, targetType, right);
+					cache.put(key, decision);
+				}
+				return decision;
+			}
+		}
+		
+		return evaluatePermission(user, targetId, targetType, right);
+	}
+	
+	protected boolean evaluatePermission(UserContext user, Serializable targetId, String targetType, Right right) {
 		try {
 			String className = targetType;
 			if (className.indexOf('.') < 0) className = "org.unitime.timetable.model." + className;
@@ -526,6 +545,21 @@ public class UniTimePermissionCheck implements PermissionCheck, InitializingBean
 			return false;
 		}
 		
+		PermissionCache cache = PermissionCache.getInstance();
+		if (cache != null) {
+			String key = cache.key(user, right, domainObject);
+			Boolean decision = cache.get(key);
+			if (decision == null) {
+				decision = evaluatePermission(user, domainObject, right);
+				cache.put(key, decision);
+			}
+			return decision;
+		}
+		
+		return evaluatePermission(user, domainObject, right);
+	}
+	
+	protected boolean evaluatePermission(UserContext user, Object domainObject, Right right) {
 		try {
 			Permission<?> perm = (Permission<?>)applicationContext.getBean("permission" + right.name(), Permission.class);
 			if (perm != null && perm.type().isInstance(domainObject))
@@ -543,6 +577,23 @@ public class UniTimePermissionCheck implements PermissionCheck, InitializingBean
 		return true;
 	}
 	
+	@Override
+	public <T> List<T> getPermitted(UserContext user, Collection<T> targetObjects, Right right) {
+		List<T> ret = new ArrayList<T>();
+		if (targetObjects == null || targetObjects.isEmpty()) return ret;
+		if (user == null || user.getCurrentAuthority() == null) return ret;
+		if (right == null || !user.getCurrentAuthority().hasRight(right)) return ret;
+		
+		boolean started = PermissionCache.begin(true);
+		try {
+			for (T target: targetObjects)
+				if (hasPermission(user, target, right)) ret.add(target);
+		} finally {
+			if (started) PermissionCache.end();
+		}
+		return ret;
+	}
+	
 	@Override
 	public boolean hasPermissionAnyAuthority(UserContext user, Serializable targetId, String targetType, Right right, Qualifiable... filter) {
 		if (user == null) return false;
@@ -38,6 +38,7 @@ import org.unitime.localization.impl.Localization;
 import org.unitime.timetable.defaults.ApplicationProperty;
 import org.unitime.timetable.defaults.SessionAttribute;
 import org.unitime.timetable.events.EventAction.EventContext;
+import org.unitime.timetable.events.EventLookupCache;
 import org.unitime.timetable.gwt.command.client.GwtRpcException;
 import org.unitime.timetable.gwt.command.server.GwtRpcImplementation;
 import org.unitime.timetable.gwt.command.server.GwtRpcImplements;
@@ -274,8 +275,10 @@ public class RoomUpdateBackend implements GwtRpcImplementation<RoomUpdateRpcRequ
 				hibSession.saveOrUpdate(a);
 				i.remove();
 			}
+			Long sessionId = location.getSession().getUniqueId();
 			hibSession.delete(location);
 			tx.commit(); tx = null;
+			EventLookupCache.getInstance().invalidate(sessionId);
 			return permId;
 		} catch (Throwable t) {
 			if (future)
@@ -735,6 +738,7 @@ public class RoomUpdateBackend implements GwtRpcImplementation<RoomUpdateRpcRequ
             hibSession.flush();
 			
 			tx.commit(); tx = null;
+			EventLookupCache.getInstance().invalidate(location.getSession().getUniqueId());
 			return location;
 		} catch (Throwable t) {
 			if (future)
@@ -1148,6 +1152,7 @@ public class RoomUpdateBackend implements GwtRpcImplementation<RoomUpdateRpcRequ
             hibSession.flush();
 			
 			tx.commit(); tx = null;
+			EventLookupCache.getInstance().invalidate(location.getSession().getUniqueId());
 			return location;
 		} catch (Throwable t) {
 			if (future)
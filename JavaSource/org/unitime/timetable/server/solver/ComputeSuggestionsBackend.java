@@ -36,6 +36,7 @@ import org.cpsolver.coursett.model.RoomLocation;
 import org.cpsolver.coursett.model.TimetableModel;
 import org.cpsolver.ifs.assignment.Assignment;
 import org.cpsolver.ifs.criteria.Criterion;
+import org.cpsolver.ifs.model.Model;
 import org.cpsolver.ifs.solution.Solution;
 import org.springframework.beans.factory.annotation.Autowired;
 import org.unitime.localization.impl.Localization;
@@ -149,13 +150,15 @@ public class ComputeSuggestionsBackend implements GwtRpcImplementation<ComputeSu
         if (canAssign) {
         	if (request.isPlacements()) {
         		resolvedLectures.remove(request.getClassId());
-        		placements(context, solver, suggestions, new Query(request.getFilter()), System.currentTimeMillis(), lecture, resolvedLectures, conflictsToResolve, initialAssignments);
+        		if (!ParallelSuggestions.isEnabled() || !new ParallelSuggestions(context, solver, suggestions, new Query(request.getFilter()), lecture, resolvedLectures, conflictsToResolve, initialAssignments).placements())
+        			placements(new SolverSuggestionSink(context, solver, suggestions, initialAssignments), new Query(request.getFilter()), suggestions, model, assignment, lecture, resolvedLectures, conflictsToResolve, initialAssignments);
         	} else {
             	List<Lecture> initialLectures = null; 
                 if (!resolvedLectures.contains(request.getClassId())) {
                 	initialLectures =  new ArrayList<Lecture>(1); initialLectures.add(lecture);
                 }
-            	backtrack(context, solver, suggestions, new Query(request.getFilter()), System.currentTimeMillis(), initialLectures, resolvedLectures, conflictsToResolve, initialAssignments, request.getDepth());
+                if (initialLectures == null || !ParallelSuggestions.isEnabled() || !new ParallelSuggestions(context, solver, suggestions, new Query(request.getFilter()), lecture, resolvedLectures, conflictsToResolve, initialAssignments).backtrack())
+                	backtrack(new SolverSuggestionSink(context, solver, suggestions, initialAssignments), new Query(request.getFilter()), suggestions, model, assignment, initialLectures, resolvedLectures, conflictsToResolve, initialAssignments, request.getDepth());
         	}
         }
         
@@ -194,167 +197,203 @@ public class ComputeSuggestionsBackend implements GwtRpcImplementation<ComputeSu
 		return suggestions;
 	}
 	
-	protected static boolean isBetter(Suggestion suggestion, TimetableSolver solver) {
-		return suggestion.getValue() < solver.currentSolution().getModel().getTotalValue(solver.currentSolution().getAssignment());
+	/**
+	 * Receives the suggestions found by {@link ComputeSuggestionsBackend#backtrack} and {@link ComputeSuggestionsBackend#placements},
+	 * and keeps track of the number of combinations considered and of the time limit.
+	 */
+	protected static interface SuggestionSink {
+		/** A combination (search node) has been considered */
+		public void combinationConsidered();
+		/** True if the time limit has been reached */
+		public boolean isTimeoutReached();
+		/** Check the time limit, return true if it has been reached */
+		public boolean checkTimeout();
+		/** True if a suggestion of the given value (or bound) would not be kept, as there are enough better suggestions already */
+		public boolean isWorse(double value);
+		/**
+		 * A suggestion has been found: the given assignment contains the suggested placements
+		 * @param lecture selected class when computing its placements, null otherwise
+		 * @param current initial placement of the selected class when computing its placements
+		 * @param placement new placement of the selected class when computing its placements
+		 */
+		public void addSuggestion(Assignment<Lecture, Placement> assignment, List<Long> resolvedLectures, Collection<Placement> unresolvedConflicts, Lecture lecture, Placement current, Placement placement);
 	}
 	
-	private static void backtrack(SuggestionsContext context, TimetableSolver solver, Suggestions suggestions, Query query, long startTime, List<Lecture> initialLectures, List<Long> resolvedLectures, Map<Lecture, Placement> conflictsToResolve, Map<Lecture, Placement> initialAssignments, int depth) {
-		suggestions.setNrCombinationsConsidered(1 + suggestions.getNrCombinationsConsidered());
-        int nrUnassigned = conflictsToResolve.size();
-        if ((initialLectures==null || initialLectures.isEmpty()) && nrUnassigned==0) {
-        	if (suggestions.size() == suggestions.getLimit()) {
-        		if (isBetter(suggestions.last(), solver)) return;
-        	}
-        	suggestions.addSuggestion(SelectedAssignmentBackend.createSuggestion(context, solver, initialAssignments, resolvedLectures, conflictsToResolve.values()));
-            return;
-        }
-        if (depth <= 0) return;
-        if (suggestions.getTimeLimit() > 0 && System.currentTimeMillis() - startTime > suggestions.getTimeLimit()) {
-        	suggestions.setTimeoutReached(true);
-            return;
-        }
-        if (suggestions.size() == suggestions.getLimit() && suggestions.last().getValue() < getBound(query, suggestions, solver, conflictsToResolve)) {
-        	return;
-        }
-        Assignment<Lecture, Placement> assignment = solver.currentSolution().getAssignment();
-        TimetableModel model = (TimetableModel)solver.currentSolution().getModel();
-        for (Lecture lecture: new ArrayList<Lecture>((initialLectures != null && !initialAssignments.isEmpty() ? initialLectures : conflictsToResolve.keySet()))) {
-            if (suggestions.isTimeoutReached()) break;
-            if (resolvedLectures.contains(lecture.getClassId())) continue;
-            resolvedLectures.add(lecture.getClassId());
-            for (PlacementValue placementValue: values(query, suggestions, solver,  lecture)) {
-            	if (suggestions.isTimeoutReached()) break;
-                Placement placement = placementValue.getPlacement();
-                Placement current = assignment.getValue(lecture);
-                if (placement.equals(current)) continue;
-                if (!suggestions.isAllowBreakHard() && placement.isHard(assignment)) continue;
-                if (suggestions.isSameTime() && current!=null && !placement.getTimeLocation().equals(((Placement)current).getTimeLocation())) continue;
-                if (suggestions.isSameRoom() && current!=null && !placement.sameRooms((Placement)current)) continue;
-                if (suggestions.isSameTime() && current==null) {
-                    Placement ini = (Placement)initialAssignments.get(lecture);
-                    if (ini!=null && !placement.sameTime(ini)) continue;
-                }
-                if (suggestions.isSameRoom() && current==null) {
-                    Placement ini = (Placement)initialAssignments.get(lecture);
-                    if (ini!=null && !placement.sameRooms(ini)) continue;
-                }
-                Set<Placement> conflicts = model.conflictValues(assignment, placement);
-                if (conflicts!=null && (nrUnassigned + conflicts.size()>depth)) continue;
-                if (containsCommited(model, conflicts)) continue;
-                if (conflicts.contains(placement)) continue;
-                boolean containException = false;
-                if (conflicts!=null) {
-                    for (Iterator<Placement> i=conflicts.iterator();!containException && i.hasNext();) {
-                        Placement c = i.next();
-                        if (resolvedLectures.contains(c.variable().getClassId())) containException = true;
-                    }
-                }
-                if (containException) continue;
-                if (conflicts!=null) {
-                    for (Iterator<Placement> i=conflicts.iterator();!containException && i.hasNext();) {
-                        Placement c = i.next();
-                        assignment.unassign(0, c.variable());
-                    }
-                }
-                assignment.assign(0, placement);
-                for (Iterator<Placement> i=conflicts.iterator();!containException && i.hasNext();) {
-                    Placement c = i.next();
-                    conflictsToResolve.put(c.variable(),c);
-                }
-                Placement resolvedConf = (Placement)conflictsToResolve.remove(lecture);
-                backtrack(context, solver, suggestions, query, startTime, null, resolvedLectures, conflictsToResolve, initialAssignments, depth-1);
-                if (current==null)
-                	assignment.unassign(0, lecture);
-                else
-                	assignment.assign(0, current);
-                if (conflicts != null) {
-                    for (Placement p: conflicts) {
-                        assignment.assign(0, p);
-                        conflictsToResolve.remove(p.variable());
-                    }
-                }
-                if (resolvedConf != null)
-                    conflictsToResolve.put(lecture, resolvedConf);
-            }
-            resolvedLectures.remove(lecture.getClassId());
-        }
-    }
+	/**
+	 * Sequential search on the solver's assignment, suggestions are created right away
+	 */
+	protected static class SolverSuggestionSink implements SuggestionSink {
+		private SuggestionsContext iContext;
+		private TimetableSolver iSolver;
+		private Suggestions iSuggestions;
+		private Map<Lecture, Placement> iInitialAssignments;
+		private long iStartTime;
+		
+		public SolverSuggestionSink(SuggestionsContext context, TimetableSolver solver, Suggestions suggestions, Map<Lecture, Placement> initialAssignments) {
+			iContext = context;
+			iSolver = solver;
+			iSuggestions = suggestions;
+			iInitialAssignments = initialAssignments;
+			iStartTime = System.currentTimeMillis();
+		}
+		
+		@Override
+		public void combinationConsidered() {
+			iSuggestions.setNrCombinationsConsidered(1 + iSuggestions.getNrCombinationsConsidered());
+		}
+		
+		@Override
+		public boolean isTimeoutReached() {
+			return iSuggestions.isTimeoutReached();
+		}
+		
+		@Override
+		public boolean checkTimeout() {
+			if (iSuggestions.getTimeLimit() > 0 && System.currentTimeMillis() - iStartTime > iSuggestions.getTimeLimit())
+				iSuggestions.setTimeoutReached(true);
+			return iSuggestions.isTimeoutReached();
+		}
+		
+		@Override
+		public boolean isWorse(double value) {
+			return iSuggestions.size() >= iSuggestions.getLimit() && iSuggestions.last().getValue() < value;
+		}
+		
+		@Override
+		public void addSuggestion(Assignment<Lecture, Placement> assignment, List<Long> resolvedLectures, Collection<Placement> unresolvedConflicts, Lecture lecture, Placement current, Placement placement) {
+			Suggestion suggestion = SelectedAssignmentBackend.createSuggestion(iContext, iSolver, iInitialAssignments, resolvedLectures, unresolvedConflicts);
+			if (lecture != null && !suggestion.hasDifferentAssignments())
+				suggestion.addDifferentAssignment(SelectedAssignmentBackend.createClassAssignmentDetails(iContext, iSolver, lecture, current, placement));
+			iSuggestions.addSuggestion(suggestion);
+		}
+	}
 	
-	private static void placements(SuggestionsContext context, TimetableSolver solver, Suggestions suggestions, Query query, long startTime, Lecture lecture, List<Long> resolvedLectures, Map<Lecture, Placement> conflictsToResolve, Map<Lecture, Placement> initialAssignments) {
+	protected static void backtrack(SuggestionSink sink, Query query, Suggestions suggestions, TimetableModel model, Assignment<Lecture, Placement> assignment, List<Lecture> initialLectures, List<Long> resolvedLectures, Map<Lecture, Placement> conflictsToResolve, Map<Lecture, Placement> initialAssignments, int depth) {
+		sink.combinationConsidered();
+		int nrUnassigned = conflictsToResolve.size();
+		if ((initialLectures==null || initialLectures.isEmpty()) && nrUnassigned==0) {
+			if (sink.isWorse(model.getTotalValue(assignment))) return;
+			sink.addSuggestion(assignment, resolvedLectures, conflictsToResolve.values(), null, null, null);
+			return;
+		}
+		if (depth <= 0) return;
+		if (sink.checkTimeout()) return;
+		if (sink.isWorse(getBound(query, suggestions, model, assignment, conflictsToResolve))) return;
+		for (Lecture lecture: new ArrayList<Lecture>((initialLectures != null && !initialAssignments.isEmpty() ? initialLectures : conflictsToResolve.keySet()))) {
+			if (sink.isTimeoutReached()) break;
+			if (resolvedLectures.contains(lecture.getClassId())) continue;
+			resolvedLectures.add(lecture.getClassId());
+			for (PlacementValue placementValue: values(query, suggestions, assignment, lecture)) {
+				if (sink.isTimeoutReached()) break;
+				tryPlacement(sink, query, suggestions, model, assignment, lecture, placementValue.getPlacement(), resolvedLectures, conflictsToResolve, initialAssignments, nrUnassigned, depth);
+			}
+			resolvedLectures.remove(lecture.getClassId());
+		}
+	}
+	
+	/**
+	 * Check whether the given placement can be assigned (with respect to the current placement of the class and the suggestions settings)
+	 */
+	protected static boolean canAssign(Suggestions suggestions, Assignment<Lecture, Placement> assignment, Lecture lecture, Placement placement, Placement current, Map<Lecture, Placement> initialAssignments) {
+		if (placement.equals(current)) return false;
+		if (!suggestions.isAllowBreakHard() && placement.isHard(assignment)) return false;
+		if (suggestions.isSameTime() && current!=null && !placement.getTimeLocation().equals(current.getTimeLocation())) return false;
+		if (suggestions.isSameRoom() && current!=null && !placement.sameRooms(current)) return false;
+		if (suggestions.isSameTime() && current==null) {
+			Placement ini = initialAssignments.get(lecture);
+			if (ini!=null && !placement.sameTime(ini)) return false;
+		}
+		if (suggestions.isSameRoom() && current==null) {
+			Placement ini = initialAssignments.get(lecture);
+			if (ini!=null && !placement.sameRooms(ini)) return false;
+		}
+		return true;
+	}
+	
+	/**
+	 * Check whether the conflicts of the given placement can be resolved (within the given depth, without changing a committed or an already resolved class)
+	 */
+	protected static boolean canResolve(TimetableModel model, Placement placement, Set<Placement> conflicts, List<Long> resolvedLectures, int nrUnassigned, int depth) {
+		if (nrUnassigned + conflicts.size() > depth) return false;
+		if (containsCommited(model, conflicts)) return false;
+		if (conflicts.contains(placement)) return false;
+		for (Placement c: conflicts)
+			if (resolvedLectures.contains(c.variable().getClassId())) return false;
+		return true;
+	}
+	
+	/**
+	 * Assign the given placement (unassigning its conflicts), continue the search, and undo the changes
+	 */
+	protected static void tryPlacement(SuggestionSink sink, Query query, Suggestions suggestions, TimetableModel model, Assignment<Lecture, Placement> assignment, Lecture lecture, Placement placement, List<Long> resolvedLectures, Map<Lecture, Placement> conflictsToResolve, Map<Lecture, Placement> initialAssignments, int nrUnassigned, int depth) {
+		Placement current = assignment.getValue(lecture);
+		if (!canAssign(suggestions, assignment, lecture, placement, current, initialAssignments)) return;
+		Set<Placement> conflicts = model.conflictValues(assignment, placement);
+		if (!canResolve(model, placement, conflicts, resolvedLectures, nrUnassigned, depth)) return;
+		for (Placement c: conflicts)
+			assignment.unassign(0, c.variable());
+		assignment.assign(0, placement);
+		for (Placement c: conflicts)
+			conflictsToResolve.put(c.variable(), c);
+		Placement resolvedConf = conflictsToResolve.remove(lecture);
+		backtrack(sink, query, suggestions, model, assignment, null, resolvedLectures, conflictsToResolve, initialAssignments, depth-1);
+		if (current==null)
+			assignment.unassign(0, lecture);
+		else
+			assignment.assign(0, current);
+		for (Placement p: conflicts) {
+			assignment.assign(0, p);
+			conflictsToResolve.remove(p.variable());
+		}
+		if (resolvedConf != null)
+			conflictsToResolve.put(lecture, resolvedConf);
+	}
+	
+	protected static void placements(SuggestionSink sink, Query query, Suggestions suggestions, TimetableModel model, Assignment<Lecture, Placement> assignment, Lecture lecture, List<Long> resolvedLectures, Map<Lecture, Placement> conflictsToResolve, Map<Lecture, Placement> initialAssignments) {
 		int nrUnassigned = conflictsToResolve.size();
 		if (conflictsToResolve.containsKey(lecture)) nrUnassigned--;
-		Assignment<Lecture, Placement> assignment = solver.currentSolution().getAssignment();
-        TimetableModel model = (TimetableModel)solver.currentSolution().getModel();
-        for (PlacementValue placementValue: values(query, suggestions, solver,  lecture)) {
-        	if (suggestions.isTimeoutReached()) break;
-        	suggestions.setNrCombinationsConsidered(1 + suggestions.getNrCombinationsConsidered());
-            Placement placement = placementValue.getPlacement();
-            Placement current = initialAssignments.get(lecture);
-            if (placement.equals(current)) continue;
-            if (!suggestions.isAllowBreakHard() && placement.isHard(assignment)) continue;
-            if (suggestions.isSameTime() && current!=null && !placement.getTimeLocation().equals(((Placement)current).getTimeLocation())) continue;
-            if (suggestions.isSameRoom() && current!=null && !placement.sameRooms((Placement)current)) continue;
-            if (suggestions.isSameTime() && current==null) {
-                Placement ini = (Placement)initialAssignments.get(lecture);
-                if (ini!=null && !placement.sameTime(ini)) continue;
-            }
-            if (suggestions.isSameRoom() && current==null) {
-                Placement ini = (Placement)initialAssignments.get(lecture);
-                if (ini!=null && !placement.sameRooms(ini)) continue;
-            }
-            Set<Placement> conflicts = model.conflictValues(assignment, placement);
-            if (conflicts!=null && (nrUnassigned + conflicts.size() > suggestions.getDepth())) continue;
-            if (containsCommited(model, conflicts)) continue;
-            if (conflicts.contains(placement)) continue;
-            boolean containException = false;
-            if (conflicts!=null) {
-                for (Iterator<Placement> i=conflicts.iterator();!containException && i.hasNext();) {
-                    Placement c = i.next();
-                    if (resolvedLectures.contains(c.variable().getClassId())) containException = true;
-                }
-            }
-            if (containException) continue;
-            if (conflicts!=null) {
-                for (Iterator<Placement> i=conflicts.iterator();!containException && i.hasNext();) {
-                    Placement c = i.next();
-                    assignment.unassign(0, c.variable());
-                }
-            }
-            assignment.assign(0, placement);
-            for (Iterator<Placement> i=conflicts.iterator();!containException && i.hasNext();) {
-                Placement c = i.next();
-                conflictsToResolve.put(c.variable(),c);
-            }
-            Placement resolvedConf = (Placement)conflictsToResolve.remove(lecture);
-            
-            if (suggestions.size() < suggestions.getLimit() || !isBetter(suggestions.last(), solver)) {
-            	Suggestion suggestion = SelectedAssignmentBackend.createSuggestion(context, solver, initialAssignments, resolvedLectures, conflictsToResolve.values());
-            	if (!suggestion.hasDifferentAssignments())
-            		suggestion.addDifferentAssignment(SelectedAssignmentBackend.createClassAssignmentDetails(context, solver, lecture, current, placement));
-            	suggestions.addSuggestion(suggestion);
-            }
-            if (suggestions.getTimeLimit() > 0 && System.currentTimeMillis() - startTime > suggestions.getTimeLimit())
-            	suggestions.setTimeoutReached(true);
-            
-            if (current==null)
-            	assignment.unassign(0, lecture);
-            else
-            	assignment.assign(0, current);
-            if (conflicts != null) {
-                for (Placement p: conflicts) {
-                    assignment.assign(0, p);
-                    conflictsToResolve.remove(p.variable());
-                }
-            }
-            if (resolvedConf != null)
-                conflictsToResolve.put(lecture, resolvedConf);
-        }
-    }
+		for (PlacementValue placementValue: values(query, suggestions, assignment, lecture)) {
+			if (sink.isTimeoutReached()) break;
+			placement(sink, suggestions, model, assignment, lecture, placementValue.getPlacement(), resolvedLectures, conflictsToResolve, initialAssignments, nrUnassigned);
+		}
+	}
+	
+	/**
+	 * Assign the given placement of the selected class (unassigning its conflicts), record the suggestion, and undo the changes
+	 */
+	protected static void placement(SuggestionSink sink, Suggestions suggestions, TimetableModel model, Assignment<Lecture, Placement> assignment, Lecture lecture, Placement placement, List<Long> resolvedLectures, Map<Lecture, Placement> conflictsToResolve, Map<Lecture, Placement> initialAssignments, int nrUnassigned) {
+		sink.combinationConsidered();
+		Placement current = initialAssignments.get(lecture);
+		if (!canAssign(suggestions, assignment, lecture, placement, current, initialAssignments)) return;
+		Set<Placement> conflicts = model.conflictValues(assignment, placement);
+		if (!canResolve(model, placement, conflicts, resolvedLectures, nrUnassigned, suggestions.getDepth())) return;
+		for (Placement c: conflicts)
+			assignment.unassign(0, c.variable());
+		assignment.assign(0, placement);
+		for (Placement c: conflicts)
+			conflictsToResolve.put(c.variable(), c);
+		Placement resolvedConf = conflictsToResolve.remove(lecture);
+		
+		if (!sink.isWorse(model.getTotalValue(assignment)))
+			sink.addSuggestion(assignment, resolvedLectures, conflictsToResolve.values(), lecture, current, placement);
+		sink.checkTimeout();
+		
+		if (current==null)
+			assignment.unassign(0, lecture);
+		else
+			assignment.assign(0, current);
+		for (Placement p: conflicts) {
+			assignment.assign(0, p);
+			conflictsToResolve.remove(p.variable());
+		}
+		if (resolvedConf != null)
+			conflictsToResolve.put(lecture, resolvedConf);
+	}
 	
-	protected static double getBound(Query query, Suggestions suggestions, TimetableSolver solver, Map<Lecture, Placement> conflictsToResolve) {
-    	double value = solver.currentSolution().getModel().getTotalValue(solver.currentSolution().getAssignment());
+	protected static double getBound(Query query, Suggestions suggestions, Model<Lecture, Placement> model, Assignment<Lecture, Placement> assignment, Map<Lecture, Placement> conflictsToResolve) {
+    	double value = model.getTotalValue(assignment);
     	for (Lecture lect: conflictsToResolve.keySet()) {
-    		TreeSet<PlacementValue> values = values(query, suggestions, solver, lect);
+    		TreeSet<PlacementValue> values = values(query, suggestions, assignment, lect);
     		if (!values.isEmpty()) {
     			PlacementValue val = values.first();
     			value += val.getValue();
@@ -449,9 +488,8 @@ public class ComputeSuggestionsBackend implements GwtRpcImplementation<ComputeSu
 		return true;
 	}
 	
-	protected static TreeSet<PlacementValue> values(Query query, Suggestions suggestions, TimetableSolver solver, Lecture lecture) {
+	protected static TreeSet<PlacementValue> values(Query query, Suggestions suggestions, Assignment<Lecture, Placement> assignment, Lecture lecture) {
     	TreeSet<PlacementValue> vals = new TreeSet();
-    	Assignment<Lecture, Placement> assignment = solver.currentSolution().getAssignment();
     	if (lecture.getClassId().equals(suggestions.getClassId())) {
     		for (Placement p: (lecture.allowBreakHard() || !suggestions.isAllowBreakHard() ? lecture.values(assignment) : lecture.computeValues(assignment, true))) {
     			if (match(query, suggestions, p)) vals.add(new PlacementValue(assignment, p));
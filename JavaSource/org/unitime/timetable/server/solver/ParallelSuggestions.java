@@ -0,0 +1,352 @@
+/*
+ * Licensed to The Apereo Foundation under one or more contributor license
+ * agreements. See the NOTICE file distributed with this work for
+ * additional information regarding copyright ownership.
+ *
+ * The Apereo Foundation licenses this file to you under the Apache License,
+ * Version 2.0 (the "License"); you may not use this file except in
+ * compliance with the License. You may obtain a copy of the License at:
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ *
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ *
+*/
+package org.unitime.timetable.server.solver;
+
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.HashMap;
+import java.util.LinkedHashMap;
+import java.util.LinkedHashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.TreeSet;
+import java.util.concurrent.Callable;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.ThreadFactory;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import org.apache.commons.logging.Log;
+import org.apache.commons.logging.LogFactory;
+import org.cpsolver.coursett.model.Lecture;
+import org.cpsolver.coursett.model.Placement;
+import org.cpsolver.coursett.model.TimetableModel;
+import org.cpsolver.ifs.assignment.Assignment;
+import org.cpsolver.ifs.assignment.AssignmentMap;
+import org.unitime.localization.impl.Localization;
+import org.unitime.timetable.defaults.ApplicationProperty;
+import org.unitime.timetable.gwt.server.Query;
+import org.unitime.timetable.gwt.shared.SuggestionsInterface.Suggestion;
+import org.unitime.timetable.gwt.shared.SuggestionsInterface.Suggestions;
+import org.unitime.timetable.server.solver.ComputeSuggestionsBackend.PlacementValue;
+import org.unitime.timetable.server.solver.ComputeSuggestionsBackend.SuggestionSink;
+import org.unitime.timetable.solver.TimetableSolver;
+
+/**
+ * Parallel computation of the suggestions of a class (see {@link ComputeSuggestionsBackend}).<br>
+ * The placements of the selected class are distributed among a pool of worker threads. Each worker runs the search of
+ * {@link ComputeSuggestionsBackend} on its own copy of the current assignment (so that the solution of the solver is not
+ * changed while the workers are running), with this class being the {@link SuggestionSink} that the workers share
+ * (the best suggestions found so far, used for bounding, and the time limit). Only the best suggestions found are then
+ * converted into {@link Suggestion}s, on the calling thread using the solver's assignment.
+ *
+ * @author Tomas Muller
+ */
+public class ParallelSuggestions implements SuggestionSink {
+	private static Log sLog = LogFactory.getLog(ParallelSuggestions.class);
+	private static ExecutorService sWorkers = null;
+	private static int sNrWorkers = 0;
+	
+	private SuggestionsContext iContext;
+	private TimetableSolver iSolver;
+	private TimetableModel iModel;
+	private Suggestions iSuggestions;
+	private Query iQuery;
+	private Lecture iLecture;
+	private List<Long> iResolvedLectures;
+	private Map<Lecture, Placement> iConflictsToResolve;
+	private Map<Lecture, Placement> iInitialAssignments;
+	
+	private long iStartTime;
+	private List<Placement> iCandidates = new ArrayList<Placement>();
+	private AtomicInteger iNextCandidate = new AtomicInteger(0);
+	private AtomicInteger iNrCombinationsConsidered = new AtomicInteger(0);
+	private volatile boolean iTimeoutReached = false;
+	private TreeSet<Result> iResults = new TreeSet<Result>();
+	private Map<Long, Lecture> iLectures = new HashMap<Long, Lecture>();
+	
+	public ParallelSuggestions(SuggestionsContext context, TimetableSolver solver, Suggestions suggestions, Query query, Lecture lecture, List<Long> resolvedLectures, Map<Lecture, Placement> conflictsToResolve, Map<Lecture, Placement> initialAssignments) {
+		iContext = context;
+		iSolver = solver;
+		iModel = (TimetableModel)solver.currentSolution().getModel();
+		iSuggestions = suggestions;
+		iQuery = query;
+		iLecture = lecture;
+		iResolvedLectures = resolvedLectures;
+		iConflictsToResolve = conflictsToResolve;
+		iInitialAssignments = initialAssignments;
+	}
+	
+	public static int getNrThreads() {
+		Integer threads = ApplicationProperty.SuggestionsThreads.intValue();
+		return (threads == null ? 1 : threads.intValue());
+	}
+	
+	public static boolean isEnabled() {
+		return getNrThreads() > 1;
+	}
+	
+	protected static synchronized ExecutorService getWorkers(int nrWorkers) {
+		if (sWorkers == null || sNrWorkers != nrWorkers) {
+			if (sWorkers != null) sWorkers.shutdown();
+			sNrWorkers = nrWorkers;
+			sWorkers = Executors.newFixedThreadPool(nrWorkers, new ThreadFactory() {
+				private AtomicInteger iCount = new AtomicInteger(0);
+				@Override
+				public Thread newThread(Runnable r) {
+					Thread thread = new Thread(r, "Suggestions-" + iCount.incrementAndGet());
+					thread.setDaemon(true);
+					return thread;
+				}
+			});
+		}
+		return sWorkers;
+	}
+	
+	/**
+	 * Stop the worker threads
+	 */
+	public static synchronized void shutdown() {
+		if (sWorkers != null) {
+			sWorkers.shutdownNow();
+			sWorkers = null;
+		}
+	}
+	
+	/**
+	 * Parallel version of the suggestions search (the selected class is not resolved yet, it is to be placed first)
+	 * @return false if the suggestions have not been computed (e.g., there are not enough placements to work with), and the sequential search should be used instead
+	 */
+	public boolean backtrack() {
+		if (iSuggestions.getDepth() <= 0) return false;
+		iNrCombinationsConsidered.incrementAndGet();
+		for (PlacementValue value: ComputeSuggestionsBackend.values(iQuery, iSuggestions, iSolver.currentSolution().getAssignment(), iLecture))
+			iCandidates.add(value.getPlacement());
+		return compute(false);
+	}
+	
+	/**
+	 * Parallel version of the placements computation (all possible placements of the selected class)
+	 * @return false if the placements have not been computed, and the sequential computation should be used instead
+	 */
+	public boolean placements() {
+		for (PlacementValue value: ComputeSuggestionsBackend.values(iQuery, iSuggestions, iSolver.currentSolution().getAssignment(), iLecture))
+			iCandidates.add(value.getPlacement());
+		return compute(true);
+	}
+	
+	protected boolean compute(boolean placements) {
+		int nrWorkers = Math.min(getNrThreads(), iCandidates.size());
+		if (nrWorkers <= 1) return false;
+		
+		iStartTime = System.currentTimeMillis();
+		List<Callable<Integer>> workers = new ArrayList<Callable<Integer>>(nrWorkers);
+		for (int i = 0; i < nrWorkers; i++)
+			workers.add(new Worker(placements, Localization.getLocale()));
+		try {
+			for (Future<Integer> future: getWorkers(getNrThreads()).invokeAll(workers))
+				future.get();
+		} catch (RejectedExecutionException e) {
+			// the pool has been shut down (e.g., the number of threads has changed, or the application is being stopped)
+			iTimeoutReached = true;
+			sLog.info("Failed to compute suggestions in parallel: " + e.getMessage());
+			return false;
+		} catch (InterruptedException e) {
+			Thread.currentThread().interrupt();
+			iTimeoutReached = true;
+		} catch (ExecutionException e) {
+			sLog.warn("Failed to compute suggestions in parallel: " + e.getCause().getMessage(), e.getCause());
+			return false;
+		}
+		
+		iSuggestions.setNrCombinationsConsidered(iSuggestions.getNrCombinationsConsidered() + iNrCombinationsConsidered.get());
+		if (iTimeoutReached) iSuggestions.setTimeoutReached(true);
+		
+		Assignment<Lecture, Placement> assignment = iSolver.currentSolution().getAssignment();
+		for (Result result: iResults) {
+			Map<Lecture, Placement> undo = new HashMap<Lecture, Placement>();
+			for (Lecture lecture: result.getChanges().keySet()) {
+				Placement current = assignment.getValue(lecture);
+				undo.put(lecture, current);
+				if (current != null) assignment.unassign(0, lecture);
+			}
+			for (Placement placement: result.getChanges().values())
+				if (placement != null) assignment.assign(0, placement);
+			Suggestion suggestion = SelectedAssignmentBackend.createSuggestion(iContext, iSolver, iInitialAssignments, result.getOrder(), result.getUnresolvedConflicts());
+			if (placements && !suggestion.hasDifferentAssignments())
+				suggestion.addDifferentAssignment(SelectedAssignmentBackend.createClassAssignmentDetails(iContext, iSolver, iLecture, iInitialAssignments.get(iLecture), result.getChanges().get(iLecture)));
+			iSuggestions.addSuggestion(suggestion);
+			for (Lecture lecture: result.getChanges().keySet())
+				if (assignment.getValue(lecture) != null) assignment.unassign(0, lecture);
+			for (Placement placement: undo.values())
+				if (placement != null) assignment.assign(0, placement);
+		}
+		return true;
+	}
+	
+	@Override
+	public void combinationConsidered() {
+		iNrCombinationsConsidered.incrementAndGet();
+	}
+	
+	@Override
+	public boolean isTimeoutReached() {
+		return iTimeoutReached;
+	}
+	
+	@Override
+	public boolean checkTimeout() {
+		if (!iTimeoutReached && iSuggestions.getTimeLimit() > 0 && System.currentTimeMillis() - iStartTime > iSuggestions.getTimeLimit())
+			iTimeoutReached = true;
+		return iTimeoutReached;
+	}
+	
+	@Override
+	public boolean isWorse(double value) {
+		synchronized (iResults) {
+			return iResults.size() >= iSuggestions.getLimit() && iResults.last().getValue() < value;
+		}
+	}
+	
+	/**
+	 * Record the suggestion found by a worker: the classes that differ from the solver's assignment (the classes that have been
+	 * resolved, the unresolved conflicts, and the selected class) together with their new placements
+	 */
+	@Override
+	public void addSuggestion(Assignment<Lecture, Placement> assignment, List<Long> resolvedLectures, Collection<Placement> unresolvedConflicts, Lecture lecture, Placement current, Placement placement) {
+		Assignment<Lecture, Placement> base = iSolver.currentSolution().getAssignment();
+		Set<Lecture> lectures = new LinkedHashSet<Lecture>();
+		for (Long classId: resolvedLectures) {
+			Lecture l = getLecture(classId);
+			if (l != null) lectures.add(l);
+		}
+		for (Placement p: unresolvedConflicts)
+			lectures.add(p.variable());
+		if (lecture != null) lectures.add(lecture);
+		Map<Lecture, Placement> changes = new LinkedHashMap<Lecture, Placement>();
+		for (Lecture l: lectures) {
+			Placement p = assignment.getValue(l);
+			if (p == null ? base.getValue(l) != null : !p.equals(base.getValue(l)))
+				changes.put(l, p);
+		}
+		addResult(new Result(iModel.getTotalValue(assignment), changes, new ArrayList<Long>(resolvedLectures), new ArrayList<Placement>(unresolvedConflicts)));
+	}
+	
+	protected Lecture getLecture(Long classId) {
+		synchronized (iLectures) {
+			if (iLectures.isEmpty()) {
+				for (Lecture l: iModel.variables())
+					iLectures.put(l.getClassId(), l);
+				for (Lecture l: iModel.constantVariables())
+					iLectures.put(l.getClassId(), l);
+			}
+			return iLectures.get(classId);
+		}
+	}
+	
+	protected void addResult(Result result) {
+		synchronized (iResults) {
+			if (iResults.size() >= iSuggestions.getLimit() && iResults.last().getValue() < result.getValue()) return;
+			iResults.add(result);
+			if (iResults.size() > iSuggestions.getLimit()) iResults.remove(iResults.last());
+		}
+	}
+	
+	/**
+	 * A suggestion found by a worker: new placements of the changed classes (null if the class is to be unassigned)
+	 */
+	protected static class Result implements Comparable<Result> {
+		private static AtomicInteger sIds = new AtomicInteger(0);
+		private int iId = sIds.incrementAndGet();
+		private double iValue;
+		private Map<Lecture, Placement> iChanges;
+		private List<Long> iOrder;
+		private Collection<Placement> iUnresolvedConflicts;
+		private String iKey;
+		
+		protected Result(double value, Map<Lecture, Placement> changes, List<Long> order, Collection<Placement> unresolvedConflicts) {
+			iValue = value;
+			iChanges = changes;
+			iOrder = order;
+			iUnresolvedConflicts = unresolvedConflicts;
+			StringBuffer key = new StringBuffer();
+			for (Map.Entry<Lecture, Placement> e: changes.entrySet())
+				key.append(e.getKey().getClassId()).append(":").append(e.getValue() == null ? "-" : e.getValue().getId()).append(",");
+			iKey = key.toString();
+		}
+		
+		public double getValue() { return iValue; }
+		public Map<Lecture, Placement> getChanges() { return iChanges; }
+		public List<Long> getOrder() { return iOrder; }
+		public Collection<Placement> getUnresolvedConflicts() { return iUnresolvedConflicts; }
+		
+		@Override
+		public int compareTo(Result r) {
+			int cmp = Double.compare(getValue(), r.getValue());
+			if (cmp != 0) return cmp;
+			cmp = iKey.compareTo(r.iKey);
+			if (cmp != 0) return cmp;
+			return Integer.compare(iId, r.iId);
+		}
+	}
+	
+	/**
+	 * Search worker, taking the placements of the selected class one by one, using its own copy of the solver's assignment
+	 */
+	protected class Worker implements Callable<Integer> {
+		private boolean iPlacements;
+		private String iLocale;
+		
+		protected Worker(boolean placements, String locale) {
+			iPlacements = placements;
+			iLocale = locale;
+		}
+		
+		@Override
+		public Integer call() {
+			Localization.setLocale(iLocale);
+			try {
+				Assignment<Lecture, Placement> assignment = new AssignmentMap<Lecture, Placement>(iSolver.currentSolution().getAssignment());
+				List<Long> resolved = new ArrayList<Long>(iResolvedLectures);
+				Map<Lecture, Placement> conflicts = new HashMap<Lecture, Placement>(iConflictsToResolve);
+				if (!iPlacements) resolved.add(iLecture.getClassId());
+				int nrUnassigned = conflicts.size();
+				if (iPlacements && conflicts.containsKey(iLecture)) nrUnassigned --;
+				int count = 0;
+				while (!iTimeoutReached) {
+					int index = iNextCandidate.getAndIncrement();
+					if (index >= iCandidates.size()) break;
+					if (iPlacements)
+						ComputeSuggestionsBackend.placement(ParallelSuggestions.this, iSuggestions, iModel, assignment, iLecture, iCandidates.get(index), resolved, conflicts, iInitialAssignments, nrUnassigned);
+					else
+						ComputeSuggestionsBackend.tryPlacement(ParallelSuggestions.this, iQuery, iSuggestions, iModel, assignment, iLecture, iCandidates.get(index), resolved, conflicts, iInitialAssignments, nrUnassigned, iSuggestions.getDepth());
+					count ++;
+				}
+				return count;
+			} finally {
+				Localization.removeLocale();
+			}
+		}
+	}
+}
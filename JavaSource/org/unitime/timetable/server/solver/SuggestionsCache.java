@@ -0,0 +1,209 @@
+/*
+ * Licensed to The Apereo Foundation under one or more contributor license
+ * agreements. See the NOTICE file distributed with this work for
+ * additional information regarding copyright ownership.
+ *
+ * The Apereo Foundation licenses this file to you under the Apache License,
+ * Version 2.0 (the "License"); you may not use this file except in
+ * compliance with the License. You may obtain a copy of the License at:
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ *
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ *
+*/
+package org.unitime.timetable.server.solver;
+
+import java.util.LinkedHashMap;
+import java.util.Map;
+import java.util.concurrent.atomic.AtomicLong;
+
+import org.apache.commons.logging.Log;
+import org.apache.commons.logging.LogFactory;
+import org.cpsolver.coursett.model.Lecture;
+import org.cpsolver.coursett.model.Placement;
+import org.cpsolver.ifs.assignment.Assignment;
+import org.cpsolver.ifs.model.Constraint;
+import org.cpsolver.ifs.model.Model;
+import org.cpsolver.ifs.model.ModelListener;
+import org.cpsolver.ifs.solver.Solver;
+import org.unitime.localization.impl.Localization;
+import org.unitime.timetable.defaults.ApplicationProperty;
+import org.unitime.timetable.gwt.shared.SuggestionsInterface.ComputeSuggestionsRequest;
+import org.unitime.timetable.gwt.shared.SuggestionsInterface.SelectedAssignment;
+import org.unitime.timetable.gwt.shared.SuggestionsInterface.Suggestions;
+
+/**
+ * Cache of the suggestions computed by the {@link ComputeSuggestionsBackend} for a course timetabling solver.<br>
+ * Suggestions are keyed by the request (class, selected assignments, depth, limits, and filter) and the context they were
+ * computed for (instructor name format and locale). The cache listens to the changes of the solver model: each change of the
+ * solver's assignment increases the assignment version and a cached result is only returned when the version has not
+ * changed since the result was computed.
+ *
+ * @author Tomas Muller
+ */
+public class SuggestionsCache implements ModelListener<Lecture, Placement> {
+	private static Log sLog = LogFactory.getLog(SuggestionsCache.class);
+	private Model<Lecture, Placement> iModel;
+	private int iAssignmentIndex;
+	private AtomicLong iVersion = new AtomicLong(0);
+	private long iHits = 0, iMisses = 0;
+	private Map<String, CachedSuggestions> iCache = new LinkedHashMap<String, CachedSuggestions>(16, 0.75f, true) {
+		private static final long serialVersionUID = 1L;
+		@Override
+		protected boolean removeEldestEntry(Map.Entry<String, CachedSuggestions> eldest) {
+			return size() > getMaxSize();
+		}
+	};
+	
+	/**
+	 * @param model solver model
+	 * @param assignment assignment of which the suggestions are computed (changes of other assignments, e.g., of the working
+	 * assignments of a parallel search, are ignored)
+	 */
+	public SuggestionsCache(Model<Lecture, Placement> model, Assignment<Lecture, Placement> assignment) {
+		iModel = model;
+		iAssignmentIndex = assignment.getIndex();
+		iModel.addModelListener(this);
+	}
+	
+	public Model<Lecture, Placement> getModel() { return iModel; }
+	
+	/**
+	 * Stop listening to the model changes and forget all the suggestions
+	 */
+	public synchronized void dispose() {
+		iModel.removeModelListener(this);
+		iCache.clear();
+	}
+	
+	protected int getMaxSize() {
+		Integer size = ApplicationProperty.SuggestionsCacheSize.intValue();
+		return (size == null ? 100 : size.intValue());
+	}
+	
+	protected long getTimeToLive() {
+		Integer ttl = ApplicationProperty.SuggestionsCacheTimeToLive.intValue();
+		return (ttl == null ? 300000l : 1000l * ttl);
+	}
+	
+	/**
+	 * Current version of the solver's assignment
+	 */
+	public long getVersion() { return iVersion.get(); }
+	
+	/**
+	 * Cache key of the given request
+	 */
+	public static String key(SuggestionsContext context, ComputeSuggestionsRequest request) {
+		StringBuffer key = new StringBuffer();
+		key.append(request.getClassId());
+		key.append("|").append(request.getDepth());
+		key.append("|").append(request.getLimit());
+		key.append("|").append(request.getTimeLimit());
+		key.append("|").append(request.isAllowBreakHard() ? "B" : "").append(request.isSameRoom() ? "R" : "").append(request.isSameTime() ? "T" : "").append(request.isPlacements() ? "P" : "");
+		key.append("|").append(request.hasFilter() ? request.getFilter().trim() : "");
+		key.append("|");
+		if (request.hasAssignments())
+			for (SelectedAssignment a: request.getAssignments())
+				key.append(a.getClassId()).append(":").append(a.getDays()).append(":").append(a.getStartSlot()).append(":").append(a.getRoomIds())
+					.append(":").append(a.getPatternId()).append(":").append(a.getDatePatternId()).append(";");
+		key.append("|").append(context.getInstructorNameFormat());
+		key.append("|").append(Localization.getLocale());
+		return key.toString();
+	}
+	
+	/**
+	 * Cached suggestions for the given key
+	 * @return null if not cached, expired, or if the solver's assignment has changed since the suggestions were computed
+	 */
+	public synchronized Suggestions get(String key) {
+		CachedSuggestions entry = iCache.get(key);
+		if (entry != null && !entry.isValid(iVersion.get(), getTimeToLive())) {
+			iCache.remove(key);
+			entry = null;
+		}
+		if (entry == null) {
+			iMisses ++;
+			return null;
+		}
+		iHits ++;
+		return entry.getSuggestions();
+	}
+	
+	/**
+	 * Store the computed suggestions. To be called when the computation is done (and the solver's assignment is restored),
+	 * as the version of the assignment is remembered with the suggestions.
+	 */
+	public synchronized void put(String key, Suggestions suggestions) {
+		iCache.put(key, new CachedSuggestions(iVersion.get(), suggestions));
+		if (sLog.isDebugEnabled() && (iHits + iMisses) % 100 == 0)
+			sLog.debug(this);
+	}
+	
+	protected void changed() {
+		iVersion.incrementAndGet();
+	}
+
+	@Override
+	public void variableAdded(Lecture variable) { changed(); }
+
+	@Override
+	public void variableRemoved(Lecture variable) { changed(); }
+
+	@Override
+	public void constraintAdded(Constraint<Lecture, Placement> constraint) { changed(); }
+
+	@Override
+	public void constraintRemoved(Constraint<Lecture, Placement> constraint) { changed(); }
+
+	@Override
+	public void beforeAssigned(Assignment<Lecture, Placement> assignment, long iteration, Placement value) {}
+
+	@Override
+	public void beforeUnassigned(Assignment<Lecture, Placement> assignment, long iteration, Placement value) {}
+
+	@Override
+	public void afterAssigned(Assignment<Lecture, Placement> assignment, long iteration, Placement value) {
+		if (assignment.getIndex() == iAssignmentIndex) changed();
+	}
+
+	@Override
+	public void afterUnassigned(Assignment<Lecture, Placement> assignment, long iteration, Placement value) {
+		if (assignment.getIndex() == iAssignmentIndex) changed();
+	}
+
+	@Override
+	public boolean init(Solver<Lecture, Placement> solver) {
+		return true;
+	}
+	
+	@Override
+	public synchronized String toString() {
+		return "SuggestionsCache{size=" + iCache.size() + ", version=" + iVersion.get() + ", hits=" + iHits + ", misses=" + iMisses +
+				", hitRatio=" + (iHits + iMisses == 0 ? 0 : (100 * iHits / (iHits + iMisses))) + "%}";
+	}
+	
+	private static class CachedSuggestions {
+		private long iVersion;
+		private long iCreated;
+		private Suggestions iSuggestions;
+		
+		CachedSuggestions(long version, Suggestions suggestions) {
+			iVersion = version;
+			iCreated = System.currentTimeMillis();
+			iSuggestions = suggestions;
+		}
+		
+		Suggestions getSuggestions() { return iSuggestions; }
+		
+		boolean isValid(long version, long ttl) {
+			return iVersion == version && (ttl <= 0 || System.currentTimeMillis() - iCreated <= ttl);
+		}
+	}
+}
@@ -72,6 +72,7 @@ import org.dom4j.Element;
 import org.hibernate.Session;
 import org.hibernate.Transaction;
 import org.hibernate.type.LongType;
+import org.unitime.timetable.defaults.ApplicationProperty;
 import org.unitime.timetable.gwt.server.Query;
 import org.unitime.timetable.gwt.server.Query.TermMatcher;
 import org.unitime.timetable.gwt.shared.EventInterface.FilterRpcResponse.Entity;
@@ -102,6 +103,7 @@ import org.unitime.timetable.server.solver.ClassAssignmentDetailsBackend;
 import org.unitime.timetable.server.solver.ComputeConflictTableBackend;
 import org.unitime.timetable.server.solver.ComputeSuggestionsBackend;
 import org.unitime.timetable.server.solver.SelectedAssignmentBackend;
+import org.unitime.timetable.server.solver.SuggestionsCache;
 import org.unitime.timetable.server.solver.SuggestionsContext;
 import org.unitime.timetable.server.solver.SuggestionsFilterBackend;
 import org.unitime.timetable.server.solver.TimetableGridHelper.ResourceType;
@@ -122,6 +124,7 @@ import org.unitime.timetable.solver.ui.SolverUnassignedClassesModel;
 import org.unitime.timetable.solver.ui.StudentConflictsReport;
 import org.unitime.timetable.solver.ui.ViolatedDistrPreferencesReport;
 import org.unitime.timetable.webutil.timegrid.SolverGridModel;
+import org.unitime.timetable.webutil.timegrid.TimetableGridCellCache;
 import org.unitime.timetable.webutil.timegrid.TimetableGridContext;
 import org.unitime.timetable.webutil.timegrid.TimetableGridModel;
 
@@ -134,6 +137,10 @@ public class TimetableSolver extends AbstractSolver<Lecture, Placement, Timetabl
 	private Vector<AssignmentRecord> iBestAssignmentRecords = new Vector<AssignmentRecord>();
 	private ConflictStatisticsInfo iCbsInfo = null;
 	private CommitedClassAssignmentProxy iCommitedClassAssignmentProxy;
+	private TimetableGridCellCache iGridCellCache = null;
+	private Object iGridCellCacheLock = new Object();
+	private SuggestionsCache iSuggestionsCache = null;
+	private Object iSuggestionsCacheLock = new Object();
 
 	public TimetableSolver(DataProperties properties, SolverDisposeListener solverDisposeListener) {
 		super(properties, solverDisposeListener);
@@ -606,6 +613,46 @@ public class TimetableSolver extends AbstractSolver<Lecture, Placement, Timetabl
 		});
 	}
     
+    /**
+     * Cache of the timetable grid cells of the current model, null if disabled
+     */
+    public TimetableGridCellCache getGridCellCache() {
+    	synchronized (iGridCellCacheLock) {
+    		if (!ApplicationProperty.TimetableGridCellCache.isTrue()) {
+    			if (iGridCellCache != null) {
+    				iGridCellCache.dispose();
+    				iGridCellCache = null;
+    			}
+    			return null;
+    		}
+    		if (iGridCellCache == null || iGridCellCache.getModel() != currentSolution().getModel()) {
+    			if (iGridCellCache != null) iGridCellCache.dispose();
+    			iGridCellCache = new TimetableGridCellCache(currentSolution().getModel(), currentSolution().getAssignment());
+    		}
+    		return iGridCellCache;
+    	}
+    }
+    
+    /**
+     * Cache of the computed suggestions of the current model, null if disabled
+     */
+    public SuggestionsCache getSuggestionsCache() {
+    	synchronized (iSuggestionsCacheLock) {
+    		if (!ApplicationProperty.SuggestionsCache.isTrue()) {
+    			if (iSuggestionsCache != null) {
+    				iSuggestionsCache.dispose();
+    				iSuggestionsCache = null;
+    			}
+    			return null;
+    		}
+    		if (iSuggestionsCache == null || iSuggestionsCache.getModel() != currentSolution().getModel()) {
+    			if (iSuggestionsCache != null) iSuggestionsCache.dispose();
+    			iSuggestionsCache = new SuggestionsCache(currentSolution().getModel(), currentSolution().getAssignment());
+    		}
+    		return iSuggestionsCache;
+    	}
+    }
+    
     @Override
     public Vector getTimetableGridTables(TimetableGridContext context) {
     	Vector models = new Vector();
@@ -1654,7 +1701,16 @@ public class TimetableSolver extends AbstractSolver<Lecture, Placement, Timetabl
     	Lock lock = currentSolution().getLock().writeLock();
 		lock.lock();
 		try {
-			return ComputeSuggestionsBackend.computeSuggestions(context, this, request);
+			SuggestionsCache cache = getSuggestionsCache();
+			if (cache == null)
+				return ComputeSuggestionsBackend.computeSuggestions(context, this, request);
+			String key = SuggestionsCache.key(context, request);
+			org.unitime.timetable.gwt.shared.SuggestionsInterface.Suggestions suggestions = cache.get(key);
+			if (suggestions == null) {
+				suggestions = ComputeSuggestionsBackend.computeSuggestions(context, this, request);
+				cache.put(key, suggestions);
+			}
+			return suggestions;
 		} finally {
 			lock.unlock();
 		}
@@ -35,6 +35,7 @@ import org.cpsolver.ifs.util.ToolBox;
 import org.hibernate.CacheMode;
 import org.hibernate.Transaction;
 import org.unitime.timetable.ApplicationProperties;
+import org.unitime.timetable.events.EventLookupCache;
 import org.unitime.timetable.model.ChangeLog;
 import org.unitime.timetable.model.Department;
 import org.unitime.timetable.model.DepartmentalInstructor;
@@ -54,6 +55,7 @@ import org.unitime.timetable.model.dao.LocationDAO;
 import org.unitime.timetable.model.dao.StudentDAO;
 import org.unitime.timetable.solver.exam.ui.ExamAssignment;
 import org.unitime.timetable.solver.exam.ui.ExamAssignmentInfo;
+import org.unitime.timetable.solver.exam.ui.ExamConflictGraph;
 import org.unitime.timetable.solver.jgroups.SolverServerImplementation;
 
 
@@ -82,6 +84,8 @@ public class ExamDatabaseSaver extends ProblemSaver<Exam, ExamPlacement, ExamMod
         try {
             tx = hibSession.beginTransaction();
             saveSolution(hibSession);
+            ExamConflictGraph.assignmentsChanged(hibSession, iSessionId, iExamTypeId);
+            EventLookupCache.getInstance().invalidate(hibSession, iSessionId);
             tx.commit();
             
             iProgress.setPhase("Refreshing solution ...", 1);
@@ -20,13 +20,16 @@
 package org.unitime.timetable.solver.exam.ui;
 
 import java.io.Serializable;
+import java.util.ArrayList;
 import java.util.Collection;
 import java.util.Comparator;
 import java.util.Date;
 import java.util.Enumeration;
+import java.util.HashMap;
 import java.util.HashSet;
 import java.util.Hashtable;
 import java.util.Iterator;
+import java.util.List;
 import java.util.Map;
 import java.util.Set;
 import java.util.TreeSet;
@@ -267,7 +270,7 @@ public class ExamAssignmentInfo extends ExamAssignment implements Serializable
     public ExamAssignmentInfo(org.unitime.timetable.model.Exam exam, boolean useCache) {
         super(exam);
         if (!useCache) {
-            generateConflicts(exam, exam.getStudentExams(), null); 
+            generateConflicts(exam, null);
             return;
         }
         if (exam.getConflicts()!=null && !exam.getConflicts().isEmpty()) {
@@ -581,11 +584,12 @@ public class ExamAssignmentInfo extends ExamAssignment implements Serializable
     }
 
     public ExamAssignmentInfo(org.unitime.timetable.model.Exam exam, ExamPeriod period, Collection<ExamRoomInfo> rooms) throws Exception {
-        this(exam, period, rooms, (period==null?null:exam.getStudentExams()), null);
+        this(exam, period, rooms, (Hashtable<Long, ExamAssignment>)null);
     }
     
     public ExamAssignmentInfo(org.unitime.timetable.model.Exam exam, ExamPeriod period, Collection<ExamRoomInfo> rooms, Hashtable<Long, ExamAssignment> table) throws Exception {
-        this(exam, period, rooms, exam.getStudentExams(), table);
+        super(exam, period, rooms);
+        if (period!=null) generateConflicts(exam, table);
     }
     
     
@@ -596,7 +600,19 @@ public class ExamAssignmentInfo extends ExamAssignment implements Serializable
    
     public ExamAssignmentInfo(org.unitime.timetable.model.Exam exam, Hashtable<Long, ExamAssignment> table) {
         super(exam);
-        generateConflicts(exam, exam.getStudentExams(), table);
+        generateConflicts(exam, table);
+    }
+    
+    /**
+     * Generate conflicts, using the shared examination conflict graph when enabled (see {@link ExamConflictGraph})
+     */
+    protected void generateConflicts(org.unitime.timetable.model.Exam exam, Hashtable<Long, ExamAssignment> table) {
+        if (getPeriod()==null) return;
+        if (ExamConflictGraph.isEnabled())
+            generateConflicts(ExamConflictGraph.getInstance(exam.getSession().getUniqueId(), exam.getExamType().getUniqueId()), exam,
+                    table, new Parameters(exam.getSession().getUniqueId(), exam.getExamType().getUniqueId()));
+        else
+            generateConflicts(exam, exam.getStudentExams(), table);
     }
     
     public void generateConflicts(org.unitime.timetable.model.Exam exam, Hashtable<Long, Set<org.unitime.timetable.model.Exam>> examStudents, Hashtable<Long, ExamAssignment> table) {
@@ -726,6 +742,153 @@ public class ExamAssignmentInfo extends ExamAssignment implements Serializable
         }
     }
     
+    /**
+     * Generate conflicts using the shared examination conflict graph: direct and back-to-back conflicts are computed from the pairs of examinations
+     * sharing students (instructors) and their assigned periods, more than two a day conflicts from the examinations of each student (instructor).
+     * Only the examinations that are in a conflict are loaded (using one query).
+     */
+    public void generateConflicts(ExamConflictGraph graph, org.unitime.timetable.model.Exam exam, Hashtable<Long, ExamAssignment> table, Parameters p) {
+        if (getPeriod()==null) return;
+        
+        Set<Long> conflictingExamIds = new HashSet<Long>();
+        Map<Long, Integer> directs = new HashMap<Long, Integer>(), backToBacks = new HashMap<Long, Integer>();
+        Map<String, List<Long>> m2ds = new HashMap<String, List<Long>>();
+        Map<String, TreeSet<Long>> m2dExams = new HashMap<String, TreeSet<Long>>();
+        graphConflicts(graph.getStudentAdjacentExams(exam.getUniqueId()), graph.getStudentExamIds(exam.getUniqueId()), table, p, graph, directs, backToBacks, m2ds, m2dExams, conflictingExamIds);
+        Map<Long, Integer> idirects = new HashMap<Long, Integer>(), ibackToBacks = new HashMap<Long, Integer>();
+        Map<String, List<Long>> im2ds = new HashMap<String, List<Long>>();
+        Map<String, TreeSet<Long>> im2dExams = new HashMap<String, TreeSet<Long>>();
+        graphConflicts(graph.getInstructorAdjacentExams(exam.getUniqueId()), graph.getInstructorExamIds(exam.getUniqueId()), table, p, graph, idirects, ibackToBacks, im2ds, im2dExams, conflictingExamIds);
+        
+        Map<Long, org.unitime.timetable.model.Exam> exams = ExamConflictGraph.loadExams(ExamDAO.getInstance().getSession(), conflictingExamIds);
+        
+        for (Map.Entry<Long, Integer> e: directs.entrySet()) {
+            org.unitime.timetable.model.Exam other = exams.get(e.getKey());
+            if (other == null) continue;
+            DirectConflict dc = new DirectConflict(getAssignment(other, table, null, null));
+            dc.iNrStudents = e.getValue();
+            dc.getStudents().addAll(graph.getSharedStudents(exam.getUniqueId(), other.getUniqueId()));
+            iNrDirectConflicts += e.getValue();
+            iDirects.add(dc);
+        }
+        for (Map.Entry<Long, Integer> e: backToBacks.entrySet()) {
+            org.unitime.timetable.model.Exam other = exams.get(e.getKey());
+            if (other == null) continue;
+            double distance = Location.getDistance(getRooms(), getAssignedRooms(other, table));
+            BackToBackConflict btb = new BackToBackConflict(getAssignment(other, table, null, null), (p.getBackToBackDistance()<0?false:distance>p.getBackToBackDistance()), distance);
+            btb.iNrStudents = e.getValue();
+            btb.getStudents().addAll(graph.getSharedStudents(exam.getUniqueId(), other.getUniqueId()));
+            iNrBackToBackConflicts += e.getValue();
+            if (btb.isDistance()) iNrDistanceBackToBackConflicts += e.getValue();
+            iBackToBacks.add(btb);
+        }
+        for (Map.Entry<String, List<Long>> e: m2ds.entrySet()) {
+            TreeSet otherExams = new TreeSet();
+            for (Long otherId: m2dExams.get(e.getKey())) {
+                org.unitime.timetable.model.Exam other = exams.get(otherId);
+                if (other != null) otherExams.add(getAssignment(other, table, null, null));
+            }
+            MoreThanTwoADayConflict m2d = new MoreThanTwoADayConflict(otherExams);
+            m2d.iNrStudents = e.getValue().size();
+            m2d.getStudents().addAll(e.getValue());
+            iNrMoreThanTwoADayConflicts += e.getValue().size();
+            iMoreThanTwoADays.add(m2d);
+        }
+        
+        if (ApplicationProperty.ExaminationConsiderEventConflicts.isTrue(exam.getExamType().getReference())) {
+            computeUnavailablility(exam, getPeriodId(), null);
+            for (Iterator i=getExam().getInstructors().iterator();i.hasNext();)
+                computeUnavailablility((DepartmentalInstructor)i.next(), getPeriod(), null);
+        }
+        
+        for (Map.Entry<Long, Integer> e: idirects.entrySet()) {
+            org.unitime.timetable.model.Exam other = exams.get(e.getKey());
+            if (other == null) continue;
+            DirectConflict dc = new DirectConflict(getAssignment(other, table, null, null));
+            dc.iNrStudents = e.getValue();
+            dc.getStudents().addAll(graph.getSharedInstructors(exam.getUniqueId(), other.getUniqueId()));
+            iNrInstructorDirectConflicts += e.getValue();
+            iInstructorDirects.add(dc);
+        }
+        for (Map.Entry<Long, Integer> e: ibackToBacks.entrySet()) {
+            org.unitime.timetable.model.Exam other = exams.get(e.getKey());
+            if (other == null) continue;
+            double distance = Location.getDistance(getRooms(), getAssignedRooms(other, table));
+            BackToBackConflict btb = new BackToBackConflict(getAssignment(other, table, null, null), (p.getBackToBackDistance()<0?false:distance>p.getBackToBackDistance()), distance);
+            btb.iNrStudents = e.getValue();
+            btb.getStudents().addAll(graph.getSharedInstructors(exam.getUniqueId(), other.getUniqueId()));
+            iNrInstructorBackToBackConflicts += e.getValue();
+            if (btb.isDistance()) iNrInstructorDistanceBackToBackConflicts += e.getValue();
+            iInstructorBackToBacks.add(btb);
+        }
+        for (Map.Entry<String, List<Long>> e: im2ds.entrySet()) {
+            TreeSet otherExams = new TreeSet();
+            for (Long otherId: im2dExams.get(e.getKey())) {
+                org.unitime.timetable.model.Exam other = exams.get(otherId);
+                if (other != null) otherExams.add(getAssignment(other, table, null, null));
+            }
+            MoreThanTwoADayConflict m2d = new MoreThanTwoADayConflict(otherExams);
+            m2d.iNrStudents = e.getValue().size();
+            m2d.getStudents().addAll(e.getValue());
+            iNrInstructorMoreThanTwoADayConflicts += e.getValue().size();
+            iInstructorMoreThanTwoADays.add(m2d);
+        }
+        
+        for (Iterator i=getExam().getDistributionObjects().iterator();i.hasNext();) {
+            DistributionObject dObj = (DistributionObject)i.next();
+            DistributionPref pref = dObj.getDistributionPref();
+            if (!check(pref, getExam(), getPeriod(), getRooms(), table))
+                iDistributions.add(new DistributionConflict(pref, getExam()));
+        }
+    }
+    
+    /**
+     * Assigned period of the given examination, taking the given table of assignments (if provided) into account
+     */
+    private static ExamPeriod getAssignedPeriod(ExamConflictGraph graph, Long examId, Hashtable<Long, ExamAssignment> table, Parameters p) {
+        ExamAssignment assignment = (table==null?null:table.get(examId));
+        return (assignment==null?p.getPeriod(graph.getAssignedPeriodId(examId)):assignment.getPeriod());
+    }
+    
+    /**
+     * Find direct, back-to-back, and more than two a day conflicts (number of shared students / instructors for each conflicting examination)
+     * from the examinations adjacent to this examination in the conflict graph and from the examinations of each student / instructor
+     */
+    private void graphConflicts(Map<Long, Integer> adjacent, Map<Long, Set<Long>> personExams, Hashtable<Long, ExamAssignment> table, Parameters p, ExamConflictGraph graph,
+            Map<Long, Integer> directs, Map<Long, Integer> backToBacks, Map<String, List<Long>> m2ds, Map<String, TreeSet<Long>> m2dExams, Set<Long> conflictingExamIds) {
+        Map<Long, ExamPeriod> periods = new HashMap<Long, ExamPeriod>();
+        for (Map.Entry<Long, Integer> e: adjacent.entrySet()) {
+            ExamPeriod otherPeriod = getAssignedPeriod(graph, e.getKey(), table, p);
+            periods.put(e.getKey(), otherPeriod);
+            if (otherPeriod==null) continue;
+            if (getPeriod().equals(otherPeriod)) {
+                directs.put(e.getKey(), e.getValue());
+                conflictingExamIds.add(e.getKey());
+            } else if (p.isBackToBack(getPeriod(), otherPeriod)) {
+                backToBacks.put(e.getKey(), e.getValue());
+                conflictingExamIds.add(e.getKey());
+            }
+        }
+        for (Map.Entry<Long, Set<Long>> e: personExams.entrySet()) {
+            TreeSet<Long> sameDateExams = new TreeSet<Long>();
+            for (Long otherId: e.getValue()) {
+                ExamPeriod otherPeriod = periods.get(otherId);
+                if (otherPeriod != null && getPeriod().getDateOffset().equals(otherPeriod.getDateOffset()))
+                    sameDateExams.add(otherId);
+            }
+            if (sameDateExams.size()>=2) {
+                List<Long> people = m2ds.get(sameDateExams.toString());
+                if (people == null) {
+                    people = new ArrayList<Long>();
+                    m2ds.put(sameDateExams.toString(), people);
+                    m2dExams.put(sameDateExams.toString(), sameDateExams);
+                    conflictingExamIds.addAll(sameDateExams);
+                }
+                people.add(e.getKey());
+            }
+        }
+    }
+    
     public TreeSet<DirectConflict> getDirectConflicts() {
         return iDirects;
     }
@@ -1533,6 +1696,15 @@ public class ExamAssignmentInfo extends ExamAssignment implements Serializable
         }
         
         public int getBackToBackDistance() { return iBtbDistance; }
+        
+        public ExamPeriod getPeriod(Long periodId) {
+            if (periodId == null) return null;
+            for (Iterator i=iPeriods.iterator();i.hasNext();) {
+                ExamPeriod p = (ExamPeriod)i.next();
+                if (p.getUniqueId().equals(periodId)) return p;
+            }
+            return null;
+        }
         public boolean isDayBreakBackToBack() { return iBtbDayBreak; }
 
         public boolean isBackToBack(ExamPeriod p1, ExamPeriod p2) {
@@ -0,0 +1,566 @@
+/*
+ * Licensed to The Apereo Foundation under one or more contributor license
+ * agreements. See the NOTICE file distributed with this work for
+ * additional information regarding copyright ownership.
+ *
+ * The Apereo Foundation licenses this file to you under the Apache License,
+ * Version 2.0 (the "License"); you may not use this file except in
+ * compliance with the License. You may obtain a copy of the License at:
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ *
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ * 
+*/
+package org.unitime.timetable.solver.exam.ui;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collection;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.Iterator;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.TreeMap;
+import java.util.TreeSet;
+import java.util.concurrent.ConcurrentHashMap;
+
+import javax.transaction.Status;
+import javax.transaction.Synchronization;
+
+import org.apache.log4j.Logger;
+import org.hibernate.Transaction;
+import org.unitime.timetable.defaults.ApplicationProperty;
+import org.unitime.timetable.model.Exam;
+import org.unitime.timetable.model.ExamOwner;
+import org.unitime.timetable.model.dao.ExamDAO;
+
+/**
+ * Student / instructor - examination conflict graph of one academic session and examination type.<br>
+ * The graph is built once (using a fixed number of queries, or from the data already loaded by the examination reports)
+ * and shared by the examination pages and reports. For each examination, it keeps the examinations that share at least one
+ * student (or instructor) with it, together with the number of shared students (instructors), in compact arrays.
+ * The student and instructor conflicts of an examination in any period can then be counted from the pairs and the assigned
+ * periods, without loading the other examinations (see {@link ExamAssignmentInfo#generateConflicts(ExamConflictGraph, Exam, java.util.Hashtable, ExamAssignmentInfo.Parameters)}).
+ * Assignment changes only update the assigned period of the examination (see {@link ExamConflictGraph#assignmentChanged(org.hibernate.Session, Exam)}),
+ * the graph is invalidated when the examinations or the student enrollments change (see {@link ExamConflictGraph#invalidate(org.hibernate.Session, Long, Long)}).
+ *
+ * @author Tomas Muller
+ */
+public class ExamConflictGraph {
+	private static Logger sLog = Logger.getLogger(ExamConflictGraph.class);
+	private static Map<String, ExamConflictGraph> sGraphs = new HashMap<String, ExamConflictGraph>();
+
+	private Long iSessionId, iExamTypeId;
+	private long iCreated;
+	private Map<Long, Integer> iExamIndex = new HashMap<Long, Integer>();
+	private long[] iExamIds;
+	private long[] iStudentIds;
+	private int[][] iExamStudents;
+	private int[][] iStudentExams;
+	private int[][] iStudentAdjacency;
+	private int[][] iSharedStudents;
+	private int[][] iInstructorExams;
+	private int[][] iExamInstructors;
+	private long[][] iExamInstructorIds;
+	private int[][] iInstructorAdjacency;
+	private int[][] iSharedInstructors;
+	private Map<Long, Long> iAssignedPeriods = new ConcurrentHashMap<Long, Long>();
+
+	/**
+	 * @param student2exams student id - examination ids
+	 * @param instructor2exams instructor (the same person may be listed under multiple departments) - departmental instructor id for each of the examinations
+	 * @param assignments examination id - assigned period id
+	 */
+	protected ExamConflictGraph(Long sessionId, Long examTypeId, Map<Long, Set<Long>> student2exams, Map<String, Map<Long, Long>> instructor2exams, Map<Long, Long> assignments) {
+		iSessionId = sessionId; iExamTypeId = examTypeId;
+		iCreated = System.currentTimeMillis();
+
+		TreeMap<Long, Integer> examIndex = new TreeMap<Long, Integer>();
+		for (Set<Long> examIds: student2exams.values())
+			for (Long examId: examIds) examIndex.put(examId, 0);
+		for (Map<Long, Long> examIds: instructor2exams.values())
+			for (Long examId: examIds.keySet()) examIndex.put(examId, 0);
+		iExamIds = new long[examIndex.size()];
+		int idx = 0;
+		for (Map.Entry<Long, Integer> e: examIndex.entrySet()) {
+			e.setValue(idx); iExamIds[idx] = e.getKey(); idx++;
+		}
+		iExamIndex.putAll(examIndex);
+
+		Long[] studentIds = student2exams.keySet().toArray(new Long[student2exams.size()]);
+		Arrays.sort(studentIds);
+		iStudentIds = new long[studentIds.length];
+		iStudentExams = new int[studentIds.length][];
+		for (int s = 0; s < studentIds.length; s++) {
+			iStudentIds[s] = studentIds[s];
+			iStudentExams[s] = indexes(student2exams.get(studentIds[s]));
+		}
+		iExamStudents = invert(iStudentExams, iExamIds.length);
+
+		String[] instructors = instructor2exams.keySet().toArray(new String[instructor2exams.size()]);
+		Arrays.sort(instructors);
+		iInstructorExams = new int[instructors.length][];
+		for (int i = 0; i < instructors.length; i++)
+			iInstructorExams[i] = indexes(instructor2exams.get(instructors[i]).keySet());
+		iExamInstructors = invert(iInstructorExams, iExamIds.length);
+		iExamInstructorIds = new long[iExamIds.length][];
+		for (int x = 0; x < iExamIds.length; x++) {
+			iExamInstructorIds[x] = new long[iExamInstructors[x].length];
+			for (int j = 0; j < iExamInstructors[x].length; j++)
+				iExamInstructorIds[x][j] = instructor2exams.get(instructors[iExamInstructors[x][j]]).get(iExamIds[x]);
+		}
+
+		iStudentAdjacency = new int[iExamIds.length][];
+		iSharedStudents = new int[iExamIds.length][];
+		adjacency(iExamStudents, iStudentExams, iStudentAdjacency, iSharedStudents);
+		iInstructorAdjacency = new int[iExamIds.length][];
+		iSharedInstructors = new int[iExamIds.length][];
+		adjacency(iExamInstructors, iInstructorExams, iInstructorAdjacency, iSharedInstructors);
+
+		if (assignments != null)
+			for (Map.Entry<Long, Long> e: assignments.entrySet())
+				if (e.getValue() != null) iAssignedPeriods.put(e.getKey(), e.getValue());
+	}
+
+	private int[] indexes(Collection<Long> examIds) {
+		int[] exams = new int[examIds.size()];
+		int i = 0;
+		for (Long examId: examIds) exams[i++] = iExamIndex.get(examId);
+		Arrays.sort(exams);
+		return exams;
+	}
+
+	private static int[][] invert(int[][] table, int size) {
+		int[] sizes = new int[size];
+		for (int[] row: table)
+			for (int x: row) sizes[x] ++;
+		int[][] ret = new int[size][];
+		for (int x = 0; x < size; x++)
+			ret[x] = new int[sizes[x]];
+		int[] pos = new int[size];
+		for (int r = 0; r < table.length; r++)
+			for (int x: table[r])
+				ret[x][pos[x]++] = r;
+		return ret;
+	}
+
+	private static void adjacency(int[][] examPeople, int[][] personExams, int[][] adjacency, int[][] shared) {
+		int[] count = new int[adjacency.length];
+		int[] touched = new int[adjacency.length];
+		for (int x = 0; x < adjacency.length; x++) {
+			int nrTouched = 0;
+			for (int s: examPeople[x])
+				for (int y: personExams[s]) {
+					if (y == x) continue;
+					if (count[y] == 0) touched[nrTouched++] = y;
+					count[y] ++;
+				}
+			Arrays.sort(touched, 0, nrTouched);
+			adjacency[x] = new int[nrTouched];
+			shared[x] = new int[nrTouched];
+			for (int i = 0; i < nrTouched; i++) {
+				adjacency[x][i] = touched[i];
+				shared[x][i] = count[touched[i]];
+				count[touched[i]] = 0;
+			}
+		}
+	}
+
+	public Long getSessionId() { return iSessionId; }
+	public Long getExamTypeId() { return iExamTypeId; }
+	public long getCreated() { return iCreated; }
+	public int getNrExams() { return iExamIds.length; }
+	public int getNrStudents() { return iStudentIds.length; }
+	public int getNrInstructors() { return iInstructorExams.length; }
+
+	protected boolean isExpired() {
+		Integer ttl = ApplicationProperty.ExaminationConflictGraphTimeToLive.intValue();
+		return ttl != null && ttl > 0 && System.currentTimeMillis() - iCreated > 60000l * ttl;
+	}
+
+	protected int index(Long examId) {
+		Integer index = iExamIndex.get(examId);
+		return (index == null ? -1 : index.intValue());
+	}
+
+	/**
+	 * Students of the given examination
+	 */
+	public Set<Long> getStudentIds(Long examId) {
+		int x = index(examId);
+		if (x < 0) return new HashSet<Long>();
+		Set<Long> students = new HashSet<Long>(iExamStudents[x].length);
+		for (int s: iExamStudents[x]) students.add(iStudentIds[s]);
+		return students;
+	}
+
+	/**
+	 * Number of students that the two examinations have in common
+	 */
+	public int getNrSharedStudents(Long examId, Long otherExamId) {
+		return shared(iStudentAdjacency, iSharedStudents, index(examId), index(otherExamId));
+	}
+
+	/**
+	 * Number of instructors that the two examinations have in common
+	 */
+	public int getNrSharedInstructors(Long examId, Long otherExamId) {
+		return shared(iInstructorAdjacency, iSharedInstructors, index(examId), index(otherExamId));
+	}
+
+	private static int shared(int[][] adjacency, int[][] shared, int x, int y) {
+		if (x < 0 || y < 0) return 0;
+		int i = Arrays.binarySearch(adjacency[x], y);
+		return (i < 0 ? 0 : shared[x][i]);
+	}
+
+	/**
+	 * Examinations sharing at least one student with the given examination, together with the number of shared students
+	 */
+	public Map<Long, Integer> getStudentAdjacentExams(Long examId) {
+		return adjacent(iStudentAdjacency, iSharedStudents, index(examId));
+	}
+
+	/**
+	 * Examinations sharing at least one instructor with the given examination, together with the number of shared instructors
+	 */
+	public Map<Long, Integer> getInstructorAdjacentExams(Long examId) {
+		return adjacent(iInstructorAdjacency, iSharedInstructors, index(examId));
+	}
+
+	private Map<Long, Integer> adjacent(int[][] adjacency, int[][] shared, int x) {
+		Map<Long, Integer> ret = new HashMap<Long, Integer>();
+		if (x < 0) return ret;
+		for (int i = 0; i < adjacency[x].length; i++)
+			ret.put(iExamIds[adjacency[x][i]], shared[x][i]);
+		return ret;
+	}
+
+	/**
+	 * Students that the two examinations have in common
+	 */
+	public List<Long> getSharedStudents(Long examId, Long otherExamId) {
+		List<Long> ret = new ArrayList<Long>();
+		int x = index(examId), y = index(otherExamId);
+		if (x < 0 || y < 0) return ret;
+		int[] a = iExamStudents[x], b = iExamStudents[y];
+		for (int i = 0, j = 0; i < a.length && j < b.length; ) {
+			if (a[i] < b[j]) i++;
+			else if (a[i] > b[j]) j++;
+			else { ret.add(iStudentIds[a[i]]); i++; j++; }
+		}
+		return ret;
+	}
+
+	/**
+	 * Instructors (departmental instructor ids of the first examination) that the two examinations have in common
+	 */
+	public List<Long> getSharedInstructors(Long examId, Long otherExamId) {
+		List<Long> ret = new ArrayList<Long>();
+		int x = index(examId), y = index(otherExamId);
+		if (x < 0 || y < 0) return ret;
+		for (int j = 0; j < iExamInstructors[x].length; j++)
+			if (Arrays.binarySearch(iInstructorExams[iExamInstructors[x][j]], y) >= 0)
+				ret.add(iExamInstructorIds[x][j]);
+		return ret;
+	}
+
+	/**
+	 * Students of the given examination, each with the ids of his/her other examinations
+	 */
+	public Map<Long, Set<Long>> getStudentExamIds(Long examId) {
+		Map<Long, Set<Long>> ret = new HashMap<Long, Set<Long>>();
+		int x = index(examId);
+		if (x < 0) return ret;
+		for (int s: iExamStudents[x]) {
+			Set<Long> exams = new HashSet<Long>();
+			for (int y: iStudentExams[s])
+				if (y != x) exams.add(iExamIds[y]);
+			ret.put(iStudentIds[s], exams);
+		}
+		return ret;
+	}
+
+	/**
+	 * Instructors of the given examination (departmental instructor ids), each with the ids of his/her other examinations
+	 */
+	public Map<Long, Set<Long>> getInstructorExamIds(Long examId) {
+		Map<Long, Set<Long>> ret = new HashMap<Long, Set<Long>>();
+		int x = index(examId);
+		if (x < 0) return ret;
+		for (int j = 0; j < iExamInstructors[x].length; j++) {
+			Set<Long> exams = new HashSet<Long>();
+			for (int y: iInstructorExams[iExamInstructors[x][j]])
+				if (y != x) exams.add(iExamIds[y]);
+			ret.put(iExamInstructorIds[x][j], exams);
+		}
+		return ret;
+	}
+
+	/**
+	 * Assigned period of the given examination, null if not assigned
+	 */
+	public Long getAssignedPeriodId(Long examId) {
+		return iAssignedPeriods.get(examId);
+	}
+
+	protected void setAssignedPeriodId(Long examId, Long periodId) {
+		if (periodId == null)
+			iAssignedPeriods.remove(examId);
+		else
+			iAssignedPeriods.put(examId, periodId);
+	}
+
+	protected void setAssignedPeriodIds(Map<Long, Long> assignments) {
+		for (Iterator<Long> i = iAssignedPeriods.keySet().iterator(); i.hasNext(); )
+			if (!assignments.containsKey(i.next())) i.remove();
+		iAssignedPeriods.putAll(assignments);
+	}
+
+	/**
+	 * Number of student direct conflicts of the given examination if it was placed in the given period
+	 */
+	public int countDirectConflicts(Long examId, Long periodId) {
+		int x = index(examId);
+		if (x < 0 || periodId == null) return 0;
+		int conflicts = 0;
+		for (int i = 0; i < iStudentAdjacency[x].length; i++)
+			if (periodId.equals(iAssignedPeriods.get(iExamIds[iStudentAdjacency[x][i]])))
+				conflicts += iSharedStudents[x][i];
+		return conflicts;
+	}
+
+	public String toString() {
+		int edges = 0;
+		for (int[] adj: iStudentAdjacency) edges += adj.length;
+		int instructorEdges = 0;
+		for (int[] adj: iInstructorAdjacency) instructorEdges += adj.length;
+		return "ExamConflictGraph{session=" + iSessionId + ", type=" + iExamTypeId + ", exams=" + iExamIds.length + ", students=" + iStudentIds.length +
+				", instructors=" + iInstructorExams.length + ", edges=" + (edges / 2) + ", instructorEdges=" + (instructorEdges / 2) + "}";
+	}
+
+	protected static String key(Long sessionId, Long examTypeId) {
+		return sessionId + ":" + examTypeId;
+	}
+
+	public static boolean isEnabled() {
+		return ApplicationProperty.ExaminationConflictGraph.isTrue();
+	}
+
+	/**
+	 * Return the conflict graph of the given academic session and examination type, build it if needed
+	 */
+	public static ExamConflictGraph getInstance(Long sessionId, Long examTypeId) {
+		String key = key(sessionId, examTypeId);
+		synchronized (sGraphs) {
+			ExamConflictGraph graph = sGraphs.get(key);
+			if (graph != null && !graph.isExpired()) return graph;
+		}
+		ExamConflictGraph graph = load(sessionId, examTypeId);
+		synchronized (sGraphs) {
+			sGraphs.put(key, graph);
+		}
+		return graph;
+	}
+
+	protected static ExamConflictGraph getLoadedInstance(Long sessionId, Long examTypeId) {
+		synchronized (sGraphs) {
+			return sGraphs.get(key(sessionId, examTypeId));
+		}
+	}
+
+	/**
+	 * Register a conflict graph computed from the student - examinations table that has been already loaded (e.g., by the examination reports)
+	 */
+	public static ExamConflictGraph register(Long sessionId, Long examTypeId, Map<Long, Set<Exam>> student2exams) {
+		Map<Long, Set<Long>> table = new HashMap<Long, Set<Long>>();
+		Map<String, Map<Long, Long>> instructors = new HashMap<String, Map<Long, Long>>();
+		Map<Long, Long> assignments = new HashMap<Long, Long>();
+		for (Map.Entry<Long, Set<Exam>> e: student2exams.entrySet()) {
+			Set<Long> examIds = new HashSet<Long>();
+			for (Exam exam: e.getValue()) {
+				if (exam == null) continue;
+				examIds.add(exam.getUniqueId());
+			}
+			table.put(e.getKey(), examIds);
+		}
+		org.hibernate.Session hibSession = ExamDAO.getInstance().createNewSession();
+		try {
+			loadInstructors(hibSession, sessionId, examTypeId, instructors);
+			loadAssignments(hibSession, sessionId, examTypeId, assignments);
+		} finally {
+			hibSession.close();
+		}
+		ExamConflictGraph graph = new ExamConflictGraph(sessionId, examTypeId, table, instructors, assignments);
+		sLog.debug("Registered " + graph);
+		synchronized (sGraphs) {
+			sGraphs.put(key(sessionId, examTypeId), graph);
+		}
+		return graph;
+	}
+
+	/**
+	 * Drop the conflict graph of the given academic session and examination type (e.g., when examination owners have changed).
+	 * All graphs of the session are dropped when the examination type is null, all graphs are dropped when both parameters are null.
+	 */
+	public static void invalidate(Long sessionId, Long examTypeId) {
+		synchronized (sGraphs) {
+			if (sessionId == null) {
+				sGraphs.clear();
+			} else if (examTypeId != null) {
+				sGraphs.remove(key(sessionId, examTypeId));
+			} else {
+				for (Iterator<String> i = sGraphs.keySet().iterator(); i.hasNext(); )
+					if (i.next().startsWith(sessionId + ":")) i.remove();
+			}
+		}
+	}
+
+	/**
+	 * Drop the conflict graph of the given academic session and examination type (see {@link ExamConflictGraph#invalidate(Long, Long)})
+	 * once the given hibernate session commits its transaction (right away when there is no active transaction),
+	 * so that the graph is not re-loaded from the state before the commit.
+	 */
+	public static void invalidate(org.hibernate.Session hibSession, final Long sessionId, final Long examTypeId) {
+		if (!afterCommit(hibSession, new Runnable() {
+			@Override
+			public void run() { invalidate(sessionId, examTypeId); }
+		})) invalidate(sessionId, examTypeId);
+	}
+
+	/**
+	 * Update the assigned period of the given examination in the conflict graph (if there is one) once the given hibernate
+	 * session commits its transaction (right away when there is no active transaction). The student and instructor pairs
+	 * of the examination are not affected by the change.
+	 */
+	public static void assignmentChanged(org.hibernate.Session hibSession, Exam exam) {
+		final Long sessionId = exam.getSession().getUniqueId(), examTypeId = exam.getExamType().getUniqueId();
+		final Long examId = exam.getUniqueId();
+		final Long periodId = (exam.getAssignedPeriod() == null ? null : exam.getAssignedPeriod().getUniqueId());
+		Runnable action = new Runnable() {
+			@Override
+			public void run() {
+				ExamConflictGraph graph = getLoadedInstance(sessionId, examTypeId);
+				if (graph != null) graph.setAssignedPeriodId(examId, periodId);
+			}
+		};
+		if (!afterCommit(hibSession, action)) action.run();
+	}
+
+	/**
+	 * Reload the assigned periods of all examinations of the given academic session and examination type in the conflict graph (if there is one)
+	 * once the given hibernate session commits its transaction (e.g., when an examination solution is saved)
+	 */
+	public static void assignmentsChanged(org.hibernate.Session hibSession, final Long sessionId, final Long examTypeId) {
+		Runnable action = new Runnable() {
+			@Override
+			public void run() {
+				ExamConflictGraph graph = getLoadedInstance(sessionId, examTypeId);
+				if (graph == null) return;
+				Map<Long, Long> assignments = new HashMap<Long, Long>();
+				org.hibernate.Session hibSession = ExamDAO.getInstance().createNewSession();
+				try {
+					loadAssignments(hibSession, sessionId, examTypeId, assignments);
+				} finally {
+					hibSession.close();
+				}
+				graph.setAssignedPeriodIds(assignments);
+			}
+		};
+		if (!afterCommit(hibSession, action)) action.run();
+	}
+
+	private static boolean afterCommit(org.hibernate.Session hibSession, final Runnable action) {
+		Transaction tx = (hibSession == null ? null : hibSession.getTransaction());
+		if (tx == null || !tx.isActive()) return false;
+		tx.registerSynchronization(new Synchronization() {
+			@Override
+			public void beforeCompletion() {}
+			@Override
+			public void afterCompletion(int status) {
+				if (status == Status.STATUS_COMMITTED) action.run();
+			}
+		});
+		return true;
+	}
+
+	/**
+	 * Load the given examinations using the given hibernate session (with one query for each 1000 examinations)
+	 */
+	public static Map<Long, Exam> loadExams(org.hibernate.Session hibSession, Collection<Long> examIds) {
+		Map<Long, Exam> exams = new HashMap<Long, Exam>();
+		if (examIds.isEmpty()) return exams;
+		List<Long> ids = new ArrayList<Long>(new TreeSet<Long>(examIds));
+		for (int i = 0; i < ids.size(); i += 1000) {
+			for (Exam exam: (List<Exam>)hibSession.createQuery("select x from Exam x where x.uniqueId in :examIds")
+					.setParameterList("examIds", ids.subList(i, Math.min(i + 1000, ids.size()))).list())
+				exams.put(exam.getUniqueId(), exam);
+		}
+		return exams;
+	}
+
+	protected static void loadInstructors(org.hibernate.Session hibSession, Long sessionId, Long examTypeId, Map<String, Map<Long, Long>> instructor2exams) {
+		for (Object[] o: (List<Object[]>)hibSession.createQuery(
+				"select x.uniqueId, i.uniqueId, i.externalUniqueId from Exam x inner join x.instructors i where x.session.uniqueId=:sessionId and x.examType.uniqueId=:examTypeId")
+				.setLong("sessionId", sessionId).setLong("examTypeId", examTypeId).list()) {
+			Long examId = (Long)o[0];
+			Long instructorId = (Long)o[1];
+			String externalId = (String)o[2];
+			String key = (externalId == null || externalId.isEmpty() ? "I" + instructorId : "E" + externalId);
+			Map<Long, Long> exams = instructor2exams.get(key);
+			if (exams == null) { exams = new HashMap<Long, Long>(); instructor2exams.put(key, exams); }
+			exams.put(examId, instructorId);
+		}
+	}
+
+	protected static void loadAssignments(org.hibernate.Session hibSession, Long sessionId, Long examTypeId, Map<Long, Long> assignments) {
+		for (Object[] o: (List<Object[]>)hibSession.createQuery(
+				"select x.uniqueId, x.assignedPeriod.uniqueId from Exam x where x.session.uniqueId=:sessionId and x.examType.uniqueId=:examTypeId and x.assignedPeriod is not null")
+				.setLong("sessionId", sessionId).setLong("examTypeId", examTypeId).list()) {
+			assignments.put((Long)o[0], (Long)o[1]);
+		}
+	}
+
+	protected static ExamConflictGraph load(Long sessionId, Long examTypeId) {
+		long t0 = System.currentTimeMillis();
+		org.hibernate.Session hibSession = ExamDAO.getInstance().createNewSession();
+		try {
+			Map<Long, Set<Long>> student2exams = new HashMap<Long, Set<Long>>();
+			List<String> queries = new ArrayList<String>();
+			queries.add("select distinct x.uniqueId, e.student.uniqueId from Exam x inner join x.owners o, StudentClassEnrollment e inner join e.clazz c " +
+					"where x.session.uniqueId=:sessionId and x.examType.uniqueId=:examTypeId and o.ownerType=" + ExamOwner.sOwnerTypeClass + " and o.ownerId=c.uniqueId");
+			queries.add("select distinct x.uniqueId, e.student.uniqueId from Exam x inner join x.owners o, StudentClassEnrollment e inner join e.clazz c inner join c.schedulingSubpart.instrOfferingConfig ioc " +
+					"where x.session.uniqueId=:sessionId and x.examType.uniqueId=:examTypeId and o.ownerType=" + ExamOwner.sOwnerTypeConfig + " and o.ownerId=ioc.uniqueId");
+			queries.add("select distinct x.uniqueId, e.student.uniqueId from Exam x inner join x.owners o, StudentClassEnrollment e inner join e.courseOffering co " +
+					"where x.session.uniqueId=:sessionId and x.examType.uniqueId=:examTypeId and o.ownerType=" + ExamOwner.sOwnerTypeCourse + " and o.ownerId=co.uniqueId");
+			queries.add("select distinct x.uniqueId, e.student.uniqueId from Exam x inner join x.owners o, StudentClassEnrollment e inner join e.courseOffering.instructionalOffering io " +
+					"where x.session.uniqueId=:sessionId and x.examType.uniqueId=:examTypeId and o.ownerType=" + ExamOwner.sOwnerTypeOffering + " and o.ownerId=io.uniqueId");
+			for (String query: queries) {
+				for (Object[] o: (List<Object[]>)hibSession.createQuery(query).setLong("sessionId", sessionId).setLong("examTypeId", examTypeId).list()) {
+					Long examId = (Long)o[0];
+					Long studentId = (Long)o[1];
+					Set<Long> exams = student2exams.get(studentId);
+					if (exams == null) { exams = new HashSet<Long>(); student2exams.put(studentId, exams); }
+					exams.add(examId);
+				}
+			}
+			Map<String, Map<Long, Long>> instructor2exams = new HashMap<String, Map<Long, Long>>();
+			loadInstructors(hibSession, sessionId, examTypeId, instructor2exams);
+			Map<Long, Long> assignments = new HashMap<Long, Long>();
+			loadAssignments(hibSession, sessionId, examTypeId, assignments);
+			ExamConflictGraph graph = new ExamConflictGraph(sessionId, examTypeId, student2exams, instructor2exams, assignments);
+			sLog.debug("Loaded " + graph + " in " + (System.currentTimeMillis() - t0) + " ms.");
+			return graph;
+		} finally {
+			hibSession.close();
+		}
+	}
+}
@@ -444,12 +444,16 @@ public class ExamInfoModel implements Serializable {
                 iPeriods = getSolver().getPeriods(getExam().getExamId(), iChange);
             } else {
                 try {
-                    Hashtable<Long, Set<Exam>> studentExams = getExam().getExam().getStudentExams();
+                    // with the conflict graph, the conflicts of each period are computed from the graph (see ExamAssignmentInfo.generateConflicts)
+                    Hashtable<Long, Set<Exam>> studentExams = (ExamConflictGraph.isEnabled() ? null : getExam().getExam().getStudentExams());
                     iPeriods = new Vector<ExamAssignmentInfo>();
                     for (Iterator i=ExamPeriod.findAll(getExam().getExam().getSession().getUniqueId(), getExam().getExamTypeId()).iterator();i.hasNext();) {
                         ExamPeriod period = (ExamPeriod)i.next();
                         try {
-                            iPeriods.add(new ExamAssignmentInfo(getExam().getExam(), period, null, studentExams, (iChange==null?null:iChange.getAssignmentTable())));
+                            if (studentExams == null)
+                                iPeriods.add(new ExamAssignmentInfo(getExam().getExam(), period, null, (iChange==null?null:iChange.getAssignmentTable())));
+                            else
+                                iPeriods.add(new ExamAssignmentInfo(getExam().getExam(), period, null, studentExams, (iChange==null?null:iChange.getAssignmentTable())));
                         } catch (Exception e) {
                             if (!"Given period is prohibited.".equals(e.getMessage()) && !"Given period is two short.".equals(e.getMessage()))
                                 Debug.error(e);
@@ -20,8 +20,10 @@
 package org.unitime.timetable.solver.instructor;
 
 
+import java.text.DecimalFormat;
 import java.util.ArrayList;
 import java.util.BitSet;
+import java.util.Collection;
 import java.util.Collections;
 import java.util.HashMap;
 import java.util.HashSet;
@@ -30,6 +32,11 @@ import java.util.List;
 import java.util.Map;
 import java.util.Set;
 import java.util.TreeSet;
+import java.util.concurrent.Callable;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
 
 import org.cpsolver.coursett.Constants;
 import org.cpsolver.coursett.model.TimeLocation;
@@ -87,6 +94,10 @@ public class InstructorSchedulingDatabaseLoader extends ProblemLoader<TeachingRe
 	private Map<Long, Instructor> iInstructors = new HashMap<Long, Instructor>();
 	private String iDefaultSameCourse = null, iDefaultSameCommon = null;
 	private boolean iShowClassSuffix = false, iShowConfigName = false;
+	private boolean iBatch = false;
+	private int iNrThreads = 1;
+	private Map<Long, List<EnrolledClass>> iUnavailability = null;
+	private long iPhaseStart = 0;
 	
     public InstructorSchedulingDatabaseLoader(InstructorSchedulingModel model, Assignment<TeachingRequest.Variable, TeachingAssignment> assignment) {
     	super(model, assignment);
@@ -99,6 +110,17 @@ public class InstructorSchedulingDatabaseLoader extends ProblemLoader<TeachingRe
     	iDefaultSameCommon = getModel().getProperties().getProperty("Defaults.SameCommon", "R");
     	iShowClassSuffix = ApplicationProperty.SolverShowClassSufix.isTrue();
     	iShowConfigName = ApplicationProperty.SolverShowConfiguratioName.isTrue();
+    	iBatch = ApplicationProperty.InstructorSchedulingLoaderBatch.isTrue();
+    	Integer threads = ApplicationProperty.InstructorSchedulingLoaderThreads.intValue();
+    	iNrThreads = (threads == null ? 1 : Math.max(1, threads.intValue()));
+    }
+    
+    protected void startPhase() {
+    	iPhaseStart = System.currentTimeMillis();
+    }
+    
+    protected void endPhase(String phase) {
+    	iProgress.info(phase + " took " + new DecimalFormat("0.00").format((System.currentTimeMillis() - iPhaseStart) / 1000.0) + " s.");
     }
     
     public void load() throws Exception {
@@ -126,6 +148,7 @@ public class InstructorSchedulingDatabaseLoader extends ProblemLoader<TeachingRe
     
     protected void load(org.hibernate.Session hibSession) throws Exception {
     	iProgress.setStatus("Loading input data ...");
+    	long t0 = System.currentTimeMillis();
     	List<Department> departments = (List<Department>)hibSession.createQuery(
     			"from Department d where d.solverGroup.uniqueId in :solverGroupId"
     			).setParameterList("solverGroupId", iSolverGroupId).list();
@@ -141,9 +164,13 @@ public class InstructorSchedulingDatabaseLoader extends ProblemLoader<TeachingRe
     	
     	loadRequests(hibSession);
         
+    	startPhase();
     	createAssignment();
+    	endPhase("Creating initial assignment");
         
         getModel().getProperties().setProperty("Save.Commit", isCommitted(hibSession, iSolverGroupId) ? "true" : "false");
+        
+        iProgress.info("Input data loaded in " + new DecimalFormat("0.00").format((System.currentTimeMillis() - t0) / 1000.0) + " s" + (iBatch ? " (batched" + (iNrThreads > 1 ? ", " + iNrThreads + " threads" : "") + ")" : "") + ".");
     }
     
     public static boolean isCommitted(org.hibernate.Session hibSession, Set<Long> solverGroupIds) {
@@ -244,11 +271,28 @@ public class InstructorSchedulingDatabaseLoader extends ProblemLoader<TeachingRe
     }
     
     public static List<EnrolledClass> loadUnavailability(org.hibernate.Session hibSession, DepartmentalInstructor di) {
-    	List<EnrolledClass> ret = new ArrayList<EnrolledClass>();
+    	List<StudentClassEnrollment> enrollments = null;
+    	List<ClassInstructor> classInstructors = null;
     	if (di.getExternalUniqueId() != null) {
-    		List<StudentClassEnrollment> enrollments = (List<StudentClassEnrollment>)hibSession.createQuery(
+    		enrollments = (List<StudentClassEnrollment>)hibSession.createQuery(
     				"from StudentClassEnrollment e where e.student.session.uniqueId = :sessionId and e.student.externalUniqueId = :externalId and e.clazz.cancelled = false"
     				).setLong("sessionId", di.getDepartment().getSessionId()).setString("externalId", di.getExternalUniqueId()).setCacheable(true).list();
+    		classInstructors = (List<ClassInstructor>)hibSession.createQuery(
+    				"from ClassInstructor ci where ci.instructor.externalUniqueId = :externalId and ci.instructor.department.session.uniqueId = :sessionId and " +
+    				"ci.instructor.department.uniqueId != :departmentId and ci.lead = true and ci.classInstructing.cancelled = false"
+    				).setLong("sessionId", di.getDepartment().getSessionId()).setString("externalId", di.getExternalUniqueId()).setLong("departmentId", di.getDepartment().getUniqueId()).setCacheable(true).list();
+    	}
+    	return loadUnavailability(di, enrollments, classInstructors);
+    }
+    
+    /**
+     * Unavailability of an instructor computed from the given (already loaded) data
+     * @param enrollments class enrollments of the student with the same external id as the instructor (null if not applicable)
+     * @param classInstructors lead class assignments of the instructors with the same external id (assignments of the instructor's own department are ignored)
+     */
+    public static List<EnrolledClass> loadUnavailability(DepartmentalInstructor di, Collection<StudentClassEnrollment> enrollments, Collection<ClassInstructor> classInstructors) {
+    	List<EnrolledClass> ret = new ArrayList<EnrolledClass>();
+    	if (enrollments != null) {
     		for (StudentClassEnrollment enrollment: enrollments) {
     			org.unitime.timetable.model.Assignment assignment = enrollment.getClazz().getCommittedAssignment();
     			if (assignment != null) {
@@ -277,11 +321,10 @@ public class InstructorSchedulingDatabaseLoader extends ProblemLoader<TeachingRe
     						));
     			}
     		}
-    		List<ClassInstructor> classInstructors = (List<ClassInstructor>)hibSession.createQuery(
-    				"from ClassInstructor ci where ci.instructor.externalUniqueId = :externalId and ci.instructor.department.session.uniqueId = :sessionId and " +
-    				"ci.instructor.department.uniqueId != :departmentId and ci.lead = true and ci.classInstructing.cancelled = false"
-    				).setLong("sessionId", di.getDepartment().getSessionId()).setString("externalId", di.getExternalUniqueId()).setLong("departmentId", di.getDepartment().getUniqueId()).setCacheable(true).list();
+    	}
+    	if (classInstructors != null) {
     		for (ClassInstructor ci: classInstructors) {
+    			if (ci.getInstructor().getDepartment().getUniqueId().equals(di.getDepartment().getUniqueId())) continue;
         		org.unitime.timetable.model.Assignment assignment = ci.getClassInstructing().getCommittedAssignment();
         		if (assignment != null) {
         			String rooms = null;
@@ -352,6 +395,15 @@ public class InstructorSchedulingDatabaseLoader extends ProblemLoader<TeachingRe
     			"select distinct i from DepartmentalInstructor i, SolverGroup g inner join g.departments d where " +
     			"g.uniqueId in :solverGroupId and i.department = d and i.teachingPreference.prefProlog != :prohibited and i.maxLoad > 0.0"
     			).setParameterList("solverGroupId", iSolverGroupId).setString("prohibited", PreferenceLevel.sProhibited).list();
+    	startPhase();
+    	if (iBatch) {
+    		iProgress.setPhase("Loading instructor data...", 1);
+    		prefetchInstructors(hibSession, list);
+    		iUnavailability = loadUnavailabilities(hibSession, list);
+    		iProgress.incProgress();
+    		endPhase("Loading instructor data");
+    		startPhase();
+    	}
     	iProgress.setPhase("Loading instructors...", list.size());
     	for (DepartmentalInstructor i: list) {
     		Instructor instructor = new Instructor(i.getUniqueId(), i.getExternalUniqueId(), i.getName(iInstructorFormat),
@@ -370,12 +422,132 @@ public class InstructorSchedulingDatabaseLoader extends ProblemLoader<TeachingRe
     				loadTimePreferences(instructor, (TimePref)p);
     			}
     		}
-    		for (EnrolledClass ec: loadUnavailability(hibSession, i))
-    			instructor.addTimePreference(new Preference<TimeLocation>(ec, Constants.sPreferenceLevelProhibited));
+    		List<EnrolledClass> unavailability = (iUnavailability == null ? loadUnavailability(hibSession, i) : iUnavailability.get(i.getUniqueId()));
+    		if (unavailability != null)
+    			for (EnrolledClass ec: unavailability)
+    				instructor.addTimePreference(new Preference<TimeLocation>(ec, Constants.sPreferenceLevelProhibited));
     		getModel().addInstructor(instructor);
     		iInstructors.put(i.getUniqueId(), instructor);
     		iProgress.incProgress();
     	}
+    	endPhase("Loading instructors");
+    }
+    
+    /**
+     * Split the given list into chunks of at most 1000 elements (to be used in an in clause)
+     */
+    protected static <T> List<List<T>> chunks(List<T> list) {
+    	List<List<T>> ret = new ArrayList<List<T>>();
+    	for (int i = 0; i < list.size(); i += 1000)
+    		ret.add(list.subList(i, Math.min(list.size(), i + 1000)));
+    	return ret;
+    }
+    
+    /**
+     * Initialize attributes, preferences, and class assignments of the given instructors using a few fetch join queries
+     * (instead of one query per instructor and collection)
+     */
+    protected void prefetchInstructors(org.hibernate.Session hibSession, List<DepartmentalInstructor> instructors) {
+    	List<Long> ids = new ArrayList<Long>();
+    	for (DepartmentalInstructor i: instructors) ids.add(i.getUniqueId());
+    	for (List<Long> chunk: chunks(ids)) {
+    		hibSession.createQuery("select distinct i from DepartmentalInstructor i left join fetch i.attributes where i.uniqueId in :ids").setParameterList("ids", chunk).list();
+    		hibSession.createQuery("select distinct i from DepartmentalInstructor i left join fetch i.preferences where i.uniqueId in :ids").setParameterList("ids", chunk).list();
+    		hibSession.createQuery("select distinct i from DepartmentalInstructor i left join fetch i.classes where i.uniqueId in :ids").setParameterList("ids", chunk).list();
+    	}
+    }
+    
+    /**
+     * Load unavailabilities of all the given instructors using bulk queries. When {@link ApplicationProperty#InstructorSchedulingLoaderThreads}
+     * is greater than one, the instructors are split by department and each department is loaded in parallel using its own Hibernate session.
+     * @return instructor unique id -&gt; unavailability
+     */
+    protected Map<Long, List<EnrolledClass>> loadUnavailabilities(org.hibernate.Session hibSession, List<DepartmentalInstructor> instructors) throws Exception {
+    	if (iNrThreads <= 1)
+    		return loadUnavailabilities(hibSession, iSessionId, instructors);
+    	
+    	final Map<Long, List<Long>> department2instructors = new HashMap<Long, List<Long>>();
+    	for (DepartmentalInstructor i: instructors) {
+    		List<Long> ids = department2instructors.get(i.getDepartment().getUniqueId());
+    		if (ids == null) {
+    			ids = new ArrayList<Long>();
+    			department2instructors.put(i.getDepartment().getUniqueId(), ids);
+    		}
+    		ids.add(i.getUniqueId());
+    	}
+    	final Map<Long, List<EnrolledClass>> ret = new ConcurrentHashMap<Long, List<EnrolledClass>>();
+    	ExecutorService workers = Executors.newFixedThreadPool(Math.min(iNrThreads, department2instructors.size()));
+    	try {
+    		List<Future<?>> futures = new ArrayList<Future<?>>();
+    		for (final List<Long> ids: department2instructors.values()) {
+    			futures.add(workers.submit(new Callable<Object>() {
+    				@Override
+    				public Object call() throws Exception {
+    					ApplicationProperties.setSessionId(iSessionId);
+    					org.hibernate.Session session = TimetableManagerDAO.getInstance().createNewSession();
+    					try {
+    						session.setCacheMode(CacheMode.IGNORE);
+    						session.setFlushMode(FlushMode.MANUAL);
+    						List<DepartmentalInstructor> list = (List<DepartmentalInstructor>)session.createQuery(
+    								"select distinct i from DepartmentalInstructor i left join fetch i.classes where i.uniqueId in :ids"
+    								).setParameterList("ids", ids).list();
+    						ret.putAll(loadUnavailabilities(session, iSessionId, list));
+    					} finally {
+    						session.close();
+    					}
+    					return null;
+    				}
+    			}));
+    		}
+    		for (Future<?> future: futures)
+    			future.get();
+    	} finally {
+    		workers.shutdown();
+    	}
+    	return ret;
+    }
+    
+    /**
+     * Load unavailabilities of the given instructors using two bulk queries (class enrollments of students and class assignments of
+     * instructors of other departments that share the same external ids)
+     */
+    protected static Map<Long, List<EnrolledClass>> loadUnavailabilities(org.hibernate.Session hibSession, Long sessionId, List<DepartmentalInstructor> instructors) {
+    	List<String> externalIds = new ArrayList<String>();
+    	for (DepartmentalInstructor i: instructors)
+    		if (i.getExternalUniqueId() != null && !externalIds.contains(i.getExternalUniqueId())) externalIds.add(i.getExternalUniqueId());
+    	Map<String, List<StudentClassEnrollment>> enrollments = new HashMap<String, List<StudentClassEnrollment>>();
+    	Map<String, List<ClassInstructor>> classInstructors = new HashMap<String, List<ClassInstructor>>();
+    	for (List<String> chunk: chunks(externalIds)) {
+    		for (Object[] o: (List<Object[]>)hibSession.createQuery(
+    				"select e.student.externalUniqueId, e from StudentClassEnrollment e where e.student.session.uniqueId = :sessionId and e.student.externalUniqueId in :externalIds and e.clazz.cancelled = false"
+    				).setLong("sessionId", sessionId).setParameterList("externalIds", chunk).list()) {
+    			List<StudentClassEnrollment> list = enrollments.get((String)o[0]);
+    			if (list == null) {
+    				list = new ArrayList<StudentClassEnrollment>();
+    				enrollments.put((String)o[0], list);
+    			}
+    			list.add((StudentClassEnrollment)o[1]);
+    		}
+    		for (ClassInstructor ci: (List<ClassInstructor>)hibSession.createQuery(
+    				"from ClassInstructor ci where ci.instructor.externalUniqueId in :externalIds and ci.instructor.department.session.uniqueId = :sessionId and " +
+    				"ci.lead = true and ci.classInstructing.cancelled = false"
+    				).setLong("sessionId", sessionId).setParameterList("externalIds", chunk).list()) {
+    			List<ClassInstructor> list = classInstructors.get(ci.getInstructor().getExternalUniqueId());
+    			if (list == null) {
+    				list = new ArrayList<ClassInstructor>();
+    				classInstructors.put(ci.getInstructor().getExternalUniqueId(), list);
+    			}
+    			list.add(ci);
+    		}
+    	}
+    	Map<Long, List<EnrolledClass>> ret = new HashMap<Long, List<EnrolledClass>>();
+    	for (DepartmentalInstructor i: instructors) {
+    		if (i.getExternalUniqueId() == null)
+    			ret.put(i.getUniqueId(), loadUnavailability(i, null, null));
+    		else
+    			ret.put(i.getUniqueId(), loadUnavailability(i, enrollments.get(i.getExternalUniqueId()), classInstructors.get(i.getExternalUniqueId())));
+    	}
+    	return ret;
     }
     
     protected Section getSection(TeachingClassRequest req) {
@@ -474,11 +646,22 @@ public class InstructorSchedulingDatabaseLoader extends ProblemLoader<TeachingRe
     	List<org.unitime.timetable.model.TeachingRequest> requests = (List<org.unitime.timetable.model.TeachingRequest>)hibSession.createQuery(
     			"select r from TeachingRequest r inner join r.offering.courseOfferings co where co.isControl = true and co.subjectArea.department.solverGroup.uniqueId in :solverGroupId")
     			.setParameterList("solverGroupId", iSolverGroupId).list();
+    	startPhase();
+    	if (iBatch) {
+    		List<Long> ids = new ArrayList<Long>();
+    		for (org.unitime.timetable.model.TeachingRequest request: requests) ids.add(request.getUniqueId());
+    		for (List<Long> chunk: chunks(ids)) {
+    			hibSession.createQuery("select distinct r from TeachingRequest r left join fetch r.classRequests where r.uniqueId in :ids").setParameterList("ids", chunk).list();
+    			hibSession.createQuery("select distinct r from TeachingRequest r left join fetch r.preferences where r.uniqueId in :ids").setParameterList("ids", chunk).list();
+    			hibSession.createQuery("select distinct r from TeachingRequest r left join fetch r.assignedInstructors where r.uniqueId in :ids").setParameterList("ids", chunk).list();
+    		}
+    	}
     	iProgress.setPhase("Loading requests...", requests.size());
     	for (org.unitime.timetable.model.TeachingRequest request: requests) {
     		iProgress.incProgress();
     		if (!request.isCancelled()) loadRequest(hibSession, request);
     	}
+    	endPhase("Loading requests");
     }
     
     protected void createAssignment() {
@@ -40,6 +40,7 @@ import org.unitime.timetable.model.InstructionalOffering;
 import org.unitime.timetable.model.Solution;
 import org.unitime.timetable.model.TeachingRequest;
 import org.unitime.timetable.model.dao._RootDAO;
+import org.unitime.timetable.onlinesectioning.OnlineSectioningServer;
 import org.unitime.timetable.util.Constants;
 import org.unitime.timetable.util.RoomAvailability;
 import org.unitime.timetable.util.queue.LocalQueueProcessor;
@@ -172,6 +173,13 @@ public abstract class AbstractSolverServer implements SolverServer {
 		}
 	}
 	
+	@Override
+	public void studentSectioningQueueChanged(Long sessionId) {
+		SolverContainer<OnlineSectioningServer> container = getOnlineStudentSchedulingContainer();
+		if (container instanceof OnlineStudentSchedulingContainer)
+			((OnlineStudentSchedulingContainer)container).wakeUp(sessionId);
+	}
+	
 	@Override
 	public void refreshInstructorSolution(Collection<Long> solverGroupIds) {
 		org.hibernate.Session hibSession = new _RootDAO().createNewSession();
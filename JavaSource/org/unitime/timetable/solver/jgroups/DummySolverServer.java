@@ -196,6 +196,15 @@ public class DummySolverServer extends AbstractSolverServer implements MessageLi
 				new RoomAvailabilityInvocationHandler(local));
 	}
 	
+	@Override
+	public void studentSectioningQueueChanged(Long sessionId) {
+		try {
+			iDispatcher.callRemoteMethods(null, "studentSectioningQueueChangedLocal", new Object[] { sessionId }, new Class[] { Long.class }, SolverServerImplementation.sNoResponse);
+		} catch (Exception e) {
+			sLog.error("Failed to notify about a student sectioning queue change: " + e.getMessage(), e);
+		}
+	}
+	
 	public class RoomAvailabilityInvocationHandler implements InvocationHandler {
 		private Address iAddress;
 		
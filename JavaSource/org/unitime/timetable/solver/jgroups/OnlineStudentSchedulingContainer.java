@@ -217,6 +217,15 @@ public class OnlineStudentSchedulingContainer implements SolverContainer<OnlineS
 		}
 	}
 
+	/**
+	 * Wake up the updater of the given academic session (if running on this server), e.g., when a new item has been added to the student sectioning queue
+	 */
+	public void wakeUp(Long academicSessionId) {
+		OnlineStudentSchedulingUpdater u = iUpdaters.get(academicSessionId);
+		if (u != null)
+			u.wakeUp();
+	}
+
 	@Override
 	public int getUsage() {
 		iGlobalLock.readLock().lock();
@@ -19,9 +19,13 @@
 */
 package org.unitime.timetable.solver.jgroups;
 
+import java.util.ArrayList;
 import java.util.Calendar;
 import java.util.Date;
+import java.util.LinkedHashSet;
 import java.util.List;
+import java.util.Set;
+import java.util.TreeSet;
 
 import org.apache.log4j.Logger;
 import org.unitime.timetable.ApplicationProperties;
@@ -52,6 +56,8 @@ public class OnlineStudentSchedulingUpdater extends Thread {
 	private Logger iLog;
 	private long iSleepTimeInSeconds = 5;
 	private boolean iRun = true;
+	private boolean iWakeUp = false;
+	private Object iWakeUpLock = new Object();
 	
 	private OnlineStudentSchedulingContainer iContainer = null;
 	private AcademicSessionInfo iSession = null; 
@@ -75,7 +81,11 @@ public class OnlineStudentSchedulingUpdater extends Thread {
 				ApplicationProperties.setSessionId(getAcademicSession().getUniqueId());
 			while (iRun) {
 				try {
-					sleep(iSleepTimeInSeconds * 1000);
+					synchronized (iWakeUpLock) {
+						if (!iWakeUp)
+							iWakeUpLock.wait(iSleepTimeInSeconds * 1000);
+						iWakeUp = false;
+					}
 				} catch (InterruptedException e) {}
 				if (!iRun) break;
 				try {
@@ -121,15 +131,41 @@ public class OnlineStudentSchedulingUpdater extends Thread {
 			org.hibernate.Session hibSession = StudentSectioningQueueDAO.getInstance().createNewSession();
 			try {
 				iLastTimeStamp = server.getProperty("Updater.LastTimeStamp", iLastTimeStamp);
-				for (StudentSectioningQueue q: StudentSectioningQueue.getItems(hibSession, getAcademicSession().getUniqueId(), iLastTimeStamp)) {
-					try {
-						processChange(server, q);
-					} catch (Exception e) {
-						iLog.error("Update failed: " + e.getMessage(), e);
+				if (ApplicationProperty.OnlineSchedulingQueueCoalesce.isTrue()) {
+					TreeSet<StudentSectioningQueue> items = StudentSectioningQueue.getItems(hibSession, getAcademicSession().getUniqueId(), iLastTimeStamp);
+					if (items.isEmpty()) return;
+					List<List<Change>> segments = coalesce(items);
+					if (iLog.isDebugEnabled()) {
+						int changes = 0;
+						for (List<Change> segment: segments) changes += segment.size();
+						iLog.debug("Coalesced " + items.size() + " queue items into " + changes + " changes.");
+					}
+					for (List<Change> segment: segments) {
+						Date timeStamp = null;
+						for (Change change: segment) {
+							try {
+								processChange(server, change.getType(), change.getIds(), change.getUser());
+							} catch (Exception e) {
+								iLog.error("Update failed: " + e.getMessage(), e);
+							}
+							if (!iRun) return;
+							if (timeStamp == null || timeStamp.before(change.getTimeStamp()))
+								timeStamp = change.getTimeStamp();
+						}
+						iLastTimeStamp = timeStamp;
+						server.setProperty("Updater.LastTimeStamp", iLastTimeStamp);
+					}
+				} else {
+					for (StudentSectioningQueue q: StudentSectioningQueue.getItems(hibSession, getAcademicSession().getUniqueId(), iLastTimeStamp)) {
+						try {
+							processChange(server, q);
+						} catch (Exception e) {
+							iLog.error("Update failed: " + e.getMessage(), e);
+						}
+						if (!iRun) break;
+						iLastTimeStamp = q.getTimeStamp();
+						server.setProperty("Updater.LastTimeStamp", iLastTimeStamp);
 					}
-					if (!iRun) break;
-					iLastTimeStamp = q.getTimeStamp();
-					server.setProperty("Updater.LastTimeStamp", iLastTimeStamp);
 				}
 			} finally {
 				hibSession.close();
@@ -139,6 +175,61 @@ public class OnlineStudentSchedulingUpdater extends Thread {
 		}
 	}
 	
+	/**
+	 * Merge the given queue items (ordered by their time stamps). When there is a session reload in the queue, all data changes are
+	 * replaced by a single reload that follows the session status changes. Otherwise, consecutive changes of the same type and user are merged
+	 * together (union of their ids, no ids meaning everything), session status changes splitting the queue into segments that are
+	 * processed in order. The last time stamp can only be moved past a segment once all its changes have been processed.
+	 */
+	protected List<List<Change>> coalesce(TreeSet<StudentSectioningQueue> items) {
+		List<List<Change>> segments = new ArrayList<List<Change>>();
+		StudentSectioningQueue reload = null;
+		for (StudentSectioningQueue q: items)
+			if (q.getType() == StudentSectioningQueue.Type.SESSION_RELOAD.ordinal()) reload = q;
+		if (reload != null) {
+			List<Change> segment = new ArrayList<Change>();
+			Change status = null;
+			for (StudentSectioningQueue q: items) {
+				if (q.getType() == StudentSectioningQueue.Type.SESSION_STATUS_CHANGE.ordinal()) {
+					if (status == null) {
+						status = new Change(q);
+						segment.add(status);
+					} else {
+						status.merge(q);
+					}
+				}
+			}
+			Change change = new Change(reload);
+			change.setTimeStamp(items.last().getTimeStamp());
+			segment.add(change);
+			segments.add(segment);
+			return segments;
+		}
+		List<Change> segment = new ArrayList<Change>();
+		Change last = null; String lastKey = null;
+		for (StudentSectioningQueue q: items) {
+			if (q.getType() == StudentSectioningQueue.Type.SESSION_STATUS_CHANGE.ordinal()) {
+				if (!segment.isEmpty()) segments.add(segment);
+				segment = new ArrayList<Change>();
+				last = null; lastKey = null;
+				segment.add(new Change(q));
+				segments.add(segment);
+				segment = new ArrayList<Change>();
+				continue;
+			}
+			// only merge with the previous change, so that the changes are processed in the order of the queue
+			String key = q.getType() + ":" + (q.getUser() == null ? "" : q.getUser().getExternalId());
+			if (last != null && key.equals(lastKey)) {
+				last.merge(q);
+			} else {
+				last = new Change(q); lastKey = key;
+				segment.add(last);
+			}
+		}
+		if (!segment.isEmpty()) segments.add(segment);
+		return segments;
+	}
+	
 	public void checkForExpiredReservations(OnlineSectioningServer server) {
 		long ts = System.currentTimeMillis(); // current time stamp
 		// the check was done within the last hour -> no need to repeat
@@ -182,12 +273,16 @@ public class OnlineStudentSchedulingUpdater extends Thread {
 	}
 	
 	protected void processChange(OnlineSectioningServer server, StudentSectioningQueue q) {
-		switch (StudentSectioningQueue.Type.values()[q.getType()]) {
+		processChange(server, StudentSectioningQueue.Type.values()[q.getType()], q.getIds(), q.getUser());
+	}
+	
+	protected void processChange(OnlineSectioningServer server, StudentSectioningQueue.Type type, List<Long> ids, OnlineSectioningLog.Entity user) {
+		switch (type) {
 		case SESSION_RELOAD:
 			iLog.info("Reloading " + server.getAcademicSession());
-			server.execute(server.createAction(ReloadAllData.class), q.getUser());
+			server.execute(server.createAction(ReloadAllData.class), user);
 			if (server.getAcademicSession().isSectioningEnabled())
-				server.execute(server.createAction(CheckAllOfferingsAction.class), q.getUser());
+				server.execute(server.createAction(CheckAllOfferingsAction.class), user);
 			break;
 		case SESSION_STATUS_CHANGE:
 			Session session = SessionDAO.getInstance().get(iSession.getUniqueId());
@@ -211,22 +306,21 @@ public class OnlineStudentSchedulingUpdater extends Thread {
 			}
 			break;
 		case STUDENT_ENROLLMENT_CHANGE:
-			List<Long> studentIds = q.getIds();
-			if (studentIds == null || studentIds.isEmpty()) {
+			if (ids == null || ids.isEmpty()) {
 				iLog.info("All students changed for " + server.getAcademicSession());
-				server.execute(server.createAction(ReloadAllStudents.class), q.getUser());
+				server.execute(server.createAction(ReloadAllStudents.class), user);
 			} else {
-				server.execute(server.createAction(ReloadStudent.class).forStudents(studentIds), q.getUser());
+				server.execute(server.createAction(ReloadStudent.class).forStudents(ids), user);
 			}
 			break;
 		case CLASS_ASSIGNMENT_CHANGE:
-			server.execute(server.createAction(ClassAssignmentChanged.class).forClasses(q.getIds()), q.getUser());
+			server.execute(server.createAction(ClassAssignmentChanged.class).forClasses(ids), user);
 			break;
 		case OFFERING_CHANGE:
-			server.execute(server.createAction(ReloadOfferingAction.class).forOfferings(q.getIds()), q.getUser());
+			server.execute(server.createAction(ReloadOfferingAction.class).forOfferings(ids), user);
 			break;
 		default:
-			iLog.error("Student sectioning queue type " + StudentSectioningQueue.Type.values()[q.getType()] + " not known.");
+			iLog.error("Student sectioning queue type " + type + " not known.");
 		}
 	}
 
@@ -237,6 +331,51 @@ public class OnlineStudentSchedulingUpdater extends Thread {
 			try {
 				this.join();
 			} catch (InterruptedException e) {}
+		} else {
+			wakeUp();
+		}
+	}
+	
+	/**
+	 * Check for updates right away (e.g., a new item has been added to the student sectioning queue), instead of waiting for the next update interval
+	 */
+	public void wakeUp() {
+		synchronized (iWakeUpLock) {
+			iWakeUp = true;
+			iWakeUpLock.notify();
+		}
+	}
+	
+	/**
+	 * One or more student sectioning queue items of the same type and user, merged together
+	 */
+	protected static class Change {
+		private StudentSectioningQueue.Type iType;
+		private OnlineSectioningLog.Entity iUser;
+		private Set<Long> iIds = new LinkedHashSet<Long>();
+		private boolean iAllStudents = false;
+		private Date iTimeStamp;
+		
+		Change(StudentSectioningQueue q) {
+			iType = StudentSectioningQueue.Type.values()[q.getType()];
+			iUser = q.getUser();
+			merge(q);
+		}
+		
+		void merge(StudentSectioningQueue q) {
+			List<Long> ids = q.getIds();
+			if (ids != null)
+				iIds.addAll(ids);
+			// student enrollment change with no student ids means all students have been changed
+			if (iType == StudentSectioningQueue.Type.STUDENT_ENROLLMENT_CHANGE && (ids == null || ids.isEmpty()))
+				iAllStudents = true;
+			iTimeStamp = q.getTimeStamp();
 		}
+		
+		StudentSectioningQueue.Type getType() { return iType; }
+		OnlineSectioningLog.Entity getUser() { return iUser; }
+		List<Long> getIds() { return iAllStudents ? new ArrayList<Long>() : new ArrayList<Long>(iIds); }
+		Date getTimeStamp() { return iTimeStamp; }
+		void setTimeStamp(Date timeStamp) { iTimeStamp = timeStamp; }
 	}
-}
\ No newline at end of file
+}
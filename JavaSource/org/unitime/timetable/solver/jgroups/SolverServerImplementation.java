@@ -80,6 +80,7 @@ public class SolverServerImplementation extends AbstractSolverServer implements
 	private static SolverServerImplementation sInstance = null;
 	public static final RequestOptions sFirstResponse = new RequestOptions(ResponseMode.GET_FIRST, ApplicationProperty.SolverClusterTimeout.intValue()).setFlags(Flag.DONT_BUNDLE, Flag.OOB);
 	public static final RequestOptions sAllResponses = new RequestOptions(ResponseMode.GET_ALL, ApplicationProperty.SolverClusterTimeout.intValue()).setFlags(Flag.DONT_BUNDLE, Flag.OOB);
+	public static final RequestOptions sNoResponse = new RequestOptions(ResponseMode.GET_NONE, ApplicationProperty.SolverClusterTimeout.intValue()).setFlags(Flag.DONT_BUNDLE, Flag.OOB);
 	
 	private JChannel iChannel;
 	private RpcDispatcher iDispatcher;
@@ -357,6 +358,19 @@ public class SolverServerImplementation extends AbstractSolverServer implements
 		}
 	}
 	
+	public void studentSectioningQueueChangedLocal(Long sessionId) {
+		super.studentSectioningQueueChanged(sessionId);
+	}
+	
+	@Override
+	public void studentSectioningQueueChanged(Long sessionId) {
+		try {
+			iDispatcher.callRemoteMethods(null, "studentSectioningQueueChangedLocal", new Object[] { sessionId }, new Class[] { Long.class }, sNoResponse);
+		} catch (Exception e) {
+			sLog.error("Failed to notify about a student sectioning queue change: " + e.getMessage(), e);
+		}
+	}
+	
 	public void unloadSolverLocal(Integer type, String id) {
 		switch (SolverType.values()[type]) {
 		case COURSE:
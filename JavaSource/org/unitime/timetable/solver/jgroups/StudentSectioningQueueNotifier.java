@@ -0,0 +1,115 @@
+/*
+ * Licensed to The Apereo Foundation under one or more contributor license
+ * agreements. See the NOTICE file distributed with this work for
+ * additional information regarding copyright ownership.
+ *
+ * The Apereo Foundation licenses this file to you under the Apache License,
+ * Version 2.0 (the "License"); you may not use this file except in
+ * compliance with the License. You may obtain a copy of the License at:
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ *
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ *
+*/
+package org.unitime.timetable.solver.jgroups;
+
+import java.util.HashSet;
+import java.util.Set;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.ThreadFactory;
+import java.util.concurrent.TimeUnit;
+
+import javax.transaction.Status;
+import javax.transaction.Synchronization;
+
+import org.apache.log4j.Logger;
+import org.hibernate.Transaction;
+import org.unitime.timetable.defaults.ApplicationProperty;
+
+/**
+ * Notifies the solver servers that a new item has been added to the student sectioning queue, so that the
+ * {@link OnlineStudentSchedulingUpdater} of the academic session can wake up right away (see {@link SolverServer#studentSectioningQueueChanged(Long)}).<br>
+ * The notification is sent only after the transaction in which the item was added has been committed, and it is delayed
+ * a little so that many items added at once (e.g., during a data import) lead to a single notification.
+ *
+ * @author Tomas Muller
+ */
+public class StudentSectioningQueueNotifier {
+	private static Logger sLog = Logger.getLogger(StudentSectioningQueueNotifier.class);
+	private static StudentSectioningQueueNotifier sInstance = null;
+	
+	private ScheduledExecutorService iExecutor;
+	private Set<Long> iPending = new HashSet<Long>();
+	
+	private StudentSectioningQueueNotifier() {
+		iExecutor = Executors.newSingleThreadScheduledExecutor(new ThreadFactory() {
+			@Override
+			public Thread newThread(Runnable r) {
+				Thread thread = new Thread(r, "SectioningQueueNotifier");
+				thread.setDaemon(true);
+				return thread;
+			}
+		});
+	}
+	
+	public static synchronized StudentSectioningQueueNotifier getInstance() {
+		if (sInstance == null)
+			sInstance = new StudentSectioningQueueNotifier();
+		return sInstance;
+	}
+	
+	public static boolean isEnabled() {
+		return ApplicationProperty.OnlineSchedulingQueueNotify.isTrue();
+	}
+	
+	/**
+	 * A new item has been added to the student sectioning queue, notify the solver servers once the current transaction (if any) is committed
+	 */
+	public static void queueChanged(org.hibernate.Session hibSession, final Long sessionId) {
+		if (sessionId == null || !isEnabled()) return;
+		Transaction tx = (hibSession == null ? null : hibSession.getTransaction());
+		if (tx != null && tx.isActive()) {
+			tx.registerSynchronization(new Synchronization() {
+				@Override
+				public void beforeCompletion() {}
+				
+				@Override
+				public void afterCompletion(int status) {
+					if (status == Status.STATUS_COMMITTED)
+						getInstance().notify(sessionId);
+				}
+			});
+		} else {
+			getInstance().notify(sessionId);
+		}
+	}
+	
+	protected void notify(final Long sessionId) {
+		synchronized (iPending) {
+			if (!iPending.add(sessionId)) return;
+		}
+		Integer delay = ApplicationProperty.OnlineSchedulingQueueNotifyDelay.intValue();
+		iExecutor.schedule(new Runnable() {
+			@Override
+			public void run() {
+				synchronized (iPending) {
+					iPending.remove(sessionId);
+				}
+				try {
+					SolverServer server = SolverServerImplementation.getInstance();
+					if (server != null)
+						server.studentSectioningQueueChanged(sessionId);
+				} catch (Exception e) {
+					sLog.warn("Failed to notify about a student sectioning queue change: " + e.getMessage(), e);
+				}
+			}
+		}, delay == null ? 200 : Math.max(0, delay.intValue()), TimeUnit.MILLISECONDS);
+	}
+}
@@ -0,0 +1,457 @@
+/*
+ * Licensed to The Apereo Foundation under one or more contributor license
+ * agreements. See the NOTICE file distributed with this work for
+ * additional information regarding copyright ownership.
+ *
+ * The Apereo Foundation licenses this file to you under the Apache License,
+ * Version 2.0 (the "License"); you may not use this file except in
+ * compliance with the License. You may obtain a copy of the License at:
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ *
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ *
+*/
+package org.unitime.timetable.solver.service;
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.Date;
+import java.util.Iterator;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.atomic.AtomicLong;
+
+import org.apache.commons.logging.Log;
+import org.apache.commons.logging.LogFactory;
+import org.cpsolver.ifs.util.DataProperties;
+import org.cpsolver.ifs.util.Progress;
+import org.unitime.timetable.gwt.shared.SolverInterface.ProgressLogLevel;
+import org.unitime.timetable.model.dao.SolutionDAO;
+import org.unitime.timetable.model.dao._RootDAO;
+import org.unitime.timetable.solver.SolverProxy;
+
+/**
+ * Batch of course timetabling solvers, one for each of the given solver groups, that are run in parallel.<br>
+ * The solvers share a thread budget: each solver gets an equal share of the budget (but at least one thread) as
+ * its number of parallel solvers, and only as many solvers as the budget allows are running at the same time (the
+ * remaining ones wait in a queue). No solution is committed before all the solvers have finished, so all the solvers
+ * load the same committed assignments of the other solver groups. When all the solvers are done, their best
+ * solutions are saved; when requested and all the solvers have succeeded, the solutions are committed together (one
+ * after the other, so that each commit sees the previous ones).
+ *
+ * @author Tomas Muller
+ */
+public class CourseSolverBatch implements Runnable {
+	private static Log sLog = LogFactory.getLog(CourseSolverBatch.class);
+	private static Map<String, CourseSolverBatch> sBatches = new LinkedHashMap<String, CourseSolverBatch>();
+	private static AtomicLong sCounter = new AtomicLong(0);
+	
+	public static enum State {
+		QUEUED, LOADING, SOLVING, SOLVED, SAVING, DONE, FAILED, CANCELLED;
+		
+		public boolean isActive() { return this == LOADING || this == SOLVING || this == SAVING; }
+	}
+	
+	private String iId;
+	private SolverServerService iService;
+	private String iOwnerPuid, iHost;
+	private int iThreadBudget;
+	private boolean iCreateNewSolution, iCommit;
+	private List<Entry> iEntries = new ArrayList<Entry>();
+	private volatile boolean iCancelled = false;
+	private volatile Date iStarted = null, iFinished = null;
+	private volatile String iMessage = null;
+	
+	public CourseSolverBatch(SolverServerService service, String ownerPuid, String host, int threadBudget, boolean createNewSolution, boolean commit) {
+		iId = ownerPuid + "-" + sCounter.incrementAndGet();
+		iService = service;
+		iOwnerPuid = ownerPuid;
+		iHost = host;
+		iThreadBudget = Math.max(1, threadBudget);
+		iCreateNewSolution = createNewSolution;
+		iCommit = commit;
+	}
+	
+	public String getId() { return iId; }
+	public String getOwnerPuid() { return iOwnerPuid; }
+	public int getThreadBudget() { return iThreadBudget; }
+	public boolean isCommit() { return iCommit; }
+	public Date getStarted() { return iStarted; }
+	public Date getFinished() { return iFinished; }
+	public boolean isFinished() { return iFinished != null; }
+	public String getMessage() { return iMessage; }
+	public List<Entry> getEntries() { return Collections.unmodifiableList(iEntries); }
+	
+	/**
+	 * Add a solver group to the batch
+	 * @param config solver configuration, with the solver group set in the General.SolverGroupId property
+	 */
+	public void addSolverGroup(Long solverGroupId, String name, DataProperties config) {
+		iEntries.add(new Entry(solverGroupId, name, config));
+	}
+	
+	/**
+	 * Register the batch and start it in a background thread
+	 */
+	public void start() {
+		synchronized (sBatches) {
+			// forget batches that have finished more than a day ago
+			long limit = System.currentTimeMillis() - 24 * 3600000l;
+			for (Iterator<CourseSolverBatch> i = sBatches.values().iterator(); i.hasNext(); ) {
+				CourseSolverBatch batch = i.next();
+				if (batch.getFinished() != null && batch.getFinished().getTime() < limit) i.remove();
+			}
+			sBatches.put(iId, this);
+		}
+		Thread thread = new Thread(this, "CourseSolverBatch-" + iId);
+		thread.setDaemon(true);
+		thread.start();
+	}
+	
+	/**
+	 * Stop all the solvers of the batch, nothing is saved
+	 */
+	public void cancel() {
+		iCancelled = true;
+	}
+	
+	public static CourseSolverBatch getBatch(String id) {
+		synchronized (sBatches) {
+			return sBatches.get(id);
+		}
+	}
+	
+	public static List<CourseSolverBatch> getBatches() {
+		synchronized (sBatches) {
+			return new ArrayList<CourseSolverBatch>(sBatches.values());
+		}
+	}
+	
+	/**
+	 * Forget the batch (it is cancelled first, if still running)
+	 */
+	public static void removeBatch(String id) {
+		CourseSolverBatch batch = null;
+		synchronized (sBatches) {
+			batch = sBatches.remove(id);
+		}
+		if (batch != null && !batch.isFinished()) batch.cancel();
+	}
+	
+	/**
+	 * Overall progress of the batch, in percent
+	 */
+	public int getProgress() {
+		if (iEntries.isEmpty()) return 100;
+		double progress = 0.0;
+		for (Entry entry: iEntries)
+			progress += entry.getProgress();
+		return (int)Math.round(100.0 * progress / iEntries.size());
+	}
+	
+	@Override
+	public void run() {
+		iStarted = new Date();
+		int threads = Math.max(1, iThreadBudget / Math.max(1, iEntries.size()));
+		int maxRunning = Math.max(1, iThreadBudget / threads);
+		sLog.info("Batch " + iId + " started: " + iEntries.size() + " solver groups, " + threads + " threads per solver, at most " + maxRunning + " solvers at a time.");
+		try {
+			for (Entry entry: iEntries)
+				entry.getConfig().setProperty("Parallel.NrSolvers", String.valueOf(threads));
+			
+			// Load and run the solvers, keeping at most maxRunning of them active
+			while (!iCancelled) {
+				int active = 0, queued = 0;
+				for (Entry entry: iEntries) {
+					entry.update();
+					if (entry.getState().isActive()) active ++;
+					else if (entry.getState() == State.QUEUED) queued ++;
+				}
+				if (active == 0 && queued == 0) break;
+				for (Entry entry: iEntries) {
+					if (active >= maxRunning) break;
+					if (entry.getState() == State.QUEUED) {
+						entry.load(); active ++;
+					}
+				}
+				Thread.sleep(1000);
+			}
+			if (iCancelled) {
+				for (Entry entry: iEntries) entry.cancel();
+				iMessage = "Batch cancelled.";
+				return;
+			}
+			
+			// Save the best solutions, commit them together when all solvers have succeeded
+			boolean commit = iCommit;
+			if (commit)
+				for (Entry entry: iEntries)
+					if (entry.getState() != State.SOLVED) {
+						sLog.warn("Batch " + iId + ": solver of " + entry.getName() + " has not finished successfully, no solution will be committed.");
+						commit = false;
+					}
+			int committed = 0;
+			for (Entry entry: iEntries) {
+				if (iCancelled) break;
+				entry.save(commit);
+				if (commit) {
+					waitForSave(entry);
+					if (entry.getState() == State.DONE) {
+						committed ++;
+					} else {
+						sLog.warn("Batch " + iId + ": solution of " + entry.getName() + " has not been committed, the remaining solutions will only be saved.");
+						commit = false;
+					}
+				}
+			}
+			for (Entry entry: iEntries) {
+				if (iCancelled) break;
+				waitForSave(entry);
+			}
+			if (iCancelled) {
+				iMessage = "Batch cancelled.";
+				return;
+			}
+			List<String> failed = new ArrayList<String>();
+			for (Entry entry: iEntries)
+				if (entry.getState() != State.DONE) failed.add(entry.getName());
+			if (!failed.isEmpty())
+				iMessage = "Failed to solve or save " + failed + (!iCommit ? "." : committed == 0 ? ", no solution has been committed." : ", only " + committed + " solutions have been committed.");
+			else
+				iMessage = (commit ? "All solutions have been saved and committed." : "All solutions have been saved.");
+		} catch (InterruptedException e) {
+			iCancelled = true;
+			for (Entry entry: iEntries) entry.cancel();
+			iMessage = "Batch interrupted.";
+		} catch (Exception e) {
+			sLog.error("Batch " + iId + " failed: " + e.getMessage(), e);
+			iMessage = "Batch failed: " + e.getMessage();
+		} finally {
+			// unload the remaining solvers (e.g., solved but not saved when the batch was cancelled)
+			for (Entry entry: iEntries) entry.unload();
+			_RootDAO.closeCurrentThreadSessions();
+			iFinished = new Date();
+			sLog.info("Batch " + iId + " finished in " + (iFinished.getTime() - iStarted.getTime()) / 1000 + " s: " + iMessage);
+		}
+	}
+	
+	protected void waitForSave(Entry entry) throws InterruptedException {
+		while (!iCancelled) {
+			entry.update();
+			if (entry.getState() != State.SAVING) return;
+			Thread.sleep(1000);
+		}
+	}
+	
+	/**
+	 * Solver of one solver group
+	 */
+	public class Entry {
+		private Long iSolverGroupId;
+		private String iName;
+		private DataProperties iConfig;
+		private volatile SolverProxy iSolver = null;
+		private volatile State iState = State.QUEUED;
+		private volatile String iError = null;
+		private boolean iSeenRunning = false;
+		private int iIdlePolls = 0;
+		private boolean iCommitted = false;
+		private Date iLoadStarted = null, iSaveStarted = null;
+		
+		Entry(Long solverGroupId, String name, DataProperties config) {
+			iSolverGroupId = solverGroupId;
+			iName = name;
+			iConfig = config;
+		}
+		
+		public Long getSolverGroupId() { return iSolverGroupId; }
+		public String getName() { return iName; }
+		public DataProperties getConfig() { return iConfig; }
+		public State getState() { return iState; }
+		public String getError() { return iError; }
+		public SolverProxy getSolver() { return iSolver; }
+		
+		/**
+		 * Key of the solver in the solver container, so that the solvers of the batch do not replace each other
+		 */
+		public String getSolverKey() { return iOwnerPuid + "-" + iSolverGroupId; }
+		
+		protected void failed(Exception e) {
+			sLog.error("Batch " + iId + ": solver of " + iName + " failed: " + e.getMessage(), e);
+			iState = State.FAILED;
+			iError = e.getMessage();
+			unload();
+		}
+		
+		protected void failed(String error) {
+			sLog.error("Batch " + iId + ": solver of " + iName + " failed: " + error);
+			iState = State.FAILED;
+			iError = error;
+			unload();
+		}
+		
+		/**
+		 * Unload the solver from the solver server (the solvers are created with General.Unload=false, so that their solutions can be saved)
+		 */
+		protected void unload() {
+			SolverProxy solver = iSolver;
+			if (solver == null) return;
+			iSolver = null;
+			try {
+				solver.dispose();
+			} catch (Exception e) {
+				sLog.warn("Batch " + iId + ": failed to unload the solver of " + iName + ": " + e.getMessage());
+			}
+		}
+		
+		protected void load() {
+			try {
+				iConfig.setProperty("General.StartSolver", "true");
+				iConfig.setProperty("General.Save", "false");
+				iConfig.setProperty("General.Unload", "false");
+				iLoadStarted = new Date();
+				iSolver = iService.createCourseSolver(iHost, getSolverKey(), iConfig);
+				iSolver.load(iConfig);
+				iState = State.LOADING;
+			} catch (Exception e) {
+				failed(e);
+			}
+		}
+		
+		protected void update() {
+			if (iSolver == null || !iState.isActive()) return;
+			try {
+				if (iSolver.isRunning()) {
+					iSeenRunning = true;
+					iState = State.SOLVING;
+					return;
+				}
+				if (iSolver.isWorking()) return;
+				if (iState == State.SAVING) {
+					checkSaved();
+					return;
+				}
+				// the solver is started right after it is loaded, wait a while if it has not been seen running yet
+				if (iSolver.getLoadedDate() != null && (iSeenRunning || ++iIdlePolls >= 3)) {
+					// the loaded date is also set when the load has failed (date of the first logged message): check the log for errors
+					List<Progress.Message> errors = iSolver.getProgressLog(ProgressLogLevel.ERROR.ordinal(), null, iLoadStarted);
+					if (errors != null && !errors.isEmpty())
+						failed(errors.get(0).getMessage());
+					else
+						iState = State.SOLVED;
+				}
+			} catch (Exception e) {
+				failed(e);
+			}
+		}
+		
+		protected void save(boolean commit) {
+			if (iState != State.SOLVED) return;
+			try {
+				if (iSolver.bestSolutionInfo() != null) iSolver.restoreBest();
+				iCommitted = commit;
+				iSaveStarted = new Date();
+				iState = State.SAVING;
+				iSolver.save(iCreateNewSolution, commit);
+			} catch (Exception e) {
+				failed(e);
+			}
+		}
+		
+		/**
+		 * The save has finished: it has succeeded when there is a saved solution, no error has been logged
+		 * during the save, and (when committing) the saved solution is the committed solution of the solver group
+		 */
+		protected void checkSaved() {
+			List<Progress.Message> errors = iSolver.getProgressLog(ProgressLogLevel.ERROR.ordinal(), null, iSaveStarted);
+			if (errors != null && !errors.isEmpty()) {
+				failed(errors.get(0).getMessage());
+				return;
+			}
+			Long[] solutionIds = iSolver.getProperties().getPropertyLongArry("General.SolutionId", null);
+			if (solutionIds == null || solutionIds.length == 0) {
+				failed("No solution has been saved.");
+				return;
+			}
+			if (iCommitted) {
+				List<Long> committed = (List<Long>)SolutionDAO.getInstance().getSession().createQuery(
+						"select s.uniqueId from Solution s where s.owner.uniqueId = :solverGroupId and s.commited = true")
+						.setLong("solverGroupId", iSolverGroupId).list();
+				if (!committed.contains(solutionIds[0])) {
+					failed("The saved solution has not been committed.");
+					return;
+				}
+			}
+			iState = State.DONE;
+			unload();
+		}
+		
+		protected void cancel() {
+			if (iSolver == null || !iState.isActive()) {
+				if (iState == State.QUEUED) iState = State.CANCELLED;
+				return;
+			}
+			try {
+				iSolver.interrupt();
+			} catch (Exception e) {
+				sLog.warn("Batch " + iId + ": failed to stop the solver of " + iName + ": " + e.getMessage());
+			}
+			iState = State.CANCELLED;
+			unload();
+		}
+		
+		/**
+		 * Progress of the solver (0 .. 1), queued solvers are at 0, finished solvers at 1
+		 */
+		public double getProgress() {
+			switch (iState) {
+			case QUEUED: return 0.0;
+			case SOLVED:
+			case DONE:
+			case FAILED:
+			case CANCELLED: return 1.0;
+			default:
+				try {
+					Map progress = (iSolver == null ? null : iSolver.getProgress());
+					if (progress == null) return 0.0;
+					long max = ((Long)progress.get("MAX_PROGRESS")).longValue();
+					long value = ((Long)progress.get("PROGRESS")).longValue();
+					return (max <= 0 ? 0.0 : Math.min(1.0, ((double)value) / max));
+				} catch (Exception e) {
+					return 0.0;
+				}
+			}
+		}
+		
+		/**
+		 * Current status of the solver (e.g., the solver phase)
+		 */
+		public String getStatus() {
+			if (iState == State.FAILED) return iError;
+			if (iSolver == null || !iState.isActive()) return iState.name();
+			try {
+				Map progress = iSolver.getProgress();
+				return (progress == null ? iState.name() : (String)progress.get("PHASE"));
+			} catch (Exception e) {
+				return iState.name();
+			}
+		}
+		
+		@Override
+		public String toString() {
+			return iName + ": " + iState + (iError == null ? "" : " (" + iError + ")");
+		}
+	}
+	
+	@Override
+	public String toString() {
+		return "CourseSolverBatch{id=" + iId + ", progress=" + getProgress() + "%, solvers=" + iEntries + (iMessage == null ? "" : ", " + iMessage) + "}";
+	}
+}
@@ -63,10 +63,12 @@ import org.unitime.timetable.model.SubjectArea;
 import org.unitime.timetable.model.dao.SolverGroupDAO;
 import org.unitime.timetable.model.dao.SolverPredefinedSettingDAO;
 import org.unitime.timetable.security.SessionContext;
+import org.unitime.timetable.security.rights.Right;
 import org.unitime.timetable.server.solver.SolverPageBackend;
 import org.unitime.timetable.solver.SolverProxy;
 import org.unitime.timetable.solver.jgroups.RemoteSolver;
 import org.unitime.timetable.solver.jgroups.SolverContainer;
+import org.unitime.timetable.solver.jgroups.SolverServer;
 
 /**
  * @author Tomas Muller
@@ -265,7 +267,8 @@ public class CourseTimetablingSolverService implements SolverService<SolverProxy
         	properties.setProperty("StudentSectioning.Class", DefaultStudentSectioning.class.getName());
         }
         
-        if (properties.getProperty("Parallel.NrSolvers") == null) {
+        // Number of parallel search threads, 0 (or not set) means automatic (half of the available processors)
+        if (properties.getPropertyInt("Parallel.NrSolvers", 0) <= 0) {
         	properties.setProperty("Parallel.NrSolvers", String.valueOf(Math.max(1, Runtime.getRuntime().availableProcessors() / 2)));
         }
         if (properties.getPropertyBoolean("OnFlySectioning.Enabled", false)) {
@@ -360,6 +363,55 @@ public class CourseTimetablingSolverService implements SolverService<SolverProxy
 		}
 	}
 	
+	/**
+	 * Start a batch of course timetabling solvers, one for each of the given solver groups, that run in parallel
+	 * sharing a thread budget (see {@link CourseSolverBatch})
+	 * @param settingsId solver configuration
+	 * @param options solver parameter overrides
+	 * @param solverGroupIds solver groups to be solved
+	 * @param host solver server (null to let the server be selected for each solver)
+	 * @param createNewSolution save the solutions as new (or update the solutions that have been loaded)
+	 * @param commit commit all the solutions together when all the solvers succeed
+	 */
+	public CourseSolverBatch createBatch(Long settingsId, Map<Long, String> options, List<Long> solverGroupIds, String host, boolean createNewSolution, boolean commit) {
+		if (!sessionContext.isAuthenticated() || sessionContext.getUser().getCurrentAcademicSessionId() == null) return null;
+		Long[] owners = solverGroupIds.toArray(new Long[solverGroupIds.size()]);
+		sessionContext.checkPermission(Right.Solver);
+		sessionContext.checkPermission(owners, "SolverGroup", Right.SolverSolutionSave);
+		if (commit)
+			sessionContext.checkPermission(owners, "SolverGroup", Right.TimetablesSolutionCommit);
+		
+		Integer threads = ApplicationProperty.SolverBatchThreads.intValue();
+		if (threads == null) {
+			SolverServer server = (host == null || "local".equals(host) ? solverServerService.getLocalServer() : solverServerService.getServer(host));
+			threads = (server == null ? Runtime.getRuntime().availableProcessors() : server.getAvailableProcessors());
+		}
+		
+		CourseSolverBatch batch = new CourseSolverBatch(solverServerService, sessionContext.getUser().getExternalUserId(), host, threads, createNewSolution, commit);
+		String instructorFormat = sessionContext.getUser().getProperty(UserProperty.NameFormat);
+		for (Long solverGroupId: solverGroupIds) {
+			SolverGroup sg = SolverGroupDAO.getInstance().get(solverGroupId);
+			if (sg == null || !sg.getSession().getUniqueId().equals(sessionContext.getUser().getCurrentAcademicSessionId())) continue;
+			DataProperties properties = createConfig(settingsId, options);
+			properties.setProperty("General.SessionId", sessionContext.getUser().getCurrentAcademicSessionId().toString());
+			properties.setProperty("General.SolverGroupId", solverGroupId.toString());
+			properties.setProperty("General.OwnerPuid", sessionContext.getUser().getExternalUserId());
+			properties.setProperty("General.StartTime", String.valueOf((new Date()).getTime()));
+			if (sg.getCommittedSolution() != null)
+				properties.setProperty("General.SolutionId", sg.getCommittedSolution().getUniqueId().toString());
+			String warn = getSolverWarning(properties);
+	        if (warn != null) 
+	        	properties.setProperty("General.SolverWarnings", warn);
+	        else
+	        	properties.remove("General.SolverWarnings");
+		    if (instructorFormat != null)
+		    	properties.setProperty("General.InstructorFormat", instructorFormat);
+			batch.addSolverGroup(solverGroupId, sg.getAbbv(), properties);
+		}
+		batch.start();
+		return batch;
+	}
+	
 	@Override
 	public SolverProxy reload(DataProperties properties) {
 		try {
@@ -39,6 +39,13 @@ import java.util.Map;
 import java.util.Set;
 import java.util.TreeSet;
 import java.util.Vector;
+import java.util.concurrent.Callable;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.ThreadFactory;
+import java.util.concurrent.atomic.AtomicInteger;
 
 import org.apache.commons.logging.Log;
 import org.apache.commons.logging.LogFactory;
@@ -198,6 +205,11 @@ public class StudentSectioningDatabaseLoader extends StudentSectioningLoader {
 	private boolean iCheckOverrideStatus = false, iValidateOverrides = false;
 	private CourseRequestsValidationProvider iValidationProvider = null;
 	private List<Long> iUpdatedStudents = new ArrayList<Long>();
+	private int iNrLoadThreads = 1;
+	private int iLoadChunkSize = 500;
+	private List<org.hibernate.Session> iChunkSessions = new ArrayList<org.hibernate.Session>();
+	private String iPhase = null;
+	private long iPhaseStart = 0;
 	private NameFormat iStudentNameFormat = null, iInstructorNameFormat = null;
 	private StudentSolver iValidator = null;
 	private boolean iCheckRequestStatusSkipCancelled = false, iCheckRequestStatusSkipPending = false;
@@ -307,6 +319,8 @@ public class StudentSectioningDatabaseLoader extends StudentSectioningLoader {
         iMaxDefaultCredit = model.getProperties().getPropertyFloat("Load.DefaultMaxCredit", iMaxDefaultCredit);
         iMinDefaultCredit = model.getProperties().getPropertyFloat("Load.DefaultMinCredit", iMinDefaultCredit);
         iMoveCriticalCoursesUp = model.getProperties().getPropertyBoolean("Load.MoveCriticalCoursesUp", iMoveCriticalCoursesUp);
+        iNrLoadThreads = model.getProperties().getPropertyInt("Load.NrThreads", iNrLoadThreads);
+        iLoadChunkSize = model.getProperties().getPropertyInt("Load.ChunkSize", iLoadChunkSize);
         
         String classesFixedDate = getModel().getProperties().getProperty("General.ClassesFixedDate", "");
         if (!classesFixedDate.isEmpty()) {
@@ -378,6 +392,7 @@ public class StudentSectioningDatabaseLoader extends StudentSectioningLoader {
         } finally {
             // here we need to close the session since this code may run in a separate thread
             if (hibSession!=null && hibSession.isOpen()) hibSession.close();
+            closeChunkSessions();
             if (iValidationProvider != null) iValidationProvider.dispose();
             if (iCriticalCoursesProvider != null) iCriticalCoursesProvider.dispose();
         }
@@ -2086,17 +2101,32 @@ public class StudentSectioningDatabaseLoader extends StudentSectioningLoader {
     	
         Hashtable<Long, Course> courseTable = new Hashtable<Long, Course>();
         final Hashtable<Long, Section> classTable = new Hashtable<Long, Section>();
-        List<InstructionalOffering> offerings = hibSession.createQuery(
-                "select distinct io from InstructionalOffering io " +
-                "left join io.courseOfferings as co "+
-                "left join fetch io.instrOfferingConfigs as ioc "+
-                "left join fetch ioc.schedulingSubparts as ss "+
-                "left join fetch ss.classes as c "+
-                "left join fetch io.reservations as r "+
-                "where " +
-                "io.session.uniqueId = :sessionId and io.notOffered = false and co.subjectArea.department.allowStudentScheduling = true").
-                setLong("sessionId",session.getUniqueId().longValue()).
-                setFetchSize(1000).list();
+        List<InstructionalOffering> offerings = null;
+        if (iNrLoadThreads > 1) {
+        	List<Long> offeringIds = hibSession.createQuery(
+        			"select distinct io.uniqueId from InstructionalOffering io left join io.courseOfferings as co where " +
+        			"io.session.uniqueId = :sessionId and io.notOffered = false and co.subjectArea.department.allowStudentScheduling = true").
+        			setLong("sessionId",session.getUniqueId().longValue()).list();
+        	offerings = loadInChunks(offeringIds,
+                    "select distinct io from InstructionalOffering io " +
+                    "left join fetch io.instrOfferingConfigs as ioc "+
+                    "left join fetch ioc.schedulingSubparts as ss "+
+                    "left join fetch ss.classes as c "+
+                    "left join fetch io.reservations as r "+
+                    "where io.uniqueId in :ids order by io.uniqueId", "Fetching course offerings...");
+        } else {
+            offerings = hibSession.createQuery(
+                    "select distinct io from InstructionalOffering io " +
+                    "left join io.courseOfferings as co "+
+                    "left join fetch io.instrOfferingConfigs as ioc "+
+                    "left join fetch ioc.schedulingSubparts as ss "+
+                    "left join fetch ss.classes as c "+
+                    "left join fetch io.reservations as r "+
+                    "where " +
+                    "io.session.uniqueId = :sessionId and io.notOffered = false and co.subjectArea.department.allowStudentScheduling = true").
+                    setLong("sessionId",session.getUniqueId().longValue()).
+                    setFetchSize(1000).list();
+        }
         setPhase("Loading course offerings...", offerings.size());
         for (InstructionalOffering io: offerings) {
         	incProgress();
@@ -2106,17 +2136,34 @@ public class StudentSectioningDatabaseLoader extends StudentSectioningLoader {
         
         Map<String, Student> ext2student = new HashMap<String, Student>();
         if (iIncludeCourseDemands || iProjections) {
-            List students = hibSession.createQuery(
-                    "select distinct s from Student s " +
-                    "left join fetch s.courseDemands as cd "+
-                    "left join fetch cd.courseRequests as cr "+
-                    "left join fetch cr.classWaitLists as cw " +
-                    "left join fetch s.classEnrollments as e " +
-                    "left join fetch s.waitlists as w " +
-                    (iLoadStudentInfo ? "left join fetch s.areaClasfMajors as a left join fetch s.groups as g " : "") +
-                    "where s.session.uniqueId=:sessionId").
-                    setLong("sessionId",session.getUniqueId().longValue()).
-                    setFetchSize(1000).list();
+            List students = null;
+            // override validation and critical course checks merge the updated students into the main session, load them there
+            if (iNrLoadThreads > 1 && !((iValidateOverrides || iCheckOverrideStatus) && iValidationProvider != null) && !iCheckCriticalCourses) {
+            	List<Long> studentIds = hibSession.createQuery(
+            			"select s.uniqueId from Student s where s.session.uniqueId=:sessionId").
+            			setLong("sessionId",session.getUniqueId().longValue()).list();
+            	students = loadInChunks(studentIds,
+                        "select distinct s from Student s " +
+                        "left join fetch s.courseDemands as cd "+
+                        "left join fetch cd.courseRequests as cr "+
+                        "left join fetch cr.classWaitLists as cw " +
+                        "left join fetch s.classEnrollments as e " +
+                        "left join fetch s.waitlists as w " +
+                        (iLoadStudentInfo ? "left join fetch s.areaClasfMajors as a left join fetch s.groups as g " : "") +
+                        "where s.uniqueId in :ids order by s.uniqueId", "Fetching students...");
+            } else {
+                students = hibSession.createQuery(
+                        "select distinct s from Student s " +
+                        "left join fetch s.courseDemands as cd "+
+                        "left join fetch cd.courseRequests as cr "+
+                        "left join fetch cr.classWaitLists as cw " +
+                        "left join fetch s.classEnrollments as e " +
+                        "left join fetch s.waitlists as w " +
+                        (iLoadStudentInfo ? "left join fetch s.areaClasfMajors as a left join fetch s.groups as g " : "") +
+                        "where s.session.uniqueId=:sessionId").
+                        setLong("sessionId",session.getUniqueId().longValue()).
+                        setFetchSize(1000).list();
+            }
             if (iValidateOverrides && iValidationProvider != null) {
             	validateOverrides(hibSession, students);
             } else if (iCheckOverrideStatus && iValidationProvider != null) {
@@ -2429,9 +2476,74 @@ public class StudentSectioningDatabaseLoader extends StudentSectioningLoader {
     
     protected void setPhase(String phase, long progressMax) {
     	checkTermination();
+    	if (iPhase != null)
+    		iProgress.info((iPhase.endsWith("...") ? iPhase.substring(0, iPhase.length() - 3) : iPhase) + " took " + new DecimalFormat("0.00").format((System.currentTimeMillis() - iPhaseStart) / 1000.0) + " s.");
+    	iPhase = phase; iPhaseStart = System.currentTimeMillis();
     	iProgress.setPhase(phase, progressMax);
     }
     
+    /**
+     * Load the entities with the given ids using the given query (with the ids parameter), the ids being split into chunks of Load.ChunkSize that
+     * are loaded in parallel by Load.NrThreads threads, each chunk using its own Hibernate session. The sessions are kept open until the
+     * end of the load (so that lazy relations can be still initialized). The query is expected to order the entities by their unique ids
+     * and the chunks are merged in the order of the ids, so that the entities are added into the model in a deterministic order.
+     */
+    protected <T> List<T> loadInChunks(List<Long> ids, final String query, String phase) {
+    	List<Long> sortedIds = new ArrayList<Long>(ids);
+    	Collections.sort(sortedIds);
+    	int chunkSize = Math.max(1, iLoadChunkSize);
+    	List<List<Long>> chunks = new ArrayList<List<Long>>();
+    	for (int i = 0; i < sortedIds.size(); i += chunkSize)
+    		chunks.add(sortedIds.subList(i, Math.min(i + chunkSize, sortedIds.size())));
+    	setPhase(phase, chunks.size());
+    	ExecutorService executor = Executors.newFixedThreadPool(Math.max(1, Math.min(iNrLoadThreads, chunks.size())), new ThreadFactory() {
+    		private AtomicInteger iCount = new AtomicInteger(0);
+			@Override
+			public Thread newThread(Runnable r) {
+				Thread thread = new Thread(r, "StudentSectioningLoader-" + iCount.incrementAndGet());
+				thread.setDaemon(true);
+				return thread;
+			}
+		});
+    	try {
+    		List<Future<List<T>>> futures = new ArrayList<Future<List<T>>>();
+    		for (final List<Long> chunk: chunks) {
+    			futures.add(executor.submit(new Callable<List<T>>() {
+					@Override
+					public List<T> call() throws Exception {
+						org.hibernate.Session hibSession = SessionDAO.getInstance().createNewSession();
+						synchronized (iChunkSessions) {
+							iChunkSessions.add(hibSession);
+						}
+						hibSession.setCacheMode(CacheMode.IGNORE);
+						hibSession.setFlushMode(FlushMode.MANUAL);
+						return hibSession.createQuery(query).setParameterList("ids", chunk).setFetchSize(1000).list();
+					}
+				}));
+    		}
+    		List<T> ret = new ArrayList<T>(sortedIds.size());
+    		for (Future<List<T>> future: futures) {
+    			ret.addAll(future.get());
+    			incProgress();
+    		}
+    		return ret;
+    	} catch (InterruptedException e) {
+    		throw new RuntimeException("The load was interrupted.", e);
+    	} catch (ExecutionException e) {
+    		throw new RuntimeException(e.getCause().getMessage(), e.getCause());
+    	} finally {
+    		executor.shutdownNow();
+    	}
+    }
+    
+    protected void closeChunkSessions() {
+    	synchronized (iChunkSessions) {
+    		for (org.hibernate.Session hibSession: iChunkSessions)
+    			if (hibSession.isOpen()) hibSession.close();
+    		iChunkSessions.clear();
+    	}
+    }
+    
     protected void incProgress() {
     	checkTermination();
     	iProgress.incProgress();
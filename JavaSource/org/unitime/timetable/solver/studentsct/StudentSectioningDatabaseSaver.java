@@ -19,13 +19,18 @@
 */
 package org.unitime.timetable.solver.studentsct;
 
+import java.util.ArrayList;
+import java.util.Collection;
 import java.util.Date;
+import java.util.HashMap;
 import java.util.HashSet;
 import java.util.Iterator;
 import java.util.Hashtable;
 import java.util.List;
+import java.util.Map;
 import java.util.Set;
 import java.util.TreeSet;
+import java.util.concurrent.atomic.AtomicInteger;
 
 import org.apache.commons.logging.Log;
 import org.apache.commons.logging.LogFactory;
@@ -44,6 +49,7 @@ import org.cpsolver.studentsct.model.Student;
 import org.cpsolver.studentsct.model.Subpart;
 import org.hibernate.CacheMode;
 import org.hibernate.FlushMode;
+import org.hibernate.SessionFactory;
 import org.hibernate.Transaction;
 import org.unitime.timetable.ApplicationProperties;
 import org.unitime.timetable.model.Class_;
@@ -57,6 +63,7 @@ import org.unitime.timetable.model.StudentSectioningQueue;
 import org.unitime.timetable.model.StudentSectioningStatus;
 import org.unitime.timetable.model.WaitList;
 import org.unitime.timetable.model.dao.SessionDAO;
+import org.unitime.timetable.model.dao.StudentClassEnrollmentDAO;
 
 
 /**
@@ -82,6 +89,9 @@ public class StudentSectioningDatabaseSaver extends StudentSectioningSaver {
     
     private Progress iProgress = null;
 	private boolean iProjections = false;
+	private boolean iDifferential = false;
+	private int iNrThreads = 1;
+	private Set<Long> iChangedStudentIds = null, iChangedClassIds = null, iChangedWaitListStudentIds = null;
 
     public StudentSectioningDatabaseSaver(Solver solver) {
         super(solver);
@@ -93,6 +103,8 @@ public class StudentSectioningDatabaseSaver extends StudentSectioningSaver {
         iProjections = "Projection".equals(solver.getProperties().getProperty("StudentSctBasic.Mode", "Initial"));
         iUpdateCourseRequests = solver.getProperties().getPropertyBoolean("Interactive.UpdateCourseRequests", true);
         iOwnerId = solver.getProperties().getProperty("General.OwnerPuid");
+        iDifferential = solver.getProperties().getPropertyBoolean("Save.Differential", iDifferential);
+        iNrThreads = solver.getProperties().getPropertyInt("Save.NrThreads", iNrThreads);
     }
     
     public void save() {
@@ -120,6 +132,7 @@ public class StudentSectioningDatabaseSaver extends StudentSectioningSaver {
             
             tx.commit(); tx = null;
             
+            evictChangedCollections(hibSession.getSessionFactory());
         } catch (Exception e) {
             iProgress.fatal("Unable to save student schedule, reason: "+e.getMessage(),e);
             sLog.error(e.getMessage(),e);
@@ -307,7 +320,12 @@ public class StudentSectioningDatabaseSaver extends StudentSectioningSaver {
         }
         incProgress();
         
-        if (iIncludeCourseDemands && !iProjections) {
+        if (iIncludeCourseDemands && !iProjections)
+        	loadStatusToSet(session, hibSession);
+        
+        if (iIncludeCourseDemands && !iProjections && iDifferential && !hasRequestChanges()) {
+        	saveDifferential(session, hibSession);
+        } else if (iIncludeCourseDemands && !iProjections) {
             iCourses = new Hashtable<Long, CourseOffering>();
             setPhase("Loading courses...", 1);
             for (CourseOffering course: (List<CourseOffering>)hibSession.createQuery(
@@ -348,19 +366,6 @@ public class StudentSectioningDatabaseSaver extends StudentSectioningSaver {
             incProgress();
             
             setPhase("Saving student enrollments...", getModel().getStudents().size());
-            String statusToSet = getSolver().getProperties().getProperty("Save.StudentSectioningStatusToSet");
-            if ("Default".equalsIgnoreCase(statusToSet)) {
-            	iStatusToSet = null; iResetStatus = true;
-            	iProgress.info("Setting student sectioning status to " + (session.getDefaultSectioningStatus() == null ? "System Default (All Enabled)" : "Session Default (" + session.getDefaultSectioningStatus().getLabel() + ")") + ".");
-            } else if (statusToSet != null && !statusToSet.isEmpty() && !statusToSet.equals("N/A")) {
-            	iStatusToSet = StudentSectioningStatus.getStatus(statusToSet, session.getUniqueId(), hibSession);
-            	if (iStatusToSet == null)
-            		iProgress.warn("Student sectioning status " + statusToSet + " does not exist.");
-            	else
-            		iProgress.info("Setting student sectioning status to " + iStatusToSet.getLabel());
-            }
-            if (iStatusToSet == null && !iResetStatus)
-            	iProgress.info("Keeping student sectioning status unchanged.");
             for (Iterator e=getModel().getStudents().iterator();e.hasNext();) {
                 Student student = (Student)e.next(); incProgress();
                 if (student.isDummy()) continue;
@@ -447,6 +452,422 @@ public class StudentSectioningDatabaseSaver extends StudentSectioningSaver {
         setPhase("Done",1);incProgress();
     }
     
+    protected void loadStatusToSet(Session session, org.hibernate.Session hibSession) {
+        String statusToSet = getSolver().getProperties().getProperty("Save.StudentSectioningStatusToSet");
+        if ("Default".equalsIgnoreCase(statusToSet)) {
+        	iStatusToSet = null; iResetStatus = true;
+        	iProgress.info("Setting student sectioning status to " + (session.getDefaultSectioningStatus() == null ? "System Default (All Enabled)" : "Session Default (" + session.getDefaultSectioningStatus().getLabel() + ")") + ".");
+        } else if (statusToSet != null && !statusToSet.isEmpty() && !statusToSet.equals("N/A")) {
+        	iStatusToSet = StudentSectioningStatus.getStatus(statusToSet, session.getUniqueId(), hibSession);
+        	if (iStatusToSet == null)
+        		iProgress.warn("Student sectioning status " + statusToSet + " does not exist.");
+        	else
+        		iProgress.info("Setting student sectioning status to " + iStatusToSet.getLabel());
+        }
+        if (iStatusToSet == null && !iResetStatus)
+        	iProgress.info("Keeping student sectioning status unchanged.");
+    }
+    
+    /**
+     * True if there is a student whose course requests are to be updated (this is not supported by the differential save)
+     */
+    protected boolean hasRequestChanges() {
+    	if (!iUpdateCourseRequests) return false;
+    	for (Student student: getModel().getStudents())
+    		if (!student.isDummy() && BatchEnrollStudent.sRequestsChangedStatus.equals(student.getStatus())) return true;
+    	return false;
+    }
+    
+    /**
+     * Differential save: compare the student class enrollments and wait-lists of the solution with the current state of the database
+     * (loaded using a few scalar queries instead of loading all the students with their course demands and enrollments)
+     * and only insert, update, or delete those that have changed. Deletes are done by bulk statements, inserts and updates are
+     * flushed in batches of 1000. When Save.NrThreads is above one, the changes are applied in parallel (partitioned by student),
+     * each worker using its own session and transaction (student sectioning status changes are committed before the workers are started).
+     * When a worker fails, the changes of the workers that have already committed are kept: their cached collections are evicted and their students are reported.
+     */
+    protected void saveDifferential(Session session, org.hibernate.Session hibSession) {
+    	setPhase("Loading current enrollments...", 5);
+    	Set<Long> studentIds = new HashSet<Long>((List<Long>)hibSession.createQuery(
+    			"select s.uniqueId from Student s where s.session.uniqueId = :sessionId")
+    			.setLong("sessionId", session.getUniqueId()).list());
+    	incProgress();
+    	
+    	Set<Long> courseIds = new HashSet<Long>((List<Long>)hibSession.createQuery(
+    			"select co.uniqueId from CourseOffering co where co.subjectArea.session.uniqueId = :sessionId")
+    			.setLong("sessionId", session.getUniqueId()).list());
+    	incProgress();
+    	
+    	// course demand id : instructional offering id -> course request id, course offering id
+    	Map<String, Long[]> requests = new HashMap<String, Long[]>();
+    	for (Object[] o: (List<Object[]>)hibSession.createQuery(
+    			"select cd.uniqueId, io.uniqueId, cr.uniqueId, co.uniqueId from CourseRequest cr inner join cr.courseDemand cd " +
+    			"inner join cr.courseOffering co inner join co.instructionalOffering io where cd.student.session.uniqueId = :sessionId")
+    			.setLong("sessionId", session.getUniqueId()).setFetchSize(1000).list()) {
+    		requests.put(o[0] + ":" + o[1], new Long[] { (Long)o[2], (Long)o[3] });
+    	}
+    	incProgress();
+    	
+    	// student id -> class id -> enrollment id, course offering id, course request id
+    	Map<Long, Map<Long, Long[]>> enrollments = new HashMap<Long, Map<Long, Long[]>>();
+    	for (Object[] o: (List<Object[]>)hibSession.createQuery(
+    			"select e.student.uniqueId, e.clazz.uniqueId, e.uniqueId, co.uniqueId, cr.uniqueId from StudentClassEnrollment e " +
+    			"left join e.courseOffering co left join e.courseRequest cr where e.student.session.uniqueId = :sessionId")
+    			.setLong("sessionId", session.getUniqueId()).setFetchSize(1000).list()) {
+    		Map<Long, Long[]> classes = enrollments.get((Long)o[0]);
+    		if (classes == null) {
+    			classes = new HashMap<Long, Long[]>();
+    			enrollments.put((Long)o[0], classes);
+    		}
+    		classes.put((Long)o[1], new Long[] { (Long)o[2], (Long)o[3], (Long)o[4] });
+    	}
+    	incProgress();
+    	
+    	// student id -> course offering id -> wait-list id
+    	Map<Long, Map<Long, Long>> waitlists = new HashMap<Long, Map<Long, Long>>();
+    	for (Object[] o: (List<Object[]>)hibSession.createQuery(
+    			"select w.student.uniqueId, w.courseOffering.uniqueId, w.uniqueId from WaitList w where w.student.session.uniqueId = :sessionId")
+    			.setLong("sessionId", session.getUniqueId()).setFetchSize(1000).list()) {
+    		Map<Long, Long> courses = waitlists.get((Long)o[0]);
+    		if (courses == null) {
+    			courses = new HashMap<Long, Long>();
+    			waitlists.put((Long)o[0], courses);
+    		}
+    		courses.put((Long)o[1], (Long)o[2]);
+    	}
+    	incProgress();
+    	
+    	setPhase("Computing enrollment changes...", getModel().getStudents().size());
+    	List<StudentChange> changes = new ArrayList<StudentChange>();
+    	List<Long> modelStudentIds = new ArrayList<Long>();
+    	int unchangedEnrollments = 0, unchangedWaitLists = 0;
+    	for (Student student: getModel().getStudents()) {
+    		incProgress();
+    		if (student.isDummy()) continue;
+    		if (!studentIds.contains(student.getId())) {
+    			iProgress.warn("Student "+student.getId()+" not found.");
+    			continue;
+    		}
+    		modelStudentIds.add(student.getId());
+    		StudentChange change = new StudentChange(student.getId());
+    		Map<Long, Long[]> currentEnrollments = enrollments.get(student.getId());
+    		Map<Long, Long> currentWaitLists = waitlists.get(student.getId());
+    		for (Request request: student.getRequests()) {
+    			if (!(request instanceof CourseRequest)) continue;
+    			CourseRequest courseRequest = (CourseRequest)request;
+    			Enrollment enrollment = (Enrollment)getAssignment().getValue(request);
+    			if (enrollment == null) {
+    				if (courseRequest.isWaitlist() && student.canAssign(getAssignment(), courseRequest)) {
+    					Long courseId = courseRequest.getCourses().get(0).getId();
+    					if (!courseIds.contains(courseId)) {
+                        	iProgress.warn("Course offering " + courseId + " not found.");
+                        	continue;
+    					}
+    					if (currentWaitLists != null && currentWaitLists.remove(courseId) != null)
+    						unchangedWaitLists ++;
+    					else
+    						change.iAddWaitLists.add(courseId);
+    				}
+    			} else {
+    				Long[] cr = requests.get(request.getId() + ":" + enrollment.getOffering().getId());
+    				for (Iterator j = enrollment.getAssignments().iterator(); j.hasNext(); ) {
+    					Section section = (Section)j.next();
+    					Class_ clazz = iClasses.get(section.getId());
+                        if (clazz == null) {
+                        	iProgress.warn("Class " + section.getId() + " not found.");
+                        	continue;
+                        }
+                        Long courseId = null, requestId = null;
+                        if (cr == null) {
+                        	courseId = enrollment.getCourse().getId();
+                        	if (!courseIds.contains(courseId))
+                        		courseId = clazz.getSchedulingSubpart().getControllingCourseOffering().getUniqueId();
+                        } else {
+                        	requestId = cr[0]; courseId = cr[1];
+                        }
+                        Long[] current = (currentEnrollments == null ? null : currentEnrollments.remove(section.getId()));
+                        if (current == null)
+                        	change.iAddEnrollments.add(new Long[] { section.getId(), courseId, requestId });
+                        else if (!courseId.equals(current[1]) || (requestId == null ? current[2] != null : !requestId.equals(current[2])))
+                        	change.iUpdateEnrollments.add(new Long[] { current[0], courseId, requestId });
+                        else
+                        	unchangedEnrollments ++;
+    				}
+    			}
+    		}
+    		if (currentEnrollments != null)
+    			for (Map.Entry<Long, Long[]> e: currentEnrollments.entrySet())
+    				change.iDeleteEnrollments.add(new Long[] { e.getValue()[0], e.getKey() });
+    		if (currentWaitLists != null)
+    			change.iDeleteWaitLists.addAll(currentWaitLists.values());
+    		if (!change.isEmpty()) changes.add(change);
+    	}
+    	
+    	boolean parallel = (iNrThreads > 1 && changes.size() > 1);
+    	if (iStatusToSet != null || iResetStatus) {
+    		if (parallel) {
+    			// the workers use their own transactions: commit the status changes first so that they do not wait on the locked student rows
+    			org.hibernate.Session statusSession = null;
+    			Transaction tx = null;
+    			try {
+    				statusSession = StudentClassEnrollmentDAO.getInstance().createNewSession();
+    				statusSession.setCacheMode(CacheMode.IGNORE);
+    				statusSession.setFlushMode(FlushMode.MANUAL);
+    				tx = statusSession.beginTransaction();
+    				updateSectioningStatuses(statusSession, modelStudentIds);
+    				tx.commit(); tx = null;
+    			} catch (RuntimeException e) {
+    				if (tx != null) tx.rollback();
+    				throw e;
+    			} finally {
+    				if (statusSession != null && statusSession.isOpen()) statusSession.close();
+    			}
+    		} else {
+    			updateSectioningStatuses(hibSession, modelStudentIds);
+    		}
+    	}
+    	
+    	ChangeCounts counts = new ChangeCounts();
+    	setChangedIds(changes);
+    	
+    	setPhase("Saving student enrollments...", changes.size());
+    	if (!parallel) {
+    		applyChanges(hibSession, changes.iterator(), counts, null);
+    	} else {
+    		List<ChangeWorker> workers = new ArrayList<ChangeWorker>();
+    		Iterator<StudentChange> iterator = changes.iterator();
+    		for (int i = 0; i < Math.min(iNrThreads, changes.size()); i++)
+    			workers.add(new ChangeWorker(i, iterator, counts));
+    		for (ChangeWorker worker: workers) worker.start();
+    		RuntimeException exception = null;
+    		for (ChangeWorker worker: workers) {
+    			try {
+    				worker.join();
+    			} catch (InterruptedException e) {
+    				counts.iCanContinue = false;
+    				try { worker.join(); } catch (InterruptedException x) {}
+    			}
+    			if (worker.iException != null && exception == null) exception = worker.iException;
+    		}
+    		if (exception != null || !counts.iCanContinue) {
+    			// the changes of the workers that have committed stay in the database: evict their collections and report their students
+    			List<StudentChange> committed = new ArrayList<StudentChange>();
+    			for (ChangeWorker worker: workers)
+    				if (worker.iCommitted) committed.addAll(worker.iProcessed);
+    			setChangedIds(committed);
+    			evictChangedCollections(hibSession.getSessionFactory());
+    			if (iStatusToSet != null || iResetStatus)
+    				iProgress.warn("Student sectioning statuses have been updated.");
+    			if (committed.isEmpty()) {
+    				iProgress.warn("No student enrollments have been saved.");
+    			} else {
+    				Map<Long, String> externalIds = new HashMap<Long, String>();
+    				for (Student student: getModel().getStudents())
+    					externalIds.put(student.getId(), student.getExternalId());
+    				Set<String> saved = new TreeSet<String>();
+    				for (StudentChange change: committed) {
+    					String externalId = externalIds.get(change.iStudentId);
+    					saved.add(externalId == null ? change.iStudentId.toString() : externalId);
+    				}
+    				StringBuffer list = new StringBuffer();
+    				for (String student: saved)
+    					list.append(list.length() == 0 ? "" : ", ").append(student);
+    				iProgress.warn("Enrollments of " + committed.size() + " of " + changes.size() + " changed students have been saved: " + list);
+    			}
+    			if (exception != null) throw exception;
+    			throw new RuntimeException("The save was interrupted.");
+    		}
+    	}
+    	
+    	iProgress.info("Student class enrollments: " + counts.iInserted + " added, " + counts.iUpdated + " updated, " + counts.iDeleted + " removed, " + unchangedEnrollments + " not changed.");
+    	iProgress.info("Wait-lists: " + counts.iWaitListsInserted + " added, " + counts.iWaitListsDeleted + " removed, " + unchangedWaitLists + " not changed.");
+    	iProgress.info("Students with changed enrollments: " + changes.size() + " of " + modelStudentIds.size() + ".");
+    }
+    
+    /**
+     * Set (or reset) the student sectioning status of the given students using chunked bulk updates, only touching students whose status differs
+     */
+    protected void updateSectioningStatuses(org.hibernate.Session hibSession, List<Long> studentIds) {
+    	setPhase("Updating student sectioning statuses...", studentIds.size());
+    	int updated = 0;
+    	for (int i = 0; i < studentIds.size(); i += 1000) {
+    		List<Long> ids = studentIds.subList(i, Math.min(i + 1000, studentIds.size()));
+    		if (iStatusToSet != null)
+    			updated += hibSession.createQuery(
+    					"update Student s set s.sectioningStatus = :status where s.uniqueId in :ids and (s.sectioningStatus is null or s.sectioningStatus != :status)")
+    					.setParameterList("ids", ids).setEntity("status", iStatusToSet).executeUpdate();
+    		else
+    			updated += hibSession.createQuery(
+    					"update Student s set s.sectioningStatus = null where s.uniqueId in :ids and s.sectioningStatus is not null")
+    					.setParameterList("ids", ids).executeUpdate();
+    		for (int j = 0; j < ids.size(); j++) incProgress();
+    	}
+    	iProgress.info("Student sectioning status changed for " + updated + " students.");
+    }
+    
+    /**
+     * Apply the given changes using the given session: deletes are done first (using bulk delete statements), then the new and the updated
+     * student class enrollments and wait-lists are saved, the session being flushed after every 1000 changes
+     */
+    protected void applyChanges(org.hibernate.Session hibSession, Iterator<StudentChange> changes, ChangeCounts counts, List<StudentChange> processed) {
+    	List<Long> enrollmentIds = new ArrayList<Long>(), waitListIds = new ArrayList<Long>();
+    	int pending = 0;
+    	while (true) {
+    		StudentChange change = null;
+    		synchronized (changes) {
+    			if (!counts.iCanContinue || !changes.hasNext()) break;
+    			change = changes.next();
+    			incProgress();
+    		}
+    		if (processed != null) processed.add(change);
+    		for (Long[] e: change.iDeleteEnrollments) enrollmentIds.add(e[0]);
+    		waitListIds.addAll(change.iDeleteWaitLists);
+    		if (enrollmentIds.size() >= 1000) {
+    			counts.iDeleted.addAndGet(hibSession.createQuery("delete StudentClassEnrollment where uniqueId in :ids").setParameterList("ids", enrollmentIds).executeUpdate());
+    			enrollmentIds.clear();
+    		}
+    		if (waitListIds.size() >= 1000) {
+    			counts.iWaitListsDeleted.addAndGet(hibSession.createQuery("delete WaitList where uniqueId in :ids").setParameterList("ids", waitListIds).executeUpdate());
+    			waitListIds.clear();
+    		}
+    		if (change.iAddEnrollments.isEmpty() && change.iUpdateEnrollments.isEmpty() && change.iAddWaitLists.isEmpty()) continue;
+    		org.unitime.timetable.model.Student s = (org.unitime.timetable.model.Student)hibSession.load(org.unitime.timetable.model.Student.class, change.iStudentId);
+    		for (Long[] e: change.iAddEnrollments) {
+    			StudentClassEnrollment sce = new StudentClassEnrollment();
+    			sce.setChangedBy(StudentClassEnrollment.SystemChange.BATCH.toString());
+    			sce.setStudent(s);
+    			sce.setClazz((Class_)hibSession.load(Class_.class, e[0]));
+    			sce.setCourseOffering((CourseOffering)hibSession.load(CourseOffering.class, e[1]));
+    			if (e[2] != null)
+    				sce.setCourseRequest((org.unitime.timetable.model.CourseRequest)hibSession.load(org.unitime.timetable.model.CourseRequest.class, e[2]));
+    			sce.setTimestamp(iTimeStamp);
+    			hibSession.save(sce);
+    			counts.iInserted.incrementAndGet(); pending ++;
+    		}
+    		for (Long[] e: change.iUpdateEnrollments) {
+    			StudentClassEnrollment sce = (StudentClassEnrollment)hibSession.get(StudentClassEnrollment.class, e[0]);
+    			if (sce == null) continue;
+    			sce.setChangedBy(StudentClassEnrollment.SystemChange.BATCH.toString());
+    			sce.setCourseOffering((CourseOffering)hibSession.load(CourseOffering.class, e[1]));
+    			sce.setCourseRequest(e[2] == null ? null : (org.unitime.timetable.model.CourseRequest)hibSession.load(org.unitime.timetable.model.CourseRequest.class, e[2]));
+    			sce.setTimestamp(iTimeStamp);
+    			hibSession.update(sce);
+    			counts.iUpdated.incrementAndGet(); pending ++;
+    		}
+    		for (Long courseId: change.iAddWaitLists) {
+                WaitList wl = new WaitList();
+                wl.setStudent(s);
+                wl.setCourseOffering((CourseOffering)hibSession.load(CourseOffering.class, courseId));
+                wl.setTimestamp(iTimeStamp);
+                wl.setType(new Integer(0));
+                hibSession.save(wl);
+                counts.iWaitListsInserted.incrementAndGet(); pending ++;
+    		}
+    		if (pending >= 1000) {
+    			hibSession.flush(); hibSession.clear();
+    			pending = 0;
+    		}
+    	}
+    	if (!enrollmentIds.isEmpty())
+    		counts.iDeleted.addAndGet(hibSession.createQuery("delete StudentClassEnrollment where uniqueId in :ids").setParameterList("ids", enrollmentIds).executeUpdate());
+    	if (!waitListIds.isEmpty())
+    		counts.iWaitListsDeleted.addAndGet(hibSession.createQuery("delete WaitList where uniqueId in :ids").setParameterList("ids", waitListIds).executeUpdate());
+    	hibSession.flush(); hibSession.clear();
+    }
+    
+    /**
+     * Remember the students and classes whose enrollment and wait-list collections are changed by the given changes
+     */
+    protected void setChangedIds(Collection<StudentChange> changes) {
+    	iChangedStudentIds = new HashSet<Long>(); iChangedClassIds = new HashSet<Long>(); iChangedWaitListStudentIds = new HashSet<Long>();
+    	for (StudentChange change: changes) {
+    		if (!change.iAddEnrollments.isEmpty() || !change.iUpdateEnrollments.isEmpty() || !change.iDeleteEnrollments.isEmpty())
+    			iChangedStudentIds.add(change.iStudentId);
+    		if (!change.iAddWaitLists.isEmpty() || !change.iDeleteWaitLists.isEmpty())
+    			iChangedWaitListStudentIds.add(change.iStudentId);
+    		for (Long[] e: change.iAddEnrollments) iChangedClassIds.add(e[0]);
+    		for (Long[] e: change.iDeleteEnrollments) iChangedClassIds.add(e[1]);
+    	}
+    }
+    
+    /**
+     * Evict the cached enrollment and wait-list collections of the students and classes changed by the differential save
+     */
+    protected void evictChangedCollections(SessionFactory hibSessionFactory) {
+    	if (iChangedStudentIds != null)
+    		for (Long studentId: iChangedStudentIds)
+    			hibSessionFactory.getCache().evictCollection(org.unitime.timetable.model.Student.class.getName() + ".classEnrollments", studentId);
+    	if (iChangedWaitListStudentIds != null)
+    		for (Long studentId: iChangedWaitListStudentIds)
+    			hibSessionFactory.getCache().evictCollection(org.unitime.timetable.model.Student.class.getName() + ".waitlists", studentId);
+    	if (iChangedClassIds != null)
+    		for (Long classId: iChangedClassIds)
+    			hibSessionFactory.getCache().evictCollection(Class_.class.getName() + ".studentEnrollments", classId);
+    }
+    
+    protected static class StudentChange {
+    	private Long iStudentId;
+    	/** class id, course offering id, course request id */
+    	private List<Long[]> iAddEnrollments = new ArrayList<Long[]>();
+    	/** enrollment id, course offering id, course request id */
+    	private List<Long[]> iUpdateEnrollments = new ArrayList<Long[]>();
+    	/** enrollment id, class id */
+    	private List<Long[]> iDeleteEnrollments = new ArrayList<Long[]>();
+    	/** course offering ids */
+    	private List<Long> iAddWaitLists = new ArrayList<Long>();
+    	/** wait-list ids */
+    	private List<Long> iDeleteWaitLists = new ArrayList<Long>();
+    	
+    	StudentChange(Long studentId) { iStudentId = studentId; }
+    	
+    	boolean isEmpty() {
+    		return iAddEnrollments.isEmpty() && iUpdateEnrollments.isEmpty() && iDeleteEnrollments.isEmpty() && iAddWaitLists.isEmpty() && iDeleteWaitLists.isEmpty();
+    	}
+    }
+    
+    protected static class ChangeCounts {
+    	private AtomicInteger iInserted = new AtomicInteger(0), iUpdated = new AtomicInteger(0), iDeleted = new AtomicInteger(0);
+    	private AtomicInteger iWaitListsInserted = new AtomicInteger(0), iWaitListsDeleted = new AtomicInteger(0);
+    	private volatile boolean iCanContinue = true;
+    }
+    
+    protected class ChangeWorker extends Thread {
+    	private Iterator<StudentChange> iChanges;
+    	private ChangeCounts iCounts;
+    	private RuntimeException iException = null;
+    	private List<StudentChange> iProcessed = new ArrayList<StudentChange>();
+    	private boolean iCommitted = false;
+    	
+    	public ChangeWorker(int index, Iterator<StudentChange> changes, ChangeCounts counts) {
+    		setName("EnrollmentSaver-" + (1 + index));
+    		iChanges = changes;
+    		iCounts = counts;
+    	}
+    	
+    	@Override
+    	public void run() {
+    		iProgress.debug(getName() + " has started.");
+    		org.hibernate.Session hibSession = null;
+    		Transaction tx = null;
+    		try {
+    			hibSession = StudentClassEnrollmentDAO.getInstance().createNewSession();
+    			hibSession.setCacheMode(CacheMode.IGNORE);
+    			hibSession.setFlushMode(FlushMode.MANUAL);
+    			tx = hibSession.beginTransaction();
+    			applyChanges(hibSession, iChanges, iCounts, iProcessed);
+    			tx.commit(); tx = null;
+    			iCommitted = true;
+    		} catch (RuntimeException e) {
+    			iException = e;
+    			iCounts.iCanContinue = false;
+    			if (tx != null) tx.rollback();
+    		} finally {
+    			if (hibSession != null && hibSession.isOpen()) hibSession.close();
+    		}
+    		iProgress.debug(getName() + " has finished.");
+    	}
+    }
+    
     protected void checkTermination() {
     	if (getTerminationCondition() != null && !getTerminationCondition().canContinue(getSolution()))
     		throw new RuntimeException("The save was interrupted.");
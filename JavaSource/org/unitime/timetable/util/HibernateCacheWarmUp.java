@@ -0,0 +1,166 @@
+/*
+ * Licensed to The Apereo Foundation under one or more contributor license
+ * agreements. See the NOTICE file distributed with this work for
+ * additional information regarding copyright ownership.
+ *
+ * The Apereo Foundation licenses this file to you under the Apache License,
+ * Version 2.0 (the "License"); you may not use this file except in
+ * compliance with the License. You may obtain a copy of the License at:
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ *
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ *
+*/
+package org.unitime.timetable.util;
+
+import java.util.ArrayList;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ThreadFactory;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import org.apache.log4j.Logger;
+import org.unitime.timetable.defaults.ApplicationProperty;
+import org.unitime.timetable.model.Session;
+import org.unitime.timetable.model.dao._RootDAO;
+
+/**
+ * Preloads the configured second level cache regions after the start-up (see {@link ApplicationProperty#HibernateCacheWarmUp}),
+ * so that the first users do not have to wait for the cold caches. The regions are loaded in parallel, each on its own
+ * Hibernate session. Session dependent regions are only loaded for the current academic sessions (sessions with an active
+ * status that is not a test session).
+ *
+ * @author Tomas Muller
+ */
+public class HibernateCacheWarmUp extends Thread {
+	private static Logger sLog = Logger.getLogger(HibernateCacheWarmUp.class);
+	private static Map<String, String> sQueries = new LinkedHashMap<String, String>();
+	static {
+		sQueries.put("Session", "from Session");
+		sQueries.put("Department", "from Department where session.uniqueId in (:sessionIds)");
+		sQueries.put("SubjectArea", "from SubjectArea where session.uniqueId in (:sessionIds)");
+		sQueries.put("Building", "from Building where session.uniqueId in (:sessionIds)");
+		sQueries.put("Location", "from Location where session.uniqueId in (:sessionIds)");
+		sQueries.put("DatePattern", "from DatePattern where session.uniqueId in (:sessionIds)");
+		sQueries.put("TimePattern", "from TimePattern where session.uniqueId in (:sessionIds)");
+		sQueries.put("DepartmentalInstructor", "from DepartmentalInstructor where department.session.uniqueId in (:sessionIds)");
+		sQueries.put("InstructionalOffering", "from InstructionalOffering where session.uniqueId in (:sessionIds)");
+		sQueries.put("CourseOffering", "from CourseOffering where subjectArea.session.uniqueId in (:sessionIds)");
+	}
+	
+	private List<String> iRegions = new ArrayList<String>();
+	
+	private HibernateCacheWarmUp(List<String> regions) {
+		setName("HibernateCacheWarmUp");
+		setDaemon(true);
+		iRegions = regions;
+	}
+	
+	/**
+	 * Start the warm-up in the background (when there are some regions configured)
+	 */
+	public static void startWarmUp() {
+		String config = ApplicationProperty.HibernateCacheWarmUp.value();
+		if (config == null || config.trim().isEmpty()) return;
+		List<String> regions = new ArrayList<String>();
+		for (String region: config.split(",")) {
+			region = region.trim();
+			if (region.isEmpty()) continue;
+			if (sQueries.containsKey(region))
+				regions.add(region);
+			else
+				sLog.warn("Unknown cache region " + region + " (supported regions are " + sQueries.keySet() + ").");
+		}
+		if (!regions.isEmpty())
+			new HibernateCacheWarmUp(regions).start();
+	}
+	
+	protected int getNrThreads() {
+		Integer threads = ApplicationProperty.HibernateCacheWarmUpThreads.intValue();
+		return (threads == null ? 4 : Math.max(1, threads.intValue()));
+	}
+	
+	protected List<Long> getCurrentSessionIds() {
+		org.hibernate.Session hibSession = new _RootDAO().createNewSession();
+		try {
+			List<Long> sessionIds = new ArrayList<Long>();
+			for (Session session: (List<Session>)hibSession.createQuery("from Session").list()) {
+				if (session.getStatusType() != null && session.getStatusType().isActive() && !session.getStatusType().isTestSession())
+					sessionIds.add(session.getUniqueId());
+			}
+			return sessionIds;
+		} finally {
+			hibSession.close();
+		}
+	}
+	
+	@Override
+	public void run() {
+		long t0 = System.currentTimeMillis();
+		final List<Long> sessionIds;
+		try {
+			sessionIds = getCurrentSessionIds();
+		} catch (Exception e) {
+			sLog.error("Failed to warm up second level cache: " + e.getMessage(), e);
+			return;
+		}
+		sLog.info("Warming up second level cache regions " + iRegions + " for " + sessionIds.size() + " academic sessions ...");
+		ExecutorService workers = Executors.newFixedThreadPool(Math.min(getNrThreads(), iRegions.size()), new ThreadFactory() {
+			private AtomicInteger iCount = new AtomicInteger(0);
+			@Override
+			public Thread newThread(Runnable r) {
+				Thread thread = new Thread(r, "HibernateCacheWarmUp-" + iCount.incrementAndGet());
+				thread.setDaemon(true);
+				return thread;
+			}
+		});
+		final AtomicInteger total = new AtomicInteger(0);
+		for (final String region: iRegions) {
+			workers.execute(new Runnable() {
+				@Override
+				public void run() {
+					total.addAndGet(warmUp(region, sessionIds));
+				}
+			});
+		}
+		workers.shutdown();
+		try {
+			workers.awaitTermination(1, TimeUnit.HOURS);
+		} catch (InterruptedException e) {
+			workers.shutdownNow();
+			return;
+		}
+		sLog.info("Second level cache warmed up: " + total.get() + " objects loaded in " + (System.currentTimeMillis() - t0) + " ms.");
+	}
+	
+	protected int warmUp(String region, List<Long> sessionIds) {
+		String query = sQueries.get(region);
+		boolean sessionDependent = query.contains(":sessionIds");
+		if (sessionDependent && sessionIds.isEmpty()) return 0;
+		long t0 = System.currentTimeMillis();
+		org.hibernate.Session hibSession = new _RootDAO().createNewSession();
+		try {
+			org.hibernate.Query q = hibSession.createQuery(query);
+			if (sessionDependent) q.setParameterList("sessionIds", sessionIds);
+			int count = q.list().size();
+			if (sLog.isDebugEnabled())
+				sLog.debug("Region " + region + " warmed up: " + count + " objects loaded in " + (System.currentTimeMillis() - t0) + " ms.");
+			return count;
+		} catch (Exception e) {
+			sLog.warn("Failed to warm up region " + region + ": " + e.getMessage(), e);
+			return 0;
+		} finally {
+			hibSession.close();
+		}
+	}
+}
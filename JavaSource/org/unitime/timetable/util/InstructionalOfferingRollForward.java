@@ -58,10 +58,15 @@ import org.unitime.timetable.model.dao.ItypeDescDAO;
  */
 public class InstructionalOfferingRollForward extends SessionRollForward {
 	
+	private int iNrFailures = 0;
+	
 	public InstructionalOfferingRollForward(Log log) {
 		super(log);
 	}
 	
+	/** Number of instructional offerings that failed to roll forward so far */
+	public int getNrFailures() { return iNrFailures; }
+	
 	public void rollForwardInstructionalOfferingsForASubjectArea(String subjectAreaAbbreviation, Session fromSession, Session toSession){
 		CourseOfferingDAO coDao = new CourseOfferingDAO();
 		String query = "from CourseOffering as co where co.subjectArea.subjectAreaAbbreviation = '" + subjectAreaAbbreviation
@@ -147,24 +152,32 @@ public class InstructionalOfferingRollForward extends SessionRollForward {
 
 	private void addInstructionalOffering(CourseCatalog courseCatalogEntry, Session toSession) {
 		iLog.info("Creating " + courseCatalogEntry.getSubject() + " " + courseCatalogEntry.getCourseNumber());
-		InstructionalOffering instructionalOffering = createToInstructionalOfferingFromCourseCatalog(courseCatalogEntry, toSession);
-		if (instructionalOffering != null){
-			CourseOffering courseOffering = createToCourseOfferingFromCourseCatalog(courseCatalogEntry, toSession);
-			courseOffering.setInstructionalOffering(instructionalOffering);
-			instructionalOffering.setNotOffered(new Boolean(true));
-			instructionalOffering.addTocourseOfferings(courseOffering);
-			InstrOfferingConfig instrOffrConfig = createToInstrOfferingConfigFromCourseCatalog(courseCatalogEntry, toSession);
-			if (instrOffrConfig != null){
-				instructionalOffering.addToinstrOfferingConfigs(instrOffrConfig);
-				instrOffrConfig.setInstructionalOffering(instructionalOffering);
-			}
-			if (instructionalOffering.getInstrOfferingPermId() == null){
-				instructionalOffering.generateInstrOfferingPermId();
+		InstructionalOfferingDAO ioDao = new InstructionalOfferingDAO();
+		InstructionalOffering instructionalOffering = null;
+		try {
+			instructionalOffering = createToInstructionalOfferingFromCourseCatalog(courseCatalogEntry, toSession);
+			if (instructionalOffering != null){
+				CourseOffering courseOffering = createToCourseOfferingFromCourseCatalog(courseCatalogEntry, toSession);
+				courseOffering.setInstructionalOffering(instructionalOffering);
+				instructionalOffering.setNotOffered(new Boolean(true));
+				instructionalOffering.addTocourseOfferings(courseOffering);
+				InstrOfferingConfig instrOffrConfig = createToInstrOfferingConfigFromCourseCatalog(courseCatalogEntry, toSession);
+				if (instrOffrConfig != null){
+					instructionalOffering.addToinstrOfferingConfigs(instrOffrConfig);
+					instrOffrConfig.setInstructionalOffering(instructionalOffering);
+				}
+				if (instructionalOffering.getInstrOfferingPermId() == null){
+					instructionalOffering.generateInstrOfferingPermId();
+				}
+				ioDao.saveOrUpdate(instructionalOffering);
+				ioDao.getSession().flush();
 			}
-			InstructionalOfferingDAO ioDao = new InstructionalOfferingDAO();
-			ioDao.saveOrUpdate(instructionalOffering);
-			ioDao.getSession().flush();
-			ioDao.getSession().evict(instructionalOffering);
+		} catch (Exception e) {
+			iLog.error("Failed to create " + courseCatalogEntry.getSubject() + " " + courseCatalogEntry.getCourseNumber(), e);
+			iNrFailures++;
+		} finally {
+			if (instructionalOffering != null && ioDao.getSession().contains(instructionalOffering))
+				ioDao.getSession().evict(instructionalOffering);
 		}
 	}
 
@@ -231,6 +244,7 @@ public class InstructionalOfferingRollForward extends SessionRollForward {
 			hibSession.evict(fromInstructionalOffering);
 		} catch (Exception e){
 			iLog.error("Failed to roll " + fromInstructionalOffering.getCourseName(), e);
+			iNrFailures++;
 			if (trns != null){
 				if (trns.isActive()){
 					trns.rollback();
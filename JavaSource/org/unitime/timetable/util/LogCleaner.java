@@ -19,12 +19,24 @@
 */
 package org.unitime.timetable.util;
 
+import java.io.File;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.io.OutputStream;
+import java.text.SimpleDateFormat;
+import java.util.Calendar;
+import java.util.Date;
+import java.util.List;
+import java.util.zip.GZIPOutputStream;
+
 import org.apache.commons.logging.Log;
 import org.apache.commons.logging.LogFactory;
 import org.hibernate.Transaction;
 import org.unitime.commons.hibernate.util.HibernateUtil;
+import org.unitime.timetable.ApplicationProperties;
 import org.unitime.timetable.defaults.ApplicationProperty;
 import org.unitime.timetable.model.dao._RootDAO;
+import org.unitime.timetable.onlinesectioning.OnlineSectioningLog;
 
 /**
  * @author Tomas Muller
@@ -33,145 +45,170 @@ public class LogCleaner {
 	private static  Log sLog = LogFactory.getLog(LogCleaner.class);
 	
 	public static void cleanupQueryLog(int days) {
-		if (days < 0) return;
-		org.hibernate.Session hibSession = new _RootDAO().createNewSession();
-		Transaction tx = null;
-		try {
-			tx = hibSession.beginTransaction();
-			int rows = hibSession.createQuery(
-					"delete from QueryLog where timeStamp < " + HibernateUtil.addDate("current_date()", ":days")
-					).setInteger("days", - days).executeUpdate();
-			if (rows > 0)
-				sLog.info("All records older than " + days + " days deleted from the query log (" + rows + " records).");
-			tx.commit();
-		} catch (Throwable t) {
-			sLog.warn("Failed to cleanup query log: " + t.getMessage(), t);
-			if (tx != null) tx.rollback();
-		} finally {
-			hibSession.close();
-		}
+		cleanup("QueryLog", "uniqueId", "timeStamp", days, "query log", false);
 	}
 	
 	public static void cleanupChangeLog(int days) {
-		if (days < 0) return;
-		org.hibernate.Session hibSession = new _RootDAO().createNewSession();
-		Transaction tx = null;
-		try {
-			tx = hibSession.beginTransaction();
-			int rows = hibSession.createQuery(
-					"delete from ChangeLog where timeStamp < " + HibernateUtil.addDate("current_date()", ":days")
-					).setInteger("days", - days).executeUpdate();
-			if (rows > 0)
-				sLog.info("All records older than " + days + " days deleted from the change log (" + rows + " records).");
-			tx.commit();
-		} catch (Throwable t) {
-			sLog.warn("Failed to cleanup query log: " + t.getMessage(), t);
-			if (tx != null) tx.rollback();
-		} finally {
-			hibSession.close();
-		}
+		cleanup("ChangeLog", "uniqueId", "timeStamp", days, "change log", false);
 	}
 	
 	public static void cleanupOnlineSectioningLog(int days) {
-		if (days < 0) return;
-		org.hibernate.Session hibSession = new _RootDAO().createNewSession();
-		Transaction tx = null;
-		try {
-			tx = hibSession.beginTransaction();
-			int rows = hibSession.createQuery(
-					"delete from OnlineSectioningLog where timeStamp < " + HibernateUtil.addDate("current_date()", ":days")
-					).setInteger("days", - days).executeUpdate();
-			if (rows > 0)
-				sLog.info("All records older than " + days + " days deleted from the online sectioning log (" + rows + " records).");
-			tx.commit();
-		} catch (Throwable t) {
-			sLog.warn("Failed to cleanup query log: " + t.getMessage(), t);
-			if (tx != null) tx.rollback();
-		} finally {
-			hibSession.close();
-		}
+		cleanup("OnlineSectioningLog", "uniqueId", "timeStamp", days, "online sectioning log", ApplicationProperty.LogCleanupArchiveOnlineSchedulingLog.isTrue());
 	}
 	
 	public static void cleanupMessageLog(int days) {
-		if (days < 0) return;
-		org.hibernate.Session hibSession = new _RootDAO().createNewSession();
-		Transaction tx = null;
-		try {
-			tx = hibSession.beginTransaction();
-			int rows = hibSession.createQuery(
-					"delete from MessageLog where timeStamp < " + HibernateUtil.addDate("current_date()", ":days")
-					).setInteger("days", - days).executeUpdate();
-			if (rows > 0)
-				sLog.info("All records older than " + days + " days deleted from the message log (" + rows + " records).");
-			tx.commit();
-		} catch (Throwable t) {
-			sLog.warn("Failed to cleanup message log: " + t.getMessage(), t);
-			if (tx != null) tx.rollback();
-		} finally {
-			hibSession.close();
-		}
+		cleanup("MessageLog", "uniqueId", "timeStamp", days, "message log", false);
 	}
 	
 	public static void cleanupStudentSectioningQueue(int days) {
-		if (days < 0) return;
-		org.hibernate.Session hibSession = new _RootDAO().createNewSession();
-		Transaction tx = null;
-		try {
-			tx = hibSession.beginTransaction();
-			int rows = hibSession.createQuery(
-					"delete from StudentSectioningQueue where timeStamp < " + HibernateUtil.addDate("current_date()", ":days")
-					).setInteger("days", - days).executeUpdate();
-			if (rows > 0)
-				sLog.info("All records older than " + days + " days deleted from the student sectioning queue (" + rows + " records).");
-			tx.commit();
-		} catch (Throwable t) {
-			sLog.warn("Failed to cleanup student sectioning queue: " + t.getMessage(), t);
-			if (tx != null) tx.rollback();
-		} finally {
-			hibSession.close();
-		}
+		cleanup("StudentSectioningQueue", "uniqueId", "timeStamp", days, "student sectioning queue", false);
 	}
 	
 	public static void cleanupHashedQueries(int days) {
+		cleanup("HashedQuery", "queryHash", "lastUsed", days, "hashed queries", false);
+	}
+	
+	public static void cleanupSctSolutionLog(int days) {
+		cleanup("SectioningSolutionLog", "uniqueId", "timeStamp", days, "sectioning solutions log", false);
+	}
+	
+	protected static int getChunkSize() {
+		Integer chunk = ApplicationProperty.LogCleanupChunkSize.intValue();
+		return (chunk == null ? 0 : chunk.intValue());
+	}
+	
+	protected static long getPause() {
+		Integer pause = ApplicationProperty.LogCleanupChunkPause.intValue();
+		return (pause == null ? 0 : pause.longValue());
+	}
+	
+	/**
+	 * Delete all records of the given entity that are older than the given number of days.
+	 * When {@link ApplicationProperty#LogCleanupChunkSize} is set, the records are deleted in chunks (by primary key ranges),
+	 * each chunk in its own transaction, with a pause of {@link ApplicationProperty#LogCleanupChunkPause} between the chunks.
+	 * Otherwise, all the records are deleted using a single bulk delete.
+	 */
+	protected static void cleanup(String entity, String id, String timeStamp, int days, String name, boolean archive) {
 		if (days < 0) return;
+		int chunkSize = getChunkSize();
+		if (chunkSize <= 0 && !archive) {
+			bulkCleanup(entity, timeStamp, days, name);
+		} else {
+			chunkedCleanup(entity, id, timeStamp, days, name, chunkSize <= 0 ? 10000 : chunkSize, archive);
+		}
+	}
+	
+	protected static void bulkCleanup(String entity, String timeStamp, int days, String name) {
 		org.hibernate.Session hibSession = new _RootDAO().createNewSession();
 		Transaction tx = null;
 		try {
 			tx = hibSession.beginTransaction();
 			int rows = hibSession.createQuery(
-					"delete from HashedQuery where lastUsed < " + HibernateUtil.addDate("current_date()", ":days")
+					"delete from " + entity + " where " + timeStamp + " < " + HibernateUtil.addDate("current_date()", ":days")
 					).setInteger("days", - days).executeUpdate();
 			if (rows > 0)
-				sLog.info("All records not used for more than " + days + " days deleted from the hashed queries (" + rows + " records).");
+				sLog.info("All records " + (timeStamp.equals("lastUsed") ? "not used for more than " + days + " days" : "older than " + days + " days") + " deleted from the " + name + " (" + rows + " records).");
 			tx.commit();
 		} catch (Throwable t) {
-			sLog.warn("Failed to cleanup student sectioning queue: " + t.getMessage(), t);
+			sLog.warn("Failed to cleanup " + name + ": " + t.getMessage(), t);
 			if (tx != null) tx.rollback();
 		} finally {
 			hibSession.close();
 		}
 	}
 	
-	public static void cleanupSctSolutionLog(int days) {
-		if (days < 0) return;
+	protected static void chunkedCleanup(String entity, String id, String timeStamp, int days, String name, int chunkSize, boolean archive) {
+		Calendar cal = Calendar.getInstance();
+		cal.set(Calendar.HOUR_OF_DAY, 0); cal.set(Calendar.MINUTE, 0); cal.set(Calendar.SECOND, 0); cal.set(Calendar.MILLISECOND, 0);
+		cal.add(Calendar.DAY_OF_YEAR, - days);
+		Date date = cal.getTime();
+		long pause = getPause();
+		long t0 = System.currentTimeMillis(), lastReport = t0;
+		int rows = 0, chunks = 0;
+		FileOutputStream file = null;
+		OutputStream out = null;
 		org.hibernate.Session hibSession = new _RootDAO().createNewSession();
-		Transaction tx = null;
 		try {
-			tx = hibSession.beginTransaction();
-			int rows = hibSession.createQuery(
-					"delete from SectioningSolutionLog where timeStamp < " + HibernateUtil.addDate("current_date()", ":days")
-					).setInteger("days", - days).executeUpdate();
+			while (true) {
+				List<Object> ids = (List<Object>)hibSession.createQuery(
+						"select " + id + " from " + entity + " where " + timeStamp + " < :date order by " + id
+						).setTimestamp("date", date).setMaxResults(chunkSize).list();
+				if (ids.isEmpty()) break;
+				if (archive && out == null) {
+					// the archive is only created when there is something to delete
+					File f = archiveFile(entity);
+					file = new FileOutputStream(f);
+					out = new GZIPOutputStream(file, true);
+					sLog.info("Archiving records of the " + name + " that are older than " + days + " days into " + f);
+				}
+				Object first = ids.get(0), last = ids.get(ids.size() - 1);
+				Transaction tx = hibSession.beginTransaction();
+				try {
+					if (out != null) {
+						for (byte[] action: (List<byte[]>)hibSession.createQuery(
+								"select action from " + entity + " where " + id + " >= :first and " + id + " <= :last and " + timeStamp + " < :date order by " + id
+								).setParameter("first", first).setParameter("last", last).setTimestamp("date", date).list()) {
+							if (action != null)
+								OnlineSectioningLog.Action.parseFrom(action).writeDelimitedTo(out);
+						}
+						// sync flush the deflater and write the chunk to the disk before its records are deleted
+						out.flush();
+						file.getFD().sync();
+					}
+					rows += hibSession.createQuery(
+							"delete from " + entity + " where " + id + " >= :first and " + id + " <= :last and " + timeStamp + " < :date"
+							).setParameter("first", first).setParameter("last", last).setTimestamp("date", date).executeUpdate();
+					tx.commit();
+				} catch (Throwable t) {
+					if (tx.isActive()) tx.rollback();
+					throw t;
+				}
+				hibSession.clear();
+				chunks ++;
+				if (System.currentTimeMillis() - lastReport > 60000l) {
+					lastReport = System.currentTimeMillis();
+					sLog.info("Cleaning up " + name + ": " + rows + " records deleted so far (" + throughput(rows, lastReport - t0) + " records per second).");
+				}
+				if (ids.size() < chunkSize) break;
+				if (pause > 0) {
+					try {
+						Thread.sleep(pause);
+					} catch (InterruptedException e) {
+						break;
+					}
+				}
+			}
 			if (rows > 0)
-				sLog.info("All records older than " + days + " days deleted from the sectioning solutions log (" + rows + " records).");
-			tx.commit();
+				sLog.info("All records " + (timeStamp.equals("lastUsed") ? "not used for more than " + days + " days" : "older than " + days + " days") + " deleted from the " + name + " (" + rows + " records in " + chunks + " chunks, " +
+						throughput(rows, System.currentTimeMillis() - t0) + " records per second).");
 		} catch (Throwable t) {
-			sLog.warn("Failed to sectioning solutions log: " + t.getMessage(), t);
-			if (tx != null) tx.rollback();
+			sLog.warn("Failed to cleanup " + name + " (" + rows + " records deleted): " + t.getMessage(), t);
 		} finally {
 			hibSession.close();
+			if (out != null) {
+				try {
+					out.close();
+				} catch (IOException e) {
+					sLog.warn("Failed to close " + name + " archive: " + e.getMessage());
+				}
+			}
 		}
 	}
 	
+	private static long throughput(int rows, long time) {
+		return (time <= 0 ? rows : Math.round(1000.0 * rows / time));
+	}
+	
+	/**
+	 * Archive file: gzipped sequence of length delimited protobuf messages (see {@link OnlineSectioningLog.Action#parseDelimitedFrom(java.io.InputStream)})
+	 */
+	protected static File archiveFile(String entity) {
+		String folder = ApplicationProperty.LogCleanupArchiveFolder.value();
+		File dir = (folder == null || folder.isEmpty() ? new File(ApplicationProperties.getDataFolder(), "archive") : new File(folder));
+		dir.mkdirs();
+		return new File(dir, entity + "-" + new SimpleDateFormat("yyyyMMdd-HHmmss").format(new Date()) + ".pb.gz");
+	}
+	
 	public static void cleanupLogs() {
 		cleanupChangeLog(ApplicationProperty.LogCleanupChangeLog.intValue());
 		cleanupQueryLog(ApplicationProperty.LogCleanupQueryLog.intValue());
@@ -0,0 +1,236 @@
+/*
+ * Licensed to The Apereo Foundation under one or more contributor license
+ * agreements. See the NOTICE file distributed with this work for
+ * additional information regarding copyright ownership.
+ *
+ * The Apereo Foundation licenses this file to you under the Apache License,
+ * Version 2.0 (the "License"); you may not use this file except in
+ * compliance with the License. You may obtain a copy of the License at:
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ *
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ *
+*/
+package org.unitime.timetable.util;
+
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.List;
+import java.util.TreeSet;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.ThreadFactory;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import org.apache.commons.logging.Log;
+import org.hibernate.Transaction;
+import org.unitime.timetable.defaults.ApplicationProperty;
+import org.unitime.timetable.model.Session;
+import org.unitime.timetable.model.SessionConfig;
+import org.unitime.timetable.model.dao.SessionConfigDAO;
+import org.unitime.timetable.model.dao._RootDAO;
+
+/**
+ * Roll forward of independent units (e.g., subject areas) of a roll forward phase.<br>
+ * When {@link ApplicationProperty#RollForwardThreads} is greater than one, the units are processed in parallel,
+ * each worker thread using its own Hibernate session (and a {@link Processor} of its own). Otherwise, the units are
+ * processed one by one using the Hibernate session of the calling thread (as before).<br>
+ * When {@link ApplicationProperty#RollForwardResumable} is enabled, the units that have been successfully rolled forward
+ * are recorded in the session configuration of the target academic session (see {@link #PROGRESS_PREFIX}, one record per unit,
+ * keyed by the phase, the source academic session and the roll forward options), so that a failed roll forward can be resumed
+ * with the same options by skipping the units that are already done. The records are removed once the phase finishes with no failures.
+ * The throughput of the phase is reported in the log.
+ *
+ * @author Tomas Muller
+ */
+public class RollForwardPipeline {
+	public static final String PROGRESS_PREFIX = "rollForward.progress.";
+	
+	private Log iLog;
+	private String iPhase;
+	private String iKey;
+	private Long iToSessionId;
+	private TreeSet<String> iCompleted = new TreeSet<String>();
+	private AtomicInteger iProcessed = new AtomicInteger(0), iFailed = new AtomicInteger(0);
+	private boolean iResumable;
+	
+	/**
+	 * @param log roll forward log
+	 * @param phase name of the phase (used in the log and in the progress record)
+	 * @param fromSessionId academic session from which the data are rolled forward (null if not applicable)
+	 * @param toSessionId academic session to which the data are rolled forward
+	 * @param options roll forward options of the phase (the progress of a run with different options is not resumed), null if not applicable
+	 */
+	public RollForwardPipeline(Log log, String phase, Long fromSessionId, Long toSessionId, String options) {
+		iLog = log;
+		iPhase = phase;
+		iToSessionId = toSessionId;
+		iKey = PROGRESS_PREFIX + phase.toLowerCase().replace(' ', '_') + (fromSessionId == null ? "" : "." + fromSessionId) +
+				(options == null || options.isEmpty() ? "" : "." + Integer.toHexString(options.hashCode()));
+		iResumable = ApplicationProperty.RollForwardResumable.isTrue();
+	}
+	
+	protected int getNrThreads() {
+		Integer threads = ApplicationProperty.RollForwardThreads.intValue();
+		return (threads == null ? 1 : Math.max(1, threads.intValue()));
+	}
+	
+	/**
+	 * Roll forward the given units
+	 * @param units units to roll forward (e.g., subject area abbreviations)
+	 * @param factory creates a processor for each worker thread
+	 * @return number of units that failed
+	 */
+	public int execute(Collection<String> units, ProcessorFactory factory) {
+		long t0 = System.currentTimeMillis();
+		if (iResumable) loadProgress();
+		List<String> todo = new ArrayList<String>();
+		for (String unit: units) {
+			if (iCompleted.contains(unit)) continue;
+			todo.add(unit);
+		}
+		if (todo.size() < units.size())
+			iLog.info(iPhase + ": " + (units.size() - todo.size()) + " of " + units.size() + " units have been already rolled forward, skipping.");
+		
+		int nrThreads = Math.min(getNrThreads(), todo.size());
+		if (nrThreads <= 1) {
+			Processor processor = factory.create();
+			for (String unit: todo)
+				process(processor, unit);
+		} else {
+			ExecutorService workers = Executors.newFixedThreadPool(nrThreads, new ThreadFactory() {
+				private AtomicInteger iCount = new AtomicInteger(0);
+				@Override
+				public Thread newThread(Runnable r) {
+					Thread thread = new Thread(r, "RollForward-" + iCount.incrementAndGet());
+					thread.setDaemon(true);
+					return thread;
+				}
+			});
+			final ThreadLocal<Processor> processors = new ThreadLocal<Processor>();
+			final ProcessorFactory f = factory;
+			List<Future<?>> futures = new ArrayList<Future<?>>();
+			for (final String unit: todo) {
+				futures.add(workers.submit(new Runnable() {
+					@Override
+					public void run() {
+						try {
+							Processor processor = processors.get();
+							if (processor == null) {
+								processor = f.create();
+								processors.set(processor);
+							}
+							process(processor, unit);
+						} finally {
+							_RootDAO.closeCurrentThreadSessions();
+						}
+					}
+				}));
+			}
+			try {
+				for (Future<?> future: futures)
+					future.get();
+			} catch (Exception e) {
+				iLog.error(iPhase + ": roll forward failed: " + e.getMessage(), e);
+			} finally {
+				workers.shutdownNow();
+			}
+		}
+		
+		long time = System.currentTimeMillis() - t0;
+		int processed = iProcessed.get(), failed = iFailed.get();
+		iLog.info(iPhase + ": " + processed + " units rolled forward" + (failed > 0 ? ", " + failed + " failed" : "") +
+				" in " + Math.round(time / 1000.0) + " seconds (" + (time == 0 ? "-" : String.valueOf(Math.round(60000.0 * (processed + failed) / time))) + " units per minute" +
+				(nrThreads > 1 ? ", " + nrThreads + " threads" : "") + ").");
+		if (failed == 0 && iResumable) clearProgress();
+		return failed;
+	}
+	
+	protected void process(Processor processor, String unit) {
+		boolean success = false;
+		try {
+			success = processor.process(unit);
+		} catch (Exception e) {
+			iLog.error(iPhase + ": failed to roll forward " + unit + ": " + e.getMessage(), e);
+		}
+		if (success) {
+			iProcessed.incrementAndGet();
+			if (iResumable) unitCompleted(unit);
+		} else {
+			iFailed.incrementAndGet();
+		}
+	}
+	
+	protected synchronized void loadProgress() {
+		org.hibernate.Session hibSession = SessionConfigDAO.getInstance().createNewSession();
+		try {
+			for (SessionConfig config: (List<SessionConfig>)hibSession.createQuery(
+					"from SessionConfig where key like :prefix and session.uniqueId = :sessionId"
+					).setString("prefix", iKey + ":%").setLong("sessionId", iToSessionId).list()) {
+				if (config.getKey().startsWith(iKey + ":"))
+					iCompleted.add(config.getKey().substring(iKey.length() + 1));
+			}
+		} finally {
+			hibSession.close();
+		}
+	}
+	
+	protected synchronized void unitCompleted(String unit) {
+		if (!iCompleted.add(unit)) return;
+		org.hibernate.Session hibSession = SessionConfigDAO.getInstance().createNewSession();
+		Transaction tx = null;
+		try {
+			tx = hibSession.beginTransaction();
+			SessionConfig config = new SessionConfig();
+			config.setSession((Session)hibSession.get(Session.class, iToSessionId));
+			config.setKey(iKey + ":" + unit);
+			config.setValue(unit);
+			config.setDescription("Roll forward progress (" + iPhase + ")");
+			hibSession.save(config);
+			tx.commit();
+		} catch (Exception e) {
+			if (tx != null && tx.isActive()) tx.rollback();
+			iLog.warn(iPhase + ": failed to record roll forward progress of " + unit + ": " + e.getMessage());
+		} finally {
+			hibSession.close();
+		}
+	}
+	
+	protected synchronized void clearProgress() {
+		org.hibernate.Session hibSession = SessionConfigDAO.getInstance().createNewSession();
+		Transaction tx = null;
+		try {
+			tx = hibSession.beginTransaction();
+			hibSession.createQuery(
+					"delete from SessionConfig where key like :prefix and session.uniqueId = :sessionId"
+					).setString("prefix", iKey + ":%").setLong("sessionId", iToSessionId).executeUpdate();
+			tx.commit();
+		} catch (Exception e) {
+			if (tx != null && tx.isActive()) tx.rollback();
+			iLog.warn(iPhase + ": failed to remove roll forward progress: " + e.getMessage());
+		} finally {
+			hibSession.close();
+		}
+	}
+	
+	/**
+	 * Rolls forward a single unit, each worker thread has its own instance
+	 */
+	public static interface Processor {
+		/**
+		 * @return true if the unit has been rolled forward successfully
+		 */
+		public boolean process(String unit) throws Exception;
+	}
+	
+	public static interface ProcessorFactory {
+		public Processor create();
+	}
+}
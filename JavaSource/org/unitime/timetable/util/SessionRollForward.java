@@ -41,6 +41,7 @@ import org.hibernate.Transaction;
 import org.unitime.timetable.ApplicationProperties;
 import org.unitime.timetable.defaults.ApplicationProperty;
 import org.unitime.timetable.form.RollForwardSessionForm;
+import org.unitime.timetable.gwt.server.CurriculaDemandCube;
 import org.unitime.timetable.gwt.shared.TaskInterface.ExecutionStatus;
 import org.unitime.timetable.model.AcademicArea;
 import org.unitime.timetable.model.AcademicClassification;
@@ -2082,44 +2083,70 @@ public class SessionRollForward {
 		}
 	}
 
-	public void rollCourseOfferingsForward(ActionMessages errors, RollForwardSessionForm rollForwardSessionForm) {
+	public void rollCourseOfferingsForward(ActionMessages errors, final RollForwardSessionForm rollForwardSessionForm) {
 		Session toSession = Session.getSessionById(rollForwardSessionForm.getSessionToRollForwardTo());
 		Session fromSession = Session.getSessionById(rollForwardSessionForm.getSessionToRollCourseOfferingsForwardFrom());
-		ArrayList subjects = new ArrayList();
+		List<String> subjects = new ArrayList<String>();
 		SubjectAreaDAO saDao = new SubjectAreaDAO();
 		for (int i = 0; i <	rollForwardSessionForm.getRollForwardSubjectAreaIds().length; i++){
-			subjects.add(saDao.get(Long.parseLong(rollForwardSessionForm.getRollForwardSubjectAreaIds()[i])));
+			subjects.add(saDao.get(Long.parseLong(rollForwardSessionForm.getRollForwardSubjectAreaIds()[i])).getSubjectAreaAbbreviation());
 		}
 		if (toSession.getSubjectAreas() != null) {
-			SubjectArea subjectArea = null;
-			InstructionalOfferingRollForward instrOffrRollFwd = new InstructionalOfferingRollForward(iLog);
-			instrOffrRollFwd.setClassPrefRollForwardParameter(rollForwardSessionForm.getClassPrefsAction());
-			instrOffrRollFwd.setSubpartLocationPrefRollForwardParameters(rollForwardSessionForm.getSubpartLocationPrefsAction());
-			instrOffrRollFwd.setSubpartTimePrefRollForwardParameters(rollForwardSessionForm.getSubpartTimePrefsAction());
-			instrOffrRollFwd.setRollForwardDistributions(rollForwardSessionForm.getRollForwardDistributions());
-			instrOffrRollFwd.setCancelledClassActionRollForwardParameter(rollForwardSessionForm.getCancelledClassAction());
-			for (Iterator saIt = subjects.iterator(); saIt.hasNext();){
-				subjectArea = (SubjectArea) saIt.next();
-				instrOffrRollFwd.rollForwardInstructionalOfferingsForASubjectArea(subjectArea.getSubjectAreaAbbreviation(), fromSession, toSession);
-			}
+			final Long fromSessionId = fromSession.getUniqueId(), toSessionId = toSession.getUniqueId();
+			String options = rollForwardSessionForm.getClassPrefsAction() + "|" + rollForwardSessionForm.getSubpartLocationPrefsAction() + "|" +
+					rollForwardSessionForm.getSubpartTimePrefsAction() + "|" + rollForwardSessionForm.getRollForwardDistributions() + "|" +
+					rollForwardSessionForm.getCancelledClassAction();
+			int failed = new RollForwardPipeline(iLog, "Courses", fromSessionId, toSessionId, options).execute(subjects, new RollForwardPipeline.ProcessorFactory() {
+				@Override
+				public RollForwardPipeline.Processor create() {
+					final InstructionalOfferingRollForward instrOffrRollFwd = new InstructionalOfferingRollForward(iLog);
+					instrOffrRollFwd.setClassPrefRollForwardParameter(rollForwardSessionForm.getClassPrefsAction());
+					instrOffrRollFwd.setSubpartLocationPrefRollForwardParameters(rollForwardSessionForm.getSubpartLocationPrefsAction());
+					instrOffrRollFwd.setSubpartTimePrefRollForwardParameters(rollForwardSessionForm.getSubpartTimePrefsAction());
+					instrOffrRollFwd.setRollForwardDistributions(rollForwardSessionForm.getRollForwardDistributions());
+					instrOffrRollFwd.setCancelledClassActionRollForwardParameter(rollForwardSessionForm.getCancelledClassAction());
+					return new RollForwardPipeline.Processor() {
+						@Override
+						public boolean process(String subject) {
+							int failures = instrOffrRollFwd.getNrFailures();
+							SessionDAO dao = SessionDAO.getInstance();
+							instrOffrRollFwd.rollForwardInstructionalOfferingsForASubjectArea(subject, dao.get(fromSessionId), dao.get(toSessionId));
+							return instrOffrRollFwd.getNrFailures() == failures;
+						}
+					};
+				}
+			});
+			if (failed > 0)
+				errors.add("rollForward", new ActionMessage("errors.rollForward", "Course Offerings", fromSession.getLabel(), toSession.getLabel(), "Failed to roll all course offerings forward (" + failed + " subject areas failed)."));
 		}
 	}
 	
 	public void addNewCourseOfferings(ActionMessages errors,
 			RollForwardSessionForm rollForwardSessionForm) {
 		Session toSession = Session.getSessionById(rollForwardSessionForm.getSessionToRollForwardTo());
-		ArrayList subjects = new ArrayList();
+		List<String> subjects = new ArrayList<String>();
 		SubjectAreaDAO saDao = new SubjectAreaDAO();
 		for (int i = 0; i <	rollForwardSessionForm.getAddNewCourseOfferingsSubjectIds().length; i++){
-			subjects.add(saDao.get(Long.parseLong(rollForwardSessionForm.getAddNewCourseOfferingsSubjectIds()[i])));
+			subjects.add(saDao.get(Long.parseLong(rollForwardSessionForm.getAddNewCourseOfferingsSubjectIds()[i])).getSubjectAreaAbbreviation());
 		}
 		if (toSession.getSubjectAreas() != null) {
-			SubjectArea subjectArea = null;
-			InstructionalOfferingRollForward instrOffrRollFwd = new InstructionalOfferingRollForward(iLog);
-			for (Iterator saIt = subjects.iterator(); saIt.hasNext();){
-				subjectArea = (SubjectArea) saIt.next();
-				instrOffrRollFwd.addNewInstructionalOfferingsForASubjectArea(subjectArea.getSubjectAreaAbbreviation(), toSession);
-			}
+			final Long toSessionId = toSession.getUniqueId();
+			int failed = new RollForwardPipeline(iLog, "New courses", null, toSessionId, null).execute(subjects, new RollForwardPipeline.ProcessorFactory() {
+				@Override
+				public RollForwardPipeline.Processor create() {
+					final InstructionalOfferingRollForward instrOffrRollFwd = new InstructionalOfferingRollForward(iLog);
+					return new RollForwardPipeline.Processor() {
+						@Override
+						public boolean process(String subject) {
+							int failures = instrOffrRollFwd.getNrFailures();
+							instrOffrRollFwd.addNewInstructionalOfferingsForASubjectArea(subject, SessionDAO.getInstance().get(toSessionId));
+							return instrOffrRollFwd.getNrFailures() == failures;
+						}
+					};
+				}
+			});
+			if (failed > 0)
+				errors.add("rollForward", new ActionMessage("errors.rollForward", "New Course Offerings", "course catalog", toSession.getLabel(), "Failed to add all new course offerings (" + failed + " subject areas failed)."));
 		}
 	}
 
@@ -2560,7 +2587,8 @@ public class SessionRollForward {
 	                setLong("sessionId", toSession.getUniqueId().longValue()).executeUpdate();
 
         }
-
+        
+        CurriculaDemandCube.getInstance().invalidate(hibSession, toSession.getUniqueId());
     }
 	
 	public void rollCurriculaForward(ActionMessages errors, RollForwardSessionForm rollForwardSessionForm) {
@@ -2809,6 +2837,7 @@ public class SessionRollForward {
         for (SessionConfig config: (List<SessionConfig>)hibSession.createQuery(
         		"from SessionConfig where session.uniqueId = :sessionId"
         		).setLong("sessionId", toSession.getUniqueId()).list()) {
+        	if (config.getKey().startsWith(RollForwardPipeline.PROGRESS_PREFIX)) continue;
         	hibSession.delete(config);
         }
         
@@ -2816,6 +2845,7 @@ public class SessionRollForward {
         for (SessionConfig config: (List<SessionConfig>)hibSession.createQuery(
         		"from SessionConfig where session.uniqueId = :sessionId"
         		).setLong("sessionId", fromSession.getUniqueId()).list()) {
+        	if (config.getKey().startsWith(RollForwardPipeline.PROGRESS_PREFIX)) continue;
         	
         	SessionConfig newConfig = new SessionConfig();
         	newConfig.setKey(config.getKey());
@@ -19,10 +19,14 @@
 */
 package org.unitime.timetable.util.queue;
 
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
 import java.io.File;
 import java.io.FileInputStream;
 import java.io.FileOutputStream;
 import java.io.IOException;
+import java.io.ObjectInputStream;
+import java.io.ObjectOutputStream;
 import java.util.ArrayList;
 import java.util.Collection;
 import java.util.HashSet;
@@ -39,6 +43,7 @@ import java.util.zip.ZipOutputStream;
 import javax.servlet.http.HttpServletRequest;
 
 import org.unitime.commons.Email;
+import org.unitime.localization.impl.Localization;
 import org.unitime.timetable.ApplicationProperties;
 import org.unitime.timetable.defaults.ApplicationProperty;
 import org.unitime.timetable.form.ExamPdfReportForm;
@@ -54,6 +59,7 @@ import org.unitime.timetable.model.dao.ExamDAO;
 import org.unitime.timetable.model.dao.ExamTypeDAO;
 import org.unitime.timetable.model.dao.SessionDAO;
 import org.unitime.timetable.model.dao.SubjectAreaDAO;
+import org.unitime.timetable.model.dao._RootDAO;
 import org.unitime.timetable.reports.exam.InstructorExamReport;
 import org.unitime.timetable.reports.exam.PdfLegacyExamReport;
 import org.unitime.timetable.reports.exam.StudentExamReport;
@@ -81,6 +87,7 @@ public class PdfExamReportQueueItem extends QueueItem {
 	private String iName = null;
 	private double iProgress = 0;
 	private boolean iSubjectIndependent = false;
+	private double iProgressStep = 0;
 	
 	public PdfExamReportQueueItem(Session session, UserContext owner, ExamPdfReportForm form, HttpServletRequest request, ExamSolverProxy examSolver) {
 		super(session, owner);
@@ -282,9 +289,8 @@ public class PdfExamReportQueueItem extends QueueItem {
             Hashtable<ExamInstructorInfo,File> ireports = null;
             Hashtable<Student,File> sreports = null;
             Session session = getSession();
+            List<ReportTask> tasks = new ArrayList<ReportTask>();
             for (int i=0;i<iForm.getReports().length;i++) {
-            	iProgress = 0.1 + (0.8 / iForm.getReports().length) * i;
-                setStatus("Generating "+iForm.getReports()[i]+"...");
                 Class reportClass = ExamPdfReportForm.sRegisteredReports.get(iForm.getReports()[i]);
                 String reportName = null;
                 for (Map.Entry<String, Class> entry : PdfLegacyExamReport.sRegisteredReports.entrySet())
@@ -292,76 +298,36 @@ public class PdfExamReportQueueItem extends QueueItem {
                 if (reportName==null) reportName = "r"+(i+1);
                 String name = session.getAcademicTerm()+session.getSessionStartYear()+ExamTypeDAO.getInstance().get(iForm.getExamType()).getReference()+"_"+reportName;
                 if (iForm.getAll()) {
-                    File file = ApplicationProperties.getTempFile(name, (iForm.getModeIdx()==PdfLegacyExamReport.sModeText?"txt":"pdf"));
-                    log("&nbsp;&nbsp;Writing <a href='temp/"+file.getName()+"'>"+reportName+"."+(iForm.getModeIdx()==PdfLegacyExamReport.sModeText?"txt":"pdf")+"</a>... " + (iSubjectIndependent ? " ("+exams.size()+" exams)" : ""));
-                    PdfLegacyExamReport report = (PdfLegacyExamReport)reportClass.
-                        getConstructor(int.class, File.class, Session.class, ExamType.class, Collection.class, Collection.class).
-                        newInstance(iForm.getModeIdx(), file, new SessionDAO().get(session.getUniqueId()), ExamTypeDAO.getInstance().get(iForm.getExamType()), iSubjectIndependent ? null : iForm.getSubjectAreas(), exams);
-                    report.setDirect(iForm.getDirect());
-                    report.setM2d(iForm.getM2d());
-                    report.setBtb(iForm.getBtb());
-                    report.setDispRooms(iForm.getDispRooms());
-                    report.setNoRoom(iForm.getNoRoom());
-                    report.setTotals(iForm.getTotals());
-                    report.setLimit(iForm.getLimit()==null || iForm.getLimit().length()==0?-1:Integer.parseInt(iForm.getLimit()));
-                    report.setRoomCode(iForm.getRoomCodes());
-                    report.setDispLimits(iForm.getDispLimit());
-                    report.setSince(iForm.getSince()==null || iForm.getSince().length()==0?null:Formats.getDateFormat(Formats.Pattern.DATE_ENTRY_FORMAT).parse(iForm.getSince()));
-                    report.setItype(iForm.getItype());
-                    report.setClassSchedule(iForm.getClassSchedule());
-                    report.setDispNote(iForm.getDispNote());
-                    report.setCompact(iForm.getCompact());
-                    report.setUseRoomDisplayNames(iForm.getRoomDispNames());
-                    report.printReport();
-                    report.close();
-                    output.put(reportName+"."+(iForm.getModeIdx()==PdfLegacyExamReport.sModeText?"txt":"pdf"),file);
-                    if (report instanceof InstructorExamReport && iForm.getEmailInstructors()) {
-                        ireports = ((InstructorExamReport)report).printInstructorReports(iForm.getModeIdx(), name, new FileGenerator(name));
-                    } else if (report instanceof StudentExamReport && iForm.getEmailStudents()) {
-                        sreports = ((StudentExamReport)report).printStudentReports(iForm.getModeIdx(), name, new FileGenerator(name));
-                    }
+                	tasks.add(new ReportTask(iForm.getReports()[i], reportClass, reportName, name, null, exams, output, outputPerSubject));
                 } else {
                     for (int j=0;j<iForm.getSubjects().length;j++) {
                         SubjectArea subject = new SubjectAreaDAO().get(Long.valueOf(iForm.getSubjects()[j]));
-                        File file = ApplicationProperties.getTempFile(name+"_"+subject.getSubjectAreaAbbreviation(), (iForm.getModeIdx()==PdfLegacyExamReport.sModeText?"txt":"pdf"));
-                        int nrExams = 0;
-                        for (ExamAssignmentInfo exam : exams) {
-                            if (exam.isOfSubjectArea(subject)) nrExams++;
-                        }
-                        log("&nbsp;&nbsp;Writing <a href='temp/"+file.getName()+"'>"+subject.getSubjectAreaAbbreviation()+"_"+reportName+"."+(iForm.getModeIdx()==PdfLegacyExamReport.sModeText?"txt":"pdf")+"</a>... ("+nrExams+" exams)");
-                        List<SubjectArea> subjects = new ArrayList<SubjectArea>(); subjects.add(subject);
-                        PdfLegacyExamReport report = (PdfLegacyExamReport)reportClass.
-                            getConstructor(int.class, File.class, Session.class, ExamType.class, Collection.class, Collection.class).
-                            newInstance(iForm.getModeIdx(), file, new SessionDAO().get(session.getUniqueId()), ExamTypeDAO.getInstance().get(iForm.getExamType()), subjects, exams);
-                        report.setDirect(iForm.getDirect());
-                        report.setM2d(iForm.getM2d());
-                        report.setBtb(iForm.getBtb());
-                        report.setDispRooms(iForm.getDispRooms());
-                        report.setNoRoom(iForm.getNoRoom());
-                        report.setTotals(iForm.getTotals());
-                        report.setLimit(iForm.getLimit()==null || iForm.getLimit().length()==0?-1:Integer.parseInt(iForm.getLimit()));
-                        report.setRoomCode(iForm.getRoomCodes());
-                        report.setDispLimits(iForm.getDispLimit());
-                        report.setItype(iForm.getItype());
-                        report.setClassSchedule(iForm.getClassSchedule());
-                        report.setDispNote(iForm.getDispNote());
-                        report.setCompact(iForm.getCompact());
-                        report.setUseRoomDisplayNames(iForm.getRoomDispNames());
-                        report.printReport();
-                        report.close();
-                        output.put(subject.getSubjectAreaAbbreviation()+"_"+reportName+"."+(iForm.getModeIdx()==PdfLegacyExamReport.sModeText?"txt":"pdf"),file);
-                        Hashtable<String,File> files = outputPerSubject.get(subject);
-                        if (files==null) {
-                            files = new Hashtable(); outputPerSubject.put(subject,files);
-                        }
-                        files.put(subject.getSubjectAreaAbbreviation()+"_"+reportName+"."+(iForm.getModeIdx()==PdfLegacyExamReport.sModeText?"txt":"pdf"),file);
-                        if (report instanceof InstructorExamReport && iForm.getEmailInstructors()) {
-                            ireports = ((InstructorExamReport)report).printInstructorReports(iForm.getModeIdx(), name, new FileGenerator(name));
-                        } else if (report instanceof StudentExamReport && iForm.getEmailStudents()) {
-                            sreports = ((StudentExamReport)report).printStudentReports(iForm.getModeIdx(), name, new FileGenerator(name));
-                        }
+                        tasks.add(new ReportTask(iForm.getReports()[i], reportClass, reportName, name, subject, exams, output, outputPerSubject));
                     }
                 }
+            }
+            int nrThreads = getNrThreads();
+            if (nrThreads > 1 && tasks.size() > 1) {
+            	setStatus("Generating reports...");
+            	byte[] detached = detachExams(exams);
+            	for (ReportTask task: tasks) task.setDetachedExams(detached);
+            	iProgressStep = 0.8 / tasks.size();
+            	execute(tasks, nrThreads);
+            } else {
+            	String last = null;
+            	for (ReportTask task: tasks) {
+            		if (!task.getReport().equals(last)) {
+            			last = task.getReport();
+            			iProgress = 0.1 + (0.8 / iForm.getReports().length) * task.getReportIndex(iForm.getReports());
+            			setStatus("Generating "+last+"...");
+            		}
+            		task.execute();
+            	}
+            }
+            // the individual reports of the last instructor / student report are emailed
+            for (ReportTask task: tasks) {
+            	if (task.getInstructorReports() != null) ireports = task.getInstructorReports();
+            	if (task.getStudentReports() != null) sreports = task.getStudentReports();
             }
         	iProgress = 0.9;
             byte[] buffer = new byte[32*1024];
@@ -469,6 +435,7 @@ public class PdfExamReportQueueItem extends QueueItem {
                 }
                 if (iForm.getEmailInstructors() && ireports!=null && !ireports.isEmpty()) {
                     setStatus("Emailing instructors...");
+                    List<EmailTask> emails = new ArrayList<EmailTask>();
                     for (ExamInstructorInfo instructor : new TreeSet<ExamInstructorInfo>(ireports.keySet())) {
                         File report = ireports.get(instructor);
                         String email = instructor.getInstructor().getEmail();
@@ -476,32 +443,14 @@ public class PdfExamReportQueueItem extends QueueItem {
                             log("&nbsp;&nbsp;<font color='orange'>Unable to email <a href='temp/"+report.getName()+"'>"+instructor.getName()+"</a> -- instructor has no email address.</font>");
                             continue;
                         }
-                        try {
-                        	Email mail = Email.createEmail();
-                            mail.setSubject(iForm.getSubject()==null?"Examination Report":iForm.getSubject());
-                            mail.setText((iForm.getMessage()==null?"":iForm.getMessage()+"\r\n\r\n")+
-                                    "For an up-to-date examination report, please visit "+
-                                    iUrl+"/exams.do\r\n\r\n"+
-                                    "This email was automatically generated by "+
-                                    "UniTime "+Constants.getVersion()+
-                                    " (Univesity Timetabling Application, http://www.unitime.org).");
-                            mail.addRecipient(email, null);
-                            if (iForm.getCc()!=null) for (StringTokenizer s=new StringTokenizer(iForm.getCc(),";,\n\r ");s.hasMoreTokens();) 
-                                mail.addRecipientCC(s.nextToken(), null);
-                            if (iForm.getBcc()!=null) for (StringTokenizer s=new StringTokenizer(iForm.getBcc(),";,\n\r ");s.hasMoreTokens();) 
-                                mail.addRecipientBCC(s.nextToken(), null);
-                            mail.addAttachment(report, session.getAcademicTerm()+session.getSessionStartYear()+ExamTypeDAO.getInstance().get(iForm.getExamType()).getReference()+(iForm.getModeIdx()==PdfLegacyExamReport.sModeText?".txt":".pdf"));
-                            mail.send();
-                            log("&nbsp;&nbsp;An email was sent to <a href='temp/"+report.getName()+"'>"+instructor.getName()+"</a>.");
-                        } catch (Exception e) {
-                            log("&nbsp;&nbsp;<font color='orange'>Unable to email <a href='temp/"+report.getName()+"'>"+instructor.getName()+"</a> -- "+e.getMessage()+".</font>");
-                            setError(e);
-                        }
+                        emails.add(new EmailTask(email, instructor.getName(), report, session));
                     }
+                    execute(emails, nrThreads);
                     log("Emails sent.");
                 }
                 if (iForm.getEmailStudents() && sreports!=null && !sreports.isEmpty()) {
                     setStatus("Emailing students...");
+                    List<EmailTask> emails = new ArrayList<EmailTask>();
                     for (Student student : new TreeSet<Student>(sreports.keySet())) {
                         File report = sreports.get(student);
                         String email = student.getEmail();
@@ -509,28 +458,9 @@ public class PdfExamReportQueueItem extends QueueItem {
                             log("&nbsp;&nbsp;<font color='orange'>Unable to email <a href='temp/"+report.getName()+"'>"+student.getName(DepartmentalInstructor.sNameFormatLastFist)+"</a> -- student has no email address.</font>");
                             continue;
                         }
-                        try {
-                            Email mail = Email.createEmail();
-                            mail.setSubject(iForm.getSubject()==null?"Examination Report":iForm.getSubject());
-                            mail.setText((iForm.getMessage()==null?"":iForm.getMessage()+"\r\n\r\n")+
-                                    "For an up-to-date examination report, please visit "+
-                                    iUrl+"/exams.do\r\n\r\n"+
-                                    "This email was automatically generated by "+
-                                    "UniTime "+Constants.getVersion()+
-                                    " (Univesity Timetabling Application, http://www.unitime.org).");
-                            mail.addRecipient(email, null);
-                            if (iForm.getCc()!=null) for (StringTokenizer s=new StringTokenizer(iForm.getCc(),";,\n\r ");s.hasMoreTokens();) 
-                                mail.addRecipientCC(s.nextToken(), null);
-                            if (iForm.getBcc()!=null) for (StringTokenizer s=new StringTokenizer(iForm.getBcc(),";,\n\r ");s.hasMoreTokens();) 
-                                mail.addRecipientBCC(s.nextToken(), null);
-                            mail.addAttachment(report, session.getAcademicTerm()+session.getSessionStartYear()+ExamTypeDAO.getInstance().get(iForm.getExamType()).getReference()+(iForm.getModeIdx()==PdfLegacyExamReport.sModeText?".txt":".pdf"));
-                            mail.send();
-                            log("&nbsp;&nbsp;An email was sent to <a href='temp/"+report.getName()+"'>"+student.getName(DepartmentalInstructor.sNameFormatLastFist)+"</a>.");
-                        } catch (Exception e) {
-                            log("&nbsp;&nbsp;<font color='orange'>Unable to email <a href='temp/"+report.getName()+"'>"+student.getName(DepartmentalInstructor.sNameFormatLastFist)+"</a> -- "+e.getMessage()+".</font>");
-                            setError(e);
-                        }
+                        emails.add(new EmailTask(email, student.getName(DepartmentalInstructor.sNameFormatLastFist), report, session));
                     }
+                    execute(emails, nrThreads);
                     log("Emails sent.");
                 }
             }
@@ -567,6 +497,257 @@ public class PdfExamReportQueueItem extends QueueItem {
         }
 	}
 
+	protected int getNrThreads() {
+		Integer nrThreads = ApplicationProperty.ExaminationPdfReportsNrThreads.intValue();
+		return (nrThreads == null || nrThreads < 1 ? 1 : nrThreads);
+	}
+	
+	/**
+	 * Examinations loaded by the queue thread cannot be shared between the report threads (their database objects belong
+	 * to the queue thread's hibernate session). Initialize all the lazily computed parts (sections, instructors) and serialize
+	 * the examinations, so that each report task can work with its own copy whose database objects are re-loaded by id
+	 * using the report thread's own hibernate session.
+	 */
+	protected byte[] detachExams(TreeSet<ExamAssignmentInfo> exams) throws IOException {
+		for (ExamAssignmentInfo exam: exams) {
+			exam.getSections();
+			exam.getSectionsIncludeCrosslistedDummies();
+			exam.getInstructors();
+		}
+		ByteArrayOutputStream bytes = new ByteArrayOutputStream();
+		ObjectOutputStream out = new ObjectOutputStream(bytes);
+		out.writeObject(exams);
+		out.close();
+		return bytes.toByteArray();
+	}
+	
+	protected TreeSet<ExamAssignmentInfo> attachExams(byte[] exams) throws IOException, ClassNotFoundException {
+		ObjectInputStream in = new ObjectInputStream(new ByteArrayInputStream(exams));
+		try {
+			return (TreeSet<ExamAssignmentInfo>)in.readObject();
+		} finally {
+			in.close();
+		}
+	}
+	
+	protected synchronized void incProgressStep() {
+		iProgress += iProgressStep;
+	}
+	
+	/**
+	 * Execute the given tasks using the given number of threads. The first exception (if any) is re-thrown
+	 * once all the threads are finished. When interrupted, the remaining tasks are not executed.
+	 */
+	protected void execute(List<? extends Task> tasks, int nrThreads) throws Exception {
+		if (nrThreads <= 1 || tasks.size() <= 1) {
+			for (Task task: tasks) task.execute();
+			return;
+		}
+		Iterator<? extends Task> iterator = tasks.iterator();
+		List<Worker> workers = new ArrayList<Worker>();
+		for (int i = 0; i < Math.min(nrThreads, tasks.size()); i++)
+			workers.add(new Worker(i, iterator));
+		for (Worker worker: workers) worker.start();
+		Exception error = null;
+		for (Worker worker: workers) {
+			try {
+				worker.join();
+			} catch (InterruptedException e) {
+				for (Worker w: workers) w.interrupt();
+				Thread.currentThread().interrupt();
+				throw e;
+			}
+			if (error == null && worker.getError() != null) error = worker.getError();
+		}
+		if (error != null) throw error;
+	}
+	
+	protected static interface Task {
+		public void execute() throws Exception;
+	}
+	
+	protected class Worker extends Thread {
+		private Iterator<? extends Task> iTasks;
+		private Exception iError = null;
+		
+		public Worker(int index, Iterator<? extends Task> tasks) {
+			setName("ExamReport-" + (1 + index));
+			setDaemon(true);
+			iTasks = tasks;
+		}
+		
+		public Exception getError() { return iError; }
+		
+		@Override
+		public void run() {
+			ApplicationProperties.setSessionId(getSessionId());
+			Localization.setLocale(getLocale());
+			try {
+				while (!isInterrupted()) {
+					Task task = null;
+					synchronized (iTasks) {
+						if (!iTasks.hasNext()) break;
+						task = iTasks.next();
+					}
+					task.execute();
+				}
+			} catch (Exception e) {
+				iError = e;
+			} finally {
+				ApplicationProperties.setSessionId(null);
+				_RootDAO.closeCurrentThreadSessions();
+				Localization.removeLocale();
+			}
+		}
+	}
+	
+	/**
+	 * Generation of one report (of one subject area, if not all subject areas are printed together).
+	 * All the needed database objects are re-loaded using the current thread's hibernate session.
+	 * When executed in parallel, the task works with its own (detached) copy of the examinations.
+	 */
+	protected class ReportTask implements Task {
+		private String iReport, iReportName, iName;
+		private Class iReportClass;
+		private SubjectArea iSubject;
+		private TreeSet<ExamAssignmentInfo> iExams;
+		private byte[] iDetachedExams = null;
+		private Hashtable<String,File> iOutput;
+		private Hashtable<SubjectArea,Hashtable<String,File>> iOutputPerSubject;
+		private Hashtable<ExamInstructorInfo,File> iInstructorReports = null;
+		private Hashtable<Student,File> iStudentReports = null;
+		
+		public ReportTask(String report, Class reportClass, String reportName, String name, SubjectArea subject, TreeSet<ExamAssignmentInfo> exams,
+				Hashtable<String,File> output, Hashtable<SubjectArea,Hashtable<String,File>> outputPerSubject) {
+			iReport = report; iReportClass = reportClass; iReportName = reportName; iName = name; iSubject = subject;
+			iExams = exams; iOutput = output; iOutputPerSubject = outputPerSubject;
+		}
+		
+		public String getReport() { return iReport; }
+		
+		public void setDetachedExams(byte[] exams) { iDetachedExams = exams; }
+		
+		public Hashtable<ExamInstructorInfo,File> getInstructorReports() { return iInstructorReports; }
+		
+		public Hashtable<Student,File> getStudentReports() { return iStudentReports; }
+		
+		public int getReportIndex(String[] reports) {
+			for (int i = 0; i < reports.length; i++)
+				if (reports[i].equals(iReport)) return i;
+			return 0;
+		}
+		
+		@Override
+		public void execute() throws Exception {
+			String ext = (iForm.getModeIdx()==PdfLegacyExamReport.sModeText?"txt":"pdf");
+			Session session = SessionDAO.getInstance().get(getSessionId());
+			ExamType examType = ExamTypeDAO.getInstance().get(iForm.getExamType());
+			TreeSet<ExamAssignmentInfo> exams = (iDetachedExams == null ? iExams : attachExams(iDetachedExams));
+			File file = null;
+			Collection<SubjectArea> subjects = null;
+			String fileName = null;
+			if (iSubject == null) {
+				file = ApplicationProperties.getTempFile(iName, ext);
+				fileName = iReportName + "." + ext;
+				log("&nbsp;&nbsp;Writing <a href='temp/"+file.getName()+"'>"+fileName+"</a>... " + (iSubjectIndependent ? " ("+exams.size()+" exams)" : ""));
+				if (iSubjectIndependent) {
+					subjects = null;
+				} else if (iDetachedExams == null) {
+					subjects = iForm.getSubjectAreas();
+				} else {
+					subjects = new ArrayList<SubjectArea>();
+					for (Object subject: iForm.getSubjectAreas())
+						subjects.add(SubjectAreaDAO.getInstance().get(((SubjectArea)subject).getUniqueId()));
+				}
+			} else {
+				SubjectArea subject = SubjectAreaDAO.getInstance().get(iSubject.getUniqueId());
+				file = ApplicationProperties.getTempFile(iName+"_"+subject.getSubjectAreaAbbreviation(), ext);
+				fileName = subject.getSubjectAreaAbbreviation()+"_"+iReportName+"."+ext;
+				int nrExams = 0;
+				for (ExamAssignmentInfo exam : exams) {
+					if (exam.isOfSubjectArea(subject)) nrExams++;
+				}
+				log("&nbsp;&nbsp;Writing <a href='temp/"+file.getName()+"'>"+fileName+"</a>... ("+nrExams+" exams)");
+				subjects = new ArrayList<SubjectArea>(); subjects.add(subject);
+			}
+			PdfLegacyExamReport report = (PdfLegacyExamReport)iReportClass.
+					getConstructor(int.class, File.class, Session.class, ExamType.class, Collection.class, Collection.class).
+					newInstance(iForm.getModeIdx(), file, session, examType, subjects, exams);
+			report.setDirect(iForm.getDirect());
+			report.setM2d(iForm.getM2d());
+			report.setBtb(iForm.getBtb());
+			report.setDispRooms(iForm.getDispRooms());
+			report.setNoRoom(iForm.getNoRoom());
+			report.setTotals(iForm.getTotals());
+			report.setLimit(iForm.getLimit()==null || iForm.getLimit().length()==0?-1:Integer.parseInt(iForm.getLimit()));
+			report.setRoomCode(iForm.getRoomCodes());
+			report.setDispLimits(iForm.getDispLimit());
+			if (iSubject == null)
+				report.setSince(iForm.getSince()==null || iForm.getSince().length()==0?null:Formats.getDateFormat(Formats.Pattern.DATE_ENTRY_FORMAT).parse(iForm.getSince()));
+			report.setItype(iForm.getItype());
+			report.setClassSchedule(iForm.getClassSchedule());
+			report.setDispNote(iForm.getDispNote());
+			report.setCompact(iForm.getCompact());
+			report.setUseRoomDisplayNames(iForm.getRoomDispNames());
+			report.printReport();
+			report.close();
+			iOutput.put(fileName, file);
+			if (iSubject != null) {
+				synchronized (iOutputPerSubject) {
+					Hashtable<String,File> files = iOutputPerSubject.get(iSubject);
+					if (files==null) {
+						files = new Hashtable(); iOutputPerSubject.put(iSubject,files);
+					}
+					files.put(fileName, file);
+				}
+			}
+			if (report instanceof InstructorExamReport && iForm.getEmailInstructors()) {
+				iInstructorReports = ((InstructorExamReport)report).printInstructorReports(iForm.getModeIdx(), iName, new FileGenerator(iName));
+			} else if (report instanceof StudentExamReport && iForm.getEmailStudents()) {
+				iStudentReports = ((StudentExamReport)report).printStudentReports(iForm.getModeIdx(), iName, new FileGenerator(iName));
+			}
+			incProgressStep();
+		}
+	}
+	
+	/**
+	 * Sending of an individual (instructor or student) report.
+	 */
+	protected class EmailTask implements Task {
+		private String iEmail, iName, iAttachmentName;
+		private File iReport;
+		
+		public EmailTask(String email, String name, File report, Session session) {
+			iEmail = email; iName = name; iReport = report;
+			iAttachmentName = session.getAcademicTerm()+session.getSessionStartYear()+ExamTypeDAO.getInstance().get(iForm.getExamType()).getReference()+(iForm.getModeIdx()==PdfLegacyExamReport.sModeText?".txt":".pdf");
+		}
+		
+		@Override
+		public void execute() {
+            try {
+                Email mail = Email.createEmail();
+                mail.setSubject(iForm.getSubject()==null?"Examination Report":iForm.getSubject());
+                mail.setText((iForm.getMessage()==null?"":iForm.getMessage()+"\r\n\r\n")+
+                        "For an up-to-date examination report, please visit "+
+                        iUrl+"/exams.do\r\n\r\n"+
+                        "This email was automatically generated by "+
+                        "UniTime "+Constants.getVersion()+
+                        " (Univesity Timetabling Application, http://www.unitime.org).");
+                mail.addRecipient(iEmail, null);
+                if (iForm.getCc()!=null) for (StringTokenizer s=new StringTokenizer(iForm.getCc(),";,\n\r ");s.hasMoreTokens();) 
+                    mail.addRecipientCC(s.nextToken(), null);
+                if (iForm.getBcc()!=null) for (StringTokenizer s=new StringTokenizer(iForm.getBcc(),";,\n\r ");s.hasMoreTokens();) 
+                    mail.addRecipientBCC(s.nextToken(), null);
+                mail.addAttachment(iReport, iAttachmentName);
+                mail.send();
+                log("&nbsp;&nbsp;An email was sent to <a href='temp/"+iReport.getName()+"'>"+iName+"</a>.");
+            } catch (Exception e) {
+                log("&nbsp;&nbsp;<font color='orange'>Unable to email <a href='temp/"+iReport.getName()+"'>"+iName+"</a> -- "+e.getMessage()+".</font>");
+                setError(e);
+            }
+		}
+	}
+
 	@Override
 	public String name() {
 		return iName;
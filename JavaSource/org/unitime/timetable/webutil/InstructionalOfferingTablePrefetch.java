@@ -0,0 +1,223 @@
+/*
+ * Licensed to The Apereo Foundation under one or more contributor license
+ * agreements. See the NOTICE file distributed with this work for
+ * additional information regarding copyright ownership.
+ *
+ * The Apereo Foundation licenses this file to you under the Apache License,
+ * Version 2.0 (the "License"); you may not use this file except in
+ * compliance with the License. You may obtain a copy of the License at:
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ *
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ *
+*/
+package org.unitime.timetable.webutil;
+
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+
+import org.apache.commons.logging.Log;
+import org.apache.commons.logging.LogFactory;
+import org.unitime.timetable.defaults.ApplicationProperty;
+import org.unitime.timetable.model.Class_;
+import org.unitime.timetable.model.CourseOffering;
+import org.unitime.timetable.model.Exam;
+import org.unitime.timetable.model.ExamOwner;
+import org.unitime.timetable.model.InstrOfferingConfig;
+import org.unitime.timetable.model.InstructionalOffering;
+import org.unitime.timetable.model.SchedulingSubpart;
+
+/**
+ * Prefetch of the data displayed by the instructional offering and class tables ({@link WebInstructionalOfferingTableBuilder}
+ * and its HTML, PDF, and CSV variants).<br>
+ * Instead of the lazy associations being loaded one class at a time while the table is rendered, the structure of all the
+ * listed offerings (courses, configurations, subparts, and classes), their preferences, class instructors, committed assignments
+ * (with rooms), and distribution objects are loaded into the Hibernate session with a fixed number of set-based queries
+ * (per chunk of {@link #sChunkSize} offerings).
+ * Examinations are indexed by their owners, so that {@link #getExams(int, Long)} does not need to query the database.
+ *
+ * @author Tomas Muller
+ */
+public class InstructionalOfferingTablePrefetch {
+	private static Log sLog = LogFactory.getLog(InstructionalOfferingTablePrefetch.class);
+	private static int sChunkSize = 1000;
+	private org.hibernate.Session iHibSession;
+	private Set<String> iOwners = new HashSet<String>();
+	private Map<String, List<Exam>> iExams = new HashMap<String, List<Exam>>();
+	
+	public InstructionalOfferingTablePrefetch(org.hibernate.Session hibSession) {
+		iHibSession = hibSession;
+	}
+	
+	public static boolean isEnabled() {
+		return ApplicationProperty.OfferingTablePrefetch.isTrue();
+	}
+	
+	/**
+	 * Prefetch all the data of the given instructional offerings
+	 * @param offerings instructional offerings to be displayed
+	 * @param exams also prefetch examinations of the offerings, their courses, configurations, and classes
+	 */
+	public void prefetchOfferings(Collection<InstructionalOffering> offerings, boolean exams) {
+		List<Long> offeringIds = new ArrayList<Long>();
+		for (InstructionalOffering offering: offerings)
+			offeringIds.add(offering.getUniqueId());
+		prefetch(offeringIds, exams);
+		if (exams) {
+			// the structure collections are initialized by now
+			for (InstructionalOffering offering: offerings) {
+				iOwners.add(key(ExamOwner.sOwnerTypeOffering, offering.getUniqueId()));
+				for (CourseOffering course: offering.getCourseOfferings())
+					iOwners.add(key(ExamOwner.sOwnerTypeCourse, course.getUniqueId()));
+				for (InstrOfferingConfig config: offering.getInstrOfferingConfigs()) {
+					iOwners.add(key(ExamOwner.sOwnerTypeConfig, config.getUniqueId()));
+					for (SchedulingSubpart subpart: config.getSchedulingSubparts())
+						for (Class_ clazz: subpart.getClasses())
+							iOwners.add(key(ExamOwner.sOwnerTypeClass, clazz.getUniqueId()));
+				}
+			}
+		}
+	}
+	
+	/**
+	 * Prefetch all the data of the given classes (and of the instructional offerings they belong to)
+	 * @param classes classes to be displayed, either {@link Class_} or an array with the class as the first element
+	 * @param exams also prefetch examinations of the classes, their configurations, offerings, and courses
+	 */
+	public void prefetchClasses(Collection classes, boolean exams) {
+		Set<Long> offeringIds = new HashSet<Long>();
+		for (Object o: classes) {
+			Class_ clazz = (Class_)(o instanceof Object[] ? ((Object[])o)[0] : o);
+			offeringIds.add(clazz.getSchedulingSubpart().getInstrOfferingConfig().getInstructionalOffering().getUniqueId());
+		}
+		prefetch(new ArrayList<Long>(offeringIds), exams);
+		if (exams) {
+			// the structure collections are initialized by now
+			Set<Long> offeringsWithKeys = new HashSet<Long>();
+			for (Object o: classes) {
+				Class_ clazz = (Class_)(o instanceof Object[] ? ((Object[])o)[0] : o);
+				InstrOfferingConfig config = clazz.getSchedulingSubpart().getInstrOfferingConfig();
+				InstructionalOffering offering = config.getInstructionalOffering();
+				if (offeringsWithKeys.add(offering.getUniqueId())) {
+					iOwners.add(key(ExamOwner.sOwnerTypeOffering, offering.getUniqueId()));
+					for (CourseOffering course: offering.getCourseOfferings())
+						iOwners.add(key(ExamOwner.sOwnerTypeCourse, course.getUniqueId()));
+				}
+				iOwners.add(key(ExamOwner.sOwnerTypeConfig, config.getUniqueId()));
+				iOwners.add(key(ExamOwner.sOwnerTypeClass, clazz.getUniqueId()));
+			}
+		}
+	}
+	
+	protected void prefetch(List<Long> offeringIds, boolean exams) {
+		long t0 = System.currentTimeMillis();
+		for (int i = 0; i < offeringIds.size(); i += sChunkSize) {
+			List<Long> ids = offeringIds.subList(i, Math.min(i + sChunkSize, offeringIds.size()));
+			
+			// structure: entity queries do not fill the collections of the parents, so the collections are join-fetched from the parent side
+			iHibSession.createQuery(
+					"select distinct io from InstructionalOffering io left join fetch io.courseOfferings " +
+					"where io.uniqueId in :offeringIds"
+					).setParameterList("offeringIds", ids).list();
+			
+			iHibSession.createQuery(
+					"select distinct io from InstructionalOffering io left join fetch io.instrOfferingConfigs " +
+					"where io.uniqueId in :offeringIds"
+					).setParameterList("offeringIds", ids).list();
+			
+			iHibSession.createQuery(
+					"select distinct c from InstrOfferingConfig c left join fetch c.schedulingSubparts " +
+					"where c.instructionalOffering.uniqueId in :offeringIds"
+					).setParameterList("offeringIds", ids).list();
+			
+			iHibSession.createQuery(
+					"select distinct s from SchedulingSubpart s left join fetch s.classes " +
+					"where s.instrOfferingConfig.instructionalOffering.uniqueId in :offeringIds"
+					).setParameterList("offeringIds", ids).list();
+			
+			iHibSession.createQuery(
+					"select distinct s from SchedulingSubpart s left join fetch s.childSubparts " +
+					"where s.instrOfferingConfig.instructionalOffering.uniqueId in :offeringIds"
+					).setParameterList("offeringIds", ids).list();
+			
+			iHibSession.createQuery(
+					"select distinct c from Class_ c left join fetch c.childClasses " +
+					"where c.schedulingSubpart.instrOfferingConfig.instructionalOffering.uniqueId in :offeringIds"
+					).setParameterList("offeringIds", ids).list();
+			
+			iHibSession.createQuery(
+					"select distinct s from SchedulingSubpart s left join fetch s.preferences " +
+					"where s.instrOfferingConfig.instructionalOffering.uniqueId in :offeringIds"
+					).setParameterList("offeringIds", ids).list();
+			
+			iHibSession.createQuery(
+					"select distinct s from SchedulingSubpart s left join fetch s.distributionObjects do left join fetch do.distributionPref " +
+					"where s.instrOfferingConfig.instructionalOffering.uniqueId in :offeringIds"
+					).setParameterList("offeringIds", ids).list();
+			
+			iHibSession.createQuery(
+					"select distinct c from Class_ c left join fetch c.preferences " +
+					"where c.schedulingSubpart.instrOfferingConfig.instructionalOffering.uniqueId in :offeringIds"
+					).setParameterList("offeringIds", ids).list();
+			
+			iHibSession.createQuery(
+					"select distinct c from Class_ c left join fetch c.classInstructors ci left join fetch ci.instructor " +
+					"where c.schedulingSubpart.instrOfferingConfig.instructionalOffering.uniqueId in :offeringIds"
+					).setParameterList("offeringIds", ids).list();
+			
+			iHibSession.createQuery(
+					"select distinct c from Class_ c left join fetch c.distributionObjects do left join fetch do.distributionPref " +
+					"where c.schedulingSubpart.instrOfferingConfig.instructionalOffering.uniqueId in :offeringIds"
+					).setParameterList("offeringIds", ids).list();
+			
+			iHibSession.createQuery(
+					"select distinct a from Assignment a left join fetch a.rooms " +
+					"where a.solution.commited = true and a.clazz.schedulingSubpart.instrOfferingConfig.instructionalOffering.uniqueId in :offeringIds"
+					).setParameterList("offeringIds", ids).list();
+			
+			if (exams) {
+				for (Object[] o: (List<Object[]>)iHibSession.createQuery(
+						"select o.ownerType, o.ownerId, x from Exam x inner join x.owners o " +
+						"where o.course.instructionalOffering.uniqueId in :offeringIds"
+						).setParameterList("offeringIds", ids).list()) {
+					String key = key((Integer)o[0], (Long)o[1]);
+					List<Exam> list = iExams.get(key);
+					if (list == null) {
+						list = new ArrayList<Exam>();
+						iExams.put(key, list);
+					}
+					Exam exam = (Exam)o[2];
+					if (!list.contains(exam)) list.add(exam);
+				}
+			}
+		}
+		if (sLog.isDebugEnabled())
+			sLog.debug("Prefetched " + offeringIds.size() + " offerings in " + (System.currentTimeMillis() - t0) + " ms.");
+	}
+	
+	protected static String key(int ownerType, Long ownerId) {
+		return ownerType + ":" + ownerId;
+	}
+	
+	/**
+	 * Examinations of the given owner (see {@link Exam#findAll(int, Long)})
+	 * @return null if the owner has not been prefetched
+	 */
+	public List<Exam> getExams(int ownerType, Long ownerId) {
+		String key = key(ownerType, ownerId);
+		if (!iOwners.contains(key)) return null;
+		List<Exam> exams = iExams.get(key);
+		return (exams == null ? new ArrayList<Exam>() : exams);
+	}
+}
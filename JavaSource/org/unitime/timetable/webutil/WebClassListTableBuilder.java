@@ -98,6 +98,8 @@ public class WebClassListTableBuilder extends
         setBackId(backId);
         
         TreeSet classes = (TreeSet) form.getClasses();
+        prefetchClasses(classes);
+        prefetchClassPermissions(context, classes);
     	Navigation.set(context, Navigation.sClassLevel, classes);
         
     	if (isShowTimetable()) {
@@ -284,7 +286,7 @@ public class WebClassListTableBuilder extends
     
     protected TreeSet getExams(Class_ clazz) {
         //exams directly attached to the given class
-        TreeSet ret = new TreeSet(Exam.findAll(ExamOwner.sOwnerTypeClass, clazz.getUniqueId()));
+        TreeSet ret = new TreeSet(findExams(ExamOwner.sOwnerTypeClass, clazz.getUniqueId()));
         //check whether the given class is of the first subpart of the config
         SchedulingSubpart subpart = clazz.getSchedulingSubpart();
         if (subpart.getParentSubpart()!=null) return ret; 
@@ -296,11 +298,11 @@ public class WebClassListTableBuilder extends
         }
         InstructionalOffering offering = config.getInstructionalOffering();
         //check passed -- add config/offering/course exams to the class exams
-        ret.addAll(Exam.findAll(ExamOwner.sOwnerTypeConfig, config.getUniqueId()));
-        ret.addAll(Exam.findAll(ExamOwner.sOwnerTypeOffering, offering.getUniqueId()));
+        ret.addAll(findExams(ExamOwner.sOwnerTypeConfig, config.getUniqueId()));
+        ret.addAll(findExams(ExamOwner.sOwnerTypeOffering, offering.getUniqueId()));
         for (Iterator i=offering.getCourseOfferings().iterator();i.hasNext();) {
             CourseOffering co = (CourseOffering)i.next();
-            ret.addAll(Exam.findAll(ExamOwner.sOwnerTypeCourse, co.getUniqueId()));
+            ret.addAll(findExams(ExamOwner.sOwnerTypeCourse, co.getUniqueId()));
         }
         return ret;
     }
@@ -22,11 +22,14 @@ package org.unitime.timetable.webutil;
 import java.io.IOException;
 import java.text.DecimalFormat;
 import java.util.ArrayList;
+import java.util.Collection;
 import java.util.Collections;
 import java.util.Comparator;
 import java.util.Date;
+import java.util.HashMap;
 import java.util.Iterator;
 import java.util.List;
+import java.util.Map;
 import java.util.Set;
 import java.util.TreeSet;
 import java.util.Vector;
@@ -85,12 +88,15 @@ import org.unitime.timetable.model.dao.InstructionalOfferingDAO;
 import org.unitime.timetable.model.dao.SubjectAreaDAO;
 import org.unitime.timetable.security.SessionContext;
 import org.unitime.timetable.security.UserContext;
+import org.unitime.timetable.security.evaluation.PermissionCache;
+import org.unitime.timetable.security.evaluation.PermissionCheck;
 import org.unitime.timetable.security.rights.Right;
 import org.unitime.timetable.solver.CachedClassAssignmentProxy;
 import org.unitime.timetable.solver.ClassAssignmentProxy;
 import org.unitime.timetable.solver.exam.ExamAssignmentProxy;
 import org.unitime.timetable.solver.exam.ui.ExamAssignment;
 import org.unitime.timetable.solver.ui.AssignmentPreferenceInfo;
+import org.unitime.timetable.spring.SpringApplicationContextHolder;
 import org.unitime.timetable.util.Constants;
 import org.unitime.timetable.util.Formats;
 
@@ -144,6 +150,8 @@ public class WebInstructionalOfferingTableBuilder {
 			MSG.columnAssignedRoom(),
 			MSG.columnAssignedRoomCapacity()};
     
+    private InstructionalOfferingTablePrefetch prefetch = null;
+    private Map<Right, Map<Long, Boolean>> iPermissions = new HashMap<Right, Map<Long, Boolean>>();
     private boolean showLabel;
     private boolean showDivSec;
     private boolean showDemand;
@@ -1077,7 +1085,99 @@ public class WebInstructionalOfferingTableBuilder {
     }
 
     protected TreeSet getExams(Class_ clazz) {
-        return new TreeSet(Exam.findAll(ExamOwner.sOwnerTypeClass,clazz.getUniqueId()));
+        return new TreeSet(findExams(ExamOwner.sOwnerTypeClass,clazz.getUniqueId()));
+    }
+    
+    /**
+     * Examinations of the given owner, taken from the prefetch when available (see {@link Exam#findAll(int, Long)})
+     */
+    protected List findExams(int ownerType, Long ownerId) {
+    	if (prefetch != null) {
+    		List<Exam> exams = prefetch.getExams(ownerType, ownerId);
+    		if (exams != null) return exams;
+    	}
+    	return Exam.findAll(ownerType, ownerId);
+    }
+    
+    /**
+     * Load the data of the given instructional offerings with a few set-based queries before the table is rendered,
+     * if enabled (see {@link InstructionalOfferingTablePrefetch})
+     */
+    protected void prefetchOfferings(Collection offerings) {
+    	if (!InstructionalOfferingTablePrefetch.isEnabled()) return;
+    	prefetch = new InstructionalOfferingTablePrefetch(InstructionalOfferingDAO.getInstance().getSession());
+    	prefetch.prefetchOfferings(offerings, isShowExam());
+    }
+    
+    /**
+     * Load the data of the given classes with a few set-based queries before the table is rendered,
+     * if enabled (see {@link InstructionalOfferingTablePrefetch})
+     */
+    protected void prefetchClasses(Collection classes) {
+    	if (!InstructionalOfferingTablePrefetch.isEnabled()) return;
+    	prefetch = new InstructionalOfferingTablePrefetch(InstructionalOfferingDAO.getInstance().getSession());
+    	prefetch.prefetchClasses(classes, isShowExam());
+    }
+
+    /**
+     * Evaluate the detail rights of the given instructional offerings, their scheduling subparts and classes at once
+     * (see {@link PermissionCheck#getPermitted(UserContext, Collection, Right)}), if the permission cache is enabled
+     * (see {@link PermissionCache})
+     */
+    protected void prefetchOfferingPermissions(SessionContext context, Collection<InstructionalOffering> offerings) {
+    	if (!PermissionCache.isEnabled()) return;
+    	List<SchedulingSubpart> subparts = new ArrayList<SchedulingSubpart>();
+    	List<Class_> classes = new ArrayList<Class_>();
+    	for (InstructionalOffering io: offerings)
+    		for (InstrOfferingConfig config: io.getInstrOfferingConfigs())
+    			for (SchedulingSubpart ss: config.getSchedulingSubparts()) {
+    				subparts.add(ss);
+    				classes.addAll(ss.getClasses());
+    			}
+    	prefetchPermissions(context, offerings, Right.InstructionalOfferingDetail);
+    	prefetchPermissions(context, subparts, Right.SchedulingSubpartDetail);
+    	prefetchPermissions(context, classes, Right.ClassDetail);
+    }
+    
+    /**
+     * Evaluate the class detail right of the given classes at once, if the permission cache is enabled
+     */
+    protected void prefetchClassPermissions(SessionContext context, Collection<Class_> classes) {
+    	if (!PermissionCache.isEnabled()) return;
+    	prefetchPermissions(context, classes, Right.ClassDetail);
+    }
+    
+    private <T> void prefetchPermissions(SessionContext context, Collection<T> targets, Right right) {
+    	if (targets.isEmpty()) return;
+    	PermissionCheck permissionCheck = (PermissionCheck)SpringApplicationContextHolder.getBean("unitimePermissionCheck");
+    	Map<Long, Boolean> permissions = iPermissions.get(right);
+    	if (permissions == null) {
+    		permissions = new HashMap<Long, Boolean>();
+    		iPermissions.put(right, permissions);
+    	}
+    	for (T target: targets)
+    		permissions.put(getUniqueId(target), Boolean.FALSE);
+    	for (T target: permissionCheck.getPermitted(context.getUser(), targets, right))
+    		permissions.put(getUniqueId(target), Boolean.TRUE);
+    }
+    
+    private static Long getUniqueId(Object target) {
+    	if (target instanceof PreferenceGroup) return ((PreferenceGroup)target).getUniqueId();
+    	if (target instanceof InstructionalOffering) return ((InstructionalOffering)target).getUniqueId();
+    	return null;
+    }
+    
+    /**
+     * Check the given right, use the decision evaluated by {@link #prefetchOfferingPermissions(SessionContext, Collection)}
+     * or {@link #prefetchClassPermissions(SessionContext, Collection)} when available
+     */
+    protected boolean hasPermission(SessionContext context, Object target, Right right) {
+    	Map<Long, Boolean> permissions = iPermissions.get(right);
+    	if (permissions != null) {
+    		Boolean permitted = permissions.get(getUniqueId(target));
+    		if (permitted != null) return permitted;
+    	}
+    	return context.hasPermission(target, right);
     }
 
     private TableCell buildSchedulePrintNote(InstructionalOffering io, boolean isEditable, UserContext user){
@@ -1445,7 +1545,7 @@ public class WebInstructionalOfferingTableBuilder {
     private void buildSchedulingSubpartRow(ClassAssignmentProxy classAssignment, ExamAssignmentProxy examAssignment, TableStream table, CourseOffering co, SchedulingSubpart ss, int indentSpaces, SessionContext context){
     	boolean isHeaderRow = true;
     	TableRow row = this.initRow(isHeaderRow);
-    	boolean isEditable = context.hasPermission(ss, Right.SchedulingSubpartDetail);
+    	boolean isEditable = hasPermission(context, ss, Right.SchedulingSubpartDetail);
         boolean isOffered = !ss.getInstrOfferingConfig().getInstructionalOffering().isNotOffered().booleanValue();        
 
         if(isOffered)
@@ -1484,7 +1584,7 @@ public class WebInstructionalOfferingTableBuilder {
  
     protected void buildClassRow(ClassAssignmentProxy classAssignment, ExamAssignmentProxy examAssignment, int ct, TableStream table, CourseOffering co, Class_ aClass, int indentSpaces, SessionContext context, String prevLabel){
     	boolean isHeaderRow = false;
-    	boolean isEditable = context.hasPermission(aClass, Right.ClassDetail);
+    	boolean isEditable = hasPermission(context, aClass, Right.ClassDetail);
     	TableRow row = this.initRow(isHeaderRow);
         row.setOnMouseOver(this.getRowMouseOver(isHeaderRow, isEditable));
         row.setOnMouseOut(this.getRowMouseOut(isHeaderRow));
@@ -1594,7 +1694,7 @@ public class WebInstructionalOfferingTableBuilder {
     //		buildTableHeader, addInstrOffrRowsToTable, buildClassOrSubpartRow, and buildConfigRow
 	protected void buildConfigRow(Vector subpartIds, ClassAssignmentProxy classAssignment, ExamAssignmentProxy examAssignment, TableStream table, CourseOffering co, InstrOfferingConfig ioc, SessionContext context, boolean printConfigLine, boolean printConfigReservation) {
 	    boolean isHeaderRow = true;
-	    boolean isEditable = context.hasPermission(ioc.getInstructionalOffering(), Right.InstructionalOfferingDetail);
+	    boolean isEditable = hasPermission(context, ioc.getInstructionalOffering(), Right.InstructionalOfferingDetail);
 	    String configName = ioc.getName();
 	    boolean unlimited = ioc.isUnlimitedEnrollment().booleanValue();
 	    boolean hasConfig = false;
@@ -1693,7 +1793,7 @@ public class WebInstructionalOfferingTableBuilder {
 	        */
         	
             if (isShowExam()) {
-                TreeSet exams = new TreeSet(Exam.findAll(ExamOwner.sOwnerTypeConfig,ioc.getUniqueId()));
+                TreeSet exams = new TreeSet(findExams(ExamOwner.sOwnerTypeConfig,ioc.getUniqueId()));
                 for (Iterator<Exam> i = exams.iterator(); i.hasNext(); ) {
                 	if (!context.hasPermission(i.next(), Right.ExaminationView))
                 		i.remove();
@@ -1757,7 +1857,7 @@ public class WebInstructionalOfferingTableBuilder {
     //		buildTableHeader, addInstrOffrRowsToTable, buildClassOrSubpartRow, and buildConfigRow
     private void addInstrOffrRowsToTable(ClassAssignmentProxy classAssignment, ExamAssignmentProxy examAssignment, TableStream table, InstructionalOffering io, Long subjectAreaId, SessionContext context){
         CourseOffering co = io.findSortCourseOfferingForSubjectArea(subjectAreaId);
-        boolean isEditable = context.hasPermission(io, Right.InstructionalOfferingDetail);
+        boolean isEditable = hasPermission(context, io, Right.InstructionalOfferingDetail);
         TableRow row = (this.initRow(true));
         row.setOnMouseOver(this.getRowMouseOver(true, isEditable));
         row.setOnMouseOut(this.getRowMouseOut(true));
@@ -1949,15 +2049,15 @@ public class WebInstructionalOfferingTableBuilder {
             row.addContent(buildNote(io, isEditable, context.getUser()));
     	}
         if (isShowExam()) {
-            TreeSet exams = new TreeSet(Exam.findAll(ExamOwner.sOwnerTypeOffering,io.getUniqueId()));
+            TreeSet exams = new TreeSet(findExams(ExamOwner.sOwnerTypeOffering,io.getUniqueId()));
             for (Iterator i=io.getCourseOfferings().iterator();i.hasNext();) {
                 CourseOffering cox = (CourseOffering)i.next();
-                exams.addAll(Exam.findAll(ExamOwner.sOwnerTypeCourse,cox.getUniqueId()));
+                exams.addAll(findExams(ExamOwner.sOwnerTypeCourse,cox.getUniqueId()));
             }
             if (io.getInstrOfferingConfigs().size()==1) {
                 for (Iterator i=io.getInstrOfferingConfigs().iterator();i.hasNext();) {
                     InstrOfferingConfig ioc = (InstrOfferingConfig)i.next();
-                    exams.addAll(Exam.findAll(ExamOwner.sOwnerTypeConfig,ioc.getUniqueId()));
+                    exams.addAll(findExams(ExamOwner.sOwnerTypeConfig,ioc.getUniqueId()));
                 }
             }
             for (Iterator<Exam> i = exams.iterator(); i.hasNext(); ) {
@@ -2068,6 +2168,9 @@ public class WebInstructionalOfferingTableBuilder {
     	
     	if (insructionalOfferings == null) return;
     	
+    	prefetchOfferings(insructionalOfferings);
+    	prefetchOfferingPermissions(context, insructionalOfferings);
+    	
     	if (classComparator!=null)
     		setClassComparator(classComparator);
     	
@@ -74,6 +74,7 @@ public class CsvClassListTableBuilder extends CsvInstructionalOfferingTableBuild
 		setVisibleColumns(form);
         
 		TreeSet classes = (TreeSet) form.getClasses();
+		prefetchClasses(classes);
 		if (isShowTimetable()) {
 			boolean hasTimetable = false;
 			if (context.hasPermission(Right.ClassAssignments) && classAssignment != null) {
@@ -132,7 +133,7 @@ public class CsvClassListTableBuilder extends CsvInstructionalOfferingTableBuild
     
     protected TreeSet getExams(Class_ clazz) {
         //exams directly attached to the given class
-        TreeSet ret = new TreeSet(Exam.findAll(ExamOwner.sOwnerTypeClass, clazz.getUniqueId()));
+        TreeSet ret = new TreeSet(findExams(ExamOwner.sOwnerTypeClass, clazz.getUniqueId()));
         //check whether the given class is of the first subpart of the config
         SchedulingSubpart subpart = clazz.getSchedulingSubpart();
         if (subpart.getParentSubpart()!=null) return ret; 
@@ -144,11 +145,11 @@ public class CsvClassListTableBuilder extends CsvInstructionalOfferingTableBuild
         }
         InstructionalOffering offering = config.getInstructionalOffering();
         //check passed -- add config/offering/course exams to the class exams
-        ret.addAll(Exam.findAll(ExamOwner.sOwnerTypeConfig, config.getUniqueId()));
-        ret.addAll(Exam.findAll(ExamOwner.sOwnerTypeOffering, offering.getUniqueId()));
+        ret.addAll(findExams(ExamOwner.sOwnerTypeConfig, config.getUniqueId()));
+        ret.addAll(findExams(ExamOwner.sOwnerTypeOffering, offering.getUniqueId()));
         for (Iterator i=offering.getCourseOfferings().iterator();i.hasNext();) {
             CourseOffering co = (CourseOffering)i.next();
-            ret.addAll(Exam.findAll(ExamOwner.sOwnerTypeCourse, co.getUniqueId()));
+            ret.addAll(findExams(ExamOwner.sOwnerTypeCourse, co.getUniqueId()));
         }
         return ret;
     }
@@ -1085,7 +1085,7 @@ public class CsvInstructionalOfferingTableBuilder extends WebInstructionalOfferi
         	}
 
             if (isShowExam()) {
-                TreeSet exams = new TreeSet(Exam.findAll(ExamOwner.sOwnerTypeConfig,ioc.getUniqueId()));
+                TreeSet exams = new TreeSet(findExams(ExamOwner.sOwnerTypeConfig,ioc.getUniqueId()));
                 if (isShowExamName()) {
                     line.add(csvBuildExamName(exams, isEditable));
                 }
@@ -1262,15 +1262,15 @@ public class CsvInstructionalOfferingTableBuilder extends WebInstructionalOfferi
     		line.add(csvBuildNote(io, isEditable, context.getUser()));
     	}
         if (isShowExam()) {
-            TreeSet exams = new TreeSet(Exam.findAll(ExamOwner.sOwnerTypeOffering,io.getUniqueId()));
+            TreeSet exams = new TreeSet(findExams(ExamOwner.sOwnerTypeOffering,io.getUniqueId()));
             for (Iterator i=io.getCourseOfferings().iterator();i.hasNext();) {
                 CourseOffering cox = (CourseOffering)i.next();
-                exams.addAll(Exam.findAll(ExamOwner.sOwnerTypeCourse,cox.getUniqueId()));
+                exams.addAll(findExams(ExamOwner.sOwnerTypeCourse,cox.getUniqueId()));
             }
             if (io.getInstrOfferingConfigs().size()==1) {
                 for (Iterator i=io.getInstrOfferingConfigs().iterator();i.hasNext();) {
                     InstrOfferingConfig ioc = (InstrOfferingConfig)i.next();
-                    exams.addAll(Exam.findAll(ExamOwner.sOwnerTypeConfig,ioc.getUniqueId()));
+                    exams.addAll(findExams(ExamOwner.sOwnerTypeConfig,ioc.getUniqueId()));
                 }
             }
             for (Iterator<Exam> i = exams.iterator(); i.hasNext(); ) {
@@ -1367,6 +1367,8 @@ public class CsvInstructionalOfferingTableBuilder extends WebInstructionalOfferi
     	
     	if (insructionalOfferings == null) return;
     	
+    	prefetchOfferings(insructionalOfferings);
+    	
     	SubjectArea subjectArea = SubjectAreaDAO.getInstance().get(subjectAreaId);
     	
     	if (classComparator!=null)
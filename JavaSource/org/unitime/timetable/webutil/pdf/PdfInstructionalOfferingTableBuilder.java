@@ -1429,7 +1429,7 @@ public class PdfInstructionalOfferingTableBuilder extends WebInstructionalOfferi
         	}
 
             if (isShowExam()) {
-                TreeSet exams = new TreeSet(Exam.findAll(ExamOwner.sOwnerTypeConfig,ioc.getUniqueId()));
+                TreeSet exams = new TreeSet(findExams(ExamOwner.sOwnerTypeConfig,ioc.getUniqueId()));
                 if (isShowExamName()) {
                     iPdfTable.addCell(pdfBuildExamName(exams, isEditable));
                 }
@@ -1633,15 +1633,15 @@ public class PdfInstructionalOfferingTableBuilder extends WebInstructionalOfferi
     		iPdfTable.addCell(pdfBuildNote(io, isEditable, context.getUser()));
     	}
         if (isShowExam()) {
-            TreeSet exams = new TreeSet(Exam.findAll(ExamOwner.sOwnerTypeOffering,io.getUniqueId()));
+            TreeSet exams = new TreeSet(findExams(ExamOwner.sOwnerTypeOffering,io.getUniqueId()));
             for (Iterator i=io.getCourseOfferings().iterator();i.hasNext();) {
                 CourseOffering cox = (CourseOffering)i.next();
-                exams.addAll(Exam.findAll(ExamOwner.sOwnerTypeCourse,cox.getUniqueId()));
+                exams.addAll(findExams(ExamOwner.sOwnerTypeCourse,cox.getUniqueId()));
             }
             if (io.getInstrOfferingConfigs().size()==1) {
                 for (Iterator i=io.getInstrOfferingConfigs().iterator();i.hasNext();) {
                     InstrOfferingConfig ioc = (InstrOfferingConfig)i.next();
-                    exams.addAll(Exam.findAll(ExamOwner.sOwnerTypeConfig,ioc.getUniqueId()));
+                    exams.addAll(findExams(ExamOwner.sOwnerTypeConfig,ioc.getUniqueId()));
                 }
             }
             for (Iterator<Exam> i = exams.iterator(); i.hasNext(); ) {
@@ -1734,6 +1734,8 @@ public class PdfInstructionalOfferingTableBuilder extends WebInstructionalOfferi
     	
     	if (insructionalOfferings == null) return;
     	
+    	prefetchOfferings(insructionalOfferings);
+    	
     	SubjectArea subjectArea = SubjectAreaDAO.getInstance().get(subjectAreaId);
     	
     	if (classComparator!=null)
@@ -54,6 +54,7 @@ import org.unitime.localization.impl.Localization;
 import org.unitime.timetable.gwt.resources.GwtConstants;
 import org.unitime.timetable.model.PreferenceLevel;
 import org.unitime.timetable.model.dao.CurriculumDAO;
+import org.unitime.timetable.solver.TimetableSolver;
 import org.unitime.timetable.solver.ui.StudentGroupInfo;
 import org.unitime.timetable.util.Constants;
 
@@ -289,7 +290,7 @@ public class SolverGridModel extends TimetableGridModel implements Serializable
 				if (lecture.isCommitted()) continue;
 				TimetableGridCell cell = processed.get(lecture);
 				if (cell == null) {
-					cell = createCell(solver, i,j,lecture, placement, context.getBgMode());
+					cell = getCell(solver, i,j,lecture, placement, context.getBgMode());
 					processed.put(lecture, cell);
 					placements.add(placement);
 				} else {
@@ -316,7 +317,7 @@ public class SolverGridModel extends TimetableGridModel implements Serializable
 			int slot = f.nextElement();
 			if (context.getFirstDay()>=0 && !placement.getTimeLocation().getWeekCode().get(context.getFirstDay()+(slot/Constants.SLOTS_PER_DAY))) continue;
 			if (cell==null) {
-				cell = createCell(solver, slot/Constants.SLOTS_PER_DAY,slot%Constants.SLOTS_PER_DAY,(Lecture)placement.variable(), placement, bgMode);
+				cell = getCell(solver, slot/Constants.SLOTS_PER_DAY,slot%Constants.SLOTS_PER_DAY,(Lecture)placement.variable(), placement, bgMode);
 			} else {
 				cell = cell.copyCell(slot/Constants.SLOTS_PER_DAY,cell.getMeetingNumber()+1);
 			}
@@ -428,6 +429,24 @@ public class SolverGridModel extends TimetableGridModel implements Serializable
         return PreferenceLevel.sRequired;
     }
     
+	/**
+	 * Create the cell, or take it from the solver's {@link TimetableGridCellCache} when enabled
+	 */
+	private TimetableGridCell getCell(Solver solver, int day, int slot, Lecture lecture, Placement placement, int bgMode) {
+		TimetableGridCellCache cache = (solver instanceof TimetableSolver ? ((TimetableSolver)solver).getGridCellCache() : null);
+		if (cache == null)
+			return createCell(solver, day, slot, lecture, placement, bgMode);
+		boolean resourceDependent = (bgMode == sBgModeStudentConf && getResourceType() == sResourceTypeInstructor) || (bgMode == sBgModeStudentGroups && getResourceType() == sResourceTypeStudentGroup);
+		String key = bgMode + ":" + day + ":" + slot + ":" + (iRoomId == null ? "" : iRoomId.toString()) + ":" +
+				(resourceDependent ? getResourceType() + ":" + getResourceId() : "") + ":" + Localization.getLocale();
+		TimetableGridCell cell = cache.get(lecture, placement, key);
+		if (cell == null) {
+			cell = createCell(solver, day, slot, lecture, placement, bgMode);
+			cache.put(lecture, placement, key, cell);
+		}
+		return cell;
+	}
+    
 	private TimetableGridCell createCell(Solver solver, int day, int slot, Lecture lecture, Placement placement, int bgMode) {
 		Assignment<Lecture, Placement> assignment = solver.currentSolution().getAssignment();
 		String name = lecture.getName();
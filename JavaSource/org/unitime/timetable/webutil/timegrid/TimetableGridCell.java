@@ -116,6 +116,15 @@ public class TimetableGridCell implements Serializable, Comparable {
 		return cell;
 	}
 	
+	/**
+	 * Exact copy of the cell (including the day, the meeting number, and the parent)
+	 */
+	public TimetableGridCell copyCell() {
+		TimetableGridCell cell = copyCell(iDay, iMeetingNumber);
+		cell.iParent = iParent;
+		return cell;
+	}
+	
 	public String getName() { return iName; }
 	public void setName(String name) { iName = name; }
 	public void setShortComment(String comment) { iShortComment = comment; }
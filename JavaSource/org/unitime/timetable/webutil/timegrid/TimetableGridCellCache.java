@@ -0,0 +1,206 @@
+/*
+ * Licensed to The Apereo Foundation under one or more contributor license
+ * agreements. See the NOTICE file distributed with this work for
+ * additional information regarding copyright ownership.
+ *
+ * The Apereo Foundation licenses this file to you under the Apache License,
+ * Version 2.0 (the "License"); you may not use this file except in
+ * compliance with the License. You may obtain a copy of the License at:
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ *
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ *
+*/
+package org.unitime.timetable.webutil.timegrid;
+
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.Map;
+import java.util.Set;
+
+import org.apache.commons.logging.Log;
+import org.apache.commons.logging.LogFactory;
+import org.cpsolver.coursett.model.Lecture;
+import org.cpsolver.coursett.model.Placement;
+import org.cpsolver.ifs.assignment.Assignment;
+import org.cpsolver.ifs.model.Constraint;
+import org.cpsolver.ifs.model.Model;
+import org.cpsolver.ifs.model.ModelListener;
+import org.cpsolver.ifs.solver.Solver;
+import org.unitime.timetable.defaults.ApplicationProperty;
+
+/**
+ * Cache of the timetable grid cells computed by the {@link SolverGridModel} for a course timetabling solver.<br>
+ * Cells are kept per class and keyed by the background mode and the resource they were computed for. The cache
+ * listens to the changes of the solver model: when a class is assigned or unassigned, the cells of the class and of all
+ * the classes that share a constraint with it (as their conflicts and preferences may have changed) are dropped
+ * the next time the cache is used. Returned cells are copies, so that they can be modified by the caller.
+ *
+ * @author Tomas Muller
+ */
+public class TimetableGridCellCache implements ModelListener<Lecture, Placement> {
+	private static Log sLog = LogFactory.getLog(TimetableGridCellCache.class);
+	private Model<Lecture, Placement> iModel;
+	private int iAssignmentIndex;
+	private Map<Lecture, Map<String, CachedCell>> iCells = new HashMap<Lecture, Map<String, CachedCell>>();
+	private Set<Lecture> iChanged = new HashSet<Lecture>();
+	private boolean iClearAll = false;
+	private long iHits = 0, iMisses = 0, iInvalidations = 0;
+	
+	/**
+	 * @param model solver model
+	 * @param assignment assignment of which the cells are computed (changes of other assignments, e.g., of the working
+	 * assignments of a parallel search, are ignored)
+	 */
+	public TimetableGridCellCache(Model<Lecture, Placement> model, Assignment<Lecture, Placement> assignment) {
+		iModel = model;
+		iAssignmentIndex = assignment.getIndex();
+		iModel.addModelListener(this);
+	}
+	
+	public Model<Lecture, Placement> getModel() { return iModel; }
+	
+	/**
+	 * Stop listening to the model changes and forget all the cells
+	 */
+	public synchronized void dispose() {
+		iModel.removeModelListener(this);
+		iCells.clear();
+		synchronized (iChanged) {
+			iChanged.clear();
+		}
+	}
+	
+	protected long getTimeToLive() {
+		Integer ttl = ApplicationProperty.TimetableGridCellCacheTimeToLive.intValue();
+		return (ttl == null ? 900000l : 1000l * ttl);
+	}
+	
+	/**
+	 * Cached cell of the given class and placement
+	 * @return a copy of the cached cell, null if not cached (or no longer valid)
+	 */
+	public synchronized TimetableGridCell get(Lecture lecture, Placement placement, String key) {
+		invalidateChanged();
+		Map<String, CachedCell> cells = iCells.get(lecture);
+		CachedCell cell = (cells == null ? null : cells.get(key));
+		if (cell == null || !cell.isValid(placement, getTimeToLive())) {
+			iMisses ++;
+			return null;
+		}
+		iHits ++;
+		return cell.getCell().copyCell();
+	}
+	
+	public synchronized void put(Lecture lecture, Placement placement, String key, TimetableGridCell cell) {
+		Map<String, CachedCell> cells = iCells.get(lecture);
+		if (cells == null) {
+			cells = new HashMap<String, CachedCell>();
+			iCells.put(lecture, cells);
+		}
+		cells.put(key, new CachedCell(placement, cell.copyCell()));
+		if (sLog.isDebugEnabled() && (iHits + iMisses) % 10000 == 0)
+			sLog.debug(this);
+	}
+	
+	protected void invalidateChanged() {
+		Set<Lecture> changed = null;
+		synchronized (iChanged) {
+			if (iClearAll) {
+				iInvalidations += iCells.size();
+				iCells.clear();
+				iClearAll = false;
+			}
+			if (iChanged.isEmpty()) return;
+			changed = new HashSet<Lecture>(iChanged);
+			iChanged.clear();
+		}
+		Set<Lecture> affected = new HashSet<Lecture>();
+		for (Lecture lecture: changed) {
+			affected.add(lecture);
+			for (Constraint<Lecture, Placement> constraint: lecture.constraints())
+				affected.addAll(constraint.variables());
+		}
+		for (Lecture lecture: affected)
+			if (iCells.remove(lecture) != null) iInvalidations ++;
+	}
+	
+	protected void changed(Lecture lecture) {
+		synchronized (iChanged) {
+			iChanged.add(lecture);
+		}
+	}
+	
+	protected void clearAll() {
+		synchronized (iChanged) {
+			iClearAll = true;
+			iChanged.clear();
+		}
+	}
+	
+	@Override
+	public void variableAdded(Lecture variable) { clearAll(); }
+
+	@Override
+	public void variableRemoved(Lecture variable) { clearAll(); }
+
+	@Override
+	public void constraintAdded(Constraint<Lecture, Placement> constraint) { clearAll(); }
+
+	@Override
+	public void constraintRemoved(Constraint<Lecture, Placement> constraint) { clearAll(); }
+
+	@Override
+	public void beforeAssigned(Assignment<Lecture, Placement> assignment, long iteration, Placement value) {}
+
+	@Override
+	public void beforeUnassigned(Assignment<Lecture, Placement> assignment, long iteration, Placement value) {}
+
+	@Override
+	public void afterAssigned(Assignment<Lecture, Placement> assignment, long iteration, Placement value) {
+		if (assignment.getIndex() != iAssignmentIndex) return;
+		changed(value.variable());
+	}
+
+	@Override
+	public void afterUnassigned(Assignment<Lecture, Placement> assignment, long iteration, Placement value) {
+		if (assignment.getIndex() != iAssignmentIndex) return;
+		changed(value.variable());
+	}
+
+	@Override
+	public boolean init(Solver<Lecture, Placement> solver) {
+		return true;
+	}
+	
+	@Override
+	public synchronized String toString() {
+		return "TimetableGridCellCache{classes=" + iCells.size() + ", hits=" + iHits + ", misses=" + iMisses +
+				", hitRatio=" + (iHits + iMisses == 0 ? 0 : (100 * iHits / (iHits + iMisses))) + "%, invalidations=" + iInvalidations + "}";
+	}
+	
+	private static class CachedCell {
+		private Placement iPlacement;
+		private TimetableGridCell iCell;
+		private long iCreated;
+		
+		CachedCell(Placement placement, TimetableGridCell cell) {
+			iPlacement = placement;
+			iCell = cell;
+			iCreated = System.currentTimeMillis();
+		}
+		
+		TimetableGridCell getCell() { return iCell; }
+		
+		boolean isValid(Placement placement, long ttl) {
+			if (ttl > 0 && System.currentTimeMillis() - iCreated > ttl) return false;
+			return iPlacement.equals(placement);
+		}
+	}
+}